@@ -27,8 +27,10 @@ import io.airlift.airline.Command;
 import org.graylog2.bindings.ServerObjectMapperModule;
 import org.graylog2.inputs.codecs.CodecsModule;
 import org.graylog2.plugin.Message;
+import org.graylog2.plugin.configuration.Configuration;
 import org.graylog2.plugin.inputs.codecs.Codec;
 import org.graylog2.plugin.journal.RawMessage;
+import org.graylog2.shared.journal.CodecConfigurationTable;
 import org.graylog2.shared.journal.Journal;
 import org.slf4j.helpers.MessageFormatter;
 
@@ -83,6 +85,7 @@ public class JournalDecode extends AbstractJournalCommand {
         final Map<String, Codec.Factory<? extends Codec>> codecFactory =
                 injector.getInstance(Key.get(new TypeLiteral<Map<String, Codec.Factory<? extends Codec>>>() {
                 }));
+        final CodecConfigurationTable codecConfigurationTable = injector.getInstance(CodecConfigurationTable.class);
 
         final Long readOffset = range.lowerEndpoint();
         final long count = range.upperEndpoint() - range.lowerEndpoint() + 1;
@@ -96,7 +99,27 @@ public class JournalDecode extends AbstractJournalCommand {
                 continue;
             }
 
-            final Codec codec = codecFactory.get(raw.getCodecName()).create(raw.getCodecConfig());
+            // version 1 entries contain the full codec configuration, later versions only reference it
+            Configuration codecConfig = raw.getCodecConfig();
+            if (codecConfig == null) {
+                codecConfig = codecConfigurationTable.get(raw.getCodecConfigFingerprint());
+            }
+            if (codecConfig == null) {
+                if (raw.getCodecConfigFingerprint() != null) {
+                    System.err.println(MessageFormatter.format(
+                            "Unknown codec configuration {} for journal entry at offset {}, using default configuration",
+                            raw.getCodecConfigFingerprint(), entry.getOffset()));
+                }
+                codecConfig = Configuration.EMPTY_CONFIGURATION;
+            }
+
+            final Codec.Factory<? extends Codec> factory = codecFactory.get(raw.getCodecName());
+            if (factory == null) {
+                System.err.println(MessageFormatter.format("Unknown codec {} for journal entry at offset {}",
+                                                           raw.getCodecName(), entry.getOffset()));
+                continue;
+            }
+            final Codec codec = factory.create(codecConfig);
             final Message message = codec.decode(raw);
             if (message == null) {
                 System.err.println(MessageFormatter.format(
@@ -108,6 +131,7 @@ public class JournalDecode extends AbstractJournalCommand {
 
             final StringBuffer sb = new StringBuffer();
             sb.append("Message ").append(message.getId()).append(" in format ").append(raw.getCodecName())
+                    .append(" (journal format version ").append(raw.getVersion()).append(")")
                     .append(" received from ").append(message.getSource())
                     .append(" contains ").append(message.getFieldNames().size()).append(" fields.");
             System.out.println(sb);
@@ -57,10 +57,8 @@ public class GelfChunkAggregator implements CodecAggregator {
     @Nonnull
     @Override
     public Result addChunk(ChannelBuffer buffer) {
-        final byte[] readable = new byte[buffer.readableBytes()];
-        buffer.toByteBuffer().get(readable, buffer.readerIndex(), buffer.readableBytes());
-
-        final GELFMessage msg = new GELFMessage(readable);
+        // only look at the header here, the buffer is only copied if the message is chunked
+        final GELFMessage msg = new GELFMessage(buffer.toByteBuffer());
 
         final ChannelBuffer aggregatedBuffer;
         switch (msg.getGELFType()) {
@@ -105,13 +105,12 @@ public class GelfCodec extends AbstractCodec {
     @Nullable
     @Override
     public Message decode(@Nonnull final RawMessage rawMessage) {
-        final GELFMessage gelfMessage = new GELFMessage(rawMessage.getPayload());
-        final String json = gelfMessage.getJSON();
+        final GELFMessage gelfMessage = new GELFMessage(rawMessage.getPayloadAsByteBuffer());
 
         final JsonNode node;
 
         try {
-            node = objectMapper.readTree(json);
+            node = objectMapper.readTree(gelfMessage.getJSONStream());
         } catch (final Exception e) {
             log.error("Could not parse JSON!", e);
             throw new IllegalStateException("JSON is null/could not be parsed (invalid JSON)", e);
@@ -65,7 +65,7 @@ public class RawCodec extends AbstractCodec {
     public Message decode(@Nonnull RawMessage raw) {
         final ResolvableInetSocketAddress rawRemoteAddress = raw.getRemoteAddress();
         final InetAddress remoteAddress = rawRemoteAddress == null ? null : rawRemoteAddress.getAddress();
-        return new Message(new String(raw.getPayload(), Charsets.UTF_8), null, raw.getTimestamp());
+        return new Message(raw.getPayloadAsString(Charsets.UTF_8), null, raw.getTimestamp());
     }
 
     @Nullable
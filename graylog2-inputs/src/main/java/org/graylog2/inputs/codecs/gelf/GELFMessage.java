@@ -16,17 +16,22 @@
  */
 package org.graylog2.inputs.codecs.gelf;
 
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
 import org.graylog2.plugin.Tools;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 /**
  * @author Lennart Koopmann <lennart@socketfeed.com>
  */
 public class GELFMessage {
 
-    private final byte[] payload;
+    private final ByteBuffer payload;
 
     public static final String ADDITIONAL_FIELD_PREFIX = "_";
 
@@ -64,7 +69,7 @@ public class GELFMessage {
             bytes = new byte[]{first, second};
         }
 
-        static Type determineType(final byte first, final byte second) {
+        public static Type determineType(final byte first, final byte second) {
 
             if (first == ZLIB.first()) {
                 // zlib's second byte is for flags and a checksum -
@@ -116,25 +121,34 @@ public class GELFMessage {
      * @see GELFMessage.Type
      */
     public GELFMessage(final byte[] payload) {
+        this(ByteBuffer.wrap(payload));
+    }
+
+    /**
+     *
+     * @param payload Compressed or uncompressed, the remaining bytes of the buffer are used without copying them
+     * @see GELFMessage.Type
+     */
+    public GELFMessage(final ByteBuffer payload) {
         this.payload = payload;
     }
 
     public Type getGELFType() {
-        if (payload.length < Type.HEADER_SIZE) {
+        if (payload.remaining() < Type.HEADER_SIZE) {
             throw new IllegalStateException("GELF message is too short. Not even the type header would fit.");
         }
-        return Type.determineType(payload[0], payload[1]);
+        return Type.determineType(payload.get(payload.position()), payload.get(payload.position() + 1));
     }
 
     public String getJSON(){
         try {
             switch(getGELFType()) {
                 case ZLIB:
-                    return Tools.decompressZlib(payload);
+                    return Tools.decompressZlib(getPayload());
                 case GZIP:
-                    return Tools.decompressGzip(payload);
+                    return Tools.decompressGzip(getPayload());
                 case UNCOMPRESSED:
-                    return new String(payload, UTF8_CHARSET);
+                    return UTF8_CHARSET.decode(payload.duplicate()).toString();
                 case CHUNKED:
                 case UNSUPPORTED:
                     throw new IllegalStateException("Unknown GELF type. Not supported.");
@@ -148,7 +162,37 @@ public class GELFMessage {
         return null;
     }
 
+    /**
+     * Returns a stream of the (decompressed) JSON document without copying the payload.
+     */
+    public InputStream getJSONStream() {
+        final InputStream payloadStream = new ByteBufferBackedInputStream(payload.duplicate());
+        try {
+            switch (getGELFType()) {
+                case ZLIB:
+                    return new InflaterInputStream(payloadStream);
+                case GZIP:
+                    return new GZIPInputStream(payloadStream);
+                case UNCOMPRESSED:
+                    return payloadStream;
+                case CHUNKED:
+                case UNSUPPORTED:
+                default:
+                    throw new IllegalStateException("Unknown GELF type. Not supported.");
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException("Failed to decompress the GELF message payload", e);
+        }
+    }
+
     public byte[] getPayload() {
-        return payload;
+        if (payload.hasArray() && payload.arrayOffset() == 0 && payload.position() == 0
+                && payload.remaining() == payload.array().length) {
+            return payload.array();
+        }
+
+        final byte[] bytes = new byte[payload.remaining()];
+        payload.duplicate().get(bytes);
+        return bytes;
     }
 }
@@ -16,9 +16,13 @@
  */
 package org.graylog2.inputs.codecs.gelf;
 
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
 import org.graylog2.inputs.TestHelper;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
+
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
@@ -105,4 +109,26 @@ public class GELFMessageTest {
         assertArrayEquals(data, chunk.getData());
     }
 
+    @Test
+    public void testGetJSONStreamFromCompressedMessages() throws Exception {
+        final GELFMessage zlib = new GELFMessage(ByteBuffer.wrap(TestHelper.zlibCompress(GELF_JSON)));
+        assertEquals(GELF_JSON, new String(ByteStreams.toByteArray(zlib.getJSONStream()), Charsets.UTF_8));
+
+        final GELFMessage gzip = new GELFMessage(ByteBuffer.wrap(TestHelper.gzipCompress(GELF_JSON)));
+        assertEquals(GELF_JSON, new String(ByteStreams.toByteArray(gzip.getJSONStream()), Charsets.UTF_8));
+    }
+
+    @Test
+    public void testGetJSONStreamFromBufferSlice() throws Exception {
+        final byte[] text = ("xx" + GELF_JSON).getBytes(Charsets.UTF_8);
+        final ByteBuffer buffer = ByteBuffer.wrap(text);
+        buffer.position(2);
+
+        final GELFMessage msg = new GELFMessage(buffer.asReadOnlyBuffer());
+        assertEquals(GELFMessage.Type.UNCOMPRESSED, msg.getGELFType());
+        assertEquals(GELF_JSON, new String(ByteStreams.toByteArray(msg.getJSONStream()), Charsets.UTF_8));
+        assertEquals(GELF_JSON, msg.getJSON());
+        // reading the message doesn't consume the buffer
+        assertEquals(2, buffer.position());
+    }
 }
@@ -26,6 +26,7 @@ import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.github.joschi.jadconfig.Parameter;
 import com.github.joschi.jadconfig.util.Size;
+import com.github.joschi.jadconfig.validators.PositiveIntegerValidator;
 import org.joda.time.Duration;
 
 import java.io.File;
@@ -63,6 +64,31 @@ public class KafkaJournalConfiguration {
     @JsonProperty("flush_age")
     private Duration messageJournalFlushAge = Duration.standardMinutes(1);
 
+    @Parameter("message_journal_read_ahead")
+    @JsonProperty("read_ahead")
+    private Size messageJournalReadAhead = Size.megabytes(5l);
+
+    @Parameter(value = "message_journal_partitions", validator = PositiveIntegerValidator.class)
+    @JsonProperty("partitions")
+    private int messageJournalPartitions = 1;
+
+    @Parameter("message_journal_compression")
+    @JsonProperty("compression")
+    private String messageJournalCompression = "none";
+
+    @Parameter("message_journal_durability")
+    @JsonProperty("durability")
+    private String messageJournalDurability = "async";
+
+    @Parameter("message_journal_group_commit_interval")
+    @JsonFormat(shape = JsonFormat.Shape.NUMBER)
+    @JsonProperty("group_commit_interval")
+    private Duration messageJournalGroupCommitInterval = Duration.millis(10l);
+
+    @Parameter("message_journal_group_commit_size")
+    @JsonProperty("group_commit_size")
+    private Size messageJournalGroupCommitSize = Size.megabytes(1l);
+
     public File getMessageJournalDir() {
         return messageJournalDir;
     }
@@ -90,4 +116,28 @@ public class KafkaJournalConfiguration {
     public Duration getMessageJournalFlushAge() {
         return messageJournalFlushAge;
     }
+
+    public Size getMessageJournalReadAhead() {
+        return messageJournalReadAhead;
+    }
+
+    public int getMessageJournalPartitions() {
+        return messageJournalPartitions;
+    }
+
+    public String getMessageJournalCompression() {
+        return messageJournalCompression;
+    }
+
+    public String getMessageJournalDurability() {
+        return messageJournalDurability;
+    }
+
+    public Duration getMessageJournalGroupCommitInterval() {
+        return messageJournalGroupCommitInterval;
+    }
+
+    public Size getMessageJournalGroupCommitSize() {
+        return messageJournalGroupCommitSize;
+    }
 }
@@ -25,12 +25,25 @@ package org.graylog2.plugin;
 import com.google.common.base.MoreObjects;
 
 public class ThrottleState {
+    public static final long DEFAULT_UNCOMMITTED_ENTRIES_THRESHOLD = 100_000;
+    public static final long DEFAULT_JOURNAL_GROWTH_THRESHOLD = 20_000;
+
     public long uncommittedJournalEntries;
     public long appendEventsPerSec;
     public long journalSize;
     public long journalSizeLimit;
     public long readEventsPerSec;
     public long processBufferCapacity;
+    public long outputBufferCapacity;
+
+    /**
+     * Throttle once more entries than this are waiting in the journal.
+     */
+    public long uncommittedEntriesThreshold = DEFAULT_UNCOMMITTED_ENTRIES_THRESHOLD;
+    /**
+     * Throttle once the number of uncommitted entries grows by more than this since the previous state update.
+     */
+    public long journalGrowthThreshold = DEFAULT_JOURNAL_GROWTH_THRESHOLD;
 
     @Override
     public String toString() {
@@ -42,6 +55,9 @@ public class ThrottleState {
                 .add("journalSize", journalSize)
                 .add("journalSizeLimit", journalSizeLimit)
                 .add("pbCapacity", processBufferCapacity)
+                .add("obCapacity", outputBufferCapacity)
+                .add("uncommittedEntriesThreshold", uncommittedEntriesThreshold)
+                .add("journalGrowthThreshold", journalGrowthThreshold)
                 .toString();
     }
 }
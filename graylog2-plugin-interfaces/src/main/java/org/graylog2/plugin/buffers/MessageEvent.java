@@ -44,6 +44,8 @@ public class MessageEvent {
     };
 
     private RawMessage raw;
+    private byte[] encodedRaw;
+    private long encodedRawOffset;
     private Message msg;
 
     @Nullable
@@ -65,18 +67,45 @@ public class MessageEvent {
      */
     public void setRaw(@Nonnull RawMessage raw) {
         this.raw = raw;
+        this.encodedRaw = null;
+        setMessage(null);
+    }
+
+    /**
+     * Sets the still encoded raw message as read from the journal. Decoding it is left to the processor threads, so
+     * the journal reader doesn't have to decode every message itself.
+     * <p/>
+     * Like {@link #setRaw(RawMessage)} this clears out the {@link #getMessage() message} reference.
+     *
+     * @param encodedRaw    the encoded raw message
+     * @param journalOffset the journal offset of the raw message
+     */
+    public void setEncodedRaw(@Nonnull byte[] encodedRaw, long journalOffset) {
+        this.raw = null;
+        this.encodedRaw = encodedRaw;
+        this.encodedRawOffset = journalOffset;
         setMessage(null);
     }
 
     public void clearRaw() {
         this.raw = null;
+        this.encodedRaw = null;
     }
 
-    @Nonnull
+    @Nullable
     public RawMessage getRaw() {
         return raw;
     }
 
+    @Nullable
+    public byte[] getEncodedRaw() {
+        return encodedRaw;
+    }
+
+    public long getEncodedRawOffset() {
+        return encodedRawOffset;
+    }
+
     @Override
     public String toString() {
         return MoreObjects.toStringHelper(this)
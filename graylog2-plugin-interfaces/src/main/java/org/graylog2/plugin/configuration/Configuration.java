@@ -31,10 +31,12 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.google.common.base.Strings;
 import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 public class Configuration {
@@ -60,6 +62,8 @@ public class Configuration {
     private final Map<String, Boolean> bools;
     @JsonIgnore
     private String serializedSource = null;
+    @JsonIgnore
+    private String fingerprint = null;
 
     @JsonCreator
     public Configuration(@JsonProperty("source") Map<String, Object> m) {
@@ -68,6 +72,7 @@ public class Configuration {
         if (m != null && !m.isEmpty()) {
             try {
                 this.serializedSource = objectMapper.writeValueAsString(this);
+                this.fingerprint = Hashing.murmur3_128().hashString(serializedSource, StandardCharsets.UTF_8).toString();
             } catch (JsonProcessingException e) {
                 LOG.error("Serializing configuration failed.", e);
             }
@@ -144,6 +149,16 @@ public class Configuration {
         return serializedSource;
     }
 
+    /**
+     * Returns a hash of the serialized configuration. Equal configurations have the same fingerprint.
+     *
+     * @return the fingerprint or {@code null} for empty configurations
+     */
+    @JsonIgnore
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
     public static Configuration deserializeFromJson(String json) {
         if (Strings.isNullOrEmpty(json)) {
             return EMPTY_CONFIGURATION;
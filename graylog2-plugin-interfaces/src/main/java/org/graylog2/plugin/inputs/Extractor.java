@@ -116,6 +116,8 @@ public abstract class Extractor implements EmbeddedPersistable {
 
     private final String totalTimerName;
     private final String converterTimerName;
+    private final Timer totalTimer;
+    private final Timer converterTimer;
 
     protected abstract Result[] run(String field);
 
@@ -161,6 +163,10 @@ public abstract class Extractor implements EmbeddedPersistable {
 
         this.totalTimerName = name(getClass(), getType().toString().toLowerCase(), getId(), "executionTime");
         this.converterTimerName = name(getClass(), getType().toString().toLowerCase(), getId(), "converterExecutionTime");
+
+        // Resolve the timers once, runExtractor() and runConverters() are called for every message.
+        this.totalTimer = metricRegistry.timer(totalTimerName);
+        this.converterTimer = metricRegistry.timer(converterTimerName);
     }
 
     public void runExtractor(Message msg) {
@@ -182,7 +188,7 @@ public abstract class Extractor implements EmbeddedPersistable {
             }
         }
 
-        final Timer.Context timerContext = metricRegistry.timer(getTotalTimerName()).time();
+        final Timer.Context timerContext = totalTimer.time();
 
         final Result[] results = run(field);
 
@@ -231,7 +237,7 @@ public abstract class Extractor implements EmbeddedPersistable {
     }
 
     public void runConverters(Message msg) {
-        final Timer.Context timerContext = metricRegistry.timer(getConverterTimerName()).time();
+        final Timer.Context timerContext = converterTimer.time();
 
         for (Converter converter : converters) {
             try {
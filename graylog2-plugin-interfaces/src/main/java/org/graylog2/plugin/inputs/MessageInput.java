@@ -333,7 +333,7 @@ public abstract class MessageInput implements Stoppable {
 
         incomingMessages.mark();
         globalIncomingMessages.inc();
-        rawSize.mark(rawMessage.getPayload().length);
+        rawSize.mark(rawMessage.getPayloadLength());
     }
 
     public String getType() {
@@ -297,10 +297,9 @@ public abstract class NettyTransport implements Transport {
 
             }
             final ChannelBuffer buffer = (ChannelBuffer) msg;
-            final byte[] payload = new byte[buffer.readableBytes()];
-            buffer.toByteBuffer().get(payload, buffer.readerIndex(), buffer.readableBytes());
 
-            final RawMessage raw = new RawMessage(payload, (InetSocketAddress) e.getRemoteAddress());
+            // toByteBuffer() returns a view of the readable bytes, the RawMessage copies them exactly once
+            final RawMessage raw = new RawMessage(buffer.toByteBuffer(), (InetSocketAddress) e.getRemoteAddress());
             input.processRawMessage(raw);
         }
 
@@ -174,13 +174,13 @@ public abstract class ThrottleableTransport implements Transport {
             log.debug("[{}] [unthrottled] journal empty", transportName);
             return false;
         }
-        if (state.uncommittedJournalEntries > 100_000) {
-            log.debug("[{}] [throttled] number of unread journal entries is larger than 100.000 entries: {}", transportName, state.uncommittedJournalEntries);
+        if (state.uncommittedJournalEntries > state.uncommittedEntriesThreshold) {
+            log.debug("[{}] [throttled] number of unread journal entries is larger than {} entries: {}", transportName, state.uncommittedEntriesThreshold, state.uncommittedJournalEntries);
             return true;
         }
-        if (state.uncommittedJournalEntries - prevUncommitted > 20_000) {
+        if (state.uncommittedJournalEntries - prevUncommitted > state.journalGrowthThreshold) {
             // journal is growing, don't read more
-            log.debug("[{}] [throttled] number of unread journal entries is growing by more than 20.000 entries: {}", transportName, state.uncommittedJournalEntries - prevUncommitted);
+            log.debug("[{}] [throttled] number of unread journal entries is growing by more than {} entries: {}", transportName, state.journalGrowthThreshold, state.uncommittedJournalEntries - prevUncommitted);
             return true;
         }
         if (state.processBufferCapacity == 0) {
@@ -2450,6 +2450,32 @@ public final class JournalMessages {
      */
     com.google.protobuf.ByteString
         getConfigBytes();
+
+    /**
+     * <code>optional string config_hash = 3;</code>
+     *
+     * <pre>
+     * fingerprint of the codec configuration, the configuration itself is kept in a separate table (since version 2)
+     * </pre>
+     */
+    boolean hasConfigHash();
+    /**
+     * <code>optional string config_hash = 3;</code>
+     *
+     * <pre>
+     * fingerprint of the codec configuration, the configuration itself is kept in a separate table (since version 2)
+     * </pre>
+     */
+    java.lang.String getConfigHash();
+    /**
+     * <code>optional string config_hash = 3;</code>
+     *
+     * <pre>
+     * fingerprint of the codec configuration, the configuration itself is kept in a separate table (since version 2)
+     * </pre>
+     */
+    com.google.protobuf.ByteString
+        getConfigHashBytes();
   }
   /**
    * Protobuf type {@code org.graylog2.plugin.journal.CodecInfo}
@@ -2515,6 +2541,12 @@ public final class JournalMessages {
               config_ = bs;
               break;
             }
+            case 26: {
+              com.google.protobuf.ByteString bs = input.readBytes();
+              bitField0_ |= 0x00000004;
+              configHash_ = bs;
+              break;
+            }
           }
         }
       } catch (com.google.protobuf.InvalidProtocolBufferException e) {
@@ -2654,9 +2686,64 @@ public final class JournalMessages {
       }
     }
 
+    public static final int CONFIG_HASH_FIELD_NUMBER = 3;
+    private java.lang.Object configHash_;
+    /**
+     * <code>optional string config_hash = 3;</code>
+     *
+     * <pre>
+     * fingerprint of the codec configuration, the configuration itself is kept in a separate table (since version 2)
+     * </pre>
+     */
+    public boolean hasConfigHash() {
+      return ((bitField0_ & 0x00000004) == 0x00000004);
+    }
+    /**
+     * <code>optional string config_hash = 3;</code>
+     *
+     * <pre>
+     * fingerprint of the codec configuration, the configuration itself is kept in a separate table (since version 2)
+     * </pre>
+     */
+    public java.lang.String getConfigHash() {
+      java.lang.Object ref = configHash_;
+      if (ref instanceof java.lang.String) {
+        return (java.lang.String) ref;
+      } else {
+        com.google.protobuf.ByteString bs = 
+            (com.google.protobuf.ByteString) ref;
+        java.lang.String s = bs.toStringUtf8();
+        if (bs.isValidUtf8()) {
+          configHash_ = s;
+        }
+        return s;
+      }
+    }
+    /**
+     * <code>optional string config_hash = 3;</code>
+     *
+     * <pre>
+     * fingerprint of the codec configuration, the configuration itself is kept in a separate table (since version 2)
+     * </pre>
+     */
+    public com.google.protobuf.ByteString
+        getConfigHashBytes() {
+      java.lang.Object ref = configHash_;
+      if (ref instanceof java.lang.String) {
+        com.google.protobuf.ByteString b = 
+            com.google.protobuf.ByteString.copyFromUtf8(
+                (java.lang.String) ref);
+        configHash_ = b;
+        return b;
+      } else {
+        return (com.google.protobuf.ByteString) ref;
+      }
+    }
+
     private void initFields() {
       name_ = "";
       config_ = "";
+      configHash_ = "";
     }
     private byte memoizedIsInitialized = -1;
     public final boolean isInitialized() {
@@ -2677,6 +2764,9 @@ public final class JournalMessages {
       if (((bitField0_ & 0x00000002) == 0x00000002)) {
         output.writeBytes(2, getConfigBytes());
       }
+      if (((bitField0_ & 0x00000004) == 0x00000004)) {
+        output.writeBytes(3, getConfigHashBytes());
+      }
       getUnknownFields().writeTo(output);
     }
 
@@ -2694,6 +2784,10 @@ public final class JournalMessages {
         size += com.google.protobuf.CodedOutputStream
           .computeBytesSize(2, getConfigBytes());
       }
+      if (((bitField0_ & 0x00000004) == 0x00000004)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(3, getConfigHashBytes());
+      }
       size += getUnknownFields().getSerializedSize();
       memoizedSerializedSize = size;
       return size;
@@ -2815,6 +2909,8 @@ public final class JournalMessages {
         bitField0_ = (bitField0_ & ~0x00000001);
         config_ = "";
         bitField0_ = (bitField0_ & ~0x00000002);
+        configHash_ = "";
+        bitField0_ = (bitField0_ & ~0x00000004);
         return this;
       }
 
@@ -2851,6 +2947,10 @@ public final class JournalMessages {
           to_bitField0_ |= 0x00000002;
         }
         result.config_ = config_;
+        if (((from_bitField0_ & 0x00000004) == 0x00000004)) {
+          to_bitField0_ |= 0x00000004;
+        }
+        result.configHash_ = configHash_;
         result.bitField0_ = to_bitField0_;
         onBuilt();
         return result;
@@ -2877,6 +2977,11 @@ public final class JournalMessages {
           config_ = other.config_;
           onChanged();
         }
+        if (other.hasConfigHash()) {
+          bitField0_ |= 0x00000004;
+          configHash_ = other.configHash_;
+          onChanged();
+        }
         this.mergeUnknownFields(other.getUnknownFields());
         return this;
       }
@@ -3086,6 +3191,106 @@ public final class JournalMessages {
         return this;
       }
 
+      private java.lang.Object configHash_ = "";
+      /**
+       * <code>optional string config_hash = 3;</code>
+       *
+       * <pre>
+       * fingerprint of the codec configuration, the configuration itself is kept in a separate table (since version 2)
+       * </pre>
+       */
+      public boolean hasConfigHash() {
+        return ((bitField0_ & 0x00000004) == 0x00000004);
+      }
+      /**
+       * <code>optional string config_hash = 3;</code>
+       *
+       * <pre>
+       * fingerprint of the codec configuration, the configuration itself is kept in a separate table (since version 2)
+       * </pre>
+       */
+      public java.lang.String getConfigHash() {
+        java.lang.Object ref = configHash_;
+        if (!(ref instanceof java.lang.String)) {
+          com.google.protobuf.ByteString bs =
+              (com.google.protobuf.ByteString) ref;
+          java.lang.String s = bs.toStringUtf8();
+          if (bs.isValidUtf8()) {
+            configHash_ = s;
+          }
+          return s;
+        } else {
+          return (java.lang.String) ref;
+        }
+      }
+      /**
+       * <code>optional string config_hash = 3;</code>
+       *
+       * <pre>
+       * fingerprint of the codec configuration, the configuration itself is kept in a separate table (since version 2)
+       * </pre>
+       */
+      public com.google.protobuf.ByteString
+          getConfigHashBytes() {
+        java.lang.Object ref = configHash_;
+        if (ref instanceof String) {
+          com.google.protobuf.ByteString b = 
+              com.google.protobuf.ByteString.copyFromUtf8(
+                  (java.lang.String) ref);
+          configHash_ = b;
+          return b;
+        } else {
+          return (com.google.protobuf.ByteString) ref;
+        }
+      }
+      /**
+       * <code>optional string config_hash = 3;</code>
+       *
+       * <pre>
+       * fingerprint of the codec configuration, the configuration itself is kept in a separate table (since version 2)
+       * </pre>
+       */
+      public Builder setConfigHash(
+          java.lang.String value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000004;
+        configHash_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional string config_hash = 3;</code>
+       *
+       * <pre>
+       * fingerprint of the codec configuration, the configuration itself is kept in a separate table (since version 2)
+       * </pre>
+       */
+      public Builder clearConfigHash() {
+        bitField0_ = (bitField0_ & ~0x00000004);
+        configHash_ = getDefaultInstance().getConfigHash();
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional string config_hash = 3;</code>
+       *
+       * <pre>
+       * fingerprint of the codec configuration, the configuration itself is kept in a separate table (since version 2)
+       * </pre>
+       */
+      public Builder setConfigHashBytes(
+          com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000004;
+        configHash_ = value;
+        onChanged();
+        return this;
+      }
+
       // @@protoc_insertion_point(builder_scope:org.graylog2.plugin.journal.CodecInfo)
     }
 
@@ -3938,8 +4143,9 @@ public final class JournalMessages {
       "*.org.graylog2.plugin.journal.RemoteAddr" +
       "ess\022\017\n\007payload\030\010 \001(\014\"@\n\rRemoteAddress\022\017\n" +
       "\007address\030\001 \001(\014\022\014\n\004port\030\002 \001(\r\022\020\n\010resolved",
-      "\030\003 \001(\t\")\n\tCodecInfo\022\014\n\004name\030\001 \001(\t\022\016\n\006con" +
-      "fig\030\002 \001(\t\"\215\001\n\nSourceNode\022\n\n\002id\030\001 \001(\t\022B\n\004" +
+      "\030\003 \001(\t\">\n\tCodecInfo\022\014\n\004name\030\001 \001(\t\022\016\n\006con" +
+      "fig\030\002 \001(\t\022\023\n\013config_hash\030\003 \001(\t\"\215\001\n\nSourceNode" +
+      "\022\n\n\002id\030\001 \001(\t\022B\n\004" +
       "type\030\002 \001(\0162,.org.graylog2.plugin.journal" +
       ".SourceNode.Type:\006SERVER\022\020\n\010input_id\030\003 \001" +
       "(\t\"\035\n\004Type\022\n\n\006SERVER\020\000\022\t\n\005RADIO\020\001B.\n\033org" +
@@ -3975,7 +4181,7 @@ public final class JournalMessages {
     internal_static_org_graylog2_plugin_journal_CodecInfo_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessage.FieldAccessorTable(
         internal_static_org_graylog2_plugin_journal_CodecInfo_descriptor,
-        new java.lang.String[] { "Name", "Config", });
+        new java.lang.String[] { "Name", "Config", "ConfigHash", });
     internal_static_org_graylog2_plugin_journal_SourceNode_descriptor =
       getDescriptor().getMessageTypes().get(3);
     internal_static_org_graylog2_plugin_journal_SourceNode_fieldAccessorTable = new
@@ -36,11 +36,14 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -63,7 +66,11 @@ import static org.graylog2.plugin.journal.JournalMessages.JournalMessage;
  * </p>
  */
 public class RawMessage implements Serializable {
-    public static final byte CURRENT_VERSION = 1;
+    /**
+     * Version 1 stores the full codec configuration as JSON in every message, since version 2 only the
+     * fingerprint of the configuration is stored.
+     */
+    public static final byte CURRENT_VERSION = 2;
 
     private static final Logger log = LoggerFactory.getLogger(RawMessage.class);
 
@@ -71,6 +78,7 @@ public class RawMessage implements Serializable {
     private final UUID id;
     private final long journalOffset;
     private Configuration codecConfig;
+    private String codecConfigFingerprint;
 
     public RawMessage(byte[] payload) {
         this(payload, (ResolvableInetSocketAddress)null);
@@ -84,14 +92,31 @@ public class RawMessage implements Serializable {
         this(Long.MIN_VALUE, new UUID(), Tools.iso8601(), remoteAddress, payload);
     }
 
+    /**
+     * Creates a raw message from the remaining bytes of the given buffer. The bytes are copied exactly once,
+     * the position of the buffer is not changed.
+     */
+    public RawMessage(ByteBuffer payload, InetSocketAddress remoteAddress) {
+        this(Long.MIN_VALUE, new UUID(), Tools.iso8601(), ResolvableInetSocketAddress.wrap(remoteAddress),
+             ByteString.copyFrom(checkNotNull(payload, "The message payload must not be null!").duplicate()));
+    }
+
     public RawMessage(long journalOffset,
                       UUID id,
                       DateTime timestamp,
                       ResolvableInetSocketAddress remoteAddress,
                       byte[] payload) {
+        this(journalOffset, id, timestamp, remoteAddress,
+             ByteString.copyFrom(checkNotNull(payload, "The message payload must not be null!")));
+    }
+
+    private RawMessage(long journalOffset,
+                       UUID id,
+                       DateTime timestamp,
+                       ResolvableInetSocketAddress remoteAddress,
+                       ByteString payload) {
         checkNotNull(id, "The message id must not be null!");
-        checkNotNull(payload, "The message payload must not be null!");
-        checkArgument(payload.length > 0, "The message payload must not be empty!");
+        checkArgument(!payload.isEmpty(), "The message payload must not be empty!");
 
         msgBuilder = JournalMessage.newBuilder();
 
@@ -107,7 +132,7 @@ public class RawMessage implements Serializable {
             setRemoteAddress(remoteAddress);
         }
 
-        msgBuilder.setPayload(ByteString.copyFrom(payload));
+        msgBuilder.setPayload(payload);
     }
 
     public void addSourceNode(String sourceInputId, NodeId nodeId, boolean isServer) {
@@ -122,7 +147,16 @@ public class RawMessage implements Serializable {
         this.journalOffset = journalOffset;
         id = new UUID(journalMessage.getUuidTime(), journalMessage.getUuidClockseq());
         msgBuilder = JournalMessage.newBuilder(journalMessage);
-        codecConfig = Configuration.deserializeFromJson(journalMessage.getCodec().getConfig());
+
+        final JournalMessages.CodecInfo codec = journalMessage.getCodec();
+        if (journalMessage.getVersion() < 2 || codec.hasConfig()) {
+            codecConfig = Configuration.deserializeFromJson(codec.getConfig());
+            codecConfigFingerprint = codecConfig.getFingerprint();
+        } else {
+            // the configuration needs to be resolved by its fingerprint, see getCodecConfigFingerprint()
+            codecConfig = null;
+            codecConfigFingerprint = codec.hasConfigHash() ? codec.getConfigHash() : null;
+        }
     }
 
     @Nullable
@@ -141,14 +175,16 @@ public class RawMessage implements Serializable {
 
     public byte[] encode() {
         try {
-            final JournalMessages.CodecInfo codec = msgBuilder.getCodec();
-            final JournalMessages.CodecInfo.Builder builder = JournalMessages.CodecInfo.newBuilder(codec);
-
-            final String codecConfigJson = codecConfig.serializeToJson();
-            if (codecConfigJson != null) {
-                builder.setConfig(codecConfigJson);
+            final JournalMessages.CodecInfo.Builder builder = msgBuilder.getCodecBuilder();
+
+            // only reference the configuration, the configuration itself is kept in a separate table
+            builder.clearConfig();
+            if (codecConfigFingerprint != null) {
+                builder.setConfigHash(codecConfigFingerprint);
+            } else {
+                builder.clearConfigHash();
             }
-            msgBuilder.setCodec(builder.build());
+            msgBuilder.setVersion(CURRENT_VERSION);
 
             final JournalMessage journalMessage = msgBuilder.build();
             return journalMessage.toByteArray();
@@ -168,8 +204,41 @@ public class RawMessage implements Serializable {
         return new DateTime(msgBuilder.getTimestamp()); // TODO PERFORMANCE object creation
     }
 
+    /**
+     * Returns a copy of the payload. Use {@link #getPayloadAsByteBuffer()}, {@link #getPayloadAsInputStream()} or
+     * {@link #getPayloadAsString(Charset)} to access the payload without copying it.
+     */
     public byte[] getPayload() {
-        return msgBuilder.getPayload().toByteArray(); // TODO PERFORMANCE array copy
+        return msgBuilder.getPayload().toByteArray();
+    }
+
+    public int getPayloadLength() {
+        return msgBuilder.getPayload().size();
+    }
+
+    /**
+     * @return a read-only view of the payload, the payload is not copied
+     */
+    public ByteBuffer getPayloadAsByteBuffer() {
+        return msgBuilder.getPayload().asReadOnlyByteBuffer();
+    }
+
+    /**
+     * @return a stream reading the payload, the payload is not copied
+     */
+    public InputStream getPayloadAsInputStream() {
+        return msgBuilder.getPayload().newInput();
+    }
+
+    /**
+     * Decodes the payload into a string without copying it into an intermediate array first.
+     */
+    public String getPayloadAsString(Charset charset) {
+        final ByteString payload = msgBuilder.getPayload();
+        if (StandardCharsets.UTF_8.equals(charset)) {
+            return payload.toStringUtf8();
+        }
+        return charset.decode(payload.asReadOnlyByteBuffer()).toString();
     }
 
     public UUID getId() {
@@ -226,12 +295,30 @@ public class RawMessage implements Serializable {
         msgBuilder.getCodecBuilder().setName(name);
     }
 
+    /**
+     * Returns the codec configuration of this message.
+     *
+     * @return the configuration or {@code null} if the message has been read from the journal in a format which only
+     * references the configuration by its fingerprint
+     * @see #getCodecConfigFingerprint()
+     */
+    @Nullable
     public Configuration getCodecConfig() {
         return codecConfig;
     }
 
     public void setCodecConfig(Configuration codecConfig) {
         this.codecConfig = codecConfig;
+        this.codecConfigFingerprint = codecConfig == null ? null : codecConfig.getFingerprint();
+    }
+
+    /**
+     * @return the fingerprint of the codec configuration or {@code null} if the configuration is empty
+     * @see Configuration#getFingerprint()
+     */
+    @Nullable
+    public String getCodecConfigFingerprint() {
+        return codecConfigFingerprint;
     }
 
     public List<SourceNode> getSourceNodes() {
@@ -29,6 +29,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -61,4 +62,15 @@ public class ConfigurationTest {
 
         assertNotNull(emptyConfigFromNull);
     }
+
+    @Test
+    public void testFingerprint() throws Exception {
+        assertNull(new Configuration(null).getFingerprint());
+
+        final Configuration config = new Configuration(ImmutableMap.<String, Object>of("a", 1, "b", "foo"));
+        assertNotNull(config.getFingerprint());
+        assertEquals(config.getFingerprint(), new Configuration(ImmutableMap.<String, Object>of("b", "foo", "a", 1)).getFingerprint());
+        assertEquals(config.getFingerprint(), Configuration.deserializeFromJson(config.serializeToJson()).getFingerprint());
+        assertNotEquals(config.getFingerprint(), new Configuration(ImmutableMap.<String, Object>of("a", 2, "b", "foo")).getFingerprint());
+    }
 }
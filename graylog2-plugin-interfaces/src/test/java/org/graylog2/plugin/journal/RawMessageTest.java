@@ -23,16 +23,23 @@
 package org.graylog2.plugin.journal;
 
 import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import com.google.protobuf.ByteString;
 import org.graylog2.plugin.configuration.Configuration;
 import org.graylog2.plugin.system.NodeId;
 import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 public class RawMessageTest {
 
@@ -54,4 +61,71 @@ public class RawMessageTest {
 
     }
 
+    @Test
+    public void encodeOnlyReferencesCodecConfig() throws IOException {
+        final Configuration config = new Configuration(ImmutableMap.<String, Object>of("override_source", "foo"));
+        final RawMessage rawMessage = new RawMessage("testmessage".getBytes(Charsets.UTF_8));
+        rawMessage.setCodecName("raw");
+        rawMessage.setCodecConfig(config);
+
+        final byte[] encoded = rawMessage.encode();
+        final JournalMessages.JournalMessage journalMessage = JournalMessages.JournalMessage.parseFrom(encoded);
+        assertEquals(RawMessage.CURRENT_VERSION, journalMessage.getVersion());
+        assertFalse(journalMessage.getCodec().hasConfig());
+        assertEquals(config.getFingerprint(), journalMessage.getCodec().getConfigHash());
+
+        final RawMessage decodedMsg = RawMessage.decode(encoded, 1);
+        assertNotNull(decodedMsg);
+        assertNull(decodedMsg.getCodecConfig());
+        assertEquals(config.getFingerprint(), decodedMsg.getCodecConfigFingerprint());
+    }
+
+    @Test
+    public void decodeVersionOneMessage() throws IOException {
+        final Configuration config = new Configuration(ImmutableMap.<String, Object>of("override_source", "foo"));
+        final JournalMessages.JournalMessage journalMessage = JournalMessages.JournalMessage.newBuilder()
+                .setVersion(1)
+                .setUuidTime(1L)
+                .setUuidClockseq(1L)
+                .setTimestamp(0L)
+                .setCodec(JournalMessages.CodecInfo.newBuilder()
+                                  .setName("raw")
+                                  .setConfig(config.serializeToJson()))
+                .setPayload(ByteString.copyFromUtf8("testmessage"))
+                .build();
+
+        final RawMessage decodedMsg = RawMessage.decode(journalMessage.toByteArray(), 1);
+
+        assertNotNull(decodedMsg);
+        assertEquals(1, decodedMsg.getVersion());
+        assertNotNull(decodedMsg.getCodecConfig());
+        assertEquals("foo", decodedMsg.getCodecConfig().getString("override_source"));
+        assertEquals(config.getFingerprint(), decodedMsg.getCodecConfigFingerprint());
+    }
+
+    @Test
+    public void payloadViews() throws IOException {
+        final byte[] bytes = "xxtestmessage".getBytes(Charsets.UTF_8);
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.position(2);
+
+        final RawMessage rawMessage = new RawMessage(buffer, null);
+
+        // the buffer position is left alone
+        assertEquals(2, buffer.position());
+        assertEquals(11, rawMessage.getPayloadLength());
+        assertEquals("testmessage", rawMessage.getPayloadAsString(Charsets.UTF_8));
+        assertArrayEquals("testmessage".getBytes(Charsets.UTF_8), ByteStreams.toByteArray(rawMessage.getPayloadAsInputStream()));
+
+        final ByteBuffer payload = rawMessage.getPayloadAsByteBuffer();
+        assertEquals(11, payload.remaining());
+        assertEquals('t', payload.get(payload.position()));
+    }
+
+    @Test(expected = ReadOnlyBufferException.class)
+    public void payloadByteBufferIsReadOnly() throws IOException {
+        final RawMessage rawMessage = new RawMessage("testmessage".getBytes(Charsets.UTF_8));
+
+        rawMessage.getPayloadAsByteBuffer().put((byte) 'x');
+    }
 }
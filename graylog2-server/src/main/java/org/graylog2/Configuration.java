@@ -18,6 +18,7 @@ package org.graylog2;
 
 import com.github.joschi.jadconfig.Parameter;
 import com.github.joschi.jadconfig.util.Duration;
+import com.github.joschi.jadconfig.util.Size;
 import com.github.joschi.jadconfig.validators.PositiveIntegerValidator;
 import com.github.joschi.jadconfig.validators.PositiveLongValidator;
 import org.graylog2.plugin.BaseConfiguration;
@@ -49,6 +50,12 @@ public class Configuration extends BaseConfiguration {
     @Parameter(value = "output_flush_interval", required = true, validator = PositiveIntegerValidator.class)
     private int outputFlushInterval = 1;
 
+    @Parameter(value = "output_batch_max_size")
+    private Size outputBatchMaxSize = Size.megabytes(5l);
+
+    @Parameter(value = "output_concurrent_bulk_requests", validator = PositiveIntegerValidator.class)
+    private int outputConcurrentBulkRequests = 3;
+
     @Parameter(value = "outputbuffer_processors", required = true, validator = PositiveIntegerValidator.class)
     private int outputBufferProcessors = 3;
 
@@ -124,6 +131,27 @@ public class Configuration extends BaseConfiguration {
     @Parameter(value = "default_message_output_class")
     private String defaultMessageOutputClass = "";
 
+    @Parameter(value = "backpressure_controller_interval")
+    private Duration backpressureControllerInterval = Duration.milliseconds(250l);
+
+    @Parameter(value = "output_flush_latency_target")
+    private Duration outputFlushLatencyTarget = Duration.seconds(1l);
+
+    @Parameter(value = "search_result_cache_size", validator = PositiveIntegerValidator.class)
+    private int searchResultCacheSize = 1000;
+
+    @Parameter(value = "search_result_cache_ttl")
+    private Duration searchResultCacheTtl = Duration.seconds(5l);
+
+    @Parameter(value = "incremental_histogram_grace_period")
+    private Duration incrementalHistogramGracePeriod = Duration.minutes(1l);
+
+    @Parameter(value = "stream_rollups_enabled")
+    private boolean streamRollupsEnabled = false;
+
+    @Parameter(value = "stream_rollups_retention")
+    private Duration streamRollupsRetention = Duration.hours(1l);
+
     public boolean isMaster() {
         return isMaster;
     }
@@ -144,6 +172,14 @@ public class Configuration extends BaseConfiguration {
         return outputFlushInterval;
     }
 
+    public Size getOutputBatchMaxSize() {
+        return outputBatchMaxSize;
+    }
+
+    public int getOutputConcurrentBulkRequests() {
+        return outputConcurrentBulkRequests;
+    }
+
     public int getOutputBufferProcessors() {
         return outputBufferProcessors;
     }
@@ -245,7 +281,35 @@ public class Configuration extends BaseConfiguration {
         return gcWarningThreshold;
     }
 
+    public Duration getBackpressureControllerInterval() {
+        return backpressureControllerInterval;
+    }
+
+    public Duration getOutputFlushLatencyTarget() {
+        return outputFlushLatencyTarget;
+    }
+
     public String getDefaultMessageOutputClass() {
         return defaultMessageOutputClass;
     }
+
+    public int getSearchResultCacheSize() {
+        return searchResultCacheSize;
+    }
+
+    public Duration getSearchResultCacheTtl() {
+        return searchResultCacheTtl;
+    }
+
+    public Duration getIncrementalHistogramGracePeriod() {
+        return incrementalHistogramGracePeriod;
+    }
+
+    public boolean isStreamRollupsEnabled() {
+        return streamRollupsEnabled;
+    }
+
+    public Duration getStreamRollupsRetention() {
+        return streamRollupsRetention;
+    }
 }
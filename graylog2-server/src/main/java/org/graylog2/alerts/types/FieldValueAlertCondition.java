@@ -21,15 +21,20 @@ import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
 import org.graylog2.alerts.AbstractAlertCondition;
 import org.graylog2.indexer.InvalidRangeFormatException;
+import org.graylog2.indexer.results.FieldStatistics;
 import org.graylog2.indexer.results.FieldStatsResult;
 import org.graylog2.indexer.results.ResultMessage;
+import org.graylog2.indexer.results.SearchResult;
 import org.graylog2.indexer.searches.Searches;
+import org.graylog2.indexer.searches.Sorting;
+import org.graylog2.indexer.searches.timeranges.AbsoluteRange;
 import org.graylog2.indexer.searches.timeranges.InvalidRangeParametersException;
 import org.graylog2.indexer.searches.timeranges.RelativeRange;
 import org.graylog2.plugin.Message;
 import org.graylog2.plugin.MessageSummary;
 import org.graylog2.plugin.Tools;
 import org.graylog2.plugin.streams.Stream;
+import org.graylog2.streams.StreamRollups;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -62,12 +67,14 @@ public class FieldValueAlertCondition extends AbstractAlertCondition {
     private final String field;
     private final DecimalFormat decimalFormat;
     private final Searches searches;
+    private final StreamRollups streamRollups;
     private List<Message> searchHits = Collections.emptyList();
 
     @AssistedInject
-    public FieldValueAlertCondition(Searches searches, @Assisted Stream stream, @Nullable @Assisted String id, @Assisted DateTime createdAt, @Assisted("userid") String creatorUserId, @Assisted Map<String, Object> parameters) {
+    public FieldValueAlertCondition(Searches searches, StreamRollups streamRollups, @Assisted Stream stream, @Nullable @Assisted String id, @Assisted DateTime createdAt, @Assisted("userid") String creatorUserId, @Assisted Map<String, Object> parameters) {
         super(stream, id, Type.FIELD_VALUE, createdAt, creatorUserId, parameters);
         this.searches = searches;
+        this.streamRollups = streamRollups;
 
         this.decimalFormat = new DecimalFormat("#.###");
 
@@ -94,41 +101,41 @@ public class FieldValueAlertCondition extends AbstractAlertCondition {
         final List<MessageSummary> summaries = Lists.newArrayList();
         try {
             String filter = "streams:" + stream.getId();
-            FieldStatsResult fieldStatsResult = searches.fieldStats(field, "*", filter, new RelativeRange(time * 60));
-            if (getBacklog() != null && getBacklog() > 0) {
-                this.searchHits = Lists.newArrayList();
-                for (ResultMessage resultMessage : fieldStatsResult.getSearchHits()) {
-                    final Message msg = new Message(resultMessage.getMessage());
-                    this.searchHits.add(msg);
-                    summaries.add(new MessageSummary(resultMessage.getIndex(), msg));
+            final RelativeRange range = new RelativeRange(time * 60);
+
+            final DateTime from = range.getFrom();
+            final FieldStatistics fieldStats;
+            final StreamRollups.FieldStats rolledUpStats = streamRollups.fieldStats(stream.getId(), field, from);
+            if (rolledUpStats != null) {
+                final DateTime firstFullMinute = StreamRollups.firstFullMinute(from);
+                if (firstFullMinute.isAfter(from)) {
+                    // the rollups don't contain the partial first minute, the range filter includes its end
+                    final AbsoluteRange head = new AbsoluteRange(from, firstFullMinute.minusMillis(1));
+                    rolledUpStats.merge(StreamRollups.FieldStats.of(searches.fieldStats(field, "*", filter, head)));
                 }
+                fieldStats = rolledUpStats;
+            } else {
+                FieldStatsResult fieldStatsResult = searches.fieldStats(field, "*", filter, range);
+                if (getBacklog() != null && getBacklog() > 0) {
+                    this.searchHits = Lists.newArrayList();
+                    for (ResultMessage resultMessage : fieldStatsResult.getSearchHits()) {
+                        final Message msg = new Message(resultMessage.getMessage());
+                        this.searchHits.add(msg);
+                        summaries.add(new MessageSummary(resultMessage.getIndex(), msg));
+                    }
+                }
+                fieldStats = fieldStatsResult;
             }
 
-            if (fieldStatsResult.getCount() == 0) {
+            final Double result = checkValue(fieldStats);
+            if (fieldStats.getCount() == 0) {
                 LOG.debug("Alert check <{}> did not match any messages. Returning not triggered.", type);
                 return new CheckResult(false);
             }
 
-            double result;
-            switch (type) {
-                case MEAN:
-                    result = fieldStatsResult.getMean();
-                    break;
-                case MIN:
-                    result = fieldStatsResult.getMin();
-                    break;
-                case MAX:
-                    result = fieldStatsResult.getMax();
-                    break;
-                case SUM:
-                    result = fieldStatsResult.getSum();
-                    break;
-                case STDDEV:
-                    result = fieldStatsResult.getStdDeviation();
-                    break;
-                default:
-                    LOG.error("No such field value check type: [{}]. Returning not triggered.", type);
-                    return new CheckResult(false);
+            if (result == null) {
+                LOG.error("No such field value check type: [{}]. Returning not triggered.", type);
+                return new CheckResult(false);
             }
 
             LOG.debug("Alert check <{}> result: [{}]", id, result);
@@ -150,6 +157,10 @@ public class FieldValueAlertCondition extends AbstractAlertCondition {
             }
 
             if (triggered) {
+                if (rolledUpStats != null) {
+                    loadBacklog(filter, range, summaries);
+                }
+
                 final String resultDescription = "Field " + field + " had a " + type + " of "
                         + decimalFormat.format(result) + " in the last " + time + " minutes with trigger condition "
                         + thresholdType + " than " + decimalFormat.format(threshold) + ". "
@@ -172,6 +183,42 @@ public class FieldValueAlertCondition extends AbstractAlertCondition {
         }
     }
 
+    @Nullable
+    private Double checkValue(FieldStatistics fieldStats) {
+        switch (type) {
+            case MEAN:
+                return fieldStats.getMean();
+            case MIN:
+                return fieldStats.getMin();
+            case MAX:
+                return fieldStats.getMax();
+            case SUM:
+                return fieldStats.getSum();
+            case STDDEV:
+                return fieldStats.getStdDeviation();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * The stream rollups only contain the statistics, the backlog messages are still searched in Elasticsearch.
+     */
+    private void loadBacklog(String filter, RelativeRange range, List<MessageSummary> summaries) {
+        final Integer backlogSize = getBacklog();
+        if (backlogSize == null || backlogSize <= 0) {
+            return;
+        }
+
+        final SearchResult backlogResult = searches.search("*", filter, range, backlogSize, 0, new Sorting("timestamp", Sorting.Direction.DESC));
+        this.searchHits = Lists.newArrayList();
+        for (ResultMessage resultMessage : backlogResult.getResults()) {
+            final Message msg = new Message(resultMessage.getMessage());
+            this.searchHits.add(msg);
+            summaries.add(new MessageSummary(resultMessage.getIndex(), msg));
+        }
+    }
+
     @Override
     public List<Message> getSearchHits() {
         return this.searchHits;
@@ -26,12 +26,14 @@ import org.graylog2.indexer.results.ResultMessage;
 import org.graylog2.indexer.results.SearchResult;
 import org.graylog2.indexer.searches.Searches;
 import org.graylog2.indexer.searches.Sorting;
+import org.graylog2.indexer.searches.timeranges.AbsoluteRange;
 import org.graylog2.indexer.searches.timeranges.InvalidRangeParametersException;
 import org.graylog2.indexer.searches.timeranges.RelativeRange;
 import org.graylog2.plugin.Message;
 import org.graylog2.plugin.MessageSummary;
 import org.graylog2.plugin.Tools;
 import org.graylog2.plugin.streams.Stream;
+import org.graylog2.streams.StreamRollups;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -57,12 +59,14 @@ public class MessageCountAlertCondition extends AbstractAlertCondition {
     private final int threshold;
     private List<Message> searchHits = Collections.emptyList();
     private final Searches searches;
+    private final StreamRollups streamRollups;
 
     @AssistedInject
-    public MessageCountAlertCondition(Searches searches, @Assisted Stream stream, @Nullable @Assisted String id, @Assisted DateTime createdAt, @Assisted("userid") String creatorUserId, @Assisted Map<String, Object> parameters) {
+    public MessageCountAlertCondition(Searches searches, StreamRollups streamRollups, @Assisted Stream stream, @Nullable @Assisted String id, @Assisted DateTime createdAt, @Assisted("userid") String creatorUserId, @Assisted Map<String, Object> parameters) {
         super(stream, id, Type.MESSAGE_COUNT, createdAt, creatorUserId, parameters);
 
         this.searches = searches;
+        this.streamRollups = streamRollups;
         this.time = (Integer) parameters.get("time");
         this.thresholdType = ThresholdType.valueOf(((String) parameters.get("threshold_type")).toUpperCase());
         this.threshold = (Integer) parameters.get("threshold");
@@ -82,8 +86,8 @@ public class MessageCountAlertCondition extends AbstractAlertCondition {
         final List<MessageSummary> summaries = Lists.newArrayList();
         try {
             String filter = "streams:" + stream.getId();
-            CountResult result = searches.count("*", new RelativeRange(time * 60), filter);
-            long count = result.getCount();
+            final RelativeRange range = new RelativeRange(time * 60);
+            final long count = count(range, filter);
 
             LOG.debug("Alert check <{}> result: [{}]", id, count);
 
@@ -100,7 +104,7 @@ public class MessageCountAlertCondition extends AbstractAlertCondition {
             if (triggered) {
                 Integer backlogSize = getBacklog();
                 if (backlogSize != null && backlogSize > 0) {
-                    SearchResult backlogResult = searches.search("*", filter, new RelativeRange(time * 60), backlogSize, 0, new Sorting("timestamp", Sorting.Direction.DESC));
+                    SearchResult backlogResult = searches.search("*", filter, range, backlogSize, 0, new Sorting("timestamp", Sorting.Direction.DESC));
                     this.searchHits = Lists.newArrayList();
                     for (ResultMessage resultMessage : backlogResult.getResults()) {
                         final Message msg = new Message(resultMessage.getMessage());
@@ -127,6 +131,27 @@ public class MessageCountAlertCondition extends AbstractAlertCondition {
         }
     }
 
+    /**
+     * Counts the messages from the stream rollups if they cover the time range, searches Elasticsearch otherwise.
+     * The partial first minute of the time range is always counted in Elasticsearch.
+     */
+    private long count(RelativeRange range, String filter) {
+        final DateTime from = range.getFrom();
+        final Long rolledUpCount = streamRollups.count(stream.getId(), from);
+        if (rolledUpCount != null) {
+            final DateTime firstFullMinute = StreamRollups.firstFullMinute(from);
+            if (!firstFullMinute.isAfter(from)) {
+                return rolledUpCount;
+            }
+            // the range filter includes its end, which is already part of the rollups
+            final AbsoluteRange head = new AbsoluteRange(from, firstFullMinute.minusMillis(1));
+            return rolledUpCount + searches.count("*", head, filter).getCount();
+        }
+
+        final CountResult result = searches.count("*", range, filter);
+        return result.getCount();
+    }
+
     @Override
     public List<Message> getSearchHits() {
         return this.searchHits;
@@ -40,6 +40,7 @@ import org.graylog2.bindings.providers.RotationStrategyProvider;
 import org.graylog2.bindings.providers.RulesEngineProvider;
 import org.graylog2.bindings.providers.SystemJobFactoryProvider;
 import org.graylog2.bindings.providers.SystemJobManagerProvider;
+import org.graylog2.buffers.processors.OutputBufferProcessor;
 import org.graylog2.buffers.processors.ServerProcessBufferProcessor;
 import org.graylog2.bundles.BundleService;
 import org.graylog2.database.MongoConnection;
@@ -61,6 +62,7 @@ import org.graylog2.plugin.ServerStatus;
 import org.graylog2.plugin.indexer.rotation.RotationStrategy;
 import org.graylog2.rest.NotFoundExceptionMapper;
 import org.graylog2.rest.RestAccessLogFilter;
+import org.graylog2.rest.ScrollChunkJsonWriter;
 import org.graylog2.rest.ScrollChunkWriter;
 import org.graylog2.rest.ValidationExceptionMapper;
 import org.graylog2.security.ShiroSecurityContextFactory;
@@ -126,6 +128,7 @@ public class ServerBindings extends AbstractModule {
         install(new FactoryModuleBuilder().build(LdapSettingsImpl.Factory.class));
         install(new FactoryModuleBuilder().build(FieldValueAlertCondition.Factory.class));
         install(new FactoryModuleBuilder().build(MessageCountAlertCondition.Factory.class));
+        install(new FactoryModuleBuilder().build(OutputBufferProcessor.Factory.class));
     }
 
     private void bindSingletons() {
@@ -205,6 +208,7 @@ public class ServerBindings extends AbstractModule {
     private void bindAdditionalJerseyComponents() {
         Multibinder<Class> componentBinder = Multibinder.newSetBinder(binder(), Class.class, Names.named("additionalJerseyComponents"));
         componentBinder.addBinding().toInstance(ScrollChunkWriter.class);
+        componentBinder.addBinding().toInstance(ScrollChunkJsonWriter.class);
     }
 
     private void bindPluginMetaData() {
@@ -22,6 +22,7 @@ import org.graylog2.dashboards.DashboardRegistry;
 import org.graylog2.dashboards.DashboardService;
 import org.graylog2.indexer.searches.Searches;
 import org.graylog2.inputs.InputService;
+import org.graylog2.inputs.extractors.ExtractorChainRegistry;
 import org.graylog2.inputs.extractors.ExtractorFactory;
 import org.graylog2.plugin.ServerStatus;
 import org.graylog2.shared.inputs.InputLauncher;
@@ -49,6 +50,7 @@ public class BundleImporterProvider implements Provider<BundleImporter> {
     private final Searches searches;
     private final MessageInputFactory messageInputFactory;
     private final InputLauncher inputLauncher;
+    private final ExtractorChainRegistry extractorChainRegistry;
 
     @Inject
     public BundleImporterProvider(final InputService inputService,
@@ -63,7 +65,8 @@ public class BundleImporterProvider implements Provider<BundleImporter> {
                                   final MetricRegistry metricRegistry,
                                   final Searches searches,
                                   final MessageInputFactory messageInputFactory,
-                                  final InputLauncher inputLauncher) {
+                                  final InputLauncher inputLauncher,
+                                  final ExtractorChainRegistry extractorChainRegistry) {
         this.inputService = inputService;
         this.inputRegistry = inputRegistry;
         this.extractorFactory = extractorFactory;
@@ -77,6 +80,7 @@ public class BundleImporterProvider implements Provider<BundleImporter> {
         this.searches = searches;
         this.messageInputFactory = messageInputFactory;
         this.inputLauncher = inputLauncher;
+        this.extractorChainRegistry = extractorChainRegistry;
     }
 
     @Override
@@ -84,6 +88,6 @@ public class BundleImporterProvider implements Provider<BundleImporter> {
         return new BundleImporter(inputService, inputRegistry, extractorFactory,
                 streamService, streamRuleService, outputService, dashboardService,
                 dashboardRegistry, serverStatus, metricRegistry, searches, messageInputFactory,
-                inputLauncher);
+                inputLauncher, extractorChainRegistry);
     }
 }
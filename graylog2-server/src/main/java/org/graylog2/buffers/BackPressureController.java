@@ -0,0 +1,284 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.buffers;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.MoreObjects;
+import com.google.common.primitives.Ints;
+import org.graylog2.Configuration;
+import org.graylog2.outputs.BlockingBatchedESOutput;
+import org.graylog2.outputs.DefaultMessageOutput;
+import org.graylog2.plugin.ThrottleState;
+import org.graylog2.plugin.outputs.MessageOutput;
+import org.graylog2.shared.journal.Journal;
+import org.graylog2.shared.journal.KafkaJournal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Feedback controller which adjusts the tunables of the message processing pipeline to the observed load.
+ * <p>
+ * Every time the {@link ThrottleState} is updated, the controller looks at the occupancy of the process and output
+ * buffers and the latency of the Elasticsearch bulk requests and
+ * <ul>
+ * <li>shrinks the journal read ahead while the process buffer is (almost) full and grows it again while the process
+ * buffer has room and the journal contains unprocessed messages,</li>
+ * <li>halves the output batch size while bulk requests are slower than {@code output_flush_latency_target} and grows
+ * it again while messages pile up in the output buffer,</li>
+ * <li>tightens the input throttling thresholds while processing or indexing is the bottleneck and relaxes them back
+ * to their defaults otherwise.</li>
+ * </ul>
+ * All adjustments decrease multiplicatively and increase additively to avoid oscillation.
+ * </p>
+ */
+@Singleton
+public class BackPressureController {
+    private static final Logger LOG = LoggerFactory.getLogger(BackPressureController.class);
+
+    @VisibleForTesting
+    static final double HIGH_WATERMARK = 0.9;
+    @VisibleForTesting
+    static final double LOW_WATERMARK = 0.5;
+    private static final int MIN_READ_AHEAD_BYTES = 1024 * 1024;
+
+    private final KafkaJournal journal;
+    private final BlockingBatchedESOutput output;
+    private final int ringSize;
+    private final long flushLatencyTargetMillis;
+    private final long intervalMillis;
+
+    private final int baseReadAhead;
+    private final int minReadAhead;
+    private final int maxReadAhead;
+    private final int maxBatchSize;
+    private final int minBatchSize;
+    private final long baseUncommittedEntriesThreshold;
+    private final long baseJournalGrowthThreshold;
+
+    private final Meter adjustments;
+
+    private volatile Decision decision;
+
+    @Inject
+    public BackPressureController(Configuration configuration,
+                                  Journal journal,
+                                  @DefaultMessageOutput MessageOutput defaultMessageOutput,
+                                  MetricRegistry metricRegistry) {
+        this.journal = journal instanceof KafkaJournal ? (KafkaJournal) journal : null;
+        this.output = defaultMessageOutput instanceof BlockingBatchedESOutput ? (BlockingBatchedESOutput) defaultMessageOutput : null;
+        this.ringSize = configuration.getRingSize();
+        this.flushLatencyTargetMillis = configuration.getOutputFlushLatencyTarget().toMilliseconds();
+        this.intervalMillis = configuration.getBackpressureControllerInterval().toMilliseconds();
+
+        this.baseReadAhead = this.journal == null ? 0 : this.journal.getReadAheadBytes();
+        this.minReadAhead = Math.min(baseReadAhead, Math.max(baseReadAhead / 4, MIN_READ_AHEAD_BYTES));
+        this.maxReadAhead = Ints.saturatedCast(4l * baseReadAhead);
+        this.maxBatchSize = output == null ? 0 : output.getMaxBatchSize();
+        this.minBatchSize = Math.max(1, maxBatchSize / 8);
+
+        // the throttle state is published more than once per second, scale the per second growth accordingly
+        this.baseUncommittedEntriesThreshold = ThrottleState.DEFAULT_UNCOMMITTED_ENTRIES_THRESHOLD;
+        this.baseJournalGrowthThreshold = Math.max(1, ThrottleState.DEFAULT_JOURNAL_GROWTH_THRESHOLD * intervalMillis / 1000);
+
+        this.decision = new Decision(baseReadAhead, maxBatchSize, baseUncommittedEntriesThreshold,
+                baseJournalGrowthThreshold, 0, 0, 0);
+
+        this.adjustments = metricRegistry.meter(name(BackPressureController.class, "adjustments"));
+        metricRegistry.register(name(BackPressureController.class, "readAheadBytes"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return decision.getReadAheadBytes();
+            }
+        });
+        metricRegistry.register(name(BackPressureController.class, "outputBatchSize"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return decision.getOutputBatchSize();
+            }
+        });
+        metricRegistry.register(name(BackPressureController.class, "uncommittedEntriesThreshold"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return decision.getUncommittedEntriesThreshold();
+            }
+        });
+        metricRegistry.register(name(BackPressureController.class, "journalGrowthThreshold"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return decision.getJournalGrowthThreshold();
+            }
+        });
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    public Decision getDecision() {
+        return decision;
+    }
+
+    /**
+     * Computes new settings from the given state, applies them to the journal and the output and stores the
+     * throttling thresholds in the state before it is published to the transports.
+     */
+    public Decision adjust(ThrottleState state) {
+        final Decision previous = decision;
+        final double processUtilization = utilization(state.processBufferCapacity);
+        final double outputUtilization = utilization(state.outputBufferCapacity);
+        final long flushLatencyMillis = output == null ? 0 : output.getFlushLatencyMillis();
+        final boolean outputSaturated = flushLatencyMillis > flushLatencyTargetMillis;
+
+        int readAhead = previous.getReadAheadBytes();
+        if (processUtilization >= HIGH_WATERMARK) {
+            // reading more just leaves the journal reader blocked on the process buffer with a full batch in memory
+            readAhead = Math.max(minReadAhead, readAhead / 2);
+        } else if (processUtilization < LOW_WATERMARK && state.uncommittedJournalEntries > 0) {
+            readAhead = Ints.saturatedCast(Math.min((long) maxReadAhead, (long) readAhead + baseReadAhead / 4));
+        }
+
+        int batchSize = previous.getOutputBatchSize();
+        if (outputSaturated) {
+            batchSize = Math.max(minBatchSize, batchSize / 2);
+        } else if (outputUtilization >= LOW_WATERMARK) {
+            // larger bulks amortize the per request overhead while messages pile up in front of the output
+            batchSize = Math.min(maxBatchSize, batchSize + minBatchSize);
+        }
+
+        long uncommittedThreshold = previous.getUncommittedEntriesThreshold();
+        long growthThreshold = previous.getJournalGrowthThreshold();
+        if (outputSaturated || processUtilization >= HIGH_WATERMARK) {
+            uncommittedThreshold = Math.max(baseUncommittedEntriesThreshold / 8, uncommittedThreshold / 2);
+            growthThreshold = Math.max(Math.max(1, baseJournalGrowthThreshold / 8), growthThreshold / 2);
+        } else {
+            uncommittedThreshold = Math.min(baseUncommittedEntriesThreshold, uncommittedThreshold + baseUncommittedEntriesThreshold / 8);
+            growthThreshold = Math.min(baseJournalGrowthThreshold, growthThreshold + Math.max(1, baseJournalGrowthThreshold / 8));
+        }
+
+        final Decision current = new Decision(readAhead, batchSize, uncommittedThreshold, growthThreshold,
+                toPercent(processUtilization), toPercent(outputUtilization), flushLatencyMillis);
+
+        if (journal != null && readAhead != previous.getReadAheadBytes()) {
+            journal.setReadAheadBytes(readAhead);
+        }
+        if (output != null && batchSize != previous.getOutputBatchSize()) {
+            output.setBatchSize(batchSize);
+        }
+        if (current.hasChangedSettings(previous)) {
+            adjustments.mark();
+            LOG.debug("Adjusted back pressure settings: {}", current);
+        }
+        state.uncommittedEntriesThreshold = uncommittedThreshold;
+        state.journalGrowthThreshold = growthThreshold;
+
+        decision = current;
+        return current;
+    }
+
+    private double utilization(long remainingCapacity) {
+        if (ringSize <= 0) {
+            return 0.0;
+        }
+        return (ringSize - remainingCapacity) / (double) ringSize;
+    }
+
+    private static int toPercent(double utilization) {
+        return (int) Math.round(utilization * 100.0);
+    }
+
+    public static class Decision {
+        private final int readAheadBytes;
+        private final int outputBatchSize;
+        private final long uncommittedEntriesThreshold;
+        private final long journalGrowthThreshold;
+        private final int processBufferUtilization;
+        private final int outputBufferUtilization;
+        private final long flushLatencyMillis;
+
+        public Decision(int readAheadBytes,
+                        int outputBatchSize,
+                        long uncommittedEntriesThreshold,
+                        long journalGrowthThreshold,
+                        int processBufferUtilization,
+                        int outputBufferUtilization,
+                        long flushLatencyMillis) {
+            this.readAheadBytes = readAheadBytes;
+            this.outputBatchSize = outputBatchSize;
+            this.uncommittedEntriesThreshold = uncommittedEntriesThreshold;
+            this.journalGrowthThreshold = journalGrowthThreshold;
+            this.processBufferUtilization = processBufferUtilization;
+            this.outputBufferUtilization = outputBufferUtilization;
+            this.flushLatencyMillis = flushLatencyMillis;
+        }
+
+        public int getReadAheadBytes() {
+            return readAheadBytes;
+        }
+
+        public int getOutputBatchSize() {
+            return outputBatchSize;
+        }
+
+        public long getUncommittedEntriesThreshold() {
+            return uncommittedEntriesThreshold;
+        }
+
+        public long getJournalGrowthThreshold() {
+            return journalGrowthThreshold;
+        }
+
+        public int getProcessBufferUtilization() {
+            return processBufferUtilization;
+        }
+
+        public int getOutputBufferUtilization() {
+            return outputBufferUtilization;
+        }
+
+        public long getFlushLatencyMillis() {
+            return flushLatencyMillis;
+        }
+
+        private boolean hasChangedSettings(Decision other) {
+            return readAheadBytes != other.readAheadBytes
+                    || outputBatchSize != other.outputBatchSize
+                    || uncommittedEntriesThreshold != other.uncommittedEntriesThreshold
+                    || journalGrowthThreshold != other.journalGrowthThreshold;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("readAheadBytes", readAheadBytes)
+                    .add("outputBatchSize", outputBatchSize)
+                    .add("uncommittedEntriesThreshold", uncommittedEntriesThreshold)
+                    .add("journalGrowthThreshold", journalGrowthThreshold)
+                    .add("processBufferUtilization", processBufferUtilization)
+                    .add("outputBufferUtilization", outputBufferUtilization)
+                    .add("flushLatencyMillis", flushLatencyMillis)
+                    .toString();
+        }
+    }
+}
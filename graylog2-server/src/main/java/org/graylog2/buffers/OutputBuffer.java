@@ -20,7 +20,6 @@ import com.codahale.metrics.InstrumentedExecutorService;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
-import javax.inject.Provider;
 import javax.inject.Named;
 import com.lmax.disruptor.WaitStrategy;
 import com.lmax.disruptor.dsl.Disruptor;
@@ -49,7 +48,7 @@ public class OutputBuffer extends Buffer {
 
     @Inject
     public OutputBuffer(MetricRegistry metricRegistry,
-                        Provider<OutputBufferProcessor> processorProvider,
+                        OutputBufferProcessor.Factory processorFactory,
                         @Named("outputbuffer_processors") int processorCount,
                         @Named("ring_size") int ringSize,
                         @Named("processor_wait_strategy") String waitStrategyName) {
@@ -74,10 +73,11 @@ public class OutputBuffer extends Buffer {
         final OutputBufferProcessor[] processors = new OutputBufferProcessor[processorCount];
 
         for (int i = 0; i < processorCount; i++) {
-            processors[i] = processorProvider.get();
+            processors[i] = processorFactory.create(i, processorCount);
         }
 
-        disruptor.handleEventsWithWorkerPool(processors);
+        // every processor gets to see every event, so they can batch their share of messages up to the end of a batch
+        disruptor.handleEventsWith(processors);
 
         ringBuffer = disruptor.start();
     }
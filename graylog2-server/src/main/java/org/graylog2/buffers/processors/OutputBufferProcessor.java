@@ -21,10 +21,14 @@ import com.codahale.metrics.InstrumentedExecutorService;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.common.util.concurrent.Uninterruptibles;
-import com.lmax.disruptor.WorkHandler;
+import com.google.inject.assistedinject.Assisted;
+import com.google.inject.assistedinject.AssistedInject;
+import com.lmax.disruptor.EventHandler;
 import org.graylog2.Configuration;
 import org.graylog2.outputs.DefaultMessageOutput;
 import org.graylog2.outputs.OutputRouter;
@@ -37,7 +41,8 @@ import org.graylog2.shared.stats.ThroughputStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.inject.Inject;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
@@ -49,21 +54,24 @@ import java.util.concurrent.TimeUnit;
 
 import static com.codahale.metrics.MetricRegistry.name;
 
-public class OutputBufferProcessor implements WorkHandler<MessageEvent> {
+public class OutputBufferProcessor implements EventHandler<MessageEvent> {
 
     private static final Logger LOG = LoggerFactory.getLogger(OutputBufferProcessor.class);
 
     private static final String INCOMING_MESSAGES_METRICNAME = name(OutputBufferProcessor.class, "incomingMessages");
     private static final String PROCESS_TIME_METRICNAME = name(OutputBufferProcessor.class, "processTime");
 
+    public interface Factory {
+        OutputBufferProcessor create(@Assisted("ordinal") long ordinal,
+                                     @Assisted("numberOfConsumers") long numberOfConsumers);
+    }
+
     private final ExecutorService executor;
 
     private final Configuration configuration;
     private final ThroughputStats throughputStats;
     private final ServerStatus serverStatus;
 
-    //private List<Message> buffer = Lists.newArrayList();
-
     private final Meter incomingMessages;
     private final Counter outputThroughput;
     private final Timer processTime;
@@ -71,18 +79,29 @@ public class OutputBufferProcessor implements WorkHandler<MessageEvent> {
     private final OutputRouter outputRouter;
     private final MessageOutput defaultMessageOutput;
 
-    @Inject
+    private final long ordinal;
+    private final long numberOfConsumers;
+    private final int maxBatchSize;
+    private List<Message> batch;
+
+    @AssistedInject
     public OutputBufferProcessor(Configuration configuration,
                                  MetricRegistry metricRegistry,
                                  ThroughputStats throughputStats,
                                  ServerStatus serverStatus,
                                  OutputRouter outputRouter,
-                                 @DefaultMessageOutput MessageOutput defaultMessageOutput) {
+                                 @DefaultMessageOutput MessageOutput defaultMessageOutput,
+                                 @Assisted("ordinal") long ordinal,
+                                 @Assisted("numberOfConsumers") long numberOfConsumers) {
         this.configuration = configuration;
         this.throughputStats = throughputStats;
         this.serverStatus = serverStatus;
         this.outputRouter = outputRouter;
         this.defaultMessageOutput = defaultMessageOutput;
+        this.ordinal = ordinal;
+        this.numberOfConsumers = numberOfConsumers;
+        this.maxBatchSize = configuration.getOutputBatchSize();
+        this.batch = Lists.newArrayListWithCapacity(maxBatchSize);
 
         final String nameFormat = "outputbuffer-processor-executor-%d";
         final int corePoolSize = configuration.getOutputBufferProcessorThreadsCorePoolSize();
@@ -105,11 +124,45 @@ public class OutputBufferProcessor implements WorkHandler<MessageEvent> {
                 name(this.getClass(), "executor-service"));
     }
 
+    /**
+     * Collects the messages of this processor until the end of the batch the ring buffer made available, then writes
+     * them to the outputs.
+     * <p>
+     * Every processor sees every event, but only handles the sequences belonging to its ordinal.
+     * </p>
+     *
+     * @param event      the message event
+     * @param sequence   the sequence of the event in the ring buffer
+     * @param endOfBatch whether this is the last event of the currently available batch
+     * @throws Exception
+     */
+    @Override
+    public void onEvent(MessageEvent event, long sequence, boolean endOfBatch) throws Exception {
+        if ((sequence % numberOfConsumers) == ordinal) {
+            incomingMessages.mark();
+
+            final Message msg = event.getMessage();
+            if (msg == null) {
+                LOG.debug("Skipping null message.");
+            } else {
+                LOG.debug("Processing message <{}> from OutputBuffer.", msg.getId());
+                batch.add(msg);
+            }
+        }
+
+        if ((endOfBatch || batch.size() >= maxBatchSize) && !batch.isEmpty()) {
+            final List<Message> messages = batch;
+            batch = Lists.newArrayListWithCapacity(maxBatchSize);
+            writeBatch(messages);
+        }
+    }
+
     /**
      * Each message will be written to one or more outputs.
      * <p>
      * The default output is always being used for every message, but optionally the message can be routed to additional
-     * outputs, currently based on the stream outputs that are configured in the system.
+     * outputs, currently based on the stream outputs that are configured in the system. Every output receives all of its
+     * messages of the batch in a single {@link MessageOutput#write(List)} call.
      * </p>
      * <p>
      * The stream outputs are time limited so one bad output does not impact throughput too much. Essentially this means
@@ -121,28 +174,30 @@ public class OutputBufferProcessor implements WorkHandler<MessageEvent> {
      * can exert back pressure on the processing pipeline this way, making sure we don't run into excessive heap usage.
      * </p>
      *
-     * @param event the message to write to outputs
+     * @param messages the messages to write to outputs
      * @throws Exception
      */
-    @Override
-    public void onEvent(MessageEvent event) throws Exception {
-        incomingMessages.mark();
+    private void writeBatch(List<Message> messages) throws Exception {
+        final Map<MessageOutput, List<Message>> streamOutputBatches = Maps.newHashMap();
+        for (final Message msg : messages) {
+            final Set<MessageOutput> messageOutputs = outputRouter.getStreamOutputsForMessage(msg);
+            msg.recordCounter(serverStatus, "matched-outputs", messageOutputs.size());
 
-        final Message msg = event.getMessage();
-        if (msg == null) {
-            LOG.debug("Skipping null message.");
-            return;
+            for (final MessageOutput output : messageOutputs) {
+                List<Message> outputBatch = streamOutputBatches.get(output);
+                if (outputBatch == null) {
+                    outputBatch = Lists.newArrayList();
+                    streamOutputBatches.put(output, outputBatch);
+                }
+                outputBatch.add(msg);
+            }
         }
-        LOG.debug("Processing message <{}> from OutputBuffer.", msg.getId());
 
-        final Set<MessageOutput> messageOutputs = outputRouter.getStreamOutputsForMessage(msg);
-        msg.recordCounter(serverStatus, "matched-outputs", messageOutputs.size());
+        final Future<?> defaultOutputCompletion = processMessages(messages, defaultMessageOutput);
 
-        final Future<?> defaultOutputCompletion = processMessage(msg, defaultMessageOutput);
-
-        final CountDownLatch streamOutputsDoneSignal = new CountDownLatch(messageOutputs.size());
-        for (final MessageOutput output : messageOutputs) {
-            processMessage(msg, output, streamOutputsDoneSignal);
+        final CountDownLatch streamOutputsDoneSignal = new CountDownLatch(streamOutputBatches.size());
+        for (final Map.Entry<MessageOutput, List<Message>> entry : streamOutputBatches.entrySet()) {
+            processMessages(entry.getValue(), entry.getKey(), streamOutputsDoneSignal);
         }
 
         // Wait until all writer threads for stream outputs have finished or timeout is reached.
@@ -159,41 +214,44 @@ public class OutputBufferProcessor implements WorkHandler<MessageEvent> {
             LOG.error("The default output future was null, this is a bug!");
         }
 
-        if (msg.hasRecordings()) {
-            LOG.debug("Message event trace: {}", msg.recordingsAsString());
+        if (LOG.isDebugEnabled()) {
+            for (final Message msg : messages) {
+                if (msg.hasRecordings()) {
+                    LOG.debug("Message event trace: {}", msg.recordingsAsString());
+                }
+            }
         }
 
-        throughputStats.getThroughputCounter().increment();
-        outputThroughput.inc();
+        throughputStats.getThroughputCounter().add(messages.size());
+        outputThroughput.inc(messages.size());
 
-        LOG.debug("Wrote message <{}> to all outputs. Finished handling.", msg.getId());
+        LOG.debug("Wrote {} messages to all outputs. Finished handling.", messages.size());
     }
 
-    private Future<?> processMessage(final Message msg, final MessageOutput defaultMessageOutput) {
-        return processMessage(msg, defaultMessageOutput, new CountDownLatch(0));
+    private Future<?> processMessages(final List<Message> messages, final MessageOutput defaultMessageOutput) {
+        return processMessages(messages, defaultMessageOutput, new CountDownLatch(0));
     }
 
-    private Future<?> processMessage(final Message msg, final MessageOutput output, final CountDownLatch doneSignal) {
+    private Future<?> processMessages(final List<Message> messages, final MessageOutput output, final CountDownLatch doneSignal) {
         if (output == null) {
             LOG.error("Output was null!");
+            doneSignal.countDown();
             return Futures.immediateCancelledFuture();
         }
         if (!output.isRunning()) {
             LOG.debug("Skipping stopped output {}", output.getClass().getName());
+            doneSignal.countDown();
             return Futures.immediateCancelledFuture();
         }
 
         Future<?> future = null;
         try {
-            LOG.debug("Writing message to [{}].", output.getClass());
-            if (LOG.isTraceEnabled()) {
-                LOG.trace("Message id for [{}]: <{}>", output.getClass(), msg.getId());
-            }
+            LOG.debug("Writing {} messages to [{}].", messages.size(), output.getClass());
             future = executor.submit(new Runnable() {
                 @Override
                 public void run() {
                     try (Timer.Context ignored = processTime.time()) {
-                        output.write(msg);
+                        output.write(messages);
                     } catch (Exception e) {
                         LOG.error("Error in output [" + output.getClass() + "].", e);
                     } finally {
@@ -51,6 +51,8 @@ public class ServerProcessBufferProcessor extends ProcessBufferProcessor {
     private final OutputBuffer outputBuffer;
     private final Meter filteredOutMessages;
     private final List<MessageFilter> filterRegistry;
+    private final String[] filterTimerNames;
+    private final Timer[] filterTimers;
 
 
     @Inject
@@ -76,6 +78,14 @@ public class ServerProcessBufferProcessor extends ProcessBufferProcessor {
             }
         }).immutableSortedCopy(filterRegistry);
 
+        // resolve the filter timers once instead of building their names and looking them up for every message
+        this.filterTimerNames = new String[this.filterRegistry.size()];
+        this.filterTimers = new Timer[this.filterRegistry.size()];
+        for (int i = 0; i < this.filterRegistry.size(); i++) {
+            filterTimerNames[i] = name(this.filterRegistry.get(i).getClass(), "executionTime");
+            filterTimers[i] = metricRegistry.timer(filterTimerNames[i]);
+        }
+
         this.outputBuffer = outputBuffer;
         this.filteredOutMessages = metricRegistry.meter(name(ProcessBufferProcessor.class, "filteredOutMessages"));
     }
@@ -86,10 +96,9 @@ public class ServerProcessBufferProcessor extends ProcessBufferProcessor {
         if (filterRegistry.size() == 0)
             throw new RuntimeException("Empty filter registry!");
 
-        for (final MessageFilter filter : filterRegistry) {
-            final String timerName = name(filter.getClass(), "executionTime");
-            final Timer timer = metricRegistry.timer(timerName);
-            final Timer.Context timerContext = timer.time();
+        for (int i = 0; i < filterTimers.length; i++) {
+            final MessageFilter filter = filterRegistry.get(i);
+            final Timer.Context timerContext = filterTimers[i].time();
 
             try {
                 LOG.debug("Applying filter [{}] on message <{}>.", filter.getName(), msg.getId());
@@ -104,7 +113,7 @@ public class ServerProcessBufferProcessor extends ProcessBufferProcessor {
                 LOG.error("Could not apply filter [" + filter.getName() +"] on message <" + msg.getId() +">: ", e);
             } finally {
                 final long elapsedNanos = timerContext.stop();
-                msg.recordTiming(serverStatus, timerName, elapsedNanos);
+                msg.recordTiming(serverStatus, filterTimerNames[i], elapsedNanos);
             }
         }
 
@@ -35,6 +35,7 @@ import org.graylog2.indexer.searches.timeranges.RelativeRange;
 import org.graylog2.indexer.searches.timeranges.TimeRange;
 import org.graylog2.inputs.InputService;
 import org.graylog2.inputs.converters.ConverterFactory;
+import org.graylog2.inputs.extractors.ExtractorChainRegistry;
 import org.graylog2.inputs.extractors.ExtractorFactory;
 import org.graylog2.plugin.Message;
 import org.graylog2.plugin.ServerStatus;
@@ -83,6 +84,7 @@ public class BundleImporter {
     private final Searches searches;
     private final MessageInputFactory messageInputFactory;
     private final InputLauncher inputLauncher;
+    private final ExtractorChainRegistry extractorChainRegistry;
 
     private final Map<String, MessageInput> createdInputs = new HashMap<>();
     private final Map<String, org.graylog2.plugin.streams.Output> createdOutputs = new HashMap<>();
@@ -104,7 +106,8 @@ public class BundleImporter {
                           final MetricRegistry metricRegistry,
                           final Searches searches,
                           final MessageInputFactory messageInputFactory,
-                          final InputLauncher inputLauncher) {
+                          final InputLauncher inputLauncher,
+                          final ExtractorChainRegistry extractorChainRegistry) {
         this.inputService = inputService;
         this.inputRegistry = inputRegistry;
         this.extractorFactory = extractorFactory;
@@ -118,6 +121,7 @@ public class BundleImporter {
         this.searches = searches;
         this.messageInputFactory = messageInputFactory;
         this.inputLauncher = inputLauncher;
+        this.extractorChainRegistry = extractorChainRegistry;
     }
 
     public void runImport(final ConfigurationBundle bundle, final String userName) {
@@ -291,6 +295,7 @@ public class BundleImporter {
 
         org.graylog2.inputs.Input mongoInput = inputService.find(messageInput.getPersistId());
         inputService.addExtractor(mongoInput, extractor);
+        extractorChainRegistry.invalidate(mongoInput.getId());
     }
 
     private List<org.graylog2.plugin.inputs.Converter> createConverters(final List<Converter> requestedConverters) {
@@ -0,0 +1,77 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.cluster;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import org.graylog2.database.MongoConnection;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Cluster wide revision counters, stored in MongoDB.
+ *
+ * Nodes don't talk to each other directly. A node which changes shared configuration increments the matching
+ * revision so that other nodes can detect the change by polling a single small document instead of reloading
+ * all of the configuration.
+ */
+@Singleton
+public class ClusterRevisionService {
+    private static final String COLLECTION_NAME = "cluster_revisions";
+    private static final String FIELD_REVISION = "revision";
+
+    private final MongoConnection mongoConnection;
+
+    @Inject
+    public ClusterRevisionService(MongoConnection mongoConnection) {
+        this.mongoConnection = mongoConnection;
+    }
+
+    /**
+     * Returns the current revision.
+     *
+     * @param name the name of the revision counter
+     * @return the revision, {@code 0} if the counter has never been incremented
+     */
+    public long get(String name) {
+        final DBObject result = getCollection().findOne(new BasicDBObject("_id", name));
+        if (result == null || result.get(FIELD_REVISION) == null) {
+            return 0L;
+        }
+
+        return ((Number) result.get(FIELD_REVISION)).longValue();
+    }
+
+    /**
+     * Increments the revision.
+     *
+     * @param name the name of the revision counter
+     */
+    public void increment(String name) {
+        getCollection().update(
+                new BasicDBObject("_id", name),
+                new BasicDBObject("$inc", new BasicDBObject(FIELD_REVISION, 1L)),
+                true,
+                false);
+    }
+
+    private DBCollection getCollection() {
+        return mongoConnection.getDatabase().getCollection(COLLECTION_NAME);
+    }
+}
@@ -16,12 +16,7 @@
  */
 package org.graylog2.filters;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.collect.Lists;
-import org.graylog2.database.NotFoundException;
-import org.graylog2.inputs.Input;
-import org.graylog2.inputs.InputService;
+import org.graylog2.inputs.extractors.ExtractorChainRegistry;
 import org.graylog2.plugin.Message;
 import org.graylog2.plugin.filters.MessageFilter;
 import org.graylog2.plugin.inputs.Extractor;
@@ -29,26 +24,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
 
 public class ExtractorFilter implements MessageFilter {
     private static final Logger LOG = LoggerFactory.getLogger(ExtractorFilter.class);
     private static final String NAME = "Extractor";
 
-    private Cache<String, List<Extractor>> cache = CacheBuilder.newBuilder()
-            .expireAfterWrite(1, TimeUnit.SECONDS)
-            .build();
-
-    private final InputService inputService;
+    private final ExtractorChainRegistry extractorChainRegistry;
 
     @Inject
-    public ExtractorFilter(InputService inputService) {
-        this.inputService = inputService;
+    public ExtractorFilter(ExtractorChainRegistry extractorChainRegistry) {
+        this.extractorChainRegistry = extractorChainRegistry;
     }
 
     @Override
@@ -57,7 +42,7 @@ public class ExtractorFilter implements MessageFilter {
             return false;
         }
 
-        for (final Extractor extractor : loadExtractors(msg.getSourceInputId())) {
+        for (final Extractor extractor : extractorChainRegistry.getExtractors(msg.getSourceInputId())) {
             try {
                 extractor.runExtractor(msg);
             } catch (Exception e) {
@@ -69,37 +54,6 @@ public class ExtractorFilter implements MessageFilter {
         return false;
     }
 
-    private List<Extractor> loadExtractors(final String inputId) {
-        try {
-            return cache.get(inputId, new Callable<List<Extractor>>() {
-                @Override
-                public List<Extractor> call() throws Exception {
-                    LOG.debug("Re-loading extractors for input <{}> into cache.", inputId);
-
-                    try {
-                        Input input = inputService.find(inputId);
-
-                        List<Extractor> sorted = Lists.newArrayList(inputService.getExtractors(input));
-
-                        Collections.sort(sorted, new Comparator<Extractor>() {
-                            public int compare(Extractor e1, Extractor e2) {
-                                return e1.getOrder().intValue() - e2.getOrder().intValue();
-                            }
-                        });
-
-                        return sorted;
-                    } catch (NotFoundException e) {
-                        LOG.warn("Unable to load input: {}", e.getMessage());
-                        return Collections.emptyList();
-                    }
-                }
-            });
-        } catch (ExecutionException e) {
-            LOG.error("Could not load extractors into cache. Returning empty list.", e);
-            return Collections.emptyList();
-        }
-    }
-
     @Override
     public String getName() {
         return NAME;
@@ -20,6 +20,7 @@ import org.graylog2.plugin.Message;
 import org.graylog2.plugin.filters.MessageFilter;
 import org.graylog2.plugin.streams.Stream;
 import org.graylog2.shared.stats.ThroughputStats;
+import org.graylog2.streams.StreamRollups;
 import org.graylog2.streams.StreamRouter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,12 +37,15 @@ public class StreamMatcherFilter implements MessageFilter {
 
     private final StreamRouter streamRouter;
     private final ThroughputStats throughputStats;
+    private final StreamRollups streamRollups;
 
     @Inject
     public StreamMatcherFilter(StreamRouter streamRouter,
-                               ThroughputStats throughputStats) {
+                               ThroughputStats throughputStats,
+                               StreamRollups streamRollups) {
         this.streamRouter = streamRouter;
         this.throughputStats = throughputStats;
+        this.streamRollups = streamRollups;
     }
 
     @Override
@@ -52,6 +56,7 @@ public class StreamMatcherFilter implements MessageFilter {
             throughputStats.incrementStreamThroughput(stream.getId());
         }
         msg.setStreams(streams);
+        streamRollups.record(msg, streams);
 
         LOG.debug("Routed message <{}> to {} streams.", msg.getId(), streams.size());
 
@@ -0,0 +1,112 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.grok;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import oi.thekraken.grok.api.Grok;
+import oi.thekraken.grok.api.exception.GrokException;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Shared library of the stored grok patterns and of compiled grok expressions.
+ *
+ * The patterns are loaded once and every expression is only compiled once. The compiled {@link Grok} instances
+ * are shared and must only be used for matching. Call {@link #invalidateAll()} after the stored patterns changed.
+ */
+@Singleton
+public class GrokPatternRegistry {
+    private static final long CACHESIZE = 1000;
+
+    private final GrokPatternService grokPatternService;
+    private volatile Library library;
+
+    @Inject
+    public GrokPatternRegistry(GrokPatternService grokPatternService) {
+        this.grokPatternService = grokPatternService;
+    }
+
+    /**
+     * Returns the compiled grok instance for the given expression.
+     *
+     * @param expression the grok expression, e. g. {@code "%{IP:client} %{WORD:method}"}
+     * @return the compiled grok instance
+     * @throws GrokException if the expression could not be compiled
+     */
+    public Grok cachedGrokForPattern(String expression) throws GrokException {
+        try {
+            return currentLibrary().compiled.get(expression);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof GrokException) {
+                throw (GrokException) e.getCause();
+            }
+            throw new GrokException(e.getCause() == null ? e.getMessage() : e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * Drops the loaded patterns and all compiled expressions.
+     */
+    public synchronized void invalidateAll() {
+        library = null;
+    }
+
+    private Library currentLibrary() {
+        Library current = library;
+        if (current == null) {
+            synchronized (this) {
+                current = library;
+                if (current == null) {
+                    current = new Library(grokPatternService.loadAll());
+                    library = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static class Library {
+        private final Set<GrokPattern> patterns;
+        private final LoadingCache<String, Grok> compiled;
+
+        private Library(Set<GrokPattern> patterns) {
+            this.patterns = patterns;
+            this.compiled = CacheBuilder.newBuilder().maximumSize(CACHESIZE).build(new CacheLoader<String, Grok>() {
+                @Override
+                public Grok load(String expression) throws Exception {
+                    return compile(expression);
+                }
+            });
+        }
+
+        private Grok compile(String expression) throws GrokException {
+            final Grok grok = new Grok();
+            for (final GrokPattern grokPattern : patterns) {
+                grok.addPattern(grokPattern.name, grokPattern.pattern);
+            }
+            grok.compile(expression);
+
+            return grok;
+        }
+    }
+}
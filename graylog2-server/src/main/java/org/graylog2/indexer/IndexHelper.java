@@ -20,21 +20,28 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import org.elasticsearch.index.query.FilterBuilder;
 import org.elasticsearch.index.query.FilterBuilders;
+import org.elasticsearch.index.query.QueryBuilders;
 import org.graylog2.database.NotFoundException;
 import org.graylog2.indexer.ranges.IndexRange;
 import org.graylog2.indexer.ranges.IndexRangeService;
+import org.graylog2.indexer.searches.timeranges.AbsoluteRange;
 import org.graylog2.indexer.searches.timeranges.RelativeRange;
 import org.graylog2.indexer.searches.timeranges.TimeRange;
 import org.graylog2.plugin.Tools;
+import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 public class IndexHelper {
     private static final Logger LOG = LoggerFactory.getLogger(IndexHelper.class);
+    private static final long CACHED_RANGE_GRANULARITY = TimeUnit.MINUTES.toMillis(1);
+    private static final Pattern STREAM_FILTER = Pattern.compile("^streams:[a-zA-Z0-9]+$");
 
     public static Set<String> getOldestIndices(Set<String> indexNames, int count) {
         Set<String> r = Sets.newHashSet();
@@ -62,9 +69,62 @@ public class IndexHelper {
             return null;
         }
 
-        return FilterBuilders.rangeFilter("timestamp")
-                .gte(Tools.buildElasticSearchTimeFormat(range.getFrom()))
-                .lte(Tools.buildElasticSearchTimeFormat(range.getTo()));
+        final DateTime from = range.getFrom();
+        final DateTime to = range.getTo();
+        if (range instanceof AbsoluteRange) {
+            // absolute ranges are repeated verbatim, e.g. by dashboards, so the exact filter can be cached
+            return FilterBuilders.rangeFilter("timestamp")
+                    .gte(Tools.buildElasticSearchTimeFormat(from))
+                    .lte(Tools.buildElasticSearchTimeFormat(to))
+                    .cache(true);
+        }
+
+        // Relative and keyword ranges move with every request. Split them into a cached part aligned to full minutes,
+        // which stays the same for consecutive requests, and the uncached remainders at both ends.
+        final DateTime alignedFrom = new DateTime(ceil(from.getMillis()), from.getZone());
+        final DateTime alignedTo = new DateTime(floor(to.getMillis()), to.getZone());
+        if (!alignedFrom.isBefore(alignedTo)) {
+            return FilterBuilders.rangeFilter("timestamp")
+                    .gte(Tools.buildElasticSearchTimeFormat(from))
+                    .lte(Tools.buildElasticSearchTimeFormat(to));
+        }
+
+        return FilterBuilders.orFilter(
+                FilterBuilders.rangeFilter("timestamp")
+                        .gte(Tools.buildElasticSearchTimeFormat(alignedFrom))
+                        .lt(Tools.buildElasticSearchTimeFormat(alignedTo))
+                        .cache(true),
+                FilterBuilders.rangeFilter("timestamp")
+                        .gte(Tools.buildElasticSearchTimeFormat(from))
+                        .lt(Tools.buildElasticSearchTimeFormat(alignedFrom)),
+                FilterBuilders.rangeFilter("timestamp")
+                        .gte(Tools.buildElasticSearchTimeFormat(alignedTo))
+                        .lte(Tools.buildElasticSearchTimeFormat(to)));
+    }
+
+    /**
+     * Builds the filter for a search filter string. Stream filters, i.e. {@code streams:<id>}, become a term filter
+     * which Elasticsearch caches. Everything else is parsed as a query string.
+     */
+    public static FilterBuilder getFilter(String filter) {
+        if (filter == null || filter.isEmpty() || filter.equals("*")) {
+            return null;
+        }
+
+        if (STREAM_FILTER.matcher(filter).matches()) {
+            return FilterBuilders.termFilter("streams", filter.substring("streams:".length()));
+        }
+
+        return FilterBuilders.queryFilter(QueryBuilders.queryString(filter)).cache(true);
+    }
+
+    private static long floor(long millis) {
+        return millis - (millis % CACHED_RANGE_GRANULARITY);
+    }
+
+    private static long ceil(long millis) {
+        final long floor = floor(millis);
+        return floor == millis ? millis : floor + CACHED_RANGE_GRANULARITY;
     }
 
     private static String getPrefix(Set<String> names) {
@@ -91,7 +151,7 @@ public class IndexHelper {
                                                        TimeRange range) {
         Set<String> indices = Sets.newHashSet();
 
-        for (IndexRange indexRange : indexRangeService.getFrom((int) (range.getFrom().getMillis() / 1000))) {
+        for (IndexRange indexRange : indexRangeService.find(range.getFrom(), range.getTo())) {
             indices.add(indexRange.getIndexName());
         }
 
@@ -113,9 +173,7 @@ public class IndexHelper {
             }
         });
 
-        for (IndexRange indexRange : indexRangeService.getFrom((int) (range.getFrom().getMillis() / 1000))) {
-            indices.add(indexRange);
-        }
+        indices.addAll(indexRangeService.find(range.getFrom(), range.getTo()));
 
         // Always include the most recent index in some cases.
         if (indices.isEmpty() || range instanceof RelativeRange) {
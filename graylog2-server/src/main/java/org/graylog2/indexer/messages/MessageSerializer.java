@@ -0,0 +1,87 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.indexer.messages;
+
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.Tools;
+import org.graylog2.plugin.streams.Stream;
+import org.joda.time.DateTime;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Writes {@link Message messages} straight into the JSON source of an index request.
+ * <p/>
+ * The produced document is the same as serializing {@link Message#toElasticSearchObject()}, but without copying all
+ * fields into an intermediate map first. Every thread reuses its own output buffer, only the finished document is
+ * copied out of it.
+ */
+public final class MessageSerializer {
+    private static final ThreadLocal<BytesStreamOutput> BUFFER = new ThreadLocal<BytesStreamOutput>() {
+        @Override
+        protected BytesStreamOutput initialValue() {
+            return new BytesStreamOutput();
+        }
+    };
+
+    private MessageSerializer() {
+    }
+
+    public static BytesReference toSource(Message message) throws IOException {
+        final BytesStreamOutput buffer = BUFFER.get();
+        buffer.reset();
+
+        final XContentBuilder builder = XContentFactory.jsonBuilder(buffer);
+        writeSource(message, builder);
+
+        // the buffer will be reused for the next message, so the request needs its own copy
+        return builder.bytes().copyBytesArray();
+    }
+
+    static void writeSource(Message message, XContentBuilder builder) throws IOException {
+        builder.startObject();
+
+        for (final Map.Entry<String, Object> field : message.getFieldsEntries()) {
+            final String key = field.getKey();
+            final Object value = field.getValue();
+
+            if (Message.FIELD_STREAMS.equals(key)) {
+                // always replaced by the stream ids below
+                continue;
+            }
+
+            if (Message.FIELD_TIMESTAMP.equals(key) && value instanceof DateTime) {
+                builder.field(key, Tools.buildElasticSearchTimeFormat((DateTime) value));
+            } else {
+                builder.field(key, value);
+            }
+        }
+
+        builder.startArray(Message.FIELD_STREAMS);
+        for (final Stream stream : message.getStreams()) {
+            builder.value(stream.getId());
+        }
+        builder.endArray();
+
+        builder.endObject();
+    }
+}
@@ -19,6 +19,7 @@ package org.graylog2.indexer.messages;
 import com.google.common.collect.Lists;
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.action.WriteConsistencyLevel;
 import org.elasticsearch.action.admin.indices.analyze.AnalyzeRequestBuilder;
 import org.elasticsearch.action.admin.indices.analyze.AnalyzeResponse;
@@ -32,9 +33,11 @@ import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexRequestBuilder;
 import org.elasticsearch.action.support.replication.ReplicationType;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.indices.IndexMissingException;
 import org.elasticsearch.node.Node;
+import org.elasticsearch.rest.RestStatus;
 import org.graylog2.configuration.ElasticsearchConfiguration;
 import org.graylog2.indexer.DeadLetter;
 import org.graylog2.indexer.Deflector;
@@ -43,8 +46,11 @@ import org.graylog2.plugin.Message;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.LinkedBlockingQueue;
 
 /**
@@ -55,6 +61,15 @@ public class Messages {
     public static final String TYPE = "message";
     private static final Logger log = LoggerFactory.getLogger(Messages.class);
 
+    private static final Set<RestStatus> RETRIABLE_STATUSES = EnumSet.of(
+            RestStatus.TOO_MANY_REQUESTS,
+            RestStatus.SERVICE_UNAVAILABLE,
+            RestStatus.GATEWAY_TIMEOUT,
+            RestStatus.REQUEST_TIMEOUT);
+    private static final long INITIAL_RETRY_BACKOFF_MILLIS = 100L;
+    private static final long MAX_RETRY_BACKOFF_MILLIS = 30000L;
+    private static final int MIN_RETRY_BATCH_SIZE = 50;
+
     private final Client c;
     private final ElasticsearchConfiguration configuration;
     private LinkedBlockingQueue<List<DeadLetter>> deadLetterQueue;
@@ -95,55 +110,149 @@ public class Messages {
 		return tokens;
 	}
 
-    public boolean bulkIndex(final List<Message> messages) {
+    /**
+     * Indexes the given messages into the deflector.
+     * <p/>
+     * Messages which were rejected by Elasticsearch for temporary reasons (e. g. a full bulk queue) are retried with
+     * an exponential backoff in smaller batches until they have been indexed. Messages which can never be indexed (e. g.
+     * because of mapping errors) are handed to the dead letter queue.
+     *
+     * @return the messages which have not been indexed because the thread got interrupted while waiting for a retry,
+     * these must stay in the journal
+     */
+    public List<Message> bulkIndex(final List<Message> messages) {
         if (messages.isEmpty()) {
-            return true;
+            return Collections.emptyList();
+        }
+
+        List<Message> pending = messages;
+        int batchSize = messages.size();
+        int attempt = 0;
+        while (true) {
+            final List<Message> retry = Lists.newArrayList();
+            for (final List<Message> batch : Lists.partition(pending, batchSize)) {
+                indexBatch(batch, retry);
+            }
+
+            if (retry.isEmpty()) {
+                return Collections.emptyList();
+            }
+
+            attempt++;
+            final long backoffMillis = retryBackoffMillis(attempt);
+            log.warn("Elasticsearch rejected {} messages, retrying in {} ms (attempt {}).",
+                     retry.size(), backoffMillis, attempt);
+            try {
+                Thread.sleep(backoffMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Interrupted while waiting to retry, leaving {} messages in the journal.", retry.size());
+                return retry;
+            }
+
+            // smaller bulks have a better chance to get through an overloaded cluster
+            pending = retry;
+            batchSize = Math.max(MIN_RETRY_BATCH_SIZE, batchSize / 2);
         }
+    }
+
+    /**
+     * @return the time to wait before the given retry attempt, starting at 1
+     */
+    public static long retryBackoffMillis(int attempt) {
+        final long backoff = INITIAL_RETRY_BACKOFF_MILLIS << Math.min(attempt - 1, 20);
+        return Math.min(backoff, MAX_RETRY_BACKOFF_MILLIS);
+    }
 
+    /**
+     * @return {@code true} if the request might succeed when it is sent again later, e. g. because the cluster was
+     * overloaded
+     */
+    public static boolean isRetriable(ElasticsearchException e) {
+        return RETRIABLE_STATUSES.contains(e.status());
+    }
+
+    /**
+     * Sends a single bulk request and adds all messages which should be retried to {@code retry}.
+     */
+    private void indexBatch(final List<Message> messages, final List<Message> retry) {
+        final String deflectorName = configuration.getIndexPrefix() + "_" + Deflector.DEFLECTOR_SUFFIX;
         final BulkRequestBuilder request = c.prepareBulk();
+        // bulk items are reported by position, so keep track of the messages which actually made it into the request
+        final List<Message> indexedMessages = Lists.newArrayListWithCapacity(messages.size());
         for (Message msg : messages) {
-            request.add(buildIndexRequest(configuration.getIndexPrefix() + "_" + Deflector.DEFLECTOR_SUFFIX,
-                                          msg.toElasticSearchObject(),
-                                          msg.getId())); // Main index.
+            final BytesReference source;
+            try {
+                source = MessageSerializer.toSource(msg);
+            } catch (IOException e) {
+                // cannot happen when writing to memory, but don't give up on the whole bulk for a single message
+                log.error("Unable to serialize message <" + msg.getId() + ">, skipping it.", e);
+                continue;
+            }
+            request.add(buildIndexRequest(deflectorName, source, msg.getId())); // Main index.
+            indexedMessages.add(msg);
+        }
+        if (indexedMessages.isEmpty()) {
+            return;
         }
 
         request.setConsistencyLevel(WriteConsistencyLevel.ONE);
         request.setReplicationType(ReplicationType.ASYNC);
 
-        final BulkResponse response = c.bulk(request.request()).actionGet();
+        final BulkResponse response;
+        try {
+            response = c.bulk(request.request()).actionGet();
+        } catch (ElasticsearchException e) {
+            if (isRetriable(e)) {
+                log.debug("Bulk request of {} messages failed temporarily: {}", indexedMessages.size(), e.getMessage());
+                retry.addAll(indexedMessages);
+                return;
+            }
+            throw e;
+        }
 
         log.debug("Deflector index: Bulk indexed {} messages, took {} ms, failures: {}",
                   response.getItems().length, response.getTookInMillis(), response.hasFailures());
 
         if (response.hasFailures()) {
-            propagateFailure(response.getItems(), messages, response.buildFailureMessage());
-        }
+            final List<BulkItemResponse> permanentFailures = Lists.newArrayList();
+            for (BulkItemResponse item : response.getItems()) {
+                if (!item.isFailed()) {
+                    continue;
+                }
+                if (RETRIABLE_STATUSES.contains(item.getFailure().getStatus())) {
+                    retry.add(indexedMessages.get(item.getItemId()));
+                } else {
+                    permanentFailures.add(item);
+                }
+            }
 
-        return !response.hasFailures();
+            if (!permanentFailures.isEmpty()) {
+                propagateFailure(permanentFailures, indexedMessages, response.buildFailureMessage());
+            }
+        }
     }
 
-    private void propagateFailure(BulkItemResponse[] items, List<Message> messages, String errorMessage) {
+    private void propagateFailure(List<BulkItemResponse> items, List<Message> messages, String errorMessage) {
         log.error(
                 "Failed to index [{}] messages. Please check the index error log in your web interface for the reason. Error: {}",
-                items.length,
+                items.size(),
                 errorMessage);
 
         // Get all failed messages.
         List<DeadLetter> deadLetters = Lists.newArrayList();
         for (BulkItemResponse item : items) {
-            if (item.isFailed()) {
-                deadLetters.add(new DeadLetter(item, messages.get(item.getItemId())));
-            }
+            deadLetters.add(new DeadLetter(item, messages.get(item.getItemId())));
         }
 
         boolean r = deadLetterQueue.offer(deadLetters);
 
         if(!r) {
-            log.debug("Could not propagate failure to failure queue. Queue is full.");
+            log.warn("Could not propagate failure of {} messages to failure queue. Queue is full.", deadLetters.size());
         }
     }
 
-    private IndexRequestBuilder buildIndexRequest(String index, Map<String, Object> source, String id) {
+    private IndexRequestBuilder buildIndexRequest(String index, BytesReference source, String id) {
         final IndexRequestBuilder b = new IndexRequestBuilder(c);
 
         b.setId(id);
@@ -60,11 +60,12 @@ public class CreateNewSingleIndexRangeJob extends RebuildIndexRangesJob {
     public void execute() {
         LOG.info("Calculating ranges for index {}.", indexName);
         try {
+            // the new deflector target is empty, the previous one won't receive messages anymore and gets its final range
             final Map<String, Object> range;
             if (deflector.getCurrentActualTargetIndex().equals(indexName))
-                range = calculateRange(indexName);
-            else
                 range = getDeflectorIndexRange(indexName);
+            else
+                range = calculateRange(indexName);
 
             final IndexRange indexRange = indexRangeService.create(range);
             indexRangeService.destroy(indexName);
@@ -27,7 +27,20 @@ public interface IndexRange extends Persisted {
 
     DateTime getCalculatedAt();
 
+    /**
+     * @return the timestamp of the newest message at calculation time, the creation time for new deflector targets
+     */
     DateTime getStart();
 
+    /**
+     * @return the timestamp of the oldest message in the index
+     */
+    DateTime getBegin();
+
+    /**
+     * @return the timestamp of the newest message in the index or {@code null} if the index still receives messages
+     */
+    DateTime getEnd();
+
     int getCalculationTookMs();
 }
@@ -67,6 +67,38 @@ public class IndexRangeImpl extends PersistedImpl implements IndexRange {
         return new DateTime(unixMs, DateTimeZone.UTC);
     }
 
+    @Override
+    public DateTime getBegin() {
+        if (fields.containsKey("begin")) {
+            return timestampField("begin");
+        } else if (!fields.containsKey("calculated_at")) {
+            // placeholder range of a new deflector target, created along with the index
+            return getStart();
+        } else {
+            // calculated before the begin was tracked, the oldest message is unknown
+            return new DateTime(0L, DateTimeZone.UTC);
+        }
+    }
+
+    @Override
+    public DateTime getEnd() {
+        if (fields.containsKey("end")) {
+            return timestampField("end");
+        } else if (fields.containsKey("begin") || !fields.containsKey("calculated_at")) {
+            // the current deflector target still receives messages
+            return null;
+        } else {
+            // calculated before the end was tracked, the newest message was stored as start
+            return getStart();
+        }
+    }
+
+    private DateTime timestampField(String key) {
+        int ts = (Integer) fields.get(key);
+        long unixMs = ts * 1000L;
+        return new DateTime(unixMs, DateTimeZone.UTC);
+    }
+
     @Override
     public int getCalculationTookMs() {
         if (fields.containsKey("took_ms")) {
@@ -91,6 +123,11 @@ public class IndexRangeImpl extends PersistedImpl implements IndexRange {
         HashMap<String, Object> fields = Maps.newHashMap();
         fields.put("index", getIndexName());
         fields.put("starts", getStart());
+        fields.put("begin", getBegin());
+        final DateTime end = getEnd();
+        if (end != null) {
+            fields.put("end", end);
+        }
         // Calculated at and the calculation time in ms are not always set, depending on how/why the entry was created.
         DateTime calculatedAt = getCalculatedAt();
         if (calculatedAt != null) {
@@ -0,0 +1,116 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.indexer.ranges;
+
+import com.google.common.collect.Lists;
+import org.joda.time.DateTime;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An immutable interval index over index ranges to find the indices overlapping a time range without asking MongoDB.
+ * <p/>
+ * The ranges are sorted by their begin and augmented with the maximum end of all ranges up to each position, so a
+ * lookup is a binary search followed by a scan over the candidates which can still reach into the requested range.
+ * <p/>
+ * Open ranges belong to the current write index, which also receives messages with timestamps older than its begin.
+ * They are part of every result.
+ */
+public class IndexRangeIntervals {
+    private static final Comparator<IndexRange> BY_BEGIN = new Comparator<IndexRange>() {
+        @Override
+        public int compare(IndexRange o1, IndexRange o2) {
+            return o1.getBegin().compareTo(o2.getBegin());
+        }
+    };
+    private static final Comparator<IndexRange> BY_START_DESC = new Comparator<IndexRange>() {
+        @Override
+        public int compare(IndexRange o1, IndexRange o2) {
+            return o2.getStart().compareTo(o1.getStart());
+        }
+    };
+
+    private final List<IndexRange> openRanges = Lists.newArrayList();
+    private final IndexRange[] ranges;
+    private final long[] begins;
+    private final long[] ends;
+    private final long[] maxEnds;
+
+    public IndexRangeIntervals(Collection<IndexRange> indexRanges) {
+        final List<IndexRange> sorted = Lists.newArrayList();
+        for (IndexRange indexRange : indexRanges) {
+            if (indexRange.getEnd() == null) {
+                openRanges.add(indexRange);
+            } else {
+                sorted.add(indexRange);
+            }
+        }
+        Collections.sort(sorted, BY_BEGIN);
+
+        ranges = sorted.toArray(new IndexRange[sorted.size()]);
+        begins = new long[ranges.length];
+        ends = new long[ranges.length];
+        maxEnds = new long[ranges.length];
+
+        long maxEnd = Long.MIN_VALUE;
+        for (int i = 0; i < ranges.length; i++) {
+            begins[i] = ranges[i].getBegin().getMillis();
+            ends[i] = ranges[i].getEnd().getMillis();
+            maxEnd = Math.max(maxEnd, ends[i]);
+            maxEnds[i] = maxEnd;
+        }
+    }
+
+    /**
+     * @return the ranges overlapping the given time range, newest first
+     */
+    public List<IndexRange> find(DateTime from, DateTime to) {
+        final long fromMillis = from.getMillis();
+        final List<IndexRange> result = Lists.newArrayList(openRanges);
+
+        // all ranges beginning after the end of the requested range are irrelevant
+        for (int i = lastBeginningBefore(to.getMillis()); i >= 0 && maxEnds[i] >= fromMillis; i--) {
+            if (ends[i] >= fromMillis) {
+                result.add(ranges[i]);
+            }
+        }
+
+        Collections.sort(result, BY_START_DESC);
+        return result;
+    }
+
+    public int size() {
+        return openRanges.size() + ranges.length;
+    }
+
+    private int lastBeginningBefore(long millis) {
+        int low = 0;
+        int high = begins.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (begins[mid] <= millis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low - 1;
+    }
+}
@@ -18,6 +18,7 @@ package org.graylog2.indexer.ranges;
 
 import org.graylog2.database.NotFoundException;
 import org.graylog2.plugin.database.PersistedService;
+import org.joda.time.DateTime;
 
 import java.util.List;
 import java.util.Map;
@@ -30,6 +31,13 @@ public interface IndexRangeService extends PersistedService {
 
     List<IndexRange> getFrom(int timestamp);
 
+    /**
+     * Finds the ranges of all indices which may contain messages between {@code begin} and {@code end}, newest first.
+     * Ranges without an end belong to the current write index and are always included. The lookup is served from
+     * memory.
+     */
+    List<IndexRange> find(DateTime begin, DateTime end);
+
     void destroy(String index);
 
     IndexRange create(Map<String, Object> range);
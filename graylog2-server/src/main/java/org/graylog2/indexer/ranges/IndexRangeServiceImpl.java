@@ -23,21 +23,33 @@ import org.bson.types.ObjectId;
 import org.graylog2.database.MongoConnection;
 import org.graylog2.database.NotFoundException;
 import org.graylog2.database.PersistedServiceImpl;
+import org.graylog2.plugin.database.Persisted;
+import org.graylog2.plugin.database.ValidationException;
 import org.graylog2.shared.system.activities.Activity;
 import org.graylog2.shared.system.activities.ActivityWriter;
+import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
+import javax.inject.Singleton;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+@Singleton
 public class IndexRangeServiceImpl extends PersistedServiceImpl implements IndexRangeService {
     private static final Logger LOG = LoggerFactory.getLogger(IndexRangeServiceImpl.class);
+    // ranges may be changed by other nodes, pick those changes up eventually
+    private static final long INTERVALS_MAX_AGE_NANOS = TimeUnit.SECONDS.toNanos(5);
+
     private final ActivityWriter activityWriter;
 
+    private volatile IndexRangeIntervals intervals;
+    private volatile long intervalsLoadedAt;
+
     @Inject
     public IndexRangeServiceImpl(MongoConnection mongoConnection, ActivityWriter activityWriter) {
         super(mongoConnection);
@@ -75,6 +87,60 @@ public class IndexRangeServiceImpl extends PersistedServiceImpl implements Index
         return ranges;
     }
 
+    @Override
+    public List<IndexRange> find(DateTime begin, DateTime end) {
+        IndexRangeIntervals current = intervals;
+        if (current == null || System.nanoTime() - intervalsLoadedAt > INTERVALS_MAX_AGE_NANOS) {
+            current = loadIntervals();
+        }
+        return current.find(begin, end);
+    }
+
+    private IndexRangeIntervals loadIntervals() {
+        final long loadedAt = System.nanoTime();
+        final List<IndexRange> ranges = Lists.newArrayList();
+        for (DBObject dbo : query(IndexRangeImpl.class, new BasicDBObject())) {
+            ranges.add(new IndexRangeImpl((ObjectId) dbo.get("_id"), dbo.toMap()));
+        }
+
+        final IndexRangeIntervals loaded = new IndexRangeIntervals(ranges);
+        intervals = loaded;
+        intervalsLoadedAt = loadedAt;
+        LOG.debug("Loaded {} index ranges.", loaded.size());
+        return loaded;
+    }
+
+    private void invalidateIntervals() {
+        intervals = null;
+    }
+
+    @Override
+    public <T extends Persisted> String save(T model) throws ValidationException {
+        try {
+            return super.save(model);
+        } finally {
+            invalidateIntervals();
+        }
+    }
+
+    @Override
+    public <T extends Persisted> int destroy(T model) {
+        try {
+            return super.destroy(model);
+        } finally {
+            invalidateIntervals();
+        }
+    }
+
+    @Override
+    public <T extends Persisted> int destroyAll(Class<T> modelClass) {
+        try {
+            return super.destroyAll(modelClass);
+        } finally {
+            invalidateIntervals();
+        }
+    }
+
     @Override
     public void destroy(String index) {
         try {
@@ -21,18 +21,15 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
-import org.elasticsearch.search.SearchHit;
 import org.graylog2.indexer.Deflector;
 import org.graylog2.indexer.EmptyIndexException;
 import org.graylog2.indexer.searches.Searches;
+import org.graylog2.indexer.searches.TimestampStats;
 import org.graylog2.plugin.Tools;
 import org.graylog2.plugin.ServerStatus;
 import org.graylog2.shared.system.activities.Activity;
 import org.graylog2.shared.system.activities.ActivityWriter;
 import org.graylog2.system.jobs.SystemJob;
-import org.joda.time.DateTime;
-import org.joda.time.format.DateTimeFormat;
-import org.joda.time.format.DateTimeFormatter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -143,34 +140,28 @@ public class RebuildIndexRangesJob extends SystemJob {
         return deflectorIndexRange;
     }
 
-    private static int getTimestampOfMessage(SearchHit msg) {
-        Object field = msg.getSource().get("timestamp");
-        if (field == null) {
-            throw new RuntimeException("Document has no field timestamp.");
-        }
-
-        DateTimeFormatter formatter = DateTimeFormat.forPattern(Tools.ES_DATE_FORMAT).withZoneUTC();
-        DateTime dt = formatter.parseDateTime(field.toString());
-
-        return (int) (dt.getMillis() / 1000);
-    }
-
-
     protected Map<String, Object> calculateRange(String index) throws EmptyIndexException {
         Map<String, Object> range = Maps.newHashMap();
 
         Stopwatch x = Stopwatch.createStarted();
-        SearchHit doc = searches.firstOfIndex(index);
-        if (doc == null || doc.isSourceEmpty()) {
+        TimestampStats stats = searches.timestampStatsOfIndex(index);
+        if (stats == null) {
             x.stop();
             throw new EmptyIndexException();
         }
 
-        int rangeStart = getTimestampOfMessage(doc);
+        int rangeBegin = (int) (stats.getMin().getMillis() / 1000);
+        int rangeEnd = (int) (stats.getMax().getMillis() / 1000);
         int took = (int) x.stop().elapsed(TimeUnit.MILLISECONDS);
 
         range.put("index", index);
-        range.put("start", rangeStart);
+        // "start" has always been the newest message of the index, keep it for older versions reading the ranges
+        range.put("start", rangeEnd);
+        range.put("begin", rangeBegin);
+        // the current deflector target keeps receiving messages, its range stays open until the deflector cycles
+        if (!index.equals(deflector.getCurrentActualTargetIndex())) {
+            range.put("end", rangeEnd);
+        }
         range.put("calculated_at", Tools.getUTCTimestamp());
         range.put("took_ms",  took);
 
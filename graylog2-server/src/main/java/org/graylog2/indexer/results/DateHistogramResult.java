@@ -21,17 +21,26 @@ import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogram;
 import org.graylog2.indexer.searches.Searches;
+import org.graylog2.indexer.searches.timeranges.AbsoluteRange;
 
 import java.util.Map;
+import java.util.TreeMap;
 
 public class DateHistogramResult extends HistogramResult {
-    private final DateHistogram result;
+    private final Map<Long, Long> results;
     private final Searches.DateHistogramInterval interval;
 
     public DateHistogramResult(DateHistogram result, String originalQuery, BytesReference builtQuery, Searches.DateHistogramInterval interval, TimeValue took) {
         super(originalQuery, builtQuery, took);
 
-        this.result = result;
+        this.results = buildResults(result);
+        this.interval = interval;
+    }
+
+    public DateHistogramResult(Map<Long, Long> results, String originalQuery, BytesReference builtQuery, Searches.DateHistogramInterval interval, TimeValue took, AbsoluteRange boundaries) {
+        super(originalQuery, builtQuery, took, boundaries);
+
+        this.results = results;
         this.interval = interval;
     }
 
@@ -42,6 +51,10 @@ public class DateHistogramResult extends HistogramResult {
 
     @Override
     public Map<Long, Long> getResults() {
+        return new TreeMap<>(results);
+    }
+
+    private static Map<Long, Long> buildResults(DateHistogram result) {
         Map<Long, Long> results = Maps.newTreeMap();
 
         for (DateHistogram.Bucket bucket : result.getBuckets()) {
@@ -23,8 +23,10 @@ import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogram;
 import org.elasticsearch.search.aggregations.metrics.stats.Stats;
 import org.graylog2.indexer.searches.Searches;
+import org.graylog2.indexer.searches.timeranges.AbsoluteRange;
 
 import java.util.Map;
+import java.util.TreeMap;
 
 public class FieldHistogramResult extends HistogramResult {
     private static final Map<String, Number> EMPTY_RESULT = ImmutableMap.<String, Number>builder()
@@ -36,13 +38,20 @@ public class FieldHistogramResult extends HistogramResult {
             .put("mean", 0)
             .build();
 
-    private final DateHistogram result;
+    private final Map<Long, Map<String, Number>> buckets;
     private final Searches.DateHistogramInterval interval;
 
     public FieldHistogramResult(DateHistogram result, String originalQuery, BytesReference builtQuery, Searches.DateHistogramInterval interval, TimeValue took) {
         super(originalQuery, builtQuery, took);
 
-        this.result = result;
+        this.buckets = buildBuckets(result);
+        this.interval = interval;
+    }
+
+    public FieldHistogramResult(Map<Long, Map<String, Number>> buckets, String originalQuery, BytesReference builtQuery, Searches.DateHistogramInterval interval, TimeValue took, AbsoluteRange boundaries) {
+        super(originalQuery, builtQuery, took, boundaries);
+
+        this.buckets = buckets;
         this.interval = interval;
     }
 
@@ -50,10 +59,32 @@ public class FieldHistogramResult extends HistogramResult {
         return interval;
     }
 
+    /**
+     * @return the statistics of the buckets which contain messages, without the synthesized empty buckets
+     */
+    public Map<Long, Map<String, Number>> getBuckets() {
+        return new TreeMap<>(buckets);
+    }
+
     public Map<Long, Map<String, Number>> getResults() {
+        final TreeMap<Long, Map<String, Number>> results = new TreeMap<>(buckets);
+        if (results.isEmpty()) {
+            return results;
+        }
+
+        final long step = interval.getPeriod().toStandardSeconds().getSeconds();
+        final long maxTimestamp = results.lastKey();
+        for (long curTimestamp = results.firstKey(); curTimestamp < maxTimestamp; curTimestamp += step) {
+            if (!results.containsKey(curTimestamp)) {
+                // synthesize a 0 value for this timestamp
+                results.put(curTimestamp, EMPTY_RESULT);
+            }
+        }
+        return results;
+    }
+
+    private static Map<Long, Map<String, Number>> buildBuckets(DateHistogram result) {
         Map<Long, Map<String, Number>> results = Maps.newTreeMap();
-        long minTimestamp = Long.MAX_VALUE;
-        long maxTimestamp = Long.MIN_VALUE;
 
         for (DateHistogram.Bucket b : result.getBuckets()) {
             Map<String, Number> resultMap = Maps.newHashMap();
@@ -67,24 +98,9 @@ public class FieldHistogramResult extends HistogramResult {
             resultMap.put("total", stats.getSum());
             resultMap.put("mean", stats.getAvg());
 
-            final long timestamp = b.getKeyAsDate().getMillis() / 1000L;
-            if (timestamp < minTimestamp) minTimestamp = timestamp;
-            if (timestamp > maxTimestamp) maxTimestamp = timestamp;
-
-            results.put(timestamp, resultMap);
+            results.put(b.getKeyAsDate().getMillis() / 1000L, resultMap);
         }
-        long curTimestamp = minTimestamp;
-        while (curTimestamp < maxTimestamp) {
-            Map<String, Number> entry = results.get(curTimestamp);
 
-            // advance timestamp by the interval's seconds value
-            curTimestamp += interval.getPeriod().toStandardSeconds().getSeconds();
-
-            if (entry == null) {
-                // synthesize a 0 value for this timestamp
-                results.put(curTimestamp, EMPTY_RESULT);
-            }
-        }
         return results;
     }
 
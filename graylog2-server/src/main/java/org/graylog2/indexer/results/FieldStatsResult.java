@@ -23,7 +23,7 @@ import org.elasticsearch.search.aggregations.metrics.stats.extended.ExtendedStat
 
 import java.util.List;
 
-public class FieldStatsResult extends IndexQueryResult {
+public class FieldStatsResult extends IndexQueryResult implements FieldStatistics {
 
     private final long count;
     private final double sum;
@@ -53,10 +53,12 @@ public class FieldStatsResult extends IndexQueryResult {
         this.searchHits = buildResults(searchHits);
     }
 
+    @Override
     public long getCount() {
         return count;
     }
 
+    @Override
     public double getSum() {
         return sum;
     }
@@ -65,14 +67,17 @@ public class FieldStatsResult extends IndexQueryResult {
         return sumOfSquares;
     }
 
+    @Override
     public double getMean() {
         return mean;
     }
 
+    @Override
     public double getMin() {
         return min;
     }
 
+    @Override
     public double getMax() {
         return max;
     }
@@ -81,6 +86,7 @@ public class FieldStatsResult extends IndexQueryResult {
         return variance;
     }
 
+    @Override
     public double getStdDeviation() {
         return stdDeviation;
     }
@@ -38,6 +38,14 @@ public abstract class HistogramResult extends IndexQueryResult {
         super(originalQuery, builtQuery, took);
     }
 
+    /**
+     * For results whose built query doesn't cover the whole histogram, e.g. when only some buckets were requested.
+     */
+    public HistogramResult(String originalQuery, BytesReference builtQuery, TimeValue took, AbsoluteRange boundaries) {
+        this(originalQuery, builtQuery, took);
+        this.boundaries = boundaries;
+    }
+
     public abstract Searches.DateHistogramInterval getInterval();
     public abstract Map getResults();
 
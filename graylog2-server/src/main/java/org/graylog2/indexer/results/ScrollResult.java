@@ -16,7 +16,12 @@
  */
 package org.graylog2.indexer.results;
 
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import org.apache.shiro.crypto.hash.Md5Hash;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.search.ClearScrollResponse;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.Client;
@@ -26,51 +31,144 @@ import org.elasticsearch.search.SearchHits;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Scrolls through the results of a search, one scroll per affected index.
+ * <p/>
+ * Up to {@link #MAX_PARALLEL_SCROLLS} indices are scrolled at the same time. The next chunk of an index is requested
+ * as soon as its previous chunk has been handed out, so Elasticsearch fetches it while the previous chunk is written.
+ * At most one chunk per running scroll is held in memory.
+ */
 public class ScrollResult extends IndexQueryResult {
     private static final Logger LOG = LoggerFactory.getLogger(ScrollResult.class);
+    private static final int MAX_PARALLEL_SCROLLS = 4;
+    private static final TimeValue SCROLL_KEEP_ALIVE = TimeValue.timeValueMinutes(1);
 
     private final Client client;
     private final List<String> fields;
     private final String queryHash; // used in log output only
     private final long totalHits;
 
-    private String scrollId;
+    private final Deque<String> pendingScrollIds = new ArrayDeque<>();
+    private final Set<String> runningScrollIds = Sets.newHashSet();
+    // the latest id of every scroll which has not been cleared yet, a response can carry a new id
+    private final Set<String> openScrollIds = Sets.newHashSet();
+    private final BlockingQueue<ScrollResponse> responses = new LinkedBlockingQueue<>();
     private int chunkId = 0;
+    private boolean cancelled = false;
 
     public ScrollResult(Client client,
                         String originalQuery,
                         BytesReference builtQuery,
-                        SearchResponse response, List<String> fields) {
-        super(originalQuery, builtQuery, response.getTook());
+                        List<SearchResponse> responses,
+                        List<String> fields) {
+        super(originalQuery, builtQuery, took(responses));
         this.client = client;
         this.fields = fields;
-        totalHits = response.getHits().totalHits();
-        scrollId = response.getScrollId();
+
+        long hits = 0;
+        for (SearchResponse response : responses) {
+            hits += response.getHits().totalHits();
+            if (response.getScrollId() != null) {
+                pendingScrollIds.add(response.getScrollId());
+                openScrollIds.add(response.getScrollId());
+            }
+        }
+        totalHits = hits;
 
         final Md5Hash md5Hash = new Md5Hash(getOriginalQuery());
         queryHash = md5Hash.toHex();
 
-        LOG.debug("[{}] Starting scroll request for query {}", queryHash, getOriginalQuery());
+        LOG.debug("[{}] Starting {} scroll requests for query {}", queryHash, pendingScrollIds.size(), getOriginalQuery());
     }
 
+    private static TimeValue took(List<SearchResponse> responses) {
+        long took = 0;
+        for (SearchResponse response : responses) {
+            took = Math.max(took, response.getTookInMillis());
+        }
+        return TimeValue.timeValueMillis(took);
+    }
+
+    /**
+     * @return the next chunk of any of the scrolled indices, {@code null} if all scrolls are exhausted
+     */
     public ScrollChunk nextChunk() {
-        final SearchResponse search = client.prepareSearchScroll(scrollId)
-                .setScroll(TimeValue.timeValueMinutes(1))
-                .execute()
-                .actionGet();
+        startScrolls();
+        while (!cancelled && !runningScrollIds.isEmpty()) {
+            final ScrollResponse scrollResponse;
+            try {
+                scrollResponse = responses.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+                return null;
+            }
+            scrollResponded(scrollResponse);
+
+            if (scrollResponse.failure != null) {
+                cancel();
+                throw Throwables.propagate(scrollResponse.failure);
+            }
+
+            final SearchResponse search = scrollResponse.response;
+            final SearchHits hits = search.getHits();
+            if (hits.getHits().length == 0) {
+                // scroll of this index exhausted, continue with the next index
+                LOG.debug("[{}] Reached end of scroll results of one index.", queryHash);
+                startScrolls();
+                continue;
+            }
+            LOG.debug("[{}] New scroll id {}", queryHash, search.getScrollId());
 
-        final SearchHits hits = search.getHits();
-        if (hits.getHits().length == 0) {
-            // scroll exhausted
-            LOG.debug("[{}] Reached end of scroll results.", queryHash, getOriginalQuery());
-            return null;
+            // fetch the next chunk of this index while the current one is written
+            scroll(search.getScrollId());
+            return new ScrollChunk(hits, fields, chunkId++);
         }
-        LOG.debug("[{}] New scroll id {}", queryHash, search.getScrollId());
-        scrollId = search.getScrollId(); // save the id for the next request.
 
-        return new ScrollChunk(hits, fields, chunkId++);
+        if (!cancelled) {
+            LOG.debug("[{}] Reached end of scroll results.", queryHash);
+            clearScrolls();
+        }
+        return null;
+    }
+
+    private void scrollResponded(ScrollResponse scrollResponse) {
+        runningScrollIds.remove(scrollResponse.scrollId);
+        if (scrollResponse.response != null && scrollResponse.response.getScrollId() != null) {
+            openScrollIds.remove(scrollResponse.scrollId);
+            openScrollIds.add(scrollResponse.response.getScrollId());
+        }
+    }
+
+    private void startScrolls() {
+        while (!cancelled && runningScrollIds.size() < MAX_PARALLEL_SCROLLS && !pendingScrollIds.isEmpty()) {
+            scroll(pendingScrollIds.poll());
+        }
+    }
+
+    private void scroll(final String scrollId) {
+        runningScrollIds.add(scrollId);
+        client.prepareSearchScroll(scrollId)
+                .setScroll(SCROLL_KEEP_ALIVE)
+                .execute(new ActionListener<SearchResponse>() {
+                    @Override
+                    public void onResponse(SearchResponse response) {
+                        responses.add(new ScrollResponse(scrollId, response, null));
+                    }
+
+                    @Override
+                    public void onFailure(Throwable e) {
+                        responses.add(new ScrollResponse(scrollId, null, e));
+                    }
+                });
     }
 
     public String getQueryHash() {
@@ -81,21 +179,73 @@ public class ScrollResult extends IndexQueryResult {
         return totalHits;
     }
 
+    /**
+     * Stops scrolling and clears all scrolls. Waits for the responses of running scroll requests, because they might
+     * carry scroll ids which have to be cleared as well.
+     */
     public void cancel() {
-        final ClearScrollResponse clearScrollResponse = client.prepareClearScroll().addScrollId(scrollId).execute().actionGet();
-        LOG.debug("[{}] clearScroll for query successful: {}", queryHash, clearScrollResponse.isSucceeded());
+        if (cancelled) {
+            return;
+        }
+        cancelled = true;
+        pendingScrollIds.clear();
+
+        final long deadline = System.nanoTime() + SCROLL_KEEP_ALIVE.nanos();
+        try {
+            while (!runningScrollIds.isEmpty()) {
+                final ScrollResponse scrollResponse = responses.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (scrollResponse == null) {
+                    // the scrolls time out on their own by now
+                    LOG.warn("[{}] {} scroll requests did not finish before clearing the scrolls.", queryHash, runningScrollIds.size());
+                    break;
+                }
+                scrollResponded(scrollResponse);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        runningScrollIds.clear();
+        clearScrolls();
+    }
+
+    private void clearScrolls() {
+        if (openScrollIds.isEmpty()) {
+            return;
+        }
+        final List<String> scrollIds = Lists.newArrayList(openScrollIds);
+        openScrollIds.clear();
+
+        try {
+            final ClearScrollResponse clearScrollResponse = client.prepareClearScroll().setScrollIds(scrollIds).execute().actionGet();
+            LOG.debug("[{}] clearScroll for query successful: {}", queryHash, clearScrollResponse.isSucceeded());
+        } catch (ElasticsearchException e) {
+            LOG.warn("[{}] Unable to clear {} scrolls, they time out on their own.", queryHash, scrollIds.size(), e);
+        }
+    }
+
+    private static class ScrollResponse {
+        private final String scrollId;
+        private final SearchResponse response;
+        private final Throwable failure;
+
+        private ScrollResponse(String scrollId, SearchResponse response, Throwable failure) {
+            this.scrollId = scrollId;
+            this.response = response;
+            this.failure = failure;
+        }
     }
 
     public class ScrollChunk {
 
-        private final List<ResultMessage> resultMessages;
+        private final SearchHits hits;
         private List<String> fields;
         private int chunkNumber;
+        private List<ResultMessage> resultMessages;
 
         public ScrollChunk(SearchHits hits, List<String> fields, int chunkId) {
+            this.hits = hits;
             this.fields = fields;
             this.chunkNumber = chunkId;
-            resultMessages = buildResults(hits);
         }
 
         public List<String> getFields() {
@@ -110,7 +260,21 @@ public class ScrollResult extends IndexQueryResult {
             return getChunkNumber() == 0;
         }
 
+        /**
+         * @return the raw hits, to read the fields from their source without building {@link ResultMessage}s
+         */
+        public SearchHits getHits() {
+            return hits;
+        }
+
+        public int size() {
+            return hits.getHits().length;
+        }
+
         public List<ResultMessage> getMessages() {
+            if (resultMessages == null) {
+                resultMessages = buildResults(hits);
+            }
             return resultMessages;
         }
     }
@@ -0,0 +1,203 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.indexer.searches;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import org.graylog2.Configuration;
+import org.graylog2.indexer.searches.timeranges.AbsoluteRange;
+import org.graylog2.plugin.ThrottleState;
+import org.graylog2.shared.journal.Journal;
+import org.graylog2.shared.journal.KafkaJournal;
+import org.joda.time.DateTime;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the closed buckets of date histograms over moving time ranges, so that refreshing a histogram like
+ * "last 24 hours" only has to search the buckets which changed since the last refresh.
+ * <p/>
+ * A bucket is closed once its end lies more than {@code incremental_histogram_grace_period} in the past. No buckets
+ * are closed while the journal has a backlog which takes longer than that to be indexed. Messages arriving even later
+ * won't show up in closed buckets until the series expires, which happens a few minutes after it has been created no
+ * matter how often it is refreshed.
+ */
+@Singleton
+public class IncrementalHistograms {
+    private static final int MAXIMUM_SERIES = 1000;
+    private static final long SERIES_EXPIRY_MINUTES = 10;
+
+    private final long gracePeriodMillis;
+    private final Journal journal;
+    private final Cache<SearchResultCache.Key, Series<?>> series;
+
+    @Inject
+    public IncrementalHistograms(Configuration configuration, Journal journal) {
+        this(configuration.getIncrementalHistogramGracePeriod().toMilliseconds(), journal);
+    }
+
+    @VisibleForTesting
+    IncrementalHistograms(long gracePeriodMillis, Journal journal) {
+        this.gracePeriodMillis = gracePeriodMillis;
+        this.journal = journal;
+        // a series which is refreshed all the time must still be searched from scratch every now and then
+        this.series = CacheBuilder.newBuilder()
+                .maximumSize(MAXIMUM_SERIES)
+                .expireAfterWrite(SERIES_EXPIRY_MINUTES, TimeUnit.MINUTES)
+                .build();
+    }
+
+    /**
+     * @return {@code true} if buckets may be closed, i. e. the messages waiting in the journal are expected to be
+     * indexed within the grace period
+     */
+    public boolean canCloseBuckets() {
+        if (!(journal instanceof KafkaJournal)) {
+            return true;
+        }
+        final ThrottleState state = ((KafkaJournal) journal).getThrottleState();
+        if (state == null || state.uncommittedJournalEntries == 0) {
+            return true;
+        }
+        return state.uncommittedJournalEntries < state.readEventsPerSec * TimeUnit.MILLISECONDS.toSeconds(gracePeriodMillis);
+    }
+
+    /**
+     * Returns the series of the histogram identified by the key. Callers have to synchronize on the series while
+     * determining the missing ranges, searching them and merging the results.
+     */
+    @SuppressWarnings("unchecked")
+    public <V> Series<V> series(SearchResultCache.Key key, Searches.DateHistogramInterval interval) {
+        final long intervalMillis = interval.getPeriod().toStandardDuration().getMillis();
+        try {
+            return (Series<V>) series.get(key, new Callable<Series<?>>() {
+                @Override
+                public Series<?> call() {
+                    return new Series<>(intervalMillis, gracePeriodMillis);
+                }
+            });
+        } catch (ExecutionException e) {
+            // creating a series doesn't throw
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * The closed buckets of one histogram, keyed by the start of the bucket in seconds like in
+     * {@link org.graylog2.indexer.results.HistogramResult#getResults()}.
+     */
+    public static class Series<V> {
+        private final long intervalMillis;
+        private final long gracePeriodMillis;
+        private final TreeMap<Long, V> closedBuckets = new TreeMap<>();
+        // the closed buckets cover [closedFrom, closedTo)
+        private long closedFrom = Long.MIN_VALUE;
+        private long closedTo = Long.MIN_VALUE;
+
+        @VisibleForTesting
+        Series(long intervalMillis, long gracePeriodMillis) {
+            this.intervalMillis = intervalMillis;
+            this.gracePeriodMillis = gracePeriodMillis;
+        }
+
+        /**
+         * Drops the buckets which moved out of the range and returns the parts of the range which are not covered
+         * by closed buckets: the partial bucket at its beginning and everything after the last closed bucket.
+         */
+        public List<AbsoluteRange> missingRanges(DateTime from, DateTime to) {
+            final long alignedFrom = alignUp(from.getMillis());
+            if (closedFrom > alignedFrom || closedTo < alignedFrom || closedTo > to.getMillis()) {
+                closedBuckets.clear();
+                closedFrom = alignedFrom;
+                closedTo = alignedFrom;
+            } else {
+                closedBuckets.headMap(alignedFrom / 1000L).clear();
+                closedFrom = alignedFrom;
+            }
+
+            final List<AbsoluteRange> ranges = Lists.newArrayList();
+            if (closedTo == alignedFrom || closedTo > to.getMillis()) {
+                // nothing to reuse, search the whole range at once
+                ranges.add(new AbsoluteRange(from, to));
+                return ranges;
+            }
+
+            if (from.getMillis() < alignedFrom) {
+                ranges.add(new AbsoluteRange(from, new DateTime(alignedFrom - 1L, from.getZone())));
+            }
+            ranges.add(new AbsoluteRange(new DateTime(closedTo, to.getZone()), to));
+
+            return ranges;
+        }
+
+        /**
+         * Adds the newly closed buckets of a search over the missing ranges and returns the whole histogram.
+         *
+         * @param searched the buckets found in the missing ranges
+         * @param to       the end of the histogram
+         * @param now      the current time
+         */
+        public Map<Long, V> merge(Map<Long, V> searched, DateTime to, DateTime now) {
+            return merge(searched, to, now, true);
+        }
+
+        /**
+         * Like {@link #merge(Map, DateTime, DateTime)} but only closes buckets if {@code closeBuckets} is set, see
+         * {@link IncrementalHistograms#canCloseBuckets()}.
+         */
+        public Map<Long, V> merge(Map<Long, V> searched, DateTime to, DateTime now, boolean closeBuckets) {
+            final long closedUntil = Math.min(alignDown(now.getMillis() - gracePeriodMillis), alignDown(to.getMillis()));
+
+            if (closeBuckets && closedUntil > closedTo) {
+                for (Map.Entry<Long, V> bucket : searched.entrySet()) {
+                    final long start = bucket.getKey() * 1000L;
+                    if (start >= closedTo && start + intervalMillis <= closedUntil) {
+                        closedBuckets.put(bucket.getKey(), bucket.getValue());
+                    }
+                }
+                closedTo = closedUntil;
+            }
+
+            final Map<Long, V> histogram = new TreeMap<>(closedBuckets);
+            histogram.putAll(searched);
+            return histogram;
+        }
+
+        @VisibleForTesting
+        int size() {
+            return closedBuckets.size();
+        }
+
+        private long alignDown(long millis) {
+            return millis - (((millis % intervalMillis) + intervalMillis) % intervalMillis);
+        }
+
+        private long alignUp(long millis) {
+            final long aligned = alignDown(millis);
+            return aligned == millis ? aligned : aligned + intervalMillis;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.indexer.searches;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.graylog2.Configuration;
+import org.graylog2.indexer.results.HistogramResult;
+import org.graylog2.indexer.results.TermsResult;
+import org.graylog2.indexer.results.TermsStatsResult;
+import org.graylog2.indexer.searches.timeranges.AbsoluteRange;
+import org.graylog2.indexer.searches.timeranges.TimeRange;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Caches the results of count, histogram, terms and statistics searches, which dashboards, alert checks and the web
+ * interface run again and again with the same parameters.
+ * <p/>
+ * Results of absolute time ranges which don't touch the current deflector target can't change anymore and are
+ * kept until they are evicted. Everything else, most notably relative time ranges, is only cached for
+ * {@code search_result_cache_ttl}.
+ */
+@Singleton
+public class SearchResultCache {
+    private final boolean enabled;
+    private final Cache<Key, Object> immutableResults;
+    private final Cache<Key, Object> recentResults;
+
+    @Inject
+    public SearchResultCache(Configuration configuration, MetricRegistry metricRegistry) {
+        this(configuration.getSearchResultCacheSize(), configuration.getSearchResultCacheTtl().toMilliseconds());
+        registerMetrics(metricRegistry);
+    }
+
+    @VisibleForTesting
+    SearchResultCache(int maximumSize, long ttlMillis) {
+        this.enabled = maximumSize > 0;
+        this.immutableResults = CacheBuilder.newBuilder()
+                .maximumSize(Math.max(0, maximumSize))
+                .recordStats()
+                .build();
+        this.recentResults = CacheBuilder.newBuilder()
+                .maximumSize(Math.max(0, maximumSize))
+                .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * @return a cache which never caches anything
+     */
+    public static SearchResultCache disabled() {
+        return new SearchResultCache(0, 0L);
+    }
+
+    /**
+     * Returns the cached result for the key, running the search if it is missing.
+     *
+     * @param key       the key of the search
+     * @param immutable whether the result of the search can't change anymore
+     * @param search    runs the search
+     */
+    @SuppressWarnings("unchecked")
+    public <T, E extends Exception> T get(Key key, boolean immutable, Search<T, E> search) throws E {
+        if (!enabled) {
+            return search.run();
+        }
+
+        final Cache<Key, Object> cache = immutable ? immutableResults : recentResults;
+        try {
+            return (T) cache.get(key, new SearchCallable<>(search));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            final Throwable cause = e.getCause();
+            Throwables.propagateIfPossible(cause);
+            // only the declared exception of the search is left
+            throw (E) cause;
+        }
+    }
+
+    public void invalidateAll() {
+        immutableResults.invalidateAll();
+        recentResults.invalidateAll();
+    }
+
+    public long size() {
+        return immutableResults.size() + recentResults.size();
+    }
+
+    public CacheStats stats() {
+        return immutableResults.stats().plus(recentResults.stats());
+    }
+
+    private void registerMetrics(MetricRegistry metricRegistry) {
+        metricRegistry.register(name(SearchResultCache.class, "hitRatio"), new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                final CacheStats stats = stats();
+                return Ratio.of(stats.hitCount(), stats.requestCount());
+            }
+        });
+        metricRegistry.register(name(SearchResultCache.class, "size"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return size();
+            }
+        });
+        metricRegistry.register(name(SearchResultCache.class, "evictions"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return stats().evictionCount();
+            }
+        });
+        // estimates the memory held by the cache by the number of histogram buckets and terms
+        metricRegistry.register(name(SearchResultCache.class, "cachedElements"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return countElements(immutableResults) + countElements(recentResults);
+            }
+        });
+    }
+
+    private static long countElements(Cache<Key, Object> cache) {
+        long elements = 0;
+        for (Object result : cache.asMap().values()) {
+            if (result instanceof HistogramResult) {
+                elements += ((HistogramResult) result).getResults().size();
+            } else if (result instanceof TermsResult) {
+                elements += ((TermsResult) result).getTerms().size();
+            } else if (result instanceof TermsStatsResult) {
+                elements += ((TermsStatsResult) result).getResults().size();
+            } else {
+                elements++;
+            }
+        }
+        return elements;
+    }
+
+    /**
+     * A search whose result can be cached.
+     */
+    public interface Search<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    private static class SearchCallable<T, E extends Exception> implements Callable<Object> {
+        private final Search<T, E> search;
+
+        private SearchCallable(Search<T, E> search) {
+            this.search = search;
+        }
+
+        @Override
+        public Object call() throws Exception {
+            return search.run();
+        }
+    }
+
+    /**
+     * Identifies a search by its type, the normalized query and filter, the time range, the type specific
+     * parameters and the searched indices.
+     */
+    public static class Key {
+        private final String type;
+        private final String query;
+        private final String filter;
+        private final String range;
+        private final List<Object> parameters;
+        private final Set<String> indices;
+
+        public Key(String type, String query, String filter, TimeRange range, Set<String> indices, Object... parameters) {
+            this.type = type;
+            this.query = normalize(query);
+            this.filter = normalize(filter);
+            this.range = describe(range);
+            this.parameters = ImmutableList.copyOf(parameters);
+            this.indices = ImmutableSortedSet.copyOf(indices);
+        }
+
+        private static String normalize(String query) {
+            if (query == null || query.trim().isEmpty()) {
+                return "*";
+            }
+            return query.trim();
+        }
+
+        private static String describe(TimeRange range) {
+            if (range == null) {
+                return null;
+            }
+            if (range instanceof AbsoluteRange) {
+                return "absolute:" + range.getFrom().getMillis() + "-" + range.getTo().getMillis();
+            }
+            // relative and keyword ranges move with the current time, they are only cached for a short time
+            return range.getType() + ":" + range.getPersistedConfig();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            final Key key = (Key) o;
+            return type.equals(key.type)
+                    && query.equals(key.query)
+                    && filter.equals(key.filter)
+                    && Objects.equals(range, key.range)
+                    && parameters.equals(key.parameters)
+                    && indices.equals(key.indices);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, query, filter, range, parameters, indices);
+        }
+
+        @Override
+        public String toString() {
+            return type + "{query=" + query + ", filter=" + filter + ", range=" + range + ", parameters=" + parameters
+                    + ", indices=" + indices + "}";
+        }
+    }
+}
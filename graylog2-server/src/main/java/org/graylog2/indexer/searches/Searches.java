@@ -17,7 +17,10 @@
 package org.graylog2.indexer.searches;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.ActionFuture;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
@@ -25,7 +28,7 @@ import org.elasticsearch.action.search.SearchType;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.XContentHelper;
-import org.elasticsearch.index.query.BoolFilterBuilder;
+import org.elasticsearch.index.query.FilterBuilder;
 import org.elasticsearch.index.query.FilterBuilders;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
@@ -36,8 +39,11 @@ import org.elasticsearch.search.aggregations.AggregationBuilders;
 import org.elasticsearch.search.aggregations.bucket.filter.Filter;
 import org.elasticsearch.search.aggregations.bucket.filter.FilterAggregationBuilder;
 import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogram;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramBuilder;
 import org.elasticsearch.search.aggregations.bucket.missing.Missing;
 import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.metrics.max.Max;
+import org.elasticsearch.search.aggregations.metrics.min.Min;
 import org.elasticsearch.search.aggregations.metrics.stats.extended.ExtendedStats;
 import org.elasticsearch.search.sort.SortOrder;
 import org.graylog2.Configuration;
@@ -54,7 +60,12 @@ import org.graylog2.indexer.results.ScrollResult;
 import org.graylog2.indexer.results.SearchResult;
 import org.graylog2.indexer.results.TermsResult;
 import org.graylog2.indexer.results.TermsStatsResult;
+import org.graylog2.indexer.searches.timeranges.AbsoluteRange;
 import org.graylog2.indexer.searches.timeranges.TimeRange;
+import org.graylog2.plugin.Tools;
+import org.graylog2.shared.journal.NoopJournal;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.joda.time.Period;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -62,7 +73,9 @@ import org.slf4j.LoggerFactory;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
@@ -120,13 +133,17 @@ public class Searches {
     private final Deflector deflector;
     private final IndexRangeService indexRangeService;
     private final Client c;
+    private final SearchResultCache resultCache;
+    private final IncrementalHistograms incrementalHistograms;
 
     @Inject
     public Searches(Configuration configuration,
                     Deflector deflector,
                     IndexRangeService indexRangeService,
-                    Node node) {
-        this(configuration, deflector, indexRangeService, node.client());
+                    Node node,
+                    SearchResultCache resultCache,
+                    IncrementalHistograms incrementalHistograms) {
+        this(configuration, deflector, indexRangeService, node.client(), resultCache, incrementalHistograms);
     }
 
     @VisibleForTesting
@@ -134,19 +151,42 @@ public class Searches {
                     Deflector deflector,
                     IndexRangeService indexRangeService,
                     Client client) {
+        this(configuration, deflector, indexRangeService, client, SearchResultCache.disabled(),
+                new IncrementalHistograms(configuration, new NoopJournal()));
+    }
+
+    @VisibleForTesting
+    Searches(Configuration configuration,
+                    Deflector deflector,
+                    IndexRangeService indexRangeService,
+                    Client client,
+                    SearchResultCache resultCache,
+                    IncrementalHistograms incrementalHistograms) {
         this.configuration = configuration;
         this.deflector = deflector;
         this.indexRangeService = indexRangeService;
         this.c = client;
+        this.resultCache = resultCache;
+        this.incrementalHistograms = incrementalHistograms;
     }
 
     public CountResult count(String query, TimeRange range) {
         return count(query, range, null);
     }
 
-    public CountResult count(String query, TimeRange range, String filter) {
-        Set<String> indices = IndexHelper.determineAffectedIndices(indexRangeService, deflector, range);
+    public CountResult count(final String query, final TimeRange range, final String filter) {
+        final Set<String> indices = IndexHelper.determineAffectedIndices(indexRangeService, deflector, range);
+        final SearchResultCache.Key key = new SearchResultCache.Key("count", query, filter, range, indices);
+
+        return resultCache.get(key, isImmutable(range, indices), new SearchResultCache.Search<CountResult, RuntimeException>() {
+            @Override
+            public CountResult run() {
+                return count(query, range, filter, indices);
+            }
+        });
+    }
 
+    private CountResult count(String query, TimeRange range, String filter, Set<String> indices) {
         SearchRequest request;
         if (filter == null) {
             request = standardSearchRequest(query, indices, range).request();
@@ -159,35 +199,71 @@ public class Searches {
         return new CountResult(r.getHits().getTotalHits(), r.getTookInMillis(), r.getHits());
     }
 
+    /**
+     * Starts one scroll per affected index, so that the indices can be scrolled in parallel.
+     */
     public ScrollResult scroll(String query, TimeRange range, int limit, int offset, List<String> fields, String filter) {
         final Set<String> indices = IndexHelper.determineAffectedIndices(indexRangeService, deflector, range);
-        final SearchRequestBuilder srb = standardSearchRequest(query, indices, limit, offset, range, null, false);
-        if (range != null && filter != null) {
-            srb.setPostFilter(standardFilters(range, filter));
-        }
-
-        // only request the fields we asked for otherwise we can't figure out which fields will be in the result set
-        // until we've scrolled through the entire set.
-        // TODO: Check if we can get away without loading the _source field.
-        // http://www.elasticsearch.org/guide/en/elasticsearch/reference/current/search-request-fields.html#search-request-fields
-        // "For backwards compatibility, if the fields parameter specifies fields which are not stored , it will
-        // load the _source and extract it from it. This functionality has been replaced by the source filtering
-        // parameter." -- So we should look at the source filtering parameter once we switched to ES 1.x.
-        srb.addFields(fields.toArray(new String[fields.size()]));
-        srb.addField("_source"); // always request the _source field because otherwise we can't access non-stored values
-
-        final SearchRequest request = srb.setSearchType(SearchType.SCAN)
-                .setScroll(new TimeValue(1, TimeUnit.MINUTES))
-                .setSize(500).request(); // TODO magic numbers
+        final SearchRequest request = scrollRequest(query, indices, range, limit, offset, fields, filter);
         if (LOG.isDebugEnabled()) {
             try {
                 LOG.debug("ElasticSearch scroll query: {}", XContentHelper.convertToJson(request.source(), false));
             } catch (IOException ignored) {
             }
         }
-        final SearchResponse r = c.search(request).actionGet();
 
-        return new ScrollResult(c, query, request.source(), r, fields);
+        final List<ActionFuture<SearchResponse>> futures = Lists.newArrayList();
+        for (String index : indices) {
+            futures.add(c.search(scrollRequest(query, Collections.singleton(index), range, limit, offset, fields, filter)));
+        }
+        final List<SearchResponse> responses = Lists.newArrayList();
+        RuntimeException failure = null;
+        for (ActionFuture<SearchResponse> future : futures) {
+            try {
+                responses.add(future.actionGet());
+            } catch (RuntimeException e) {
+                // keep waiting for the other searches, the scrolls they started have to be cleared
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            clearScrolls(responses);
+            throw failure;
+        }
+
+        return new ScrollResult(c, query, request.source(), responses, fields);
+    }
+
+    private void clearScrolls(List<SearchResponse> responses) {
+        final List<String> scrollIds = Lists.newArrayList();
+        for (SearchResponse response : responses) {
+            if (response.getScrollId() != null) {
+                scrollIds.add(response.getScrollId());
+            }
+        }
+        if (scrollIds.isEmpty()) {
+            return;
+        }
+
+        try {
+            c.prepareClearScroll().setScrollIds(scrollIds).execute().actionGet();
+        } catch (ElasticsearchException e) {
+            LOG.warn("Unable to clear {} scrolls, they time out on their own.", scrollIds.size(), e);
+        }
+    }
+
+    private SearchRequest scrollRequest(String query, Set<String> indices, TimeRange range, int limit, int offset, List<String> fields, String filter) {
+        final SearchRequestBuilder srb = standardSearchRequest(query, indices, limit, offset, range, filter, null, false);
+
+        // only fetch the requested fields from the _source, the exports read them from there without parsing the
+        // whole message
+        srb.setFetchSource(fields.toArray(new String[fields.size()]), null);
+
+        return srb.setSearchType(SearchType.SCAN)
+                .setScroll(new TimeValue(1, TimeUnit.MINUTES))
+                .setSize(500).request(); // TODO magic numbers
     }
 
     public SearchResult search(String query, TimeRange range, int limit, int offset, Sorting sorting) {
@@ -221,16 +297,25 @@ public class Searches {
         return new SearchResult(r.getHits(), indices, config.query(), request.source(), r.getTook());
     }
 
-    public TermsResult terms(String field, int size, String query, String filter, TimeRange range) {
-        if (size == 0) {
-            size = 50;
-        }
+    public TermsResult terms(final String field, int size, final String query, final String filter, final TimeRange range) {
+        final int termsSize = size == 0 ? 50 : size;
+        final Set<String> indices = IndexHelper.determineAffectedIndices(indexRangeService, deflector, range);
+        final SearchResultCache.Key key = new SearchResultCache.Key("terms", query, filter, range, indices, field, termsSize);
+
+        return resultCache.get(key, isImmutable(range, indices), new SearchResultCache.Search<TermsResult, RuntimeException>() {
+            @Override
+            public TermsResult run() {
+                return terms(field, termsSize, query, filter, range, indices);
+            }
+        });
+    }
 
+    private TermsResult terms(String field, int size, String query, String filter, TimeRange range, Set<String> indices) {
         SearchRequestBuilder srb;
         if (filter == null) {
-            srb = standardSearchRequest(query, IndexHelper.determineAffectedIndices(indexRangeService, deflector, range));
+            srb = standardSearchRequest(query, indices, range);
         } else {
-            srb = filteredSearchRequest(query, filter, IndexHelper.determineAffectedIndices(indexRangeService, deflector, range));
+            srb = filteredSearchRequest(query, filter, indices, range);
         }
 
         FilterAggregationBuilder builder = AggregationBuilders.filter(AGG_FILTER)
@@ -241,7 +326,7 @@ public class Searches {
                 .subAggregation(
                         AggregationBuilders.missing("missing")
                                 .field(field))
-                .filter(standardFilters(range, filter));
+                .filter(FilterBuilders.matchAllFilter());
 
         srb.addAggregation(builder);
 
@@ -263,19 +348,27 @@ public class Searches {
         return terms(field, size, query, null, range);
     }
 
-    public TermsStatsResult termsStats(String keyField, String valueField, TermsStatsOrder order, int size, String query, String filter, TimeRange range) {
-        if (size == 0) {
-            size = 50;
-        }
+    public TermsStatsResult termsStats(final String keyField, final String valueField, final TermsStatsOrder order, int size, final String query, final String filter, final TimeRange range) {
+        final int termsSize = size == 0 ? 50 : size;
+        final Set<String> indices = IndexHelper.determineAffectedIndices(indexRangeService, deflector, range);
+        final SearchResultCache.Key key = new SearchResultCache.Key("termsStats", query, filter, range, indices, keyField, valueField, order, termsSize);
 
+        return resultCache.get(key, isImmutable(range, indices), new SearchResultCache.Search<TermsStatsResult, RuntimeException>() {
+            @Override
+            public TermsStatsResult run() {
+                return termsStats(keyField, valueField, order, termsSize, query, filter, range, indices);
+            }
+        });
+    }
+
+    private TermsStatsResult termsStats(String keyField, String valueField, TermsStatsOrder order, int size, String query, String filter, TimeRange range, Set<String> indices) {
         SearchRequestBuilder srb;
         if (filter == null) {
-            srb = standardSearchRequest(query, IndexHelper.determineAffectedIndices(indexRangeService, deflector, range));
+            srb = standardSearchRequest(query, indices, range);
         } else {
-            srb = filteredSearchRequest(query, filter, IndexHelper.determineAffectedIndices(indexRangeService, deflector, range));
+            srb = filteredSearchRequest(query, filter, indices, range);
         }
 
-
         Terms.Order termsOrder;
         switch (order) {
             case COUNT:
@@ -325,7 +418,7 @@ public class Searches {
                                 .subAggregation(AggregationBuilders.stats(AGG_STATS).field(valueField))
                                 .order(termsOrder)
                                 .size(size))
-                .filter(standardFilters(range, filter));
+                .filter(FilterBuilders.matchAllFilter());
 
         srb.addAggregation(builder);
 
@@ -349,17 +442,29 @@ public class Searches {
         return fieldStats(field, query, null, range);
     }
 
-    public FieldStatsResult fieldStats(String field, String query, String filter, TimeRange range) throws FieldTypeException {
+    public FieldStatsResult fieldStats(final String field, final String query, final String filter, final TimeRange range) throws FieldTypeException {
+        final Set<String> indices = IndexHelper.determineAffectedIndices(indexRangeService, deflector, range);
+        final SearchResultCache.Key key = new SearchResultCache.Key("fieldStats", query, filter, range, indices, field);
+
+        return resultCache.get(key, isImmutable(range, indices), new SearchResultCache.Search<FieldStatsResult, FieldTypeException>() {
+            @Override
+            public FieldStatsResult run() throws FieldTypeException {
+                return fieldStats(field, query, filter, range, indices);
+            }
+        });
+    }
+
+    private FieldStatsResult fieldStats(String field, String query, String filter, TimeRange range, Set<String> indices) throws FieldTypeException {
         SearchRequestBuilder srb;
 
         if (filter == null) {
-            srb = standardSearchRequest(query, IndexHelper.determineAffectedIndices(indexRangeService, deflector, range));
+            srb = standardSearchRequest(query, indices, range);
         } else {
-            srb = filteredSearchRequest(query, filter, IndexHelper.determineAffectedIndices(indexRangeService, deflector, range));
+            srb = filteredSearchRequest(query, filter, indices, range);
         }
 
         FilterAggregationBuilder builder = AggregationBuilders.filter(AGG_FILTER)
-                .filter(standardFilters(range, filter))
+                .filter(FilterBuilders.matchAllFilter())
                 .subAggregation(AggregationBuilders.extendedStats(AGG_EXTENDED_STATS).field(field));
 
         srb.addAggregation(builder);
@@ -387,25 +492,25 @@ public class Searches {
         return histogram(query, interval, null, range);
     }
 
-    public HistogramResult histogram(String query, DateHistogramInterval interval, String filter, TimeRange range) {
-        FilterAggregationBuilder builder = AggregationBuilders.filter(AGG_FILTER)
-                .subAggregation(
-                        AggregationBuilders.dateHistogram(AGG_HISTOGRAM)
-                                .field("timestamp")
-                                .interval(interval.getPeriod().toStandardDuration().getMillis()))
-                .filter(standardFilters(range, filter));
+    public HistogramResult histogram(final String query, final DateHistogramInterval interval, final String filter, final TimeRange range) {
+        final Set<String> indices = IndexHelper.determineAffectedIndices(indexRangeService, deflector, range);
+        final SearchResultCache.Key key = new SearchResultCache.Key("histogram", query, filter, range, indices, interval);
 
-        QueryStringQueryBuilder qs = queryString(query);
-        qs.allowLeadingWildcard(configuration.isAllowLeadingWildcardSearches());
+        return resultCache.get(key, isImmutable(range, indices), new SearchResultCache.Search<HistogramResult, RuntimeException>() {
+            @Override
+            public HistogramResult run() {
+                return histogram(query, interval, filter, range, indices);
+            }
+        });
+    }
 
-        SearchRequestBuilder srb = c.prepareSearch();
-        final Set<String> affectedIndices = IndexHelper.determineAffectedIndices(indexRangeService, deflector, range);
-        srb.setIndices(affectedIndices.toArray(new String[affectedIndices.size()]));
-        srb.setQuery(qs);
-        srb.addAggregation(builder);
+    private HistogramResult histogram(String query, DateHistogramInterval interval, String filter, TimeRange range, Set<String> affectedIndices) {
+        if (isIncremental(range)) {
+            return incrementalHistogram(query, interval, filter, range);
+        }
 
-        final SearchRequest request = srb.request();
-        SearchResponse r = c.search(request).actionGet();
+        final SearchRequest request = histogramRequest(query, null, interval, filter, affectedIndices, IndexHelper.getTimestampRangeFilter(range));
+        final SearchResponse r = c.search(request).actionGet();
 
         final Filter f = r.getAggregations().get(AGG_FILTER);
         return new DateHistogramResult(
@@ -416,33 +521,58 @@ public class Searches {
                 r.getTook());
     }
 
-    public HistogramResult fieldHistogram(String query, String field, DateHistogramInterval interval, String filter, TimeRange range) throws FieldTypeException {
-        FilterAggregationBuilder builder = AggregationBuilders.filter(AGG_FILTER)
-                .subAggregation(
-                        AggregationBuilders.dateHistogram(AGG_HISTOGRAM)
-                                .field("timestamp")
-                                .subAggregation(AggregationBuilders.stats(AGG_STATS).field(field))
-                                .interval(interval.getPeriod().toStandardDuration().getMillis())
-                )
-                .filter(standardFilters(range, filter));
+    /**
+     * Only searches the buckets which aren't closed yet and merges them with the closed buckets of earlier searches.
+     */
+    private HistogramResult incrementalHistogram(String query, DateHistogramInterval interval, String filter, TimeRange range) {
+        final SearchResultCache.Key key = new SearchResultCache.Key("histogram", query, filter, range, Collections.<String>emptySet(), interval);
+        final IncrementalHistograms.Series<Long> series = incrementalHistograms.series(key, interval);
+        final DateTime from = range.getFrom();
+        final DateTime to = range.getTo();
+
+        synchronized (series) {
+            final List<AbsoluteRange> missingRanges = series.missingRanges(from, to);
+            final SearchRequest request = histogramRequest(query, null, interval, filter, affectedIndices(missingRanges), timestampRangesFilter(missingRanges));
+            final SearchResponse r = c.search(request).actionGet();
+
+            final Filter f = r.getAggregations().get(AGG_FILTER);
+            final DateHistogramResult searched = new DateHistogramResult(
+                    (DateHistogram) f.getAggregations().get(AGG_HISTOGRAM),
+                    query,
+                    request.source(),
+                    interval,
+                    r.getTook());
+
+            return new DateHistogramResult(
+                    series.merge(searched.getResults(), to, Tools.iso8601(), incrementalHistograms.canCloseBuckets()),
+                    query,
+                    request.source(),
+                    interval,
+                    r.getTook(),
+                    new AbsoluteRange(from, to));
+        }
+    }
 
-        QueryStringQueryBuilder qs = queryString(query);
-        qs.allowLeadingWildcard(configuration.isAllowLeadingWildcardSearches());
+    public HistogramResult fieldHistogram(final String query, final String field, final DateHistogramInterval interval, final String filter, final TimeRange range) throws FieldTypeException {
+        final Set<String> indices = IndexHelper.determineAffectedIndices(indexRangeService, deflector, range);
+        final SearchResultCache.Key key = new SearchResultCache.Key("fieldHistogram", query, filter, range, indices, field, interval);
 
-        SearchRequestBuilder srb = c.prepareSearch();
-        final Set<String> affectedIndices = IndexHelper.determineAffectedIndices(indexRangeService, deflector, range);
-        srb.setIndices(affectedIndices.toArray(new String[affectedIndices.size()]));
-        srb.setQuery(qs);
-        srb.addAggregation(builder);
+        return resultCache.get(key, isImmutable(range, indices), new SearchResultCache.Search<HistogramResult, FieldTypeException>() {
+            @Override
+            public HistogramResult run() throws FieldTypeException {
+                return fieldHistogram(query, field, interval, filter, range, indices);
+            }
+        });
+    }
 
-        SearchResponse r;
-        final SearchRequest request = srb.request();
-        try {
-            r = c.search(request).actionGet();
-        } catch (org.elasticsearch.action.search.SearchPhaseExecutionException e) {
-            throw new FieldTypeException(e);
+    private HistogramResult fieldHistogram(String query, String field, DateHistogramInterval interval, String filter, TimeRange range, Set<String> affectedIndices) throws FieldTypeException {
+        if (isIncremental(range)) {
+            return incrementalFieldHistogram(query, field, interval, filter, range);
         }
 
+        final SearchRequest request = histogramRequest(query, field, interval, filter, affectedIndices, IndexHelper.getTimestampRangeFilter(range));
+        final SearchResponse r = fieldHistogramSearch(request);
+
         final Filter f = r.getAggregations().get(AGG_FILTER);
         return new FieldHistogramResult(
                 (DateHistogram) f.getAggregations().get(AGG_HISTOGRAM),
@@ -452,6 +582,103 @@ public class Searches {
                 r.getTook());
     }
 
+    private HistogramResult incrementalFieldHistogram(String query, String field, DateHistogramInterval interval, String filter, TimeRange range) throws FieldTypeException {
+        final SearchResultCache.Key key = new SearchResultCache.Key("fieldHistogram", query, filter, range, Collections.<String>emptySet(), field, interval);
+        final IncrementalHistograms.Series<Map<String, Number>> series = incrementalHistograms.series(key, interval);
+        final DateTime from = range.getFrom();
+        final DateTime to = range.getTo();
+
+        synchronized (series) {
+            final List<AbsoluteRange> missingRanges = series.missingRanges(from, to);
+            final SearchRequest request = histogramRequest(query, field, interval, filter, affectedIndices(missingRanges), timestampRangesFilter(missingRanges));
+            final SearchResponse r = fieldHistogramSearch(request);
+
+            final Filter f = r.getAggregations().get(AGG_FILTER);
+            final FieldHistogramResult searched = new FieldHistogramResult(
+                    (DateHistogram) f.getAggregations().get(AGG_HISTOGRAM),
+                    query,
+                    request.source(),
+                    interval,
+                    r.getTook());
+
+            return new FieldHistogramResult(
+                    series.merge(searched.getBuckets(), to, Tools.iso8601(), incrementalHistograms.canCloseBuckets()),
+                    query,
+                    request.source(),
+                    interval,
+                    r.getTook(),
+                    new AbsoluteRange(from, to));
+        }
+    }
+
+    private SearchResponse fieldHistogramSearch(SearchRequest request) throws FieldTypeException {
+        try {
+            return c.search(request).actionGet();
+        } catch (org.elasticsearch.action.search.SearchPhaseExecutionException e) {
+            throw new FieldTypeException(e);
+        }
+    }
+
+    /**
+     * @param field the field to calculate statistics of in every bucket, {@code null} to only count messages
+     */
+    private SearchRequest histogramRequest(String query, String field, DateHistogramInterval interval, String filter, Set<String> indices, FilterBuilder rangeFilter) {
+        final DateHistogramBuilder histogramBuilder = AggregationBuilders.dateHistogram(AGG_HISTOGRAM)
+                .field("timestamp")
+                .interval(interval.getPeriod().toStandardDuration().getMillis());
+        if (field != null) {
+            histogramBuilder.subAggregation(AggregationBuilders.stats(AGG_STATS).field(field));
+        }
+
+        FilterAggregationBuilder builder = AggregationBuilders.filter(AGG_FILTER)
+                .subAggregation(histogramBuilder)
+                .filter(FilterBuilders.matchAllFilter());
+
+        final SearchRequestBuilder srb = rangeFilteredSearchRequest(query, indices, 0, 0, rangeFilter, filter, null, false);
+        srb.addAggregation(builder);
+
+        return srb.request();
+    }
+
+    /**
+     * Histograms of moving time ranges are computed incrementally. Absolute ranges are cached as a whole.
+     */
+    private boolean isIncremental(TimeRange range) {
+        return range != null && !(range instanceof AbsoluteRange);
+    }
+
+    private Set<String> affectedIndices(List<AbsoluteRange> ranges) {
+        final Set<String> indices = Sets.newHashSet();
+        for (AbsoluteRange range : ranges) {
+            indices.addAll(IndexHelper.determineAffectedIndices(indexRangeService, deflector, range));
+        }
+        return indices;
+    }
+
+    /**
+     * Matches the given ranges without caching the filters, the ranges of incremental searches are only used once.
+     */
+    private FilterBuilder timestampRangesFilter(List<AbsoluteRange> ranges) {
+        final List<FilterBuilder> filters = Lists.newArrayList();
+        for (AbsoluteRange range : ranges) {
+            filters.add(FilterBuilders.rangeFilter("timestamp")
+                    .gte(Tools.buildElasticSearchTimeFormat(range.getFrom()))
+                    .lte(Tools.buildElasticSearchTimeFormat(range.getTo())));
+        }
+
+        if (filters.size() == 1) {
+            return filters.get(0);
+        }
+        return FilterBuilders.orFilter(filters.toArray(new FilterBuilder[filters.size()]));
+    }
+
+    /**
+     * Results of absolute time ranges can't change anymore once none of the searched indices is written to.
+     */
+    private boolean isImmutable(TimeRange range, Set<String> indices) {
+        return range instanceof AbsoluteRange && !indices.contains(deflector.getCurrentActualTargetIndex());
+    }
+
     public SearchHit firstOfIndex(String index) {
         return oneOfIndex(index, matchAllQuery(), SortOrder.DESC);
     }
@@ -460,6 +687,30 @@ public class Searches {
         return oneOfIndex(index, matchAllQuery(), SortOrder.ASC);
     }
 
+    /**
+     * Determines the oldest and newest message timestamp of an index with a single min/max aggregation.
+     *
+     * @return the timestamp stats or {@code null} if the index is empty
+     */
+    public TimestampStats timestampStatsOfIndex(String index) {
+        final SearchRequestBuilder srb = c.prepareSearch()
+                .setIndices(index)
+                .setSearchType(SearchType.COUNT)
+                .setQuery(matchAllQuery())
+                .addAggregation(AggregationBuilders.min("ts_min").field("timestamp"))
+                .addAggregation(AggregationBuilders.max("ts_max").field("timestamp"));
+
+        final SearchResponse r = c.search(srb.request()).actionGet();
+        if (r.getHits() == null || r.getHits().totalHits() == 0) {
+            return null;
+        }
+
+        final Min min = r.getAggregations().get("ts_min");
+        final Max max = r.getAggregations().get("ts_max");
+        return new TimestampStats(new DateTime((long) min.getValue(), DateTimeZone.UTC),
+                                  new DateTime((long) max.getValue(), DateTimeZone.UTC));
+    }
+
     private SearchRequestBuilder searchRequest(SearchesConfig config, Set<String> indices) {
         final SearchRequestBuilder request;
 
@@ -481,10 +732,6 @@ public class Searches {
         return request;
     }
 
-    private SearchRequestBuilder standardSearchRequest(String query, Set<String> indices) {
-        return standardSearchRequest(query, indices, 0, 0, null, null);
-    }
-
     private SearchRequestBuilder standardSearchRequest(String query, Set<String> indices, TimeRange range) {
         return standardSearchRequest(query, indices, 0, 0, range, null);
     }
@@ -506,6 +753,34 @@ public class Searches {
             TimeRange range,
             Sorting sort,
             boolean highlight) {
+        return standardSearchRequest(query, indices, limit, offset, range, null, sort, highlight);
+    }
+
+    /**
+     * Builds a search request which applies the time range and the filter in a filtered query. Unlike post filters,
+     * the filters restrict the documents before the query is run and scored, and Elasticsearch can cache them.
+     */
+    private SearchRequestBuilder standardSearchRequest(
+            String query,
+            Set<String> indices,
+            int limit,
+            int offset,
+            TimeRange range,
+            String filter,
+            Sorting sort,
+            boolean highlight) {
+        return rangeFilteredSearchRequest(query, indices, limit, offset, IndexHelper.getTimestampRangeFilter(range), filter, sort, highlight);
+    }
+
+    private SearchRequestBuilder rangeFilteredSearchRequest(
+            String query,
+            Set<String> indices,
+            int limit,
+            int offset,
+            FilterBuilder rangeFilter,
+            String filter,
+            Sorting sort,
+            boolean highlight) {
         if (query == null || query.trim().isEmpty()) {
             query = "*";
         }
@@ -513,12 +788,20 @@ public class Searches {
         SearchRequestBuilder srb = c.prepareSearch();
         srb.setIndices(indices.toArray(new String[indices.size()]));
 
+        final QueryBuilder queryBuilder;
         if (query.trim().equals("*")) {
-            srb.setQuery(matchAllQuery());
+            queryBuilder = matchAllQuery();
         } else {
             QueryStringQueryBuilder qs = queryString(query);
             qs.allowLeadingWildcard(configuration.isAllowLeadingWildcardSearches());
-            srb.setQuery(qs);
+            queryBuilder = qs;
+        }
+
+        final FilterBuilder filterBuilder = standardFilters(rangeFilter, filter);
+        if (filterBuilder == null) {
+            srb.setQuery(queryBuilder);
+        } else {
+            srb.setQuery(QueryBuilders.filteredQuery(queryBuilder, filterBuilder));
         }
 
         srb.setFrom(offset);
@@ -527,10 +810,6 @@ public class Searches {
             srb.setSize(limit);
         }
 
-        if (range != null) {
-            srb.setPostFilter(IndexHelper.getTimestampRangeFilter(range));
-        }
-
         if (sort != null) {
             srb.addSort(sort.getField(), sort.asElastic());
         }
@@ -543,22 +822,12 @@ public class Searches {
         return srb;
     }
 
-    private SearchRequestBuilder filteredSearchRequest(String query, String filter, Set<String> indices) {
-        return filteredSearchRequest(query, filter, indices, 0, 0, null, null);
-    }
-
     private SearchRequestBuilder filteredSearchRequest(String query, String filter, Set<String> indices, TimeRange range) {
         return filteredSearchRequest(query, filter, indices, 0, 0, range, null);
     }
 
     private SearchRequestBuilder filteredSearchRequest(String query, String filter, Set<String> indices, int limit, int offset, TimeRange range, Sorting sort) {
-        SearchRequestBuilder srb = standardSearchRequest(query, indices, limit, offset, range, sort);
-
-        if (range != null && filter != null) {
-            srb.setPostFilter(standardFilters(range, filter));
-        }
-
-        return srb;
+        return standardSearchRequest(query, indices, limit, offset, range, filter, sort, true);
     }
 
     private SearchHit oneOfIndex(String index, QueryBuilder q, SortOrder sort) {
@@ -576,26 +845,19 @@ public class Searches {
         }
     }
 
-    private BoolFilterBuilder standardFilters(TimeRange range, String filter) {
-        BoolFilterBuilder bfb = FilterBuilders.boolFilter();
-
-        boolean set = false;
-
-        if (range != null) {
-            bfb.must(IndexHelper.getTimestampRangeFilter(range));
-            set = true;
-        }
-
-        if (filter != null && !filter.isEmpty() && !filter.equals("*")) {
-            bfb.must(FilterBuilders.queryFilter(QueryBuilders.queryString(filter)));
-            set = true;
-        }
+    /**
+     * @return the filter for the time range and the filter string, {@code null} if there is nothing to filter
+     */
+    private FilterBuilder standardFilters(FilterBuilder rangeFilter, String filter) {
+        final FilterBuilder stringFilter = IndexHelper.getFilter(filter);
 
-        if (!set) {
-            throw new RuntimeException("Either range or filter must be set.");
+        if (rangeFilter == null) {
+            return stringFilter;
+        } else if (stringFilter == null) {
+            return rangeFilter;
         }
 
-        return bfb;
+        return FilterBuilders.boolFilter().must(rangeFilter).must(stringFilter);
     }
 
     public class FieldTypeException extends Exception {
@@ -0,0 +1,40 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.indexer.searches;
+
+import org.joda.time.DateTime;
+
+/**
+ * The oldest and the newest message timestamp of a set of messages.
+ */
+public class TimestampStats {
+    private final DateTime min;
+    private final DateTime max;
+
+    public TimestampStats(DateTime min, DateTime max) {
+        this.min = min;
+        this.max = max;
+    }
+
+    public DateTime getMin() {
+        return min;
+    }
+
+    public DateTime getMax() {
+        return max;
+    }
+}
@@ -18,6 +18,7 @@ package org.graylog2.inputs;
 
 import com.google.common.collect.Lists;
 import org.graylog2.database.NotFoundException;
+import org.graylog2.inputs.extractors.ExtractorChainRegistry;
 import org.graylog2.plugin.ServerStatus;
 import org.graylog2.plugin.database.ValidationException;
 import org.graylog2.plugin.inputs.Extractor;
@@ -38,11 +39,15 @@ public class PersistedInputsImpl implements PersistedInputs {
     private static final Logger LOG = LoggerFactory.getLogger(PersistedInputsImpl.class);
     private final InputService inputService;
     private final ServerStatus serverStatus;
+    private final ExtractorChainRegistry extractorChainRegistry;
 
     @Inject
-    public PersistedInputsImpl(InputService inputService, ServerStatus serverStatus) {
+    public PersistedInputsImpl(InputService inputService,
+                               ServerStatus serverStatus,
+                               ExtractorChainRegistry extractorChainRegistry) {
         this.inputService = inputService;
         this.serverStatus = serverStatus;
+        this.extractorChainRegistry = extractorChainRegistry;
     }
 
     @Override
@@ -126,6 +131,8 @@ public class PersistedInputsImpl implements PersistedInputs {
             for (Extractor extractor : extractors)
                 inputService.addExtractor(mongoInput, extractor);
 
+            extractorChainRegistry.invalidate(id);
+
             return true;
         } catch (NotFoundException | ValidationException e) {
             return false;
@@ -0,0 +1,167 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.inputs.extractors;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.graylog2.cluster.ClusterRevisionService;
+import org.graylog2.database.NotFoundException;
+import org.graylog2.grok.GrokPatternRegistry;
+import org.graylog2.inputs.Input;
+import org.graylog2.inputs.InputService;
+import org.graylog2.plugin.inputs.Extractor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the built and sorted extractors of every input.
+ *
+ * Extractors are only rebuilt after {@link #invalidate(String)} or {@link #invalidateGrokPatterns()} have been called
+ * on any node. Other nodes pick up changes by polling the cluster wide revisions once per second.
+ */
+@Singleton
+public class ExtractorChainRegistry {
+    private static final Logger LOG = LoggerFactory.getLogger(ExtractorChainRegistry.class);
+
+    public static final String EXTRACTORS_REVISION = "extractors";
+    public static final String GROK_PATTERNS_REVISION = "grok_patterns";
+    private static final long REVISION_CHECK_INTERVAL = 1L;
+
+    private final InputService inputService;
+    private final GrokPatternRegistry grokPatternRegistry;
+    private final ClusterRevisionService clusterRevisionService;
+    private final LoadingCache<String, List<Extractor>> chains;
+
+    private long extractorsRevision;
+    private long grokPatternsRevision;
+
+    @Inject
+    public ExtractorChainRegistry(InputService inputService,
+                                  GrokPatternRegistry grokPatternRegistry,
+                                  ClusterRevisionService clusterRevisionService,
+                                  @Named("daemonScheduler") ScheduledExecutorService scheduler) {
+        this.inputService = inputService;
+        this.grokPatternRegistry = grokPatternRegistry;
+        this.clusterRevisionService = clusterRevisionService;
+        this.chains = CacheBuilder.newBuilder().build(new CacheLoader<String, List<Extractor>>() {
+            @Override
+            public List<Extractor> load(String inputId) throws Exception {
+                return loadExtractors(inputId);
+            }
+        });
+
+        this.extractorsRevision = clusterRevisionService.get(EXTRACTORS_REVISION);
+        this.grokPatternsRevision = clusterRevisionService.get(GROK_PATTERNS_REVISION);
+
+        scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    checkRevisions();
+                } catch (Exception e) {
+                    LOG.error("Unable to check extractor revisions.", e);
+                }
+            }
+        }, REVISION_CHECK_INTERVAL, REVISION_CHECK_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Returns the extractors of the given input, sorted by their order.
+     *
+     * @param inputId the (persist) ID of the input
+     * @return the sorted extractors
+     */
+    public List<Extractor> getExtractors(String inputId) {
+        try {
+            return chains.get(inputId);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            LOG.error("Could not load extractors of input <" + inputId + ">. Returning empty list.", e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Must be called after the extractors of an input have been changed.
+     *
+     * @param inputId the (persist) ID of the input
+     */
+    public void invalidate(String inputId) {
+        chains.invalidate(inputId);
+        clusterRevisionService.increment(EXTRACTORS_REVISION);
+    }
+
+    /**
+     * Must be called after the stored grok patterns have been changed.
+     */
+    public void invalidateGrokPatterns() {
+        grokPatternRegistry.invalidateAll();
+        chains.invalidateAll();
+        clusterRevisionService.increment(GROK_PATTERNS_REVISION);
+    }
+
+    synchronized void checkRevisions() {
+        final long currentGrokPatternsRevision = clusterRevisionService.get(GROK_PATTERNS_REVISION);
+        final long currentExtractorsRevision = clusterRevisionService.get(EXTRACTORS_REVISION);
+
+        if (currentGrokPatternsRevision != grokPatternsRevision) {
+            LOG.debug("Grok patterns changed, dropping compiled grok patterns and extractors.");
+            grokPatternRegistry.invalidateAll();
+            chains.invalidateAll();
+        } else if (currentExtractorsRevision != extractorsRevision) {
+            LOG.debug("Extractors changed, dropping extractors of all inputs.");
+            chains.invalidateAll();
+        }
+
+        grokPatternsRevision = currentGrokPatternsRevision;
+        extractorsRevision = currentExtractorsRevision;
+    }
+
+    private List<Extractor> loadExtractors(String inputId) {
+        LOG.debug("Loading extractors for input <{}>.", inputId);
+
+        final Input input;
+        try {
+            input = inputService.find(inputId);
+        } catch (NotFoundException e) {
+            LOG.warn("Unable to load input: {}", e.getMessage());
+            return Collections.emptyList();
+        }
+
+        final List<Extractor> sorted = Lists.newArrayList(inputService.getExtractors(input));
+        Collections.sort(sorted, new Comparator<Extractor>() {
+            public int compare(Extractor e1, Extractor e2) {
+                return e1.getOrder().intValue() - e2.getOrder().intValue();
+            }
+        });
+
+        return ImmutableList.copyOf(sorted);
+    }
+}
@@ -23,7 +23,7 @@ import oi.thekraken.grok.api.Grok;
 import oi.thekraken.grok.api.Match;
 import oi.thekraken.grok.api.exception.GrokException;
 import org.graylog2.ConfigurationException;
-import org.graylog2.grok.GrokPattern;
+import org.graylog2.grok.GrokPatternRegistry;
 import org.graylog2.plugin.inputs.Converter;
 import org.graylog2.plugin.inputs.Extractor;
 import org.slf4j.Logger;
@@ -31,15 +31,14 @@ import org.slf4j.LoggerFactory;
 
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 public class GrokExtractor extends Extractor {
     private static final Logger log = LoggerFactory.getLogger(GrokExtractor.class);
 
-    private final Grok grok = new Grok();
+    private final Grok grok;
 
     public GrokExtractor(MetricRegistry metricRegistry,
-                         Set<GrokPattern> grokPatterns,
+                         GrokPatternRegistry grokPatternRegistry,
                          String id,
                          String title,
                          long order,
@@ -69,12 +68,8 @@ public class GrokExtractor extends Extractor {
         }
 
         try {
-            // TODO we should really share this somehow, but unfortunately the extractors are reloaded every second.
-            for (final GrokPattern grokPattern : grokPatterns) {
-                grok.addPattern(grokPattern.name, grokPattern.pattern);
-            }
-
-            grok.compile((String) extractorConfig.get("grok_pattern"));
+            // The compiled expression is shared with other extractors using the same grok pattern.
+            grok = grokPatternRegistry.cachedGrokForPattern((String) extractorConfig.get("grok_pattern"));
         } catch (GrokException e) {
             log.error("Unable to parse grok patterns", e);
             throw new ConfigurationException("Unable to parse grok patterns");
@@ -83,8 +78,6 @@ public class GrokExtractor extends Extractor {
 
     @Override
     protected Result[] run(String value) {
-
-        // the extractor instance is rebuilt every second anyway
         final Match match = grok.match(value);
         match.captures();
         final Map<String, Object> matches = match.toMap();
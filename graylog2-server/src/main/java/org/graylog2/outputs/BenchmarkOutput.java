@@ -93,14 +93,11 @@ public class BenchmarkOutput implements MessageOutput {
 
     @Override
     public void write(List<Message> messages) throws Exception {
-        long maxOffset = Long.MIN_VALUE;
-
+        // the messages may come from different journal partitions, each of which keeps its own committed offset
         for (final Message message : messages) {
-            maxOffset = Math.max(message.getJournalOffset(), maxOffset);
+            journal.markJournalOffsetCommitted(message.getJournalOffset());
         }
 
-        journal.markJournalOffsetCommitted(maxOffset);
-
         messagesWritten.mark(messages.size());
     }
 
@@ -16,13 +16,17 @@
  */
 package org.graylog2.outputs;
 
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 import com.google.common.collect.Lists;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
+import org.elasticsearch.ElasticsearchException;
 import org.graylog2.indexer.cluster.Cluster;
 import org.graylog2.indexer.messages.Messages;
 import org.graylog2.plugin.Message;
@@ -34,27 +38,60 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
 
 import static com.codahale.metrics.MetricRegistry.name;
-import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
+/**
+ * Batches messages into bulk requests.
+ * <p>
+ * Writers only append to a lock-free queue, a fixed number of flusher threads takes bulks of up to
+ * {@code output_batch_size} messages or {@code output_batch_max_size} bytes off the queue and writes them to
+ * Elasticsearch. Bulks which are not full are written after {@code output_flush_interval} seconds.
+ * </p>
+ * <p>
+ * The number of queued and in-flight messages is limited, writers block once the limit has been reached. This exerts
+ * back pressure on the output buffer if Elasticsearch can't keep up. Bulks which fail temporarily as a whole are
+ * retried with an exponential backoff until the output is stopped, their journal offsets are not committed before.
+ * Bulks which Elasticsearch rejects permanently are dropped, like the messages of a bulk which fail permanently.
+ * </p>
+ */
 // Singleton class
 public class BlockingBatchedESOutput extends ElasticSearchOutput {
     private static final Logger log = LoggerFactory.getLogger(BlockingBatchedESOutput.class);
     private final Cluster cluster;
     private final int maxBufferSize;
+    // adjusted at runtime by the back pressure controller, never larger than maxBufferSize
+    private volatile int targetBufferSize;
+    private final long maxBulkBytes;
     private final Timer processTime;
     private final Histogram batchSize;
+    private final Histogram batchBytes;
     private final Meter bufferFlushes;
     private final Meter bufferFlushesRequested;
 
-    private volatile List<Message> buffer;
-
-    private static final AtomicInteger activeFlushThreads = new AtomicInteger(0);
-    private final AtomicLong lastFlushTime = new AtomicLong();
+    private final Queue<Message> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queuedMessages = new AtomicInteger(0);
+    // bounds the number of queued and in-flight messages
+    private final Semaphore capacity;
+    private final int maxCapacity;
+    // signals the flusher threads that there is at least one full bulk
+    private final Semaphore bulkAvailable = new Semaphore(0);
+    private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+    private final AtomicInteger inFlightBulks = new AtomicInteger(0);
     private final int outputFlushInterval;
+    private final int flusherCount;
+    private final ExecutorService flusherExecutor;
+    private volatile boolean stopped = false;
 
     @AssistedInject
     public BlockingBatchedESOutput(MetricRegistry metricRegistry,
@@ -76,64 +113,216 @@ public class BlockingBatchedESOutput extends ElasticSearchOutput {
         super(metricRegistry, messages, journal);
         this.cluster = cluster;
         this.maxBufferSize = serverConfiguration.getOutputBatchSize();
-        outputFlushInterval = serverConfiguration.getOutputFlushInterval();
+        this.targetBufferSize = maxBufferSize;
+        this.maxBulkBytes = serverConfiguration.getOutputBatchMaxSize().toBytes();
+        this.outputFlushInterval = serverConfiguration.getOutputFlushInterval();
         this.processTime = metricRegistry.timer(name(this.getClass(), "processTime"));
         this.batchSize = metricRegistry.histogram(name(this.getClass(), "batchSize"));
+        this.batchBytes = metricRegistry.histogram(name(this.getClass(), "batchBytes"));
         this.bufferFlushes = metricRegistry.meter(name(this.getClass(), "bufferFlushes"));
         this.bufferFlushesRequested = metricRegistry.meter(name(this.getClass(), "bufferFlushesRequested"));
 
-        buffer = Lists.newArrayListWithCapacity(maxBufferSize);
+        registerGauge(metricRegistry, name(this.getClass(), "queueDepth"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return queuedMessages.get();
+            }
+        });
+        registerGauge(metricRegistry, name(this.getClass(), "inFlightBulks"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return inFlightBulks.get();
+            }
+        });
+
+        this.flusherCount = serverConfiguration.getOutputConcurrentBulkRequests();
+        // allow every flusher to have one bulk in flight while the next one is being filled
+        this.maxCapacity = Ints.saturatedCast(2l * maxBufferSize * flusherCount);
+        this.capacity = new Semaphore(maxCapacity);
 
+        final ThreadFactory threadFactory = new ThreadFactoryBuilder()
+                .setNameFormat("blocking-batched-es-output-flusher-%d")
+                .setDaemon(true)
+                .build();
+        this.flusherExecutor = Executors.newFixedThreadPool(flusherCount, threadFactory);
+        for (int i = 0; i < flusherCount; i++) {
+            flusherExecutor.execute(new Flusher());
+        }
+    }
+
+    private static void registerGauge(MetricRegistry metricRegistry, String name, Gauge<Integer> gauge) {
+        try {
+            metricRegistry.register(name, gauge);
+        } catch (IllegalArgumentException e) {
+            // there is more than one instance of this output, the gauge of the first one wins
+            log.debug("Gauge {} already registered", name);
+        }
     }
 
     @Override
     public void write(Message message) throws Exception {
-        List<Message> flushBatch = null;
-        synchronized (this) {
-            buffer.add(message);
+        capacity.acquireUninterruptibly();
+        queue.add(message);
+        messagesQueued(1);
+    }
+
+    @Override
+    public void write(List<Message> messages) throws Exception {
+        // never try to acquire more permits than there are, the writer would block forever
+        for (final List<Message> slice : Lists.partition(messages, Math.min(maxBufferSize, maxCapacity))) {
+            capacity.acquireUninterruptibly(slice.size());
+            queue.addAll(slice);
+            messagesQueued(slice.size());
+        }
+    }
+
+    private void messagesQueued(int count) {
+        final int queued = queuedMessages.addAndGet(count);
+        // only signal the first full bulk, a flusher keeps writing as long as there are full bulks
+        final int bufferSize = targetBufferSize;
+        if (queued >= bufferSize && queued - count < bufferSize) {
+            bulkAvailable.release();
+        }
+    }
+
+    private class Flusher implements Runnable {
+        @Override
+        public void run() {
+            while (!stopped && !Thread.currentThread().isInterrupted()) {
+                try {
+                    final boolean bulkSignalled = bulkAvailable.tryAcquire(outputFlushInterval, TimeUnit.SECONDS);
+                    // partial bulks are written after the flush interval or when explicitly requested
+                    flushAvailable(!bulkSignalled || flushRequested.getAndSet(false));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception e) {
+                    log.error("Unexpected error while flushing messages", e);
+                }
+            }
+        }
+    }
 
-            if (buffer.size() >= maxBufferSize) {
-                flushBatch = buffer;
-                buffer = Lists.newArrayListWithCapacity(maxBufferSize);
+    private void flushAvailable(boolean includePartialBulk) {
+        while (true) {
+            final int bufferSize = targetBufferSize;
+            final int queued = queuedMessages.get();
+            if (queued <= 0 || (queued < bufferSize && !includePartialBulk)) {
+                // signals for bulks which have already been written would make the flushers spin on an empty queue,
+                // a bulk which became full in the meantime is still picked up because the queue is checked again
+                if (!stopped && bulkAvailable.drainPermits() > 0 && queuedMessages.get() >= targetBufferSize) {
+                    continue;
+                }
+                return;
+            }
+
+            final List<Message> bulk = Lists.newArrayListWithCapacity(Math.min(queued, bufferSize));
+            long bulkBytes = 0;
+            while (bulk.size() < bufferSize && bulkBytes < maxBulkBytes) {
+                final Message message = queue.poll();
+                if (message == null) {
+                    break;
+                }
+                bulk.add(message);
+                bulkBytes += estimateSize(message);
+            }
+            if (bulk.isEmpty()) {
+                return;
+            }
+
+            // let another flusher pick up the next full bulk while this one is busy writing
+            if (queuedMessages.addAndGet(-bulk.size()) >= bufferSize) {
+                bulkAvailable.release();
+            }
+
+            try {
+                flush(bulk, bulkBytes);
+            } finally {
+                capacity.release(bulk.size());
             }
         }
-        // if the current thread found it had to flush any messages, it does so but blocks.
-        // this ensures we don't flush more than 'processorCount' in parallel.
-        // TODO this will still be time limited by the OutputBufferProcessor and thus be called more often than it should
-        if (flushBatch != null) {
-            flush(flushBatch);
+    }
+
+    private static long estimateSize(Message message) {
+        long size = 0;
+        for (final Map.Entry<String, Object> field : message.getFieldsEntries()) {
+            size += field.getKey().length();
+            final Object value = field.getValue();
+            size += value instanceof String ? ((String) value).length() : 8;
         }
+        return size;
     }
 
-    private void flush(List<Message> messages) {
+    private void flush(List<Message> messages, long bulkBytes) {
         if (!cluster.isConnectedAndHealthy()) {
             try {
                 cluster.waitForConnectedAndHealthy();
             } catch (InterruptedException e) {
                 log.warn("Error while waiting for healthy Elasticsearch cluster. Not flushing.", e);
+                Thread.currentThread().interrupt();
                 return;
             }
         }
-        // never try to flush an empty buffer
-        if (messages.size() == 0) {
-            return;
-        }
         log.debug("Starting flushing {} messages, flush threads active {}",
                  messages.size(),
-                 activeFlushThreads.incrementAndGet());
+                 inFlightBulks.incrementAndGet());
 
-        try (Timer.Context ignored = processTime.time()) {
-            lastFlushTime.set(System.nanoTime());
-            write(messages);
-            batchSize.update(messages.size());
-            bufferFlushes.mark();
-        } catch (Exception e) {
-            log.error("Unable to flush message buffer", e);
-        }
-        activeFlushThreads.decrementAndGet();
+        try {
+            int attempt = 0;
+            while (true) {
+                try {
+                    writeBulk(messages, bulkBytes);
+                    break;
+                } catch (Exception e) {
+                    if (!isRetriable(e)) {
+                        // sending the same bulk again would fail again, it must not hold back the journal forever
+                        log.error("Unable to write " + messages.size() + " messages, dropping them", e);
+                        acknowledge(messages);
+                        return;
+                    }
+                    log.error("Unable to flush message buffer", e);
+                }
+
+                // the journal offsets of a failed bulk have not been committed, so don't drop it but keep retrying
+                if (stopped) {
+                    log.warn("Output stopped, leaving {} messages in the journal", messages.size());
+                    return;
+                }
+                final long backoffMillis = Messages.retryBackoffMillis(++attempt);
+                log.warn("Retrying to write {} messages in {} ms (attempt {})", messages.size(), backoffMillis, attempt);
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    log.warn("Interrupted while waiting to retry, leaving {} messages in the journal", messages.size());
+                    return;
+                }
+            }
+        } finally {
+            inFlightBulks.decrementAndGet();
+        }
         log.debug("Flushing {} messages completed", messages.size());
     }
 
+    private void writeBulk(List<Message> messages, long bulkBytes) throws Exception {
+        try (Timer.Context ignored = processTime.time()) {
+            super.write(messages);
+        }
+        batchSize.update(messages.size());
+        batchBytes.update(bulkBytes);
+        bufferFlushes.mark();
+    }
+
+    /**
+     * Failed bulks are split like the items of a bulk, see {@link Messages#bulkIndex(List)}: only temporary failures
+     * are retried, and any failure while the cluster is unavailable.
+     */
+    private boolean isRetriable(Exception e) {
+        if (e instanceof ElasticsearchException && Messages.isRetriable((ElasticsearchException) e)) {
+            return true;
+        }
+        return !cluster.isConnectedAndHealthy();
+    }
+
     public void forceFlushIfTimedout() {
         if (!cluster.isConnectedAndHealthy()) {
             // do not actually try to flush, because that will block until the cluster comes back.
@@ -141,21 +330,70 @@ public class BlockingBatchedESOutput extends ElasticSearchOutput {
             log.debug("Cluster unavailable, but not blocking for periodic flush attempt. This will try again.");
             return;
         }
-        // if we shouldn't flush at all based on the last flush time, no need to synchronize on this.
-        if (lastFlushTime.get() != 0 &&
-                outputFlushInterval > NANOSECONDS.toSeconds(System.nanoTime() - lastFlushTime.get())) {
-                    return;
-                }
-        // flip buffer quickly and initiate flush
-        final List<Message> flushBatch;
-        synchronized (this) {
-            flushBatch = buffer;
-            buffer = Lists.newArrayListWithCapacity(maxBufferSize);
-        }
-        if (flushBatch != null) {
+        // the flusher threads write partial bulks on their own after the flush interval, this only wakes one of them up
+        if (queuedMessages.get() > 0) {
             bufferFlushesRequested.mark();
-            flush(flushBatch);
+            flushRequested.set(true);
+            bulkAvailable.release();
+        }
+    }
+
+    /**
+     * Writes the queued messages once and stops the flusher threads. Messages which could not be written stay in the
+     * journal.
+     */
+    @Override
+    public void stop() {
+        // failing bulks are not retried anymore, the flusher threads finish their current bulk
+        stopped = true;
+        if (cluster.isConnectedAndHealthy()) {
+            log.debug("Stopping, writing {} queued messages", queuedMessages.get());
+            flushAvailable(true);
+        } else {
+            // their journal offsets have not been committed, they are written again after a restart
+            log.warn("Elasticsearch cluster unavailable, not writing {} queued messages before stopping", queuedMessages.get());
+        }
+
+        flusherExecutor.shutdown();
+        // wake up idle flushers so they notice that they have been stopped
+        bulkAvailable.release(flusherCount);
+        try {
+            if (!flusherExecutor.awaitTermination(outputFlushInterval, TimeUnit.SECONDS)) {
+                log.warn("Flusher threads did not finish writing their bulks in time, interrupting them");
+                flusherExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            flusherExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
         }
+        super.stop();
+    }
+
+    public int getMaxBatchSize() {
+        return maxBufferSize;
+    }
+
+    public int getBatchSize() {
+        return targetBufferSize;
+    }
+
+    /**
+     * Changes the number of messages after which a bulk is written. The value is capped at {@code output_batch_size}
+     * because the number of queued messages is bounded by that setting.
+     */
+    public void setBatchSize(int batchSize) {
+        this.targetBufferSize = Math.max(1, Math.min(batchSize, maxBufferSize));
+        // a smaller batch size might already be satisfied by the queued messages
+        if (queuedMessages.get() >= targetBufferSize) {
+            bulkAvailable.release();
+        }
+    }
+
+    /**
+     * @return the 75th percentile of the time it took to write a bulk, in milliseconds
+     */
+    public long getFlushLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis((long) processTime.getSnapshot().get75thPercentile());
     }
 
     public interface Factory extends ElasticSearchOutput.Factory {
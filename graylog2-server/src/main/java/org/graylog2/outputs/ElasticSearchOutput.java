@@ -22,6 +22,7 @@ import com.codahale.metrics.Timer;
 import com.google.common.base.Joiner;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Ordering;
+import com.google.common.collect.Sets;
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
 import org.graylog2.indexer.messages.Messages;
@@ -37,6 +38,7 @@ import org.slf4j.LoggerFactory;
 import javax.inject.Inject;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.codahale.metrics.MetricRegistry.name;
@@ -94,9 +96,27 @@ public class ElasticSearchOutput implements MessageOutput {
         }
 
         writes.mark(messageList.size());
+        final List<Message> notIndexed;
         try (final Timer.Context ignored = processTime.time()) {
-            messages.bulkIndex(messageList);
+            notIndexed = messages.bulkIndex(messageList);
         }
+
+        // Messages which failed permanently have been handed to the dead letter queue and are done. The journal only
+        // commits up to the oldest unacknowledged message, the ones which have not been indexed are read again after
+        // a restart.
+        final Set<Message> notIndexedMessages = Sets.newIdentityHashSet();
+        notIndexedMessages.addAll(notIndexed);
+        for (final Message message : messageList) {
+            if (!notIndexedMessages.contains(message)) {
+                journal.markJournalOffsetCommitted(message.getJournalOffset());
+            }
+        }
+    }
+
+    /**
+     * Commits the journal offsets of messages which are done without having been indexed.
+     */
+    protected void acknowledge(List<Message> messageList) {
         for (final Message message : messageList) {
             journal.markJournalOffsetCommitted(message.getJournalOffset());
         }
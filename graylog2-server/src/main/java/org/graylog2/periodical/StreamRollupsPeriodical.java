@@ -0,0 +1,108 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.periodical;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.graylog2.alerts.types.FieldValueAlertCondition;
+import org.graylog2.plugin.alarms.AlertCondition;
+import org.graylog2.plugin.periodical.Periodical;
+import org.graylog2.plugin.streams.Stream;
+import org.graylog2.streams.StreamRollups;
+import org.graylog2.streams.StreamService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes the stream rollups of this node to MongoDB and updates the fields to roll up from the configured field value
+ * alert conditions.
+ */
+public class StreamRollupsPeriodical extends Periodical {
+    private static final Logger LOG = LoggerFactory.getLogger(StreamRollupsPeriodical.class);
+
+    private final StreamRollups streamRollups;
+    private final StreamService streamService;
+
+    @Inject
+    public StreamRollupsPeriodical(StreamRollups streamRollups, StreamService streamService) {
+        this.streamRollups = streamRollups;
+        this.streamService = streamService;
+    }
+
+    @Override
+    public void doRun() {
+        final Map<String, Set<String>> fieldsByStream = Maps.newHashMap();
+        for (Stream stream : streamService.loadAllWithConfiguredAlertConditions()) {
+            final Set<String> fields = Sets.newHashSet();
+            for (AlertCondition alertCondition : streamService.getAlertConditions(stream)) {
+                if (alertCondition instanceof FieldValueAlertCondition) {
+                    fields.add((String) alertCondition.getParameters().get("field"));
+                }
+            }
+            if (!fields.isEmpty()) {
+                fieldsByStream.put(stream.getId(), fields);
+            }
+        }
+        streamRollups.trackFields(fieldsByStream);
+
+        streamRollups.flush();
+    }
+
+    @Override
+    protected Logger getLogger() {
+        return LOG;
+    }
+
+    @Override
+    public boolean runsForever() {
+        return false;
+    }
+
+    @Override
+    public boolean stopOnGracefulShutdown() {
+        return false;
+    }
+
+    @Override
+    public boolean masterOnly() {
+        return false;
+    }
+
+    @Override
+    public boolean startOnThisNode() {
+        return streamRollups.isEnabled();
+    }
+
+    @Override
+    public boolean isDaemon() {
+        return true;
+    }
+
+    @Override
+    public int getInitialDelaySeconds() {
+        return 0;
+    }
+
+    @Override
+    public int getPeriodSeconds() {
+        return 5;
+    }
+}
@@ -16,15 +16,12 @@
  */
 package org.graylog2.periodical;
 
-import org.cliffc.high_scale_lib.Counter;
 import org.graylog2.plugin.periodical.Periodical;
 import org.graylog2.shared.stats.ThroughputStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
-import java.util.HashMap;
-import java.util.Map;
 
 public class StreamThroughputCounterManagerThread extends Periodical {
     private static final Logger LOG = LoggerFactory.getLogger(StreamThroughputCounterManagerThread.class);
@@ -37,9 +34,8 @@ public class StreamThroughputCounterManagerThread extends Periodical {
 
     @Override
     public void doRun() {
-        // cycleStreamThroughput clears the map already.
-        final Map<String,Counter> stringCounterMap = throughputStats.cycleStreamThroughput();
-        throughputStats.setCurrentStreamThroughput(new HashMap<>(stringCounterMap));
+        // cycleStreamThroughput returns an immutable snapshot of the counts since the last run.
+        throughputStats.setCurrentStreamThroughput(throughputStats.cycleStreamThroughput());
     }
 
     @Override
@@ -18,6 +18,9 @@ package org.graylog2.periodical;
 
 import com.github.joschi.jadconfig.util.Size;
 import com.google.common.eventbus.EventBus;
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.graylog2.buffers.BackPressureController;
+import org.graylog2.buffers.OutputBuffer;
 import org.graylog2.notifications.Notification;
 import org.graylog2.notifications.NotificationService;
 import org.graylog2.plugin.ServerStatus;
@@ -31,6 +34,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The ThrottleStateUpdater publishes the current state buffer state of the journal to other interested parties,
@@ -41,14 +45,17 @@ import javax.inject.Named;
  * but does not send "throttle" commands. This allows for a flexible approach in picking a throttling strategy.
  * </p>
  * <p>
- * The implementation expects to be called once per second to have a rough estimate about the events per second,
- * over the last second.
+ * The state is updated every {@code backpressure_controller_interval}, rates are normalized to events per second.
+ * Before publishing, the {@link BackPressureController} adjusts the journal read ahead, the output batch size and
+ * the throttling thresholds to the current state.
  * </p>
  */
 public class ThrottleStateUpdaterThread extends Periodical {
     private static final Logger log = LoggerFactory.getLogger(ThrottleStateUpdaterThread.class);
     private final KafkaJournal journal;
     private final ProcessBuffer processBuffer;
+    private final OutputBuffer outputBuffer;
+    private final BackPressureController backPressureController;
     private final EventBus eventBus;
     private final Size retentionSize;
     private final NotificationService notificationService;
@@ -56,22 +63,27 @@ public class ThrottleStateUpdaterThread extends Periodical {
 
     private boolean firstRun = true;
 
-    private long logStartOffset;
+    // offsets are summed up over all journal partitions, they are only used to calculate rates
     private long logEndOffset;
     private long previousLogEndOffset;
     private long previousReadOffset;
     private long currentReadOffset;
     private long currentTs;
     private long prevTs;
+    private long lastNotificationCheck;
 
     @Inject
     public ThrottleStateUpdaterThread(Journal journal,
                                       ProcessBuffer processBuffer,
+                                      OutputBuffer outputBuffer,
+                                      BackPressureController backPressureController,
                                       EventBus eventBus,
                                       NotificationService notificationService,
                                       ServerStatus serverStatus,
                                       @Named("message_journal_max_size") Size retentionSize) {
         this.processBuffer = processBuffer;
+        this.outputBuffer = outputBuffer;
+        this.backPressureController = backPressureController;
         this.eventBus = eventBus;
         this.retentionSize = retentionSize;
         this.notificationService = notificationService;
@@ -86,12 +98,12 @@ public class ThrottleStateUpdaterThread extends Periodical {
 
     @Override
     public boolean runsForever() {
-        return false;
+        return true;
     }
 
     @Override
     public boolean stopOnGracefulShutdown() {
-        return true;
+        return false;
     }
 
     @Override
@@ -112,12 +124,12 @@ public class ThrottleStateUpdaterThread extends Periodical {
 
     @Override
     public int getInitialDelaySeconds() {
-        return 1;
+        return 0;
     }
 
     @Override
     public int getPeriodSeconds() {
-        return 1;
+        return 0;
     }
 
     @Override
@@ -127,17 +139,41 @@ public class ThrottleStateUpdaterThread extends Periodical {
 
     @Override
     public void doRun() {
+        final long intervalMillis = backPressureController.getIntervalMillis();
+        while (true) {
+            Uninterruptibles.sleepUninterruptibly(intervalMillis, TimeUnit.MILLISECONDS);
+            try {
+                updateThrottleState();
+            } catch (RuntimeException e) {
+                log.error("Unable to update throttle state", e);
+            }
+        }
+    }
+
+    private void updateThrottleState() {
         final ThrottleState throttleState = new ThrottleState();
-        final long committedOffset = journal.getCommittedOffset();
 
         prevTs = currentTs;
         currentTs = System.nanoTime();
 
         previousLogEndOffset = logEndOffset;
         previousReadOffset = currentReadOffset;
-        logStartOffset = journal.getLogStartOffset();
-        logEndOffset = journal.getLogEndOffset() - 1; // -1 because getLogEndOffset is the next offset that gets assigned
-        currentReadOffset = journal.getNextReadOffset() - 1; // just to make it clear which field we read
+        logEndOffset = 0;
+        currentReadOffset = 0;
+        long uncommittedJournalEntries = 0;
+        for (int partition = 0; partition < journal.numberOfPartitions(); partition++) {
+            final long partitionLogEndOffset = journal.getLogEndOffset(partition) - 1; // -1 because getLogEndOffset is the next offset that gets assigned
+            final long committedOffset = journal.getCommittedOffset(partition);
+            logEndOffset += partitionLogEndOffset;
+            currentReadOffset += journal.getNextReadOffset(partition) - 1; // just to make it clear which field we read
+
+            if (committedOffset == KafkaJournal.DEFAULT_COMMITTED_OFFSET) {
+                // nothing committed at all, the entire log is uncommitted, or completely empty.
+                uncommittedJournalEntries += journal.size(partition) == 0 ? 0 : partitionLogEndOffset - journal.getLogStartOffset(partition);
+            } else {
+                uncommittedJournalEntries += partitionLogEndOffset - committedOffset;
+            }
+        }
 
         // for the first run, don't send an update, there's no previous data available to calc rates
         if (firstRun) {
@@ -152,13 +188,9 @@ public class ThrottleStateUpdaterThread extends Periodical {
         throttleState.journalSizeLimit = retentionSize.toBytes();
 
         throttleState.processBufferCapacity = processBuffer.getRemainingCapacity();
-
-        if (committedOffset == KafkaJournal.DEFAULT_COMMITTED_OFFSET) {
-            // nothing committed at all, the entire log is uncommitted, or completely empty.
-            throttleState.uncommittedJournalEntries = journal.size() == 0 ? 0 : logEndOffset - logStartOffset;
-        } else {
-            throttleState.uncommittedJournalEntries = logEndOffset - committedOffset;
-        }
+        throttleState.outputBufferCapacity = outputBuffer.getRemainingCapacity();
+        throttleState.uncommittedJournalEntries = uncommittedJournalEntries;
+        backPressureController.adjust(throttleState);
         log.debug("ThrottleState: {}", throttleState);
         
         // the journal needs this to provide information to rest clients
@@ -167,6 +199,12 @@ public class ThrottleStateUpdaterThread extends Periodical {
         // publish to interested parties
         eventBus.post(throttleState);
 
+        // the notifications are persisted, don't check for them more often than once per second
+        if (currentTs - lastNotificationCheck < TimeUnit.SECONDS.toNanos(1)) {
+            return;
+        }
+        lastNotificationCheck = currentTs;
+
         // Abusing the current thread to send notifications from KafkaJournal in the graylog2-shared module
         final double journalUtilizationPercentage = throttleState.journalSizeLimit > 0 ? (throttleState.journalSize * 100) / throttleState.journalSizeLimit : 0.0;
 
@@ -0,0 +1,82 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.rest;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.elasticsearch.search.SearchHit;
+import org.graylog2.indexer.results.ScrollResult;
+import org.graylog2.shared.rest.AdditionalMediaType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * Writes scroll chunks as newline delimited JSON, one object with the requested fields per message.
+ */
+@Provider
+@Produces(AdditionalMediaType.APPLICATION_NDJSON)
+public class ScrollChunkJsonWriter implements MessageBodyWriter<ScrollResult.ScrollChunk> {
+    private static final Logger LOG = LoggerFactory.getLogger(ScrollChunkJsonWriter.class);
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return ScrollResult.ScrollChunk.class.equals(type) && AdditionalMediaType.APPLICATION_NDJSON_TYPE.isCompatible(mediaType);
+    }
+
+    @Override
+    public long getSize(ScrollResult.ScrollChunk scrollChunk,
+                        Class<?> type,
+                        Type genericType,
+                        Annotation[] annotations,
+                        MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(ScrollResult.ScrollChunk scrollChunk,
+                        Class<?> type,
+                        Type genericType,
+                        Annotation[] annotations,
+                        MediaType mediaType,
+                        MultivaluedMap<String, Object> httpHeaders,
+                        OutputStream entityStream) throws IOException, WebApplicationException {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("[{}] Writing chunk {}", Thread.currentThread().getId(), scrollChunk.getChunkNumber());
+        }
+
+        final SourceFieldReader fieldReader = new SourceFieldReader(scrollChunk.getFields());
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(entityStream)) {
+            generator.setRootValueSeparator(null);
+            for (SearchHit hit : scrollChunk.getHits()) {
+                fieldReader.writeObject(hit.sourceRef(), generator);
+                generator.writeRaw('\n');
+            }
+        }
+    }
+}
@@ -17,7 +17,7 @@
 package org.graylog2.rest;
 
 import au.com.bytecode.opencsv.CSVWriter;
-import org.graylog2.indexer.results.ResultMessage;
+import org.elasticsearch.search.SearchHit;
 import org.graylog2.indexer.results.ScrollResult;
 import org.graylog2.shared.rest.AdditionalMediaType;
 import org.slf4j.Logger;
@@ -79,22 +79,13 @@ public class ScrollChunkWriter implements MessageBodyWriter<ScrollResult.ScrollC
             // write field headers only on first chunk
             csvWriter.writeNext(fields.toArray(new String[numberOfFields]));
         }
-        // write result set in same order as the header row
+        // write result set in same order as the header row, reading the values straight from the message source
+        final SourceFieldReader fieldReader = new SourceFieldReader(fields);
         final String[] fieldValues = new String[numberOfFields];
-        for (ResultMessage message : scrollChunk.getMessages()) {
-            int idx = 0;
-            // first collect all values from the current message
-            for (String fieldName : fields) {
-                final Object val = message.getMessage().get(fieldName);
-                if (val == null) {
-                    fieldValues[idx] = null;
-                } else {
-                    String stringVal = val.toString();
-                    fieldValues[idx] = stringVal
-                            .replaceAll("\n", "\\\\n")
-                            .replaceAll("\r", "\\\\r");
-                }
-                idx++;
+        for (SearchHit hit : scrollChunk.getHits()) {
+            fieldReader.readValues(hit.sourceRef(), fieldValues);
+            for (int idx = 0; idx < numberOfFields; idx++) {
+                fieldValues[idx] = escapeLineBreaks(fieldValues[idx]);
             }
 
             // write the complete line, some fields might not be present in the message, so there might be null values
@@ -105,4 +96,23 @@ public class ScrollChunkWriter implements MessageBodyWriter<ScrollResult.ScrollC
         }
         csvWriter.close();
     }
+
+    private static String escapeLineBreaks(String value) {
+        if (value == null || (value.indexOf('\n') == -1 && value.indexOf('\r') == -1)) {
+            return value;
+        }
+
+        final StringBuilder sb = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '\n') {
+                sb.append("\\n");
+            } else if (c == '\r') {
+                sb.append("\\r");
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
 }
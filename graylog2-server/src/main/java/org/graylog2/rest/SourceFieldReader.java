@@ -0,0 +1,149 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.rest;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Maps;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.graylog2.plugin.Tools.ES_DATE_FORMAT_FORMATTER;
+
+/**
+ * Reads the requested fields of messages straight from their {@code _source} bytes, skipping all other fields,
+ * instead of parsing every message into a map first.
+ * <p/>
+ * Values are converted like in {@link org.graylog2.indexer.results.ResultMessage}, e.g. the timestamp is returned
+ * in ISO 8601 format.
+ */
+public class SourceFieldReader {
+    private static final JsonFactory JSON_FACTORY = new ObjectMapper().getFactory();
+
+    private final Map<String, Integer> fieldIndexes = Maps.newHashMap();
+
+    public SourceFieldReader(List<String> fields) {
+        for (int i = 0; i < fields.size(); i++) {
+            fieldIndexes.put(fields.get(i), i);
+        }
+    }
+
+    /**
+     * Fills {@code values} with the string values of the fields in the order they were requested in. Missing fields
+     * are {@code null}.
+     */
+    public void readValues(BytesReference source, String[] values) throws IOException {
+        Arrays.fill(values, null);
+        if (source == null) {
+            return;
+        }
+
+        try (JsonParser parser = createParser(source)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return;
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String fieldName = parser.getCurrentName();
+                final Integer index = fieldIndexes.get(fieldName);
+                final JsonToken token = parser.nextToken();
+                if (index == null) {
+                    parser.skipChildren();
+                    continue;
+                }
+
+                switch (token) {
+                    case VALUE_NULL:
+                        values[index] = null;
+                        break;
+                    case START_OBJECT:
+                    case START_ARRAY:
+                        values[index] = String.valueOf(parser.readValueAs(Object.class));
+                        break;
+                    case VALUE_STRING:
+                        values[index] = convert(fieldName, parser.getText());
+                        break;
+                    default:
+                        values[index] = parser.getText();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the requested fields as one JSON object, copying their values unchanged apart from the timestamp.
+     */
+    public void writeObject(BytesReference source, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        if (source != null) {
+            try (JsonParser parser = createParser(source)) {
+                if (parser.nextToken() == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        final String fieldName = parser.getCurrentName();
+                        final JsonToken token = parser.nextToken();
+                        if (!fieldIndexes.containsKey(fieldName)) {
+                            parser.skipChildren();
+                            continue;
+                        }
+
+                        generator.writeFieldName(fieldName);
+                        if (token == JsonToken.VALUE_STRING) {
+                            generator.writeString(convert(fieldName, parser.getText()));
+                        } else {
+                            generator.copyCurrentStructure(parser);
+                        }
+                    }
+                }
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    private static String convert(String fieldName, String value) {
+        if (!"timestamp".equals(fieldName)) {
+            return value;
+        }
+
+        try {
+            return ES_DATE_FORMAT_FORMATTER.parseDateTime(value).toString();
+        } catch (IllegalArgumentException e) {
+            // leave values which are not in the Elasticsearch date format alone
+            return value;
+        }
+    }
+
+    private static JsonParser createParser(BytesReference source) throws IOException {
+        if (XContentFactory.xContentType(source) != XContentType.JSON) {
+            return JSON_FACTORY.createParser(XContentHelper.convertToJson(source, false).getBytes(StandardCharsets.UTF_8));
+        }
+        if (source.hasArray()) {
+            return JSON_FACTORY.createParser(source.array(), source.arrayOffset(), source.length());
+        }
+        return JSON_FACTORY.createParser(source.toBytes());
+    }
+}
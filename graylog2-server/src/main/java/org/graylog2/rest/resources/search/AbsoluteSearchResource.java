@@ -111,7 +111,7 @@ public class AbsoluteSearchResource extends SearchResource {
     @ApiOperation(value = "Message search with absolute timerange.",
             notes = "Search for messages using an absolute timerange, specified as from/to " +
                     "with format yyyy-MM-ddTHH:mm:ss.SSSZ (e.g. 2014-01-23T15:34:49.000Z) or yyyy-MM-dd HH:mm:ss.")
-    @Produces(AdditionalMediaType.TEXT_CSV)
+    @Produces({AdditionalMediaType.TEXT_CSV, AdditionalMediaType.APPLICATION_NDJSON})
     @ApiResponses(value = {
             @ApiResponse(code = 400, message = "Invalid timerange parameters provided.")
     })
@@ -111,7 +111,7 @@ public class RelativeSearchResource extends SearchResource {
     @ApiOperation(value = "Message search with relative timerange.",
             notes = "Search for messages in a relative timerange, specified as seconds from now. " +
                     "Example: 300 means search from 5 minutes ago to now.")
-    @Produces(AdditionalMediaType.TEXT_CSV)
+    @Produces({AdditionalMediaType.TEXT_CSV, AdditionalMediaType.APPLICATION_NDJSON})
     @ApiResponses(value = {
             @ApiResponse(code = 400, message = "Invalid timerange parameters provided.")
     })
@@ -291,7 +291,7 @@ public abstract class SearchResource extends RestResource {
                     while (chunk != null) {
                         LOG.debug("[{}] Writing scroll chunk with {} messages",
                                 scroll.getQueryHash(),
-                                chunk.getMessages().size());
+                                chunk.size());
                         if (output.isClosed()) {
                             LOG.debug("[{}] Client connection is closed, client disconnected. Aborting scroll.",
                                     scroll.getQueryHash());
@@ -299,7 +299,7 @@ public abstract class SearchResource extends RestResource {
                             return;
                         }
                         output.write(chunk);
-                        collectedHits += chunk.getMessages().size();
+                        collectedHits += chunk.size();
                         if (limit != 0 && collectedHits >= limit) {
                             scroll.cancel();
                             output.close();
@@ -311,6 +311,13 @@ public abstract class SearchResource extends RestResource {
                     output.close();
                 } catch (IOException e) {
                     LOG.warn("[{}] Could not close chunked output stream for query scroll.", scroll.getQueryHash());
+                } catch (RuntimeException e) {
+                    LOG.error("[{}] Scrolling through the search results failed, aborting.", scroll.getQueryHash(), e);
+                    scroll.cancel();
+                    try {
+                        output.close();
+                    } catch (IOException ignored) {
+                    }
                 }
             }
         };
@@ -28,7 +28,6 @@ import com.wordnik.swagger.annotations.ApiResponses;
 import org.apache.shiro.authz.annotation.RequiresAuthentication;
 import org.apache.shiro.authz.annotation.RequiresPermissions;
 import org.bson.types.ObjectId;
-import org.cliffc.high_scale_lib.Counter;
 import org.graylog2.alarmcallbacks.AlarmCallbackConfiguration;
 import org.graylog2.alarmcallbacks.AlarmCallbackConfigurationService;
 import org.graylog2.rest.models.alarmcallbacks.requests.CreateAlarmCallbackRequest;
@@ -72,10 +71,8 @@ import javax.ws.rs.core.Response;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Executors;
 
 import static com.google.common.base.MoreObjects.firstNonNull;
 
@@ -269,7 +266,7 @@ public class StreamResource extends RestResource {
         final Stream stream = streamService.load(streamId);
         final Message message = new Message(serialisedMessage.get("message"));
 
-        final StreamRouterEngine streamRouterEngine = streamRouterEngineFactory.create(Lists.newArrayList(stream), Executors.newSingleThreadExecutor());
+        final StreamRouterEngine streamRouterEngine = streamRouterEngineFactory.create(Lists.newArrayList(stream));
         final List<StreamRouterEngine.StreamTestMatch> streamTestMatches = streamRouterEngine.testMatch(message);
         final StreamRouterEngine.StreamTestMatch streamTestMatch = streamTestMatches.get(0);
 
@@ -366,11 +363,11 @@ public class StreamResource extends RestResource {
         final Map<String, Long> result = Maps.newHashMap();
         result.put("throughput", 0L);
 
-        final HashMap<String, Counter> currentStreamThroughput = throughputStats.getCurrentStreamThroughput();
+        final Map<String, Long> currentStreamThroughput = throughputStats.getCurrentStreamThroughput();
         if (currentStreamThroughput != null) {
-            final Counter counter = currentStreamThroughput.get(streamId);
-            if (counter != null && isPermitted(RestPermissions.STREAMS_READ, streamId))
-                result.put("throughput", counter.get());
+            final Long throughput = currentStreamThroughput.get(streamId);
+            if (throughput != null && isPermitted(RestPermissions.STREAMS_READ, streamId))
+                result.put("throughput", throughput);
         }
 
         return result;
@@ -384,11 +381,11 @@ public class StreamResource extends RestResource {
     public Map<String, Map<String, Long>> streamThroughput() {
         final Map<String, Long> perStream = Maps.newHashMap();
 
-        final Map<String, Counter> currentStreamThroughput = throughputStats.getCurrentStreamThroughput();
+        final Map<String, Long> currentStreamThroughput = throughputStats.getCurrentStreamThroughput();
         if (currentStreamThroughput != null) {
-            for (Map.Entry<String, Counter> entry : currentStreamThroughput.entrySet()) {
+            for (Map.Entry<String, Long> entry : currentStreamThroughput.entrySet()) {
                 if (entry.getValue() != null && isPermitted(RestPermissions.STREAMS_READ, entry.getKey())) {
-                    perStream.put(entry.getKey(), entry.getValue().get());
+                    perStream.put(entry.getKey(), entry.getValue());
                 }
             }
         }
@@ -0,0 +1,65 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.rest.resources.system;
+
+import com.codahale.metrics.annotation.Timed;
+import com.github.joschi.jadconfig.util.Size;
+import com.wordnik.swagger.annotations.Api;
+import com.wordnik.swagger.annotations.ApiOperation;
+import org.apache.shiro.authz.annotation.RequiresAuthentication;
+import org.apache.shiro.authz.annotation.RequiresPermissions;
+import org.graylog2.buffers.BackPressureController;
+import org.graylog2.rest.resources.system.responses.BackPressureSummary;
+import org.graylog2.shared.rest.resources.RestResource;
+import org.graylog2.shared.security.RestPermissions;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+@RequiresAuthentication
+@Api(value = "System/BackPressure", description = "Settings chosen by the back pressure controller of this node.")
+@Path("/system/backpressure")
+@Produces(MediaType.APPLICATION_JSON)
+public class BackPressureResource extends RestResource {
+    private final BackPressureController backPressureController;
+
+    @Inject
+    public BackPressureResource(BackPressureController backPressureController) {
+        this.backPressureController = backPressureController;
+    }
+
+    @GET
+    @Timed
+    @ApiOperation(value = "Get the current journal read ahead, output batch size and input throttling thresholds.")
+    @RequiresPermissions(RestPermissions.BUFFERS_READ)
+    public BackPressureSummary show() {
+        final BackPressureController.Decision decision = backPressureController.getDecision();
+
+        return BackPressureSummary.create(
+                Size.bytes(decision.getReadAheadBytes()),
+                decision.getOutputBatchSize(),
+                decision.getUncommittedEntriesThreshold(),
+                decision.getJournalGrowthThreshold(),
+                decision.getProcessBufferUtilization(),
+                decision.getOutputBufferUtilization(),
+                decision.getFlushLatencyMillis(),
+                backPressureController.getIntervalMillis());
+    }
+}
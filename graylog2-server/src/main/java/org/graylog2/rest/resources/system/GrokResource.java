@@ -25,6 +25,7 @@ import org.graylog2.database.NotFoundException;
 import org.graylog2.grok.GrokPattern;
 import org.graylog2.grok.GrokPatternService;
 import org.graylog2.grok.GrokPatterns;
+import org.graylog2.inputs.extractors.ExtractorChainRegistry;
 import org.graylog2.plugin.database.ValidationException;
 import org.graylog2.rest.models.system.responses.GrokPatternList;
 import org.graylog2.rest.models.system.responses.GrokPatternSummary;
@@ -56,10 +57,12 @@ import java.net.URI;
 public class GrokResource extends RestResource {
 
     private final GrokPatternService grokPatternService;
+    private final ExtractorChainRegistry extractorChainRegistry;
 
     @Inject
-    public GrokResource(GrokPatternService grokPatternService) {
+    public GrokResource(GrokPatternService grokPatternService, ExtractorChainRegistry extractorChainRegistry) {
         this.grokPatternService = grokPatternService;
+        this.extractorChainRegistry = extractorChainRegistry;
     }
 
     @GET
@@ -90,6 +93,7 @@ public class GrokResource extends RestResource {
         checkPermission(RestPermissions.INPUTS_CREATE);
 
         final GrokPattern newPattern = grokPatternService.save(GrokPatterns.fromSummary(pattern));
+        extractorChainRegistry.invalidateGrokPatterns();
 
         final URI patternUri = getUriBuilderToSelf().path(GrokResource.class, "listPattern").build(newPattern.id);
         
@@ -111,6 +115,7 @@ public class GrokResource extends RestResource {
         }
 
         grokPatternService.saveAll(GrokPatterns.fromSummarySet(patternList.patterns()), replace);
+        extractorChainRegistry.invalidateGrokPatterns();
 
         return Response.accepted().build();
     }
@@ -130,7 +135,10 @@ public class GrokResource extends RestResource {
         oldPattern.name = pattern.name;
         oldPattern.pattern = pattern.pattern;
 
-        return grokPatternService.save(oldPattern);
+        final GrokPattern savedPattern = grokPatternService.save(oldPattern);
+        extractorChainRegistry.invalidateGrokPatterns();
+
+        return savedPattern;
     }
     
     @DELETE
@@ -143,5 +151,6 @@ public class GrokResource extends RestResource {
         if (grokPatternService.delete(patternId) == 0) {
             throw new javax.ws.rs.NotFoundException();
         }
+        extractorChainRegistry.invalidateGrokPatterns();
     }
 }
@@ -26,6 +26,7 @@ import org.graylog2.database.NotFoundException;
 import org.graylog2.inputs.Input;
 import org.graylog2.inputs.InputService;
 import org.graylog2.inputs.converters.ConverterFactory;
+import org.graylog2.inputs.extractors.ExtractorChainRegistry;
 import org.graylog2.inputs.extractors.ExtractorFactory;
 import org.graylog2.rest.models.system.inputs.extractors.responses.ExtractorCreated;
 import org.graylog2.rest.models.system.inputs.extractors.responses.ExtractorMetrics;
@@ -71,6 +72,7 @@ public class ExtractorsResource extends RestResource {
     private final MetricRegistry metricRegistry;
     private final ExtractorFactory extractorFactory;
     private final PersistedInputs persistedInputs;
+    private final ExtractorChainRegistry extractorChainRegistry;
 
     @Inject
     public ExtractorsResource(final InputService inputService,
@@ -78,13 +80,15 @@ public class ExtractorsResource extends RestResource {
                               final InputRegistry inputs,
                               final MetricRegistry metricRegistry,
                               final ExtractorFactory extractorFactory,
-                              final PersistedInputs persistedInputs) {
+                              final PersistedInputs persistedInputs,
+                              final ExtractorChainRegistry extractorChainRegistry) {
         this.inputService = inputService;
         this.activityWriter = activityWriter;
         this.inputs = inputs;
         this.metricRegistry = metricRegistry;
         this.extractorFactory = extractorFactory;
         this.persistedInputs = persistedInputs;
+        this.extractorChainRegistry = extractorChainRegistry;
     }
 
     @POST
@@ -121,6 +125,7 @@ public class ExtractorsResource extends RestResource {
             LOG.error("Extractor persist validation failed.", e);
             throw new BadRequestException(e);
         }
+        extractorChainRegistry.invalidate(mongoInput.getId());
 
         final String msg = "Added extractor <" + id + "> of type [" + cer.extractorType() + "] to input <" + inputId + ">.";
         LOG.info(msg);
@@ -171,6 +176,8 @@ public class ExtractorsResource extends RestResource {
         } catch (ValidationException e) {
             LOG.error("Extractor persist validation failed.", e);
             throw new BadRequestException(e);
+        } finally {
+            extractorChainRegistry.invalidate(mongoInput.getId());
         }
 
         final String msg = "Updated extractor <" + originalExtractor.getId() + "> of type [" + cer.extractorType() + "] in input <" + inputId + ">.";
@@ -260,6 +267,7 @@ public class ExtractorsResource extends RestResource {
         final Input mongoInput = inputService.find(input.getPersistId());
         final Extractor extractor = inputService.getExtractor(mongoInput, extractorId);
         inputService.removeExtractor(mongoInput, extractor.getId());
+        extractorChainRegistry.invalidate(mongoInput.getId());
 
         final String msg = "Deleted extractor <" + extractorId + "> of type [" + extractor.getType() + "] " +
                 "from input <" + inputId + ">.";
@@ -295,6 +303,7 @@ public class ExtractorsResource extends RestResource {
                 LOG.warn("Validation error for extractor update.", e);
             }
         }
+        extractorChainRegistry.invalidate(mongoInput.getId());
 
         LOG.info("Updated extractor ordering of input <persist:{}>.", inputPersistId);
     }
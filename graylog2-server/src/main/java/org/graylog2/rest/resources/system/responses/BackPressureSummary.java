@@ -0,0 +1,70 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.rest.resources.system.responses;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.github.joschi.jadconfig.util.Size;
+import com.google.auto.value.AutoValue;
+
+@JsonAutoDetect
+@AutoValue
+public abstract class BackPressureSummary {
+
+    public static BackPressureSummary create(Size journalReadAhead,
+                                             int outputBatchSize,
+                                             long uncommittedEntriesThreshold,
+                                             long journalGrowthThreshold,
+                                             int processBufferUtilizationPercent,
+                                             int outputBufferUtilizationPercent,
+                                             long outputFlushLatencyMillis,
+                                             long intervalMillis) {
+        return new AutoValue_BackPressureSummary(journalReadAhead,
+                                                 outputBatchSize,
+                                                 uncommittedEntriesThreshold,
+                                                 journalGrowthThreshold,
+                                                 processBufferUtilizationPercent,
+                                                 outputBufferUtilizationPercent,
+                                                 outputFlushLatencyMillis,
+                                                 intervalMillis);
+    }
+
+    // keep the fields in the same order as the auto value constructor params!
+    @JsonProperty
+    public abstract Size journalReadAhead();
+
+    @JsonProperty
+    public abstract int outputBatchSize();
+
+    @JsonProperty
+    public abstract long uncommittedEntriesThreshold();
+
+    @JsonProperty
+    public abstract long journalGrowthThreshold();
+
+    @JsonProperty
+    public abstract int processBufferUtilizationPercent();
+
+    @JsonProperty
+    public abstract int outputBufferUtilizationPercent();
+
+    @JsonProperty
+    public abstract long outputFlushLatencyMillis();
+
+    @JsonProperty
+    public abstract long intervalMillis();
+}
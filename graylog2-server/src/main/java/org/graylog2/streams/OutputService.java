@@ -24,6 +24,7 @@ import org.graylog2.plugin.streams.Output;
 import org.graylog2.plugin.streams.Stream;
 import org.graylog2.rest.models.streams.outputs.requests.CreateOutputRequest;
 
+import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
 
@@ -33,6 +34,11 @@ public interface OutputService extends PersistedService {
 
     Set<Output> loadAll();
 
+    /**
+     * Loads all given outputs with a single query, non-existing outputs are skipped.
+     */
+    Set<Output> loadByIds(Collection<String> ids);
+
     Set<Output> loadForStream(Stream stream);
 
     Output create(Output request) throws ValidationException;
@@ -31,6 +31,9 @@ import org.graylog2.plugin.streams.Stream;
 import org.graylog2.rest.models.streams.outputs.requests.CreateOutputRequest;
 
 import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -66,6 +69,16 @@ public class OutputServiceImpl extends PersistedServiceImpl implements OutputSer
         return loadAll(new HashMap<String, Object>());
     }
 
+    @Override
+    public Set<Output> loadByIds(Collection<String> ids) {
+        final List<ObjectId> objectIds = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            objectIds.add(new ObjectId(id));
+        }
+
+        return loadAll(Collections.<String, Object>singletonMap("_id", new BasicDBObject("$in", objectIds)));
+    }
+
     protected Set<Output> loadAll(Map<String, Object> additionalQueryOpts) {
         Set<Output> outputs = new HashSet<>();
 
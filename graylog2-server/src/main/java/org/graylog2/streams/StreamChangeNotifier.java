@@ -0,0 +1,63 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.streams;
+
+import com.google.common.eventbus.EventBus;
+import org.graylog2.cluster.ClusterRevisionService;
+import org.graylog2.streams.events.StreamsChangedEvent;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Announces changes of streams, stream rules and stream outputs.
+ *
+ * Changes are posted as {@link StreamsChangedEvent} on the local {@link EventBus}. Other nodes don't share the event
+ * bus, so every change also increments the cluster wide {@link #REVISION_NAME streams revision}.
+ */
+@Singleton
+public class StreamChangeNotifier {
+    public static final String REVISION_NAME = "streams";
+
+    private final EventBus eventBus;
+    private final ClusterRevisionService clusterRevisionService;
+
+    @Inject
+    public StreamChangeNotifier(EventBus eventBus, ClusterRevisionService clusterRevisionService) {
+        this.eventBus = eventBus;
+        this.clusterRevisionService = clusterRevisionService;
+    }
+
+    public void streamChanged(String streamId) {
+        clusterRevisionService.increment(REVISION_NAME);
+        eventBus.post(StreamsChangedEvent.create(streamId));
+    }
+
+    public void allStreamsChanged() {
+        clusterRevisionService.increment(REVISION_NAME);
+        eventBus.post(StreamsChangedEvent.allStreams());
+    }
+
+    /**
+     * Returns the cluster wide stream revision.
+     *
+     * @return the revision, {@code 0} if no change has been recorded yet
+     */
+    public long getRevision() {
+        return clusterRevisionService.get(REVISION_NAME);
+    }
+}
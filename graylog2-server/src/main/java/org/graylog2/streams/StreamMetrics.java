@@ -14,27 +14,35 @@
  * You should have received a copy of the GNU General Public License
  * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
  */
-
 package org.graylog2.streams;
 
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 import com.google.common.collect.Maps;
 import javax.inject.Inject;
+import javax.inject.Singleton;
 import org.graylog2.plugin.streams.Stream;
 import org.graylog2.plugin.streams.StreamRule;
 
-import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * Per-stream and per-stream-rule metrics. The metric handles are shared by all processor threads, so they are kept in
+ * concurrent maps and only looked up in the {@link MetricRegistry} the first time a stream or rule is seen.
+ */
+@Singleton
 public class StreamMetrics {
     private final MetricRegistry metricRegistry;
 
-    private final Map<String, Meter> streamIncomingMeters = Maps.newHashMap();
-    private final Map<String, Timer> streamExecutionTimers = Maps.newHashMap();
-    private final Map<String, Meter> streamExceptionMeters = Maps.newHashMap();
-    private final Map<String, Meter> streamRuleTimeoutMeters = Maps.newHashMap();
-    private final Map<String, Meter> streamFaultsExceededMeters = Maps.newHashMap();
+    private final ConcurrentMap<String, Meter> streamIncomingMeters = Maps.newConcurrentMap();
+    private final ConcurrentMap<String, Timer> streamExecutionTimers = Maps.newConcurrentMap();
+    private final ConcurrentMap<String, Meter> streamExceptionMeters = Maps.newConcurrentMap();
+    private final ConcurrentMap<String, Meter> streamRuleTimeoutMeters = Maps.newConcurrentMap();
+    private final ConcurrentMap<String, Meter> streamFaultsExceededMeters = Maps.newConcurrentMap();
+    private final ConcurrentMap<String, Meter> ruleTimeoutMeters = Maps.newConcurrentMap();
+    private final ConcurrentMap<String, Histogram> ruleCpuTimeHistograms = Maps.newConcurrentMap();
 
 
     @Inject
@@ -47,13 +55,13 @@ public class StreamMetrics {
     }
 
     public Timer getExecutionTimer(String streamRuleId) {
-        Timer timer = this.streamExecutionTimers.get(streamRuleId);
-        if (timer == null) {
-            timer = metricRegistry.timer(MetricRegistry.name(StreamRule.class, streamRuleId, "executionTime"));
-            this.streamExecutionTimers.put(streamRuleId, timer);
+        final Timer timer = this.streamExecutionTimers.get(streamRuleId);
+        if (timer != null) {
+            return timer;
         }
 
-        return timer;
+        return putIfAbsent(streamExecutionTimers, streamRuleId,
+                metricRegistry.timer(MetricRegistry.name(StreamRule.class, streamRuleId, "executionTime")));
     }
 
 
@@ -69,43 +77,73 @@ public class StreamMetrics {
         getStreamFaultsExceededMeter(streamId).mark();
     }
 
+    public void markRuleTimeout(String streamRuleId) {
+        getRuleTimeoutMeter(streamRuleId).mark();
+    }
+
+    public Histogram getCpuTimeHistogram(String streamRuleId) {
+        final Histogram histogram = this.ruleCpuTimeHistograms.get(streamRuleId);
+        if (histogram != null) {
+            return histogram;
+        }
+
+        return putIfAbsent(ruleCpuTimeHistograms, streamRuleId,
+                metricRegistry.histogram(MetricRegistry.name(StreamRule.class, streamRuleId, "cpuTime")));
+    }
+
     private Meter getIncomingMeter(String streamId) {
-        Meter meter = this.streamIncomingMeters.get(streamId);
-        if (meter == null) {
-            meter = metricRegistry.meter(MetricRegistry.name(Stream.class, streamId, "incomingMessages"));
-            this.streamIncomingMeters.put(streamId, meter);
+        final Meter meter = this.streamIncomingMeters.get(streamId);
+        if (meter != null) {
+            return meter;
         }
 
-        return meter;
+        return putIfAbsent(streamIncomingMeters, streamId,
+                metricRegistry.meter(MetricRegistry.name(Stream.class, streamId, "incomingMessages")));
     }
 
     private Meter getExceptionMeter(String streamId) {
-        Meter meter = this.streamExceptionMeters.get(streamId);
-        if (meter == null) {
-            meter = metricRegistry.meter(MetricRegistry.name(Stream.class, streamId, "matchingExceptions"));
-            this.streamExceptionMeters.put(streamId, meter);
+        final Meter meter = this.streamExceptionMeters.get(streamId);
+        if (meter != null) {
+            return meter;
         }
 
-        return meter;
+        return putIfAbsent(streamExceptionMeters, streamId,
+                metricRegistry.meter(MetricRegistry.name(Stream.class, streamId, "matchingExceptions")));
     }
 
     private Meter getStreamRuleTimeoutMeter(final String streamId) {
-        Meter meter = this.streamRuleTimeoutMeters.get(streamId);
-        if (meter == null) {
-            meter = metricRegistry.meter(MetricRegistry.name(Stream.class, streamId, "ruleTimeouts"));
-            this.streamRuleTimeoutMeters.put(streamId, meter);
+        final Meter meter = this.streamRuleTimeoutMeters.get(streamId);
+        if (meter != null) {
+            return meter;
         }
 
-        return meter;
+        return putIfAbsent(streamRuleTimeoutMeters, streamId,
+                metricRegistry.meter(MetricRegistry.name(Stream.class, streamId, "ruleTimeouts")));
     }
 
     private Meter getStreamFaultsExceededMeter(final String streamId) {
-        Meter meter = this.streamFaultsExceededMeters.get(streamId);
-        if (meter == null) {
-            meter = metricRegistry.meter(MetricRegistry.name(Stream.class, streamId, "faultsExceeded"));
-            this.streamFaultsExceededMeters.put(streamId, meter);
+        final Meter meter = this.streamFaultsExceededMeters.get(streamId);
+        if (meter != null) {
+            return meter;
         }
 
-        return meter;
+        return putIfAbsent(streamFaultsExceededMeters, streamId,
+                metricRegistry.meter(MetricRegistry.name(Stream.class, streamId, "faultsExceeded")));
+    }
+
+    private Meter getRuleTimeoutMeter(final String streamRuleId) {
+        final Meter meter = this.ruleTimeoutMeters.get(streamRuleId);
+        if (meter != null) {
+            return meter;
+        }
+
+        return putIfAbsent(ruleTimeoutMeters, streamRuleId,
+                metricRegistry.meter(MetricRegistry.name(StreamRule.class, streamRuleId, "timeouts")));
+    }
+
+    private static <T> T putIfAbsent(ConcurrentMap<String, T> map, String key, T value) {
+        // The MetricRegistry returns the same metric for the same name, so racing threads end up with the same instance.
+        final T existing = map.putIfAbsent(key, value);
+        return existing == null ? value : existing;
     }
 }
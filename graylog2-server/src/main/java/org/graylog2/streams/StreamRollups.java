@@ -0,0 +1,536 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.streams;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import org.graylog2.Configuration;
+import org.graylog2.cluster.Node;
+import org.graylog2.cluster.NodeService;
+import org.graylog2.database.MongoConnection;
+import org.graylog2.indexer.results.FieldStatistics;
+import org.graylog2.indexer.results.FieldStatsResult;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.ServerStatus;
+import org.graylog2.plugin.Tools;
+import org.graylog2.plugin.streams.Stream;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts the messages of every stream per minute while they are routed, together with the statistics of the numeric
+ * fields used by field value alert conditions. Every node writes its rollups to MongoDB, where they are merged, so that
+ * alert conditions can be checked without searching Elasticsearch.
+ * <p/>
+ * Rollups can only answer for time ranges which all nodes have been counting for. Callers have to fall back to
+ * searching Elasticsearch if they return {@code null}. They only know full minutes, the beginning of a time range up to
+ * {@link #firstFullMinute(DateTime)} has to be searched in Elasticsearch as well.
+ */
+@Singleton
+public class StreamRollups {
+    private static final Logger LOG = LoggerFactory.getLogger(StreamRollups.class);
+
+    private static final String COLLECTION = "stream_rollups";
+    private static final String COVERAGE_COLLECTION = "stream_rollup_coverage";
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    // nodes which didn't write their rollups for this long might have lost counts
+    private static final long STALE_COVERAGE = TimeUnit.SECONDS.toMillis(30);
+
+    private final boolean enabled;
+    private final long retentionMillis;
+    private final String nodeId;
+    private final MongoConnection mongoConnection;
+    private final NodeService nodeService;
+    private final DateTime since;
+    private final ConcurrentMap<String, ConcurrentMap<Long, Bucket>> buckets = new ConcurrentHashMap<>();
+    // stream id -> field -> time since which the field is rolled up
+    private volatile Map<String, Map<String, DateTime>> trackedFields = Collections.emptyMap();
+    private volatile boolean indicesCreated = false;
+
+    @Inject
+    public StreamRollups(Configuration configuration,
+                         MongoConnection mongoConnection,
+                         NodeService nodeService,
+                         ServerStatus serverStatus) {
+        this.enabled = configuration.isStreamRollupsEnabled();
+        this.retentionMillis = configuration.getStreamRollupsRetention().toMilliseconds();
+        this.nodeId = serverStatus.getNodeId().toString();
+        this.mongoConnection = mongoConnection;
+        this.nodeService = nodeService;
+        this.since = Tools.iso8601();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Adds a message to the rollups of the streams it was routed into.
+     */
+    public void record(Message message, List<Stream> streams) {
+        if (!enabled || streams.isEmpty()) {
+            return;
+        }
+
+        final long minute = alignDown(message.getTimestamp().getMillis());
+        final long now = Tools.iso8601().getMillis();
+        if (minute < now - retentionMillis || minute > now + retentionMillis) {
+            // keeps the number of buckets bounded, alert conditions never look that far
+            return;
+        }
+
+        final Map<String, Map<String, DateTime>> fields = trackedFields;
+        for (Stream stream : streams) {
+            final Map<String, DateTime> streamFields = fields.get(stream.getId());
+            bucket(stream.getId(), minute).add(message, streamFields == null ? Collections.<String>emptySet() : streamFields.keySet());
+        }
+    }
+
+    /**
+     * Sets the numeric fields to roll up per stream. Fields which are new only count from now on.
+     */
+    public void trackFields(Map<String, Set<String>> fieldsByStream) {
+        final Map<String, Map<String, DateTime>> current = trackedFields;
+        final DateTime now = Tools.iso8601();
+        final ImmutableMap.Builder<String, Map<String, DateTime>> tracked = ImmutableMap.builder();
+
+        for (Map.Entry<String, Set<String>> entry : fieldsByStream.entrySet()) {
+            final Map<String, DateTime> currentFields = current.get(entry.getKey());
+            final ImmutableMap.Builder<String, DateTime> fields = ImmutableMap.builder();
+            for (String field : entry.getValue()) {
+                final DateTime fieldSince = currentFields == null ? null : currentFields.get(field);
+                fields.put(field, fieldSince == null ? now : fieldSince);
+            }
+            tracked.put(entry.getKey(), fields.build());
+        }
+
+        trackedFields = tracked.build();
+    }
+
+    /**
+     * Writes the changed rollups of this node to MongoDB and forgets rollups older than the retention time.
+     */
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+
+        final DBCollection collection = collection();
+        final long oldestMinute = alignDown(Tools.iso8601().getMillis() - retentionMillis);
+        for (Map.Entry<String, ConcurrentMap<Long, Bucket>> stream : buckets.entrySet()) {
+            final Iterator<Bucket> it = stream.getValue().values().iterator();
+            while (it.hasNext()) {
+                final Bucket bucket = it.next();
+                final BasicDBObject fields = bucket.changes();
+                if (fields != null) {
+                    // rollups of nodes which are gone are not deleted here, they expire through the TTL index
+                    fields.append("expire_at", new Date(bucket.minute + 2 * retentionMillis));
+                    final BasicDBObject query = new BasicDBObject("node_id", nodeId)
+                            .append("stream_id", bucket.streamId)
+                            .append("minute", new Date(bucket.minute));
+                    try {
+                        collection.update(query, new BasicDBObject("$set", fields), true, false);
+                    } catch (RuntimeException e) {
+                        // write it again with the next flush
+                        bucket.markChanged();
+                        throw e;
+                    }
+                }
+                if (bucket.minute < oldestMinute) {
+                    it.remove();
+                }
+            }
+        }
+
+        writeCoverage();
+    }
+
+    /**
+     * Rollups only know full minutes, so a time range which doesn't start at a full minute is counted from the
+     * beginning of the next one. Messages before that, see {@link #firstFullMinute(DateTime)}, have to be counted
+     * separately.
+     *
+     * @return the number of messages routed into the stream from the first full minute after {@code from} until now,
+     * {@code null} if the rollups don't cover that time range
+     */
+    @Nullable
+    public Long count(String streamId, DateTime from) {
+        final long start = alignUp(from.getMillis());
+        if (!isCovered(streamId, null, start)) {
+            return null;
+        }
+
+        long count = 0;
+        final DBCursor cursor = collection().find(query(streamId, start), new BasicDBObject("count", 1));
+        try {
+            for (DBObject rollup : cursor) {
+                count += ((Number) rollup.get("count")).longValue();
+            }
+        } finally {
+            cursor.close();
+        }
+        return count;
+    }
+
+    /**
+     * @return the statistics of a numeric field of the stream from the first full minute after {@code from} until now, see
+     * {@link #count(String, DateTime)}, {@code null} if the rollups don't cover the field or that time range
+     */
+    @Nullable
+    public FieldStats fieldStats(String streamId, String field, DateTime from) {
+        final long start = alignUp(from.getMillis());
+        if (!isCovered(streamId, field, start)) {
+            return null;
+        }
+
+        final FieldStats stats = new FieldStats();
+        final DBCursor cursor = collection().find(query(streamId, start), new BasicDBObject("fields", 1));
+        try {
+            for (DBObject rollup : cursor) {
+                final List<?> fields = (List<?>) rollup.get("fields");
+                if (fields == null) {
+                    continue;
+                }
+                for (Object fieldStats : fields) {
+                    final DBObject dbObject = (DBObject) fieldStats;
+                    if (field.equals(dbObject.get("field"))) {
+                        stats.merge(FieldStats.fromDBObject(dbObject));
+                    }
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return stats;
+    }
+
+    /**
+     * @return the beginning of the time range which {@link #count(String, DateTime)} and
+     * {@link #fieldStats(String, String, DateTime)} answer for a time range beginning at {@code from}
+     */
+    public static DateTime firstFullMinute(DateTime from) {
+        return new DateTime(alignUp(from.getMillis()), from.getZone());
+    }
+
+    private DBObject query(String streamId, long start) {
+        // messages with timestamps in the future are rolled up as well, they must not be counted before their time
+        final long end = alignUp(Tools.iso8601().getMillis());
+        return new BasicDBObject("stream_id", streamId)
+                .append("minute", new BasicDBObject("$gte", new Date(start)).append("$lt", new Date(end)));
+    }
+
+    /**
+     * Rollups cover a time range if every active node has been rolling up since its beginning and no node stopped
+     * writing rollups during it.
+     */
+    private boolean isCovered(String streamId, @Nullable String field, long start) {
+        if (!enabled || start < Tools.iso8601().getMillis() - retentionMillis) {
+            return false;
+        }
+
+        final Map<String, DBObject> coverage = Maps.newHashMap();
+        final DBCursor cursor = mongoConnection.getDatabase().getCollection(COVERAGE_COLLECTION).find();
+        try {
+            for (DBObject nodeCoverage : cursor) {
+                coverage.put((String) nodeCoverage.get("node_id"), nodeCoverage);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        final long staleBefore = Tools.iso8601().getMillis() - STALE_COVERAGE;
+        final Set<String> activeNodes = nodeService.allActive(Node.Type.SERVER).keySet();
+        for (String activeNode : activeNodes) {
+            final DBObject nodeCoverage = coverage.get(activeNode);
+            if (nodeCoverage == null
+                    || ((Date) nodeCoverage.get("since")).getTime() > start
+                    || ((Date) nodeCoverage.get("updated_at")).getTime() < staleBefore) {
+                LOG.debug("Rollups of node {} don't cover the time range.", activeNode);
+                return false;
+            }
+            if (field != null && !isFieldCovered(nodeCoverage, streamId, field, start)) {
+                LOG.debug("Rollups of node {} don't cover field {} of stream {}.", activeNode, field, streamId);
+                return false;
+            }
+        }
+
+        for (Map.Entry<String, DBObject> nodeCoverage : coverage.entrySet()) {
+            if (!activeNodes.contains(nodeCoverage.getKey())
+                    && ((Date) nodeCoverage.getValue().get("updated_at")).getTime() >= start) {
+                // the node went away during the time range and its last rollups might not have been written
+                LOG.debug("Node {} stopped writing rollups during the time range.", nodeCoverage.getKey());
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean isFieldCovered(DBObject nodeCoverage, String streamId, String field, long start) {
+        final List<?> fields = (List<?>) nodeCoverage.get("fields");
+        if (fields == null) {
+            return false;
+        }
+        for (Object fieldCoverage : fields) {
+            final DBObject dbObject = (DBObject) fieldCoverage;
+            if (streamId.equals(dbObject.get("stream_id")) && field.equals(dbObject.get("field"))) {
+                return ((Date) dbObject.get("since")).getTime() <= start;
+            }
+        }
+        return false;
+    }
+
+    private void writeCoverage() {
+        final List<DBObject> fields = Lists.newArrayList();
+        for (Map.Entry<String, Map<String, DateTime>> stream : trackedFields.entrySet()) {
+            for (Map.Entry<String, DateTime> field : stream.getValue().entrySet()) {
+                fields.add(new BasicDBObject("stream_id", stream.getKey())
+                        .append("field", field.getKey())
+                        .append("since", field.getValue().toDate()));
+            }
+        }
+
+        final BasicDBObject coverage = new BasicDBObject("node_id", nodeId)
+                .append("since", since.toDate())
+                .append("updated_at", Tools.iso8601().toDate())
+                .append("fields", fields);
+        mongoConnection.getDatabase().getCollection(COVERAGE_COLLECTION)
+                .update(new BasicDBObject("node_id", nodeId), coverage, true, false);
+    }
+
+    private DBCollection collection() {
+        final DBCollection collection = mongoConnection.getDatabase().getCollection(COLLECTION);
+        if (!indicesCreated) {
+            collection.createIndex(new BasicDBObject("stream_id", 1).append("minute", 1));
+            // every rollup carries its own expiry, so the index options don't change with the retention time
+            collection.createIndex(new BasicDBObject("expire_at", 1), new BasicDBObject("expireAfterSeconds", 0));
+            indicesCreated = true;
+        }
+        return collection;
+    }
+
+    @VisibleForTesting
+    Bucket bucket(String streamId, long minute) {
+        ConcurrentMap<Long, Bucket> streamBuckets = buckets.get(streamId);
+        if (streamBuckets == null) {
+            final ConcurrentMap<Long, Bucket> newBuckets = new ConcurrentHashMap<>();
+            streamBuckets = buckets.putIfAbsent(streamId, newBuckets);
+            if (streamBuckets == null) {
+                streamBuckets = newBuckets;
+            }
+        }
+
+        Bucket bucket = streamBuckets.get(minute);
+        if (bucket == null) {
+            final Bucket newBucket = new Bucket(streamId, minute);
+            bucket = streamBuckets.putIfAbsent(minute, newBucket);
+            if (bucket == null) {
+                bucket = newBucket;
+            }
+        }
+        return bucket;
+    }
+
+    private static long alignDown(long millis) {
+        return millis - (((millis % MINUTE) + MINUTE) % MINUTE);
+    }
+
+    private static long alignUp(long millis) {
+        final long aligned = alignDown(millis);
+        return aligned == millis ? aligned : aligned + MINUTE;
+    }
+
+    /**
+     * The rollup of one stream in one minute.
+     */
+    @VisibleForTesting
+    static class Bucket {
+        private final String streamId;
+        private final long minute;
+        private final Map<String, FieldStats> fields = Maps.newHashMap();
+        private long count = 0;
+        private boolean changed = false;
+
+        private Bucket(String streamId, long minute) {
+            this.streamId = streamId;
+            this.minute = minute;
+        }
+
+        synchronized void add(Message message, Set<String> trackedFields) {
+            count++;
+            for (String field : trackedFields) {
+                final Object value = message.getField(field);
+                if (value instanceof Number) {
+                    FieldStats stats = fields.get(field);
+                    if (stats == null) {
+                        stats = new FieldStats();
+                        fields.put(field, stats);
+                    }
+                    stats.add(((Number) value).doubleValue());
+                }
+            }
+            changed = true;
+        }
+
+        synchronized void markChanged() {
+            changed = true;
+        }
+
+        synchronized long getCount() {
+            return count;
+        }
+
+        @Nullable
+        synchronized FieldStats getFieldStats(String field) {
+            return fields.get(field);
+        }
+
+        /**
+         * @return the fields to write if the bucket changed since the last call, {@code null} otherwise
+         */
+        @Nullable
+        synchronized BasicDBObject changes() {
+            if (!changed) {
+                return null;
+            }
+            changed = false;
+
+            final List<DBObject> fieldStats = Lists.newArrayList();
+            for (Map.Entry<String, FieldStats> entry : fields.entrySet()) {
+                fieldStats.add(entry.getValue().toDBObject().append("field", entry.getKey()));
+            }
+            return new BasicDBObject("count", count).append("fields", fieldStats);
+        }
+    }
+
+    /**
+     * Count, sum, minimum and maximum of the values of a numeric field.
+     */
+    public static class FieldStats implements FieldStatistics {
+        private long count = 0;
+        private double sum = 0;
+        private double sumOfSquares = 0;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+
+        void add(double value) {
+            count++;
+            sum += value;
+            sumOfSquares += value * value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        public void merge(FieldStats other) {
+            count += other.count;
+            sum += other.sum;
+            sumOfSquares += other.sumOfSquares;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+
+        @Override
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public double getSum() {
+            return sum;
+        }
+
+        @Override
+        public double getMin() {
+            return min;
+        }
+
+        @Override
+        public double getMax() {
+            return max;
+        }
+
+        @Override
+        public double getMean() {
+            return count == 0 ? Double.NaN : sum / count;
+        }
+
+        /**
+         * @return the population standard deviation, like the extended statistics of Elasticsearch
+         */
+        @Override
+        public double getStdDeviation() {
+            if (count == 0) {
+                return Double.NaN;
+            }
+            final double mean = getMean();
+            return Math.sqrt(Math.max(0, sumOfSquares / count - mean * mean));
+        }
+
+        BasicDBObject toDBObject() {
+            return new BasicDBObject("count", count)
+                    .append("sum", sum)
+                    .append("sum_of_squares", sumOfSquares)
+                    .append("min", min)
+                    .append("max", max);
+        }
+
+        static FieldStats fromDBObject(DBObject dbObject) {
+            final FieldStats stats = new FieldStats();
+            stats.count = ((Number) dbObject.get("count")).longValue();
+            stats.sum = ((Number) dbObject.get("sum")).doubleValue();
+            stats.sumOfSquares = ((Number) dbObject.get("sum_of_squares")).doubleValue();
+            stats.min = ((Number) dbObject.get("min")).doubleValue();
+            stats.max = ((Number) dbObject.get("max")).doubleValue();
+            return stats;
+        }
+
+        /**
+         * @return the statistics of a field searched in Elasticsearch
+         */
+        public static FieldStats of(FieldStatsResult result) {
+            final FieldStats stats = new FieldStats();
+            stats.count = result.getCount();
+            if (stats.count > 0) {
+                stats.sum = result.getSum();
+                stats.sumOfSquares = result.getSumOfSquares();
+                stats.min = result.getMin();
+                stats.max = result.getMax();
+            }
+            return stats;
+        }
+    }
+}
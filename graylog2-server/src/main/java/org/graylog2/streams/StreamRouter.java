@@ -16,33 +16,42 @@
  */
 package org.graylog2.streams;
 
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
-import javax.inject.Named;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import org.graylog2.database.NotFoundException;
 import org.graylog2.plugin.Message;
 import org.graylog2.plugin.ServerStatus;
 import org.graylog2.plugin.streams.Stream;
+import org.graylog2.streams.events.StreamsChangedEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Map;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Routes a {@link org.graylog2.plugin.Message} to its streams.
+ *
+ * The router engine is updated incrementally when a {@link StreamsChangedEvent} is posted for local changes.
+ * Changes on other nodes are detected by polling the stream revision of the {@link StreamChangeNotifier}.
+ * All enabled streams are reloaded periodically as a safety net.
  */
 public class StreamRouter {
     private static final Logger LOG = LoggerFactory.getLogger(StreamRouter.class);
 
-    private static final long ENGINE_UPDATE_INTERVAL = 1L;
+    private static final long REVISION_CHECK_INTERVAL = 1L;
+    private static final long FULL_RECONCILE_INTERVAL = TimeUnit.MINUTES.toMillis(5);
 
     protected final StreamService streamService;
     private final ServerStatus serverStatus;
+    private final StreamRouterEngineUpdater streamRouterEngineUpdater;
 
     private final AtomicReference<StreamRouterEngine> routerEngine = new AtomicReference<>(null);
 
@@ -50,21 +59,16 @@ public class StreamRouter {
     public StreamRouter(StreamService streamService,
                         ServerStatus serverStatus,
                         StreamRouterEngine.Factory routerEngineFactory,
+                        StreamChangeNotifier streamChangeNotifier,
+                        EventBus eventBus,
                         @Named("daemonScheduler") ScheduledExecutorService scheduler) {
         this.streamService = streamService;
         this.serverStatus = serverStatus;
 
-        final StreamRouterEngineUpdater streamRouterEngineUpdater = new StreamRouterEngineUpdater(routerEngine, routerEngineFactory, streamService, executorService());
-        this.routerEngine.set(streamRouterEngineUpdater.getNewEngine());
-        scheduler.scheduleAtFixedRate(streamRouterEngineUpdater, 0, ENGINE_UPDATE_INTERVAL, TimeUnit.SECONDS);
-    }
-
-    private ExecutorService executorService() {
-        final ThreadFactory threadFactory = new ThreadFactoryBuilder()
-                .setNameFormat("stream-router-%d")
-                .setDaemon(true)
-                .build();
-        return Executors.newCachedThreadPool(threadFactory);
+        this.streamRouterEngineUpdater = new StreamRouterEngineUpdater(routerEngine, routerEngineFactory, streamService, streamChangeNotifier);
+        this.streamRouterEngineUpdater.reconcile();
+        eventBus.register(this);
+        scheduler.scheduleAtFixedRate(streamRouterEngineUpdater, REVISION_CHECK_INTERVAL, REVISION_CHECK_INTERVAL, TimeUnit.SECONDS);
     }
 
     public List<Stream> route(final Message msg) {
@@ -75,41 +79,99 @@ public class StreamRouter {
         return engine.match(msg);
     }
 
+    @Subscribe
+    public void handleStreamsChanged(StreamsChangedEvent event) {
+        try {
+            streamRouterEngineUpdater.update(event);
+        } catch (Exception e) {
+            LOG.error("Stream router engine update failed!", e);
+        }
+    }
+
     private class StreamRouterEngineUpdater implements Runnable {
         private final AtomicReference<StreamRouterEngine> routerEngine;
         private final StreamRouterEngine.Factory engineFactory;
         private final StreamService streamService;
-        private final ExecutorService executorService;
+        private final StreamChangeNotifier streamChangeNotifier;
+
+        private long revision = -1L;
+        private long lastReconcile = 0L;
 
         public StreamRouterEngineUpdater(AtomicReference<StreamRouterEngine> routerEngine,
                                          StreamRouterEngine.Factory engineFactory,
                                          StreamService streamService,
-                                         ExecutorService executorService) {
+                                         StreamChangeNotifier streamChangeNotifier) {
             this.routerEngine = routerEngine;
             this.engineFactory = engineFactory;
             this.streamService = streamService;
-            this.executorService = executorService;
+            this.streamChangeNotifier = streamChangeNotifier;
         }
 
         @Override
-        public void run() {
+        public synchronized void run() {
             try {
-                final StreamRouterEngine engine = getNewEngine();
-
-                if (engine.getFingerprint().equals(routerEngine.get().getFingerprint())) {
-                    LOG.debug("Not updating router engine, streams did not change (fingerprint={})", engine.getFingerprint());
-                } else {
-                    LOG.debug("Updating to new stream router engine. (old-fingerprint={} new-fingerprint={}",
-                            routerEngine.get().getFingerprint(), engine.getFingerprint());
-                    routerEngine.set(engine);
+                final boolean reconcileDue = System.currentTimeMillis() - lastReconcile >= FULL_RECONCILE_INTERVAL;
+
+                if (reconcileDue || streamChangeNotifier.getRevision() != revision) {
+                    reconcile();
                 }
             } catch (Exception e) {
                 LOG.error("Stream router engine update failed!", e);
             }
         }
 
-        private StreamRouterEngine getNewEngine() {
-            return engineFactory.create(streamService.loadAllEnabled(), executorService);
+        /**
+         * Loads all enabled streams and replaces the engine if the streams changed.
+         */
+        public synchronized void reconcile() {
+            // Read the revision first to not miss changes which happen while loading the streams. The shared snapshot
+            // of the stream service might have been taken before the revision changed, so it can't be used here.
+            final long currentRevision = streamChangeNotifier.getRevision();
+            final List<Stream> streams = streamService.loadAllEnabledUncached();
+            final String fingerprint = new StreamListFingerprint(streams).getFingerprint();
+            final StreamRouterEngine engine = routerEngine.get();
+
+            if (engine != null && fingerprint.equals(engine.getFingerprint())) {
+                LOG.debug("Not updating router engine, streams did not change (fingerprint={})", fingerprint);
+            } else {
+                LOG.debug("Updating to new stream router engine. (old-fingerprint={} new-fingerprint={}",
+                        engine == null ? null : engine.getFingerprint(), fingerprint);
+                routerEngine.set(engineFactory.create(streams));
+            }
+
+            revision = currentRevision;
+            lastReconcile = System.currentTimeMillis();
+        }
+
+        /**
+         * Reloads only the changed streams and replaces them in a copy of the current engine.
+         */
+        public synchronized void update(StreamsChangedEvent event) {
+            if (event.isAllStreams()) {
+                reconcile();
+                return;
+            }
+
+            final Map<String, Stream> streams = Maps.newLinkedHashMap();
+            for (Stream stream : routerEngine.get().getStreams()) {
+                streams.put(stream.getId(), stream);
+            }
+
+            for (String streamId : event.getStreamIds()) {
+                streams.remove(streamId);
+
+                try {
+                    final Stream stream = streamService.load(streamId);
+                    if (!Boolean.TRUE.equals(stream.getDisabled())) {
+                        streams.put(streamId, stream);
+                    }
+                } catch (NotFoundException e) {
+                    LOG.debug("Stream <{}> has been deleted, removing it from the router engine.", streamId);
+                }
+            }
+
+            LOG.debug("Updating stream router engine for changed streams {}", event.getStreamIds());
+            routerEngine.set(engineFactory.create(Lists.newArrayList(streams.values())));
         }
     }
 }
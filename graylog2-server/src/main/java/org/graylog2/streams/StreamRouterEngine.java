@@ -21,24 +21,26 @@ import com.codahale.metrics.Timer;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
-import com.google.common.util.concurrent.SimpleTimeLimiter;
-import com.google.common.util.concurrent.TimeLimiter;
-import com.google.common.util.concurrent.UncheckedTimeoutException;
 import javax.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import org.graylog2.plugin.Message;
 import org.graylog2.plugin.streams.Stream;
 import org.graylog2.plugin.streams.StreamRule;
+import org.graylog2.streams.matchers.AhoCorasickAutomaton;
+import org.graylog2.streams.matchers.LiteralPattern;
+import org.graylog2.streams.matchers.RegexMatcher;
 import org.graylog2.streams.matchers.StreamRuleMatcher;
+import org.graylog2.utilities.TimeLimitedCharSequence;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Stream routing engine to select matching streams for a message.
@@ -47,12 +49,15 @@ import java.util.concurrent.TimeUnit;
  */
 public class StreamRouterEngine {
     private static final Logger LOG = LoggerFactory.getLogger(StreamRouterEngine.class);
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+    // Reading the thread CPU time is a system call, so only every n-th regex rule evaluation is measured.
+    private static final int CPU_TIME_SAMPLE_INTERVAL = 64;
 
     private final List<Stream> streams;
     private final StreamFaultManager streamFaultManager;
     private final StreamMetrics streamMetrics;
-    private final TimeLimiter timeLimiter;
-    private final long streamProcessingTimeout;
+    private final long streamProcessingTimeoutNanos;
+    private final boolean cpuTimeSupported;
     private final String fingerprint;
 
     private final Map<String, List<Rule>> presenceRules = Maps.newHashMap();
@@ -67,20 +72,28 @@ public class StreamRouterEngine {
     private final Set<String> smallerFields = Sets.newHashSet();
     private final Set<String> regexFields = Sets.newHashSet();
 
+    // Non-inverted EXACT rules, indexed by field and value.
+    private final Map<String, Map<String, List<Rule>>> exactValueRules = Maps.newHashMap();
+    // Non-inverted REGEX rules which are literals, compiled into one automaton per field.
+    private final Map<String, AhoCorasickAutomaton<Rule>> substringAutomata = Maps.newHashMap();
+    private final Map<String, AhoCorasickAutomaton<Rule>> prefixAutomata = Maps.newHashMap();
+    private final Set<String> literalFields = Sets.newHashSet();
+
+    private final AtomicInteger regexEvaluations = new AtomicInteger();
+
     public interface Factory {
-        public StreamRouterEngine create(List<Stream> streams, ExecutorService executorService);
+        public StreamRouterEngine create(List<Stream> streams);
     }
 
     @Inject
     public StreamRouterEngine(@Assisted List<Stream> streams,
-                              @Assisted ExecutorService executorService,
                               StreamFaultManager streamFaultManager,
                               StreamMetrics streamMetrics) {
         this.streams = streams;
         this.streamFaultManager = streamFaultManager;
         this.streamMetrics = streamMetrics;
-        this.timeLimiter = new SimpleTimeLimiter(executorService);
-        this.streamProcessingTimeout = streamFaultManager.getStreamProcessingTimeout();
+        this.streamProcessingTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(streamFaultManager.getStreamProcessingTimeout());
+        this.cpuTimeSupported = THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported() && THREAD_MX_BEAN.isThreadCpuTimeEnabled();
         this.fingerprint = new StreamListFingerprint(streams).getFingerprint();
 
         for (final Stream stream : streams) {
@@ -90,7 +103,11 @@ public class StreamRouterEngine {
 
                     switch (streamRule.getType()) {
                         case EXACT:
-                            addRule(exactRules, exactFields, streamRule.getField(), rule);
+                            if (Boolean.FALSE.equals(streamRule.getInverted())) {
+                                addExactValueRule(streamRule.getField(), streamRule.getValue(), rule);
+                            } else {
+                                addRule(exactRules, exactFields, streamRule.getField(), rule);
+                            }
                             break;
                         case GREATER:
                             addRule(greaterRules, greaterFields, streamRule.getField(), rule);
@@ -99,7 +116,12 @@ public class StreamRouterEngine {
                             addRule(smallerRules, smallerFields, streamRule.getField(), rule);
                             break;
                         case REGEX:
-                            addRule(regexRules, regexFields, streamRule.getField(), rule);
+                            final LiteralPattern literalPattern = LiteralPattern.parse(streamRule.getValue());
+                            if (literalPattern != null && Boolean.FALSE.equals(streamRule.getInverted())) {
+                                addLiteralRule(streamRule.getField(), literalPattern, rule);
+                            } else {
+                                addRule(regexRules, regexFields, streamRule.getField(), rule);
+                            }
                             break;
                         case PRESENCE:
                             addRule(presenceRules, presenceFields, streamRule.getField(), rule);
@@ -110,6 +132,13 @@ public class StreamRouterEngine {
                 }
             }
         }
+
+        for (AhoCorasickAutomaton<Rule> automaton : substringAutomata.values()) {
+            automaton.build();
+        }
+        for (AhoCorasickAutomaton<Rule> automaton : prefixAutomata.values()) {
+            automaton.build();
+        }
     }
 
     /**
@@ -145,10 +174,13 @@ public class StreamRouterEngine {
         // Execute the rules ordered by complexity. (fast rules first)
         matchRules(message, presenceFields, presenceRules, matches);
         // Only pass an intersection of the rules fields to avoid checking every field! (does not work for presence matching)
+        matchExactValueRules(message, Sets.intersection(fieldNames, exactValueRules.keySet()), matches);
         matchRules(message, Sets.intersection(fieldNames, exactFields), exactRules, matches);
         matchRules(message, Sets.intersection(fieldNames, greaterFields), greaterRules, matches);
         matchRules(message, Sets.intersection(fieldNames, smallerFields), smallerRules, matches);
-        // Execute regex rules with a timeout to prevent bad regexes to hang the processing.
+        // Literal regex rules only need a single pass over the field value.
+        matchLiteralRules(message, Sets.intersection(fieldNames, literalFields), matches);
+        // Execute regex rules with a time budget per stream to prevent bad regexes to hang the processing.
         matchRulesWithTimeout(message, Sets.intersection(fieldNames, regexFields), regexRules, matches, timeouts);
 
         // Register failure for streams where rules ran into a timeout.
@@ -203,24 +235,86 @@ public class StreamRouterEngine {
         }
     }
 
-    private void matchRulesWithTimeout(final Message message, Set<String> fields, Map<String, List<Rule>> rules, Map<Stream, StreamMatch> matches, Set<Stream> timeouts) {
+    private void matchExactValueRules(Message message, Set<String> fields, Map<Stream, StreamMatch> matches) {
+        for (String field : fields) {
+            final Object value = message.getField(field);
+            if (value == null) {
+                continue;
+            }
+
+            final List<Rule> rules = exactValueRules.get(field).get(value.toString().trim());
+            if (rules != null) {
+                for (Rule rule : rules) {
+                    registerMatch(matches, rule.getStream());
+                }
+            }
+        }
+    }
+
+    private void matchLiteralRules(Message message, Set<String> fields, Map<Stream, StreamMatch> matches) {
+        if (fields.isEmpty()) {
+            return;
+        }
+
+        // A literal can occur multiple times in a value but every rule must only be counted once.
+        final Set<Rule> matchedRules = Sets.newIdentityHashSet();
+
+        for (String field : fields) {
+            final Object value = message.getField(field);
+            if (value == null) {
+                continue;
+            }
+
+            final String text = value.toString();
+            final AhoCorasickAutomaton<Rule> substringAutomaton = substringAutomata.get(field);
+            if (substringAutomaton != null) {
+                substringAutomaton.findSubstrings(text, matchedRules);
+            }
+            final AhoCorasickAutomaton<Rule> prefixAutomaton = prefixAutomata.get(field);
+            if (prefixAutomaton != null) {
+                prefixAutomaton.findPrefixes(text, matchedRules);
+            }
+        }
+
+        for (Rule rule : matchedRules) {
+            registerMatch(matches, rule.getStream());
+        }
+    }
+
+    private void matchRulesWithTimeout(Message message, Set<String> fields, Map<String, List<Rule>> rules, Map<Stream, StreamMatch> matches, Set<Stream> timeouts) {
+        if (fields.isEmpty()) {
+            return;
+        }
+
+        // The regex rules of a stream share a budget of streamProcessingTimeout per message. The rules are evaluated
+        // on the calling thread and abort as soon as the budget of their stream is used up.
+        final Map<Stream, Long> elapsedNanos = Maps.newHashMap();
+
         for (String field : fields) {
             for (final Rule rule : rules.get(field)) {
-                final Callable<Stream> task = new Callable<Stream>() {
-                    @Override
-                    public Stream call() {
-                        return rule.match(message);
-                    }
-                };
+                final Stream stream = rule.getStream();
+                if (timeouts.contains(stream)) {
+                    // The stream cannot match anymore once one of its rules ran into a timeout.
+                    continue;
+                }
 
-                try {
-                    final Stream match = timeLimiter.callWithTimeout(task, streamProcessingTimeout, TimeUnit.MILLISECONDS, true);
+                final Long elapsed = elapsedNanos.get(stream);
+                final long usedBudget = elapsed == null ? 0L : elapsed;
+                final boolean sampleCpuTime = cpuTimeSupported && regexEvaluations.incrementAndGet() % CPU_TIME_SAMPLE_INTERVAL == 0;
+                final long cpuStart = sampleCpuTime ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : 0L;
+                final long start = System.nanoTime();
 
-                    registerMatch(matches, match);
-                } catch (UncheckedTimeoutException e) {
-                    timeouts.add(rule.getStream());
-                } catch (Exception e) {
-                    LOG.error("Unexpected stream rule exception.", e);
+                try {
+                    registerMatch(matches, rule.match(message, start + streamProcessingTimeoutNanos - usedBudget));
+                } catch (TimeLimitedCharSequence.TimeLimitExceededException e) {
+                    streamMetrics.markRuleTimeout(rule.getStreamRule().getId());
+                    timeouts.add(stream);
+                } finally {
+                    elapsedNanos.put(stream, usedBudget + System.nanoTime() - start);
+                    if (sampleCpuTime) {
+                        streamMetrics.getCpuTimeHistogram(rule.getStreamRule().getId())
+                                .update(THREAD_MX_BEAN.getCurrentThreadCpuTime() - cpuStart);
+                    }
                 }
             }
         }
@@ -235,6 +329,33 @@ public class StreamRouterEngine {
         }
     }
 
+    private void addExactValueRule(String field, String value, Rule rule) {
+        Map<String, List<Rule>> valueRules = exactValueRules.get(field);
+        if (valueRules == null) {
+            valueRules = Maps.newHashMap();
+            exactValueRules.put(field, valueRules);
+        }
+
+        if (!valueRules.containsKey(value)) {
+            valueRules.put(value, Lists.newArrayList(rule));
+        } else {
+            valueRules.get(value).add(rule);
+        }
+    }
+
+    private void addLiteralRule(String field, LiteralPattern literalPattern, Rule rule) {
+        final Map<String, AhoCorasickAutomaton<Rule>> automata = literalPattern.isPrefix() ? prefixAutomata : substringAutomata;
+
+        AhoCorasickAutomaton<Rule> automaton = automata.get(field);
+        if (automaton == null) {
+            automaton = new AhoCorasickAutomaton<>();
+            automata.put(field, automaton);
+        }
+
+        automaton.add(literalPattern.getLiteral(), rule);
+        literalFields.add(field);
+    }
+
     private void addRule(Map<String, List<Rule>> rules, Set<String> fields, String field, Rule rule) {
         fields.add(field);
 
@@ -267,11 +388,13 @@ public class StreamRouterEngine {
         private final Stream stream;
         private final StreamRule rule;
         private final StreamRuleMatcher matcher;
+        private final RegexMatcher regexMatcher;
 
         public Rule(Stream stream, StreamRule rule) throws InvalidStreamRuleTypeException {
             this.stream = stream;
             this.rule = rule;
             this.matcher = StreamRuleMatcherFactory.build(rule.getType());
+            this.regexMatcher = matcher instanceof RegexMatcher ? (RegexMatcher) matcher : null;
         }
 
         public Stream match(Message message) {
@@ -283,14 +406,42 @@ public class StreamRouterEngine {
                     return null;
                 }
             } catch (Exception e) {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("Error matching stream rule <" + rule.getType() + "/" + rule.getValue() + ">: " + e.getMessage(), e);
+                handleException(e);
+                return null;
+            }
+        }
+
+        /**
+         * Matches the rule and aborts regex evaluation once the deadline (see {@link System#nanoTime()}) has passed.
+         *
+         * @throws TimeLimitedCharSequence.TimeLimitExceededException if the deadline has been exceeded
+         */
+        public Stream match(Message message, long deadlineNanos) {
+            if (regexMatcher == null) {
+                return match(message);
+            }
+
+            try (final Timer.Context timer = streamMetrics.getExecutionTimer(rule.getId()).time()) {
+                if (regexMatcher.match(message, rule, deadlineNanos)) {
+                    return stream;
+                } else {
+                    return null;
                 }
-                streamMetrics.markExceptionMeter(rule.getStreamId());
+            } catch (TimeLimitedCharSequence.TimeLimitExceededException e) {
+                throw e;
+            } catch (Exception e) {
+                handleException(e);
                 return null;
             }
         }
 
+        private void handleException(Exception e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Error matching stream rule <" + rule.getType() + "/" + rule.getValue() + ">: " + e.getMessage(), e);
+            }
+            streamMetrics.markExceptionMeter(rule.getStreamId());
+        }
+
         public StreamRule getStreamRule() {
             return rule;
         }
@@ -24,20 +24,46 @@ import org.bson.types.ObjectId;
 import org.graylog2.database.MongoConnection;
 import org.graylog2.database.NotFoundException;
 import org.graylog2.database.PersistedServiceImpl;
+import org.graylog2.plugin.database.Persisted;
+import org.graylog2.plugin.database.ValidationException;
 import org.graylog2.plugin.streams.Stream;
 import org.graylog2.plugin.streams.StreamRule;
 import org.graylog2.rest.resources.streams.rules.requests.CreateStreamRuleRequest;
 
 import javax.inject.Inject;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public class StreamRuleServiceImpl extends PersistedServiceImpl implements StreamRuleService {
+    private final StreamChangeNotifier streamChangeNotifier;
+
     @Inject
-    public StreamRuleServiceImpl(MongoConnection mongoConnection) {
+    public StreamRuleServiceImpl(MongoConnection mongoConnection, StreamChangeNotifier streamChangeNotifier) {
         super(mongoConnection);
+        this.streamChangeNotifier = streamChangeNotifier;
+    }
+
+    @Override
+    public <T extends Persisted> String save(T model) throws ValidationException {
+        final String id = super.save(model);
+        if (model instanceof StreamRule) {
+            streamChangeNotifier.streamChanged(((StreamRule) model).getStreamId());
+        }
+
+        return id;
+    }
+
+    @Override
+    public <T extends Persisted> int destroy(T model) {
+        final int result = super.destroy(model);
+        if (model instanceof StreamRule) {
+            streamChangeNotifier.streamChanged(((StreamRule) model).getStreamId());
+        }
+
+        return result;
     }
 
     @Override
@@ -82,7 +108,32 @@ public class StreamRuleServiceImpl extends PersistedServiceImpl implements Strea
         );
 
         for (DBObject streamRule : respStreamRules) {
-            streamRules.add(load(streamRule.get("_id").toString()));
+            streamRules.add(new StreamRuleImpl((ObjectId) streamRule.get("_id"), streamRule.toMap()));
+        }
+
+        return streamRules;
+    }
+
+    @Override
+    public Map<String, List<StreamRule>> loadForStreamIds(Collection<String> streamIds) {
+        final List<ObjectId> objectIds = new ArrayList<>(streamIds.size());
+        for (String streamId : streamIds) {
+            objectIds.add(new ObjectId(streamId));
+        }
+
+        final List<DBObject> respStreamRules = query(StreamRuleImpl.class,
+                new BasicDBObject(StreamRuleImpl.FIELD_STREAM_ID, new BasicDBObject("$in", objectIds))
+        );
+
+        final Map<String, List<StreamRule>> streamRules = new HashMap<>();
+        for (DBObject o : respStreamRules) {
+            final StreamRule streamRule = new StreamRuleImpl((ObjectId) o.get("_id"), o.toMap());
+            List<StreamRule> rulesOfStream = streamRules.get(streamRule.getStreamId());
+            if (rulesOfStream == null) {
+                rulesOfStream = new ArrayList<>();
+                streamRules.put(streamRule.getStreamId(), rulesOfStream);
+            }
+            rulesOfStream.add(streamRule);
         }
 
         return streamRules;
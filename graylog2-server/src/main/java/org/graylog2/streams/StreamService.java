@@ -41,6 +41,12 @@ public interface StreamService extends PersistedService {
 
     List<Stream> loadAllEnabled();
 
+    /**
+     * Loads all enabled streams from the database instead of the shared snapshot returned by {@link #loadAllEnabled()},
+     * which can be older than the latest change of the streams.
+     */
+    List<Stream> loadAllEnabledUncached();
+
     /**
      * @return the total number of streams
      */
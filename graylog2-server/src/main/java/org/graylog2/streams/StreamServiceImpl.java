@@ -18,6 +18,8 @@ package org.graylog2.streams;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
 import com.mongodb.BasicDBObject;
 import com.mongodb.DBObject;
 import org.bson.types.ObjectId;
@@ -31,40 +33,87 @@ import org.graylog2.notifications.NotificationService;
 import org.graylog2.plugin.Tools;
 import org.graylog2.plugin.alarms.AlertCondition;
 import org.graylog2.plugin.database.EmbeddedPersistable;
+import org.graylog2.plugin.database.Persisted;
 import org.graylog2.plugin.database.ValidationException;
 import org.graylog2.plugin.streams.Output;
 import org.graylog2.plugin.streams.Stream;
 import org.graylog2.plugin.streams.StreamRule;
 import org.graylog2.rest.resources.streams.requests.CreateStreamRequest;
+import org.graylog2.streams.events.StreamsChangedEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Loads streams together with their rules and outputs.
+ *
+ * The lists returned by {@link #loadAll()}, {@link #loadAllEnabled()} and {@link #loadAllWithConfiguredAlertConditions()}
+ * are taken from a snapshot of all streams, which is shared by all callers and must not be modified. The snapshot is
+ * dropped on local changes and reloaded at least every second to pick up changes made on other nodes.
+ */
+@Singleton
 public class StreamServiceImpl extends PersistedServiceImpl implements StreamService {
     private static final Logger LOG = LoggerFactory.getLogger(StreamServiceImpl.class);
+    private static final long SNAPSHOT_MAX_AGE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
     private final StreamRuleService streamRuleService;
     private final AlertService alertService;
     private final OutputService outputService;
     private final NotificationService notificationService;
+    private final StreamChangeNotifier streamChangeNotifier;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    private final AtomicLong invalidations = new AtomicLong();
 
     @Inject
     public StreamServiceImpl(MongoConnection mongoConnection,
                              StreamRuleService streamRuleService,
                              AlertService alertService,
                              OutputService outputService,
-                             NotificationService notificationService) {
+                             NotificationService notificationService,
+                             StreamChangeNotifier streamChangeNotifier,
+                             EventBus eventBus) {
         super(mongoConnection);
         this.streamRuleService = streamRuleService;
         this.alertService = alertService;
         this.outputService = outputService;
         this.notificationService = notificationService;
+        this.streamChangeNotifier = streamChangeNotifier;
+        eventBus.register(this);
+    }
+
+    @Subscribe
+    public void handleStreamsChanged(StreamsChangedEvent event) {
+        // stream rules and outputs are changed by other services
+        invalidateSnapshot();
+    }
+
+    private void invalidateSnapshot() {
+        invalidations.incrementAndGet();
+    }
+
+    private List<Stream> snapshot() {
+        final Snapshot current = snapshot.get();
+        if (current != null && current.isValid(invalidations.get())) {
+            return current.streams;
+        }
+
+        // changes while loading invalidate the loaded snapshot right away
+        final Snapshot loaded = new Snapshot(invalidations.get(), loadAll(new HashMap<String, Object>()));
+        snapshot.set(loaded);
+        return loaded.streams;
     }
 
     @SuppressWarnings("unchecked")
@@ -110,6 +159,18 @@ public class StreamServiceImpl extends PersistedServiceImpl implements StreamSer
 
     @Override
     public List<Stream> loadAllEnabled() {
+        final List<Stream> streams = Lists.newArrayList();
+        for (Stream stream : snapshot()) {
+            if (!Boolean.TRUE.equals(stream.getDisabled())) {
+                streams.add(stream);
+            }
+        }
+
+        return streams;
+    }
+
+    @Override
+    public List<Stream> loadAllEnabledUncached() {
         return loadAllEnabled(new HashMap<String, Object>());
     }
 
@@ -122,9 +183,12 @@ public class StreamServiceImpl extends PersistedServiceImpl implements StreamSer
 
     @Override
     public List<Stream> loadAll() {
-        return loadAll(new HashMap<String, Object>());
+        return Lists.newArrayList(snapshot());
     }
 
+    /**
+     * Loads the matching streams, all of their rules and all of their outputs with one query each.
+     */
     @SuppressWarnings("unchecked")
     public List<Stream> loadAll(Map<String, Object> additionalQueryOpts) {
         List<Stream> streams = Lists.newArrayList();
@@ -136,31 +200,74 @@ public class StreamServiceImpl extends PersistedServiceImpl implements StreamSer
             query.put(o.getKey(), o.getValue());
         }
 
-        List<DBObject> results = query(StreamImpl.class, query);
+        final List<DBObject> results = query(StreamImpl.class, query);
+        if (results.isEmpty()) {
+            return streams;
+        }
+
+        final Set<String> streamIds = new HashSet<>(results.size());
+        final Set<String> outputIds = new HashSet<>();
         for (DBObject o : results) {
-            String id = o.get("_id").toString();
-            List<StreamRule> streamRules = null;
-            try {
-                streamRules = streamRuleService.loadForStreamId(id);
-            } catch (NotFoundException e) {
-                LOG.info("Exception while loading stream rules: " + e);
+            streamIds.add(o.get("_id").toString());
+            final List<ObjectId> streamOutputIds = (List<ObjectId>) o.get(StreamImpl.FIELD_OUTPUTS);
+            if (streamOutputIds != null) {
+                for (ObjectId outputId : streamOutputIds) {
+                    outputIds.add(outputId.toHexString());
+                }
             }
+        }
+
+        final Map<String, List<StreamRule>> streamRules = streamRuleService.loadForStreamIds(streamIds);
+        final Map<String, Output> outputs = loadOutputsById(outputIds);
 
-            final Set<Output> outputs = loadOutputsForRawStream(o);
+        for (DBObject o : results) {
+            final String id = o.get("_id").toString();
+            final List<StreamRule> rules = streamRules.get(id);
+            final Set<Output> streamOutputs = new HashSet<>();
+            final List<ObjectId> streamOutputIds = (List<ObjectId>) o.get(StreamImpl.FIELD_OUTPUTS);
+            if (streamOutputIds != null) {
+                for (ObjectId outputId : streamOutputIds) {
+                    final Output output = outputs.get(outputId.toHexString());
+                    if (output == null) {
+                        LOG.warn("Non-existing output <{}> referenced from stream <{}>!", outputId.toHexString(), id);
+                    } else {
+                        streamOutputs.add(output);
+                    }
+                }
+            }
 
-            streams.add(new StreamImpl((ObjectId) o.get("_id"), o.toMap(), streamRules, outputs));
+            streams.add(new StreamImpl((ObjectId) o.get("_id"), o.toMap(),
+                    rules == null ? Lists.<StreamRule>newArrayList() : rules, streamOutputs));
         }
 
         return streams;
     }
 
+    private Map<String, Output> loadOutputsById(Collection<String> outputIds) {
+        if (outputIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        final Map<String, Output> outputs = Maps.newHashMap();
+        for (Output output : outputService.loadByIds(outputIds)) {
+            outputs.put(output.getId(), output);
+        }
+
+        return outputs;
+    }
+
     @Override
+    @SuppressWarnings("unchecked")
     public List<Stream> loadAllWithConfiguredAlertConditions() {
-        // Explanation: alert_conditions.1 is the first Array element.
-        Map<String, Object> queryOpts = Collections.<String, Object>singletonMap(
-                StreamImpl.EMBEDDED_ALERT_CONDITIONS, new BasicDBObject("$ne", Collections.emptyList()));
+        final List<Stream> streams = Lists.newArrayList();
+        for (Stream stream : snapshot()) {
+            final List<Object> alertConditions = (List<Object>) stream.getFields().get(StreamImpl.EMBEDDED_ALERT_CONDITIONS);
+            if (alertConditions != null && !alertConditions.isEmpty()) {
+                streams.add(stream);
+            }
+        }
 
-        return loadAll(queryOpts);
+        return streams;
     }
 
     protected Set<Output> loadOutputsForRawStream(DBObject stream) {
@@ -196,6 +303,19 @@ public class StreamServiceImpl extends PersistedServiceImpl implements StreamSer
             }
         }
         super.destroy(stream);
+        invalidateSnapshot();
+        streamChangeNotifier.streamChanged(stream.getId());
+    }
+
+    @Override
+    public <T extends Persisted> String save(T model) throws ValidationException {
+        final String id = super.save(model);
+        invalidateSnapshot();
+        if (model instanceof Stream) {
+            streamChangeNotifier.streamChanged(id);
+        }
+
+        return id;
     }
 
     public void update(Stream stream, String title, String description) throws ValidationException {
@@ -272,6 +392,7 @@ public class StreamServiceImpl extends PersistedServiceImpl implements StreamSer
     @Override
     public void addAlertCondition(Stream stream, AlertCondition condition) throws ValidationException {
         embed(stream, StreamImpl.EMBEDDED_ALERT_CONDITIONS, (EmbeddedPersistable) condition);
+        invalidateSnapshot();
     }
 
     @Override
@@ -282,6 +403,7 @@ public class StreamServiceImpl extends PersistedServiceImpl implements StreamSer
 
     public void removeAlertCondition(Stream stream, String conditionId) {
         removeEmbedded(stream, StreamImpl.EMBEDDED_ALERT_CONDITIONS, conditionId);
+        invalidateSnapshot();
     }
 
     @Override
@@ -290,6 +412,7 @@ public class StreamServiceImpl extends PersistedServiceImpl implements StreamSer
                 new BasicDBObject("_id", new ObjectId(stream.getId())),
                 new BasicDBObject("$push", new BasicDBObject("alert_receivers." + type, name))
         );
+        invalidateSnapshot();
     }
 
     @Override
@@ -298,6 +421,7 @@ public class StreamServiceImpl extends PersistedServiceImpl implements StreamSer
                 new BasicDBObject("_id", new ObjectId(stream.getId())),
                 new BasicDBObject("$pull", new BasicDBObject("alert_receivers." + type, name))
         );
+        invalidateSnapshot();
     }
 
     @Override
@@ -306,6 +430,8 @@ public class StreamServiceImpl extends PersistedServiceImpl implements StreamSer
                 new BasicDBObject("_id", new ObjectId(stream.getId())),
                 new BasicDBObject("$addToSet", new BasicDBObject(StreamImpl.FIELD_OUTPUTS, new ObjectId(output.getId())))
         );
+        invalidateSnapshot();
+        streamChangeNotifier.streamChanged(stream.getId());
     }
 
     @Override
@@ -314,6 +440,8 @@ public class StreamServiceImpl extends PersistedServiceImpl implements StreamSer
                 new BasicDBObject("_id", new ObjectId(stream.getId())),
                 new BasicDBObject("$pull", new BasicDBObject(StreamImpl.FIELD_OUTPUTS, new ObjectId(output.getId())))
         );
+        invalidateSnapshot();
+        streamChangeNotifier.streamChanged(stream.getId());
     }
 
     @Override
@@ -326,5 +454,22 @@ public class StreamServiceImpl extends PersistedServiceImpl implements StreamSer
                 match,
                 modify
         );
+        invalidateSnapshot();
+        streamChangeNotifier.allStreamsChanged();
+    }
+
+    private static class Snapshot {
+        private final long generation;
+        private final long loadedAt = System.nanoTime();
+        private final List<Stream> streams;
+
+        private Snapshot(long generation, List<Stream> streams) {
+            this.generation = generation;
+            this.streams = Collections.unmodifiableList(streams);
+        }
+
+        private boolean isValid(long currentGeneration) {
+            return generation == currentGeneration && System.nanoTime() - loadedAt < SNAPSHOT_MAX_AGE_NANOS;
+        }
     }
 }
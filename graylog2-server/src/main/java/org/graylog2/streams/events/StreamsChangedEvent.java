@@ -0,0 +1,66 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.streams.events;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Posted on the {@link com.google.common.eventbus.EventBus} when streams, their rules or their outputs changed.
+ */
+public class StreamsChangedEvent {
+    private final Set<String> streamIds;
+    private final boolean allStreams;
+
+    private StreamsChangedEvent(Set<String> streamIds, boolean allStreams) {
+        this.streamIds = streamIds;
+        this.allStreams = allStreams;
+    }
+
+    public static StreamsChangedEvent create(Collection<String> streamIds) {
+        return new StreamsChangedEvent(ImmutableSet.copyOf(streamIds), false);
+    }
+
+    public static StreamsChangedEvent create(String streamId) {
+        return new StreamsChangedEvent(ImmutableSet.of(streamId), false);
+    }
+
+    /**
+     * Creates an event for changes which could affect any stream.
+     */
+    public static StreamsChangedEvent allStreams() {
+        return new StreamsChangedEvent(ImmutableSet.<String>of(), true);
+    }
+
+    /**
+     * @return the IDs of the changed streams, empty if {@link #isAllStreams()} is {@code true}
+     */
+    public Set<String> getStreamIds() {
+        return streamIds;
+    }
+
+    public boolean isAllStreams() {
+        return allStreams;
+    }
+
+    @Override
+    public String toString() {
+        return "StreamsChangedEvent{streamIds=" + streamIds + ", allStreams=" + allStreams + "}";
+    }
+}
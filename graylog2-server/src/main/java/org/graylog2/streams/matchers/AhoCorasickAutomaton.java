@@ -0,0 +1,191 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.streams.matchers;
+
+import com.google.common.collect.Lists;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Aho-Corasick automaton to find all keywords of a dictionary in a text with a single pass over the text.
+ *
+ * Keywords have to be added with {@link #add(String, Object)} before the automaton is finished with {@link #build()}.
+ * A built automaton is immutable and can be used from multiple threads.
+ *
+ * @param <T> the type of the values which are associated with the keywords
+ */
+public class AhoCorasickAutomaton<T> {
+    private final Node<T> root = new Node<>();
+    private boolean built = false;
+    private int size = 0;
+
+    /**
+     * Adds a keyword to the automaton.
+     *
+     * @param keyword the (non-empty) keyword
+     * @param value   the value which will be reported if the keyword has been found
+     */
+    public void add(String keyword, T value) {
+        checkState(!built, "Automaton has already been built.");
+        checkArgument(keyword != null && !keyword.isEmpty(), "Keyword must not be empty.");
+
+        Node<T> node = root;
+        for (int i = 0; i < keyword.length(); i++) {
+            node = node.addChild(keyword.charAt(i));
+        }
+        node.values.add(value);
+        size++;
+    }
+
+    /**
+     * Computes the failure links of the automaton. No keywords can be added afterwards.
+     *
+     * @return the automaton itself
+     */
+    public AhoCorasickAutomaton<T> build() {
+        checkState(!built, "Automaton has already been built.");
+
+        final Queue<Node<T>> queue = new ArrayDeque<>();
+        root.freeze();
+        for (Node<T> child : root.children) {
+            child.failure = root;
+            queue.add(child);
+        }
+
+        while (!queue.isEmpty()) {
+            final Node<T> node = queue.remove();
+            node.freeze();
+
+            for (int i = 0; i < node.keys.length; i++) {
+                final char c = node.keys[i];
+                final Node<T> child = node.children[i];
+
+                Node<T> failure = node.failure;
+                while (failure != null && failure.child(c) == null) {
+                    failure = failure.failure;
+                }
+                child.failure = failure == null ? root : failure.child(c);
+                child.output = child.failure.values.isEmpty() ? child.failure.output : child.failure;
+
+                queue.add(child);
+            }
+        }
+
+        built = true;
+        return this;
+    }
+
+    /**
+     * @return the number of keywords in the automaton
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds the values of all keywords which occur anywhere in the text to the result.
+     *
+     * @param text   the text to search
+     * @param result the collection to which the values of the found keywords will be added
+     */
+    public void findSubstrings(CharSequence text, Collection<? super T> result) {
+        checkState(built, "Automaton has not been built yet.");
+
+        Node<T> state = root;
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+
+            Node<T> next = state.child(c);
+            while (next == null && state != root) {
+                state = state.failure;
+                next = state.child(c);
+            }
+            state = next == null ? root : next;
+
+            for (Node<T> out = state.values.isEmpty() ? state.output : state; out != null; out = out.output) {
+                result.addAll(out.values);
+            }
+        }
+    }
+
+    /**
+     * Adds the values of all keywords which are a prefix of the text to the result.
+     *
+     * @param text   the text to search
+     * @param result the collection to which the values of the found keywords will be added
+     */
+    public void findPrefixes(CharSequence text, Collection<? super T> result) {
+        checkState(built, "Automaton has not been built yet.");
+
+        Node<T> state = root;
+        for (int i = 0; i < text.length(); i++) {
+            state = state.child(text.charAt(i));
+            if (state == null) {
+                return;
+            }
+            result.addAll(state.values);
+        }
+    }
+
+    private static class Node<T> {
+        private final List<T> values = Lists.newArrayListWithCapacity(1);
+        // Only used while adding keywords, replaced by the sorted arrays in freeze().
+        private Map<Character, Node<T>> pending = new TreeMap<>();
+        private char[] keys;
+        private Node<T>[] children;
+        private Node<T> failure;
+        // The closest node in the failure chain which has values.
+        private Node<T> output;
+
+        private Node<T> addChild(char c) {
+            Node<T> child = pending.get(c);
+            if (child == null) {
+                child = new Node<>();
+                pending.put(c, child);
+            }
+            return child;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void freeze() {
+            keys = new char[pending.size()];
+            children = new Node[pending.size()];
+
+            int i = 0;
+            for (Map.Entry<Character, Node<T>> entry : pending.entrySet()) {
+                keys[i] = entry.getKey();
+                children[i] = entry.getValue();
+                i++;
+            }
+            pending = null;
+        }
+
+        private Node<T> child(char c) {
+            final int i = Arrays.binarySearch(keys, c);
+            return i < 0 ? null : children[i];
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.streams.matchers;
+
+import javax.annotation.Nullable;
+
+/**
+ * A regular expression which only consists of a literal string, optionally anchored at the start of the input
+ * (e. g. {@code "error"} or {@code "^GET /api\\."}).
+ *
+ * Such expressions can be evaluated with a substring or prefix search instead of {@link java.util.regex.Pattern}.
+ */
+public class LiteralPattern {
+    private static final String META_CHARACTERS = "\\^$.|?*+()[]{}";
+
+    private final String literal;
+    private final boolean prefix;
+
+    private LiteralPattern(String literal, boolean prefix) {
+        this.literal = literal;
+        this.prefix = prefix;
+    }
+
+    /**
+     * Parses the given regular expression.
+     *
+     * @param regex the regular expression
+     * @return the literal pattern or {@code null} if the expression is not a (non-empty) literal
+     */
+    @Nullable
+    public static LiteralPattern parse(@Nullable String regex) {
+        if (regex == null) {
+            return null;
+        }
+
+        final boolean prefix = regex.startsWith("^");
+        final StringBuilder sb = new StringBuilder(regex.length());
+
+        for (int i = prefix ? 1 : 0; i < regex.length(); i++) {
+            final char c = regex.charAt(i);
+
+            if (c == '\\') {
+                // Only escaped meta characters are literals, things like "\d" or "\Q" are not.
+                if (i + 1 < regex.length() && META_CHARACTERS.indexOf(regex.charAt(i + 1)) >= 0) {
+                    sb.append(regex.charAt(++i));
+                } else {
+                    return null;
+                }
+            } else if (META_CHARACTERS.indexOf(c) >= 0) {
+                return null;
+            } else {
+                sb.append(c);
+            }
+        }
+
+        if (sb.length() == 0) {
+            return null;
+        }
+
+        return new LiteralPattern(sb.toString(), prefix);
+    }
+
+    /**
+     * @return the literal string
+     */
+    public String getLiteral() {
+        return literal;
+    }
+
+    /**
+     * @return {@code true} if the literal has to be at the start of the input, {@code false} if it can be anywhere
+     */
+    public boolean isPrefix() {
+        return prefix;
+    }
+}
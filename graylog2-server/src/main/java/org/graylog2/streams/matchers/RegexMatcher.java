@@ -22,6 +22,7 @@ import com.google.common.cache.LoadingCache;
 import org.graylog2.plugin.Message;
 import org.graylog2.plugin.streams.StreamRule;
 import org.graylog2.utilities.InterruptibleCharSequence;
+import org.graylog2.utilities.TimeLimitedCharSequence;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,12 +45,33 @@ public class RegexMatcher implements StreamRuleMatcher {
 
     @Override
     public boolean match(Message msg, StreamRule rule) {
-        if (msg.getField(rule.getField()) == null)
+        final Object field = msg.getField(rule.getField());
+        if (field == null)
             return false;
 
+        return match(rule, new InterruptibleCharSequence(field.toString()));
+    }
+
+    /**
+     * Matches the rule on the calling thread and aborts the evaluation once the given deadline has passed.
+     *
+     * @param msg           the message to match
+     * @param rule          the stream rule
+     * @param deadlineNanos the deadline as returned by {@link System#nanoTime()}
+     * @return {@code true} if the rule matched, {@code false} otherwise
+     * @throws TimeLimitedCharSequence.TimeLimitExceededException if the deadline has been exceeded
+     */
+    public boolean match(Message msg, StreamRule rule, long deadlineNanos) {
+        final Object field = msg.getField(rule.getField());
+        if (field == null)
+            return false;
+
+        return match(rule, new TimeLimitedCharSequence(field.toString(), deadlineNanos));
+    }
+
+    private boolean match(StreamRule rule, CharSequence charSequence) {
         try {
             Pattern pattern = patternCache.get(rule.getValue());
-            CharSequence charSequence = new InterruptibleCharSequence(msg.getField(rule.getField()).toString());
             return rule.getInverted() ^ pattern.matcher(charSequence).find();
         } catch (ExecutionException e) {
             LOG.error("Unable to get pattern from regex cache: ", e);
@@ -0,0 +1,74 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.utilities;
+
+/**
+ * A {@link CharSequence} that aborts the current operation (e.g. regular expression matching) once a deadline
+ * has passed. The deadline is checked every {@link #CHECK_INTERVAL} character accesses to keep the overhead of
+ * {@link System#nanoTime()} calls low.
+ *
+ * Unlike {@link InterruptibleCharSequence} this does not need a second thread to interrupt the evaluation.
+ */
+public class TimeLimitedCharSequence implements CharSequence {
+    private static final int CHECK_INTERVAL = 1024;
+
+    private final CharSequence inner;
+    private final long deadlineNanos;
+    private int accesses = 0;
+
+    /**
+     * @param inner         the wrapped character sequence
+     * @param deadlineNanos the deadline as returned by {@link System#nanoTime()}
+     */
+    public TimeLimitedCharSequence(CharSequence inner, long deadlineNanos) {
+        this.inner = inner;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (++accesses >= CHECK_INTERVAL) {
+            accesses = 0;
+            if (System.nanoTime() - deadlineNanos > 0) {
+                throw new TimeLimitExceededException();
+            }
+        }
+        return inner.charAt(index);
+    }
+
+    @Override
+    public int length() {
+        return inner.length();
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new TimeLimitedCharSequence(inner.subSequence(start, end), deadlineNanos);
+    }
+
+    @Override
+    public String toString() {
+        return inner.toString();
+    }
+
+    public static class TimeLimitExceededException extends RuntimeException {
+        public TimeLimitExceededException() {
+            // No stack trace needed, this is used for control flow only.
+            super("Time limit exceeded", null, false, false);
+        }
+    }
+}
@@ -25,6 +25,7 @@ import org.graylog2.indexer.searches.Searches;
 import org.graylog2.plugin.Tools;
 import org.graylog2.plugin.alarms.AlertCondition;
 import org.graylog2.plugin.streams.Stream;
+import org.graylog2.streams.StreamRollups;
 import org.joda.time.DateTime;
 import org.junit.Before;
 
@@ -41,6 +42,7 @@ import static org.mockito.Mockito.when;
 public abstract class AlertConditionTest {
     protected Stream stream;
     protected Searches searches;
+    protected StreamRollups streamRollups;
     protected MongoConnection mongoConnection;
     protected AlertService alertService;
 
@@ -52,6 +54,7 @@ public abstract class AlertConditionTest {
     public void setUp() throws Exception {
         stream = mock(Stream.class);
         searches = mock(Searches.class);
+        streamRollups = mock(StreamRollups.class);
         mongoConnection = mock(MongoConnection.class);
         // TODO use injection please. this sucks so bad
         alertService = new AlertServiceImpl(mongoConnection,
@@ -62,7 +65,7 @@ public abstract class AlertConditionTest {
                                                                          DateTime createdAt,
                                                                          @Assisted("userid") String creatorUserId,
                                                                          Map<String, Object> parameters) {
-                        return new FieldValueAlertCondition(searches, stream, id, createdAt, creatorUserId, parameters);
+                        return new FieldValueAlertCondition(searches, streamRollups, stream, id, createdAt, creatorUserId, parameters);
                     }
                 },
                 new MessageCountAlertCondition.Factory() {
@@ -72,7 +75,7 @@ public abstract class AlertConditionTest {
                                                                            DateTime createdAt,
                                                                            @Assisted("userid") String creatorUserId,
                                                                            Map<String, Object> parameters) {
-                        return new MessageCountAlertCondition(searches, stream, id, createdAt, creatorUserId, parameters);
+                        return new MessageCountAlertCondition(searches, streamRollups, stream, id, createdAt, creatorUserId, parameters);
                     }
                 });
 
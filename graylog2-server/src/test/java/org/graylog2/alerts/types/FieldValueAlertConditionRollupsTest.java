@@ -0,0 +1,111 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.alerts.types;
+
+import org.graylog2.alerts.AlertConditionTest;
+import org.graylog2.indexer.results.FieldStatsResult;
+import org.graylog2.indexer.searches.timeranges.AbsoluteRange;
+import org.graylog2.indexer.searches.timeranges.TimeRange;
+import org.graylog2.plugin.Tools;
+import org.graylog2.plugin.alarms.AlertCondition;
+import org.graylog2.streams.StreamRollups;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
+import org.joda.time.DateTimeZone;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class FieldValueAlertConditionRollupsTest extends AlertConditionTest {
+    private static final DateTime NOW = new DateTime(2015, 1, 1, 12, 0, 0, DateTimeZone.UTC);
+
+    @After
+    public void resetTime() {
+        DateTimeUtils.setCurrentMillisSystem();
+    }
+
+    @Test
+    public void testUsesFieldStatsFromRollupsIfTheyCoverTheTimeRange() throws Exception {
+        DateTimeUtils.setCurrentMillisFixed(NOW.getMillis());
+        final StreamRollups.FieldStats fieldStats = mock(StreamRollups.FieldStats.class);
+        when(fieldStats.getCount()).thenReturn(3L);
+        when(fieldStats.getMean()).thenReturn(150.0);
+        when(streamRollups.fieldStats(eq(STREAM_ID), eq("took_ms"), any(DateTime.class))).thenReturn(fieldStats);
+
+        final AlertCondition.CheckResult result = getCondition().runCheck();
+
+        assertTrue(result.isTriggered());
+        verify(searches, never()).fieldStats(anyString(), anyString(), anyString(), any(TimeRange.class));
+    }
+
+    @Test
+    public void testSearchesElasticsearchIfRollupsDontCoverTheTimeRange() throws Exception {
+        when(streamRollups.fieldStats(eq(STREAM_ID), eq("took_ms"), any(DateTime.class))).thenReturn(null);
+        final FieldStatsResult fieldStatsResult = mock(FieldStatsResult.class);
+        when(fieldStatsResult.getCount()).thenReturn(3L);
+        when(fieldStatsResult.getMean()).thenReturn(50.0);
+        when(searches.fieldStats(eq("took_ms"), eq("*"), eq("streams:" + STREAM_ID), any(TimeRange.class)))
+                .thenReturn(fieldStatsResult);
+
+        final AlertCondition.CheckResult result = getCondition().runCheck();
+
+        assertFalse(result.isTriggered());
+        verify(searches).fieldStats(eq("took_ms"), eq("*"), eq("streams:" + STREAM_ID), any(TimeRange.class));
+    }
+
+    @Test
+    public void testMergesThePartialFirstMinuteFromElasticsearch() throws Exception {
+        DateTimeUtils.setCurrentMillisFixed(NOW.plusMinutes(5).plusSeconds(1).getMillis());
+        final StreamRollups.FieldStats fieldStats = new StreamRollups.FieldStats();
+        when(streamRollups.fieldStats(eq(STREAM_ID), eq("took_ms"), any(DateTime.class))).thenReturn(fieldStats);
+        final FieldStatsResult fieldStatsResult = mock(FieldStatsResult.class);
+        when(fieldStatsResult.getCount()).thenReturn(2L);
+        when(fieldStatsResult.getSum()).thenReturn(400.0);
+        when(fieldStatsResult.getSumOfSquares()).thenReturn(80000.0);
+        when(fieldStatsResult.getMin()).thenReturn(200.0);
+        when(fieldStatsResult.getMax()).thenReturn(200.0);
+        final AbsoluteRange head = new AbsoluteRange(NOW.plusSeconds(1), NOW.plusMinutes(1).minusMillis(1));
+        when(searches.fieldStats("took_ms", "*", "streams:" + STREAM_ID, head)).thenReturn(fieldStatsResult);
+
+        final AlertCondition.CheckResult result = getCondition().runCheck();
+
+        // only the messages of the partial first minute have been above the threshold
+        assertTrue(result.isTriggered());
+        verify(searches).fieldStats("took_ms", "*", "streams:" + STREAM_ID, head);
+    }
+
+    private FieldValueAlertCondition getCondition() {
+        final Map<String, Object> parameters = getParametersMap(0, 5, 100.0);
+        parameters.put("threshold_type", FieldValueAlertCondition.ThresholdType.HIGHER.toString());
+        parameters.put("type", FieldValueAlertCondition.CheckType.MEAN.toString());
+        parameters.put("field", "took_ms");
+
+        return new FieldValueAlertCondition(searches, streamRollups, stream, CONDITION_ID, Tools.iso8601(),
+                STREAM_CREATOR, parameters);
+    }
+}
@@ -140,6 +140,7 @@ public class FieldValueAlertConditionTest extends AlertConditionTest {
     protected FieldValueAlertCondition getFieldValueAlertCondition(Map<String, Object> parameters) {
         return new FieldValueAlertCondition(
                 searches,
+                streamRollups,
                 stream,
                 CONDITION_ID,
                 Tools.iso8601(),
@@ -0,0 +1,98 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.alerts.types;
+
+import org.graylog2.alerts.AlertConditionTest;
+import org.graylog2.indexer.results.CountResult;
+import org.graylog2.indexer.searches.timeranges.AbsoluteRange;
+import org.graylog2.indexer.searches.timeranges.TimeRange;
+import org.graylog2.plugin.Tools;
+import org.graylog2.plugin.alarms.AlertCondition;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
+import org.joda.time.DateTimeZone;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MessageCountAlertConditionRollupsTest extends AlertConditionTest {
+    private static final DateTime NOW = new DateTime(2015, 1, 1, 12, 0, 0, DateTimeZone.UTC);
+
+    @After
+    public void resetTime() {
+        DateTimeUtils.setCurrentMillisSystem();
+    }
+
+    @Test
+    public void testCountsFromRollupsIfTheyCoverTheTimeRange() throws Exception {
+        DateTimeUtils.setCurrentMillisFixed(NOW.getMillis());
+        when(streamRollups.count(eq(STREAM_ID), any(DateTime.class))).thenReturn(101L);
+
+        final AlertCondition.CheckResult result = getCondition(MessageCountAlertCondition.ThresholdType.MORE, 5, 100).runCheck();
+
+        assertTrue(result.isTriggered());
+        verify(searches, never()).count(anyString(), any(TimeRange.class), anyString());
+    }
+
+    @Test
+    public void testSearchesElasticsearchIfRollupsDontCoverTheTimeRange() throws Exception {
+        when(streamRollups.count(eq(STREAM_ID), any(DateTime.class))).thenReturn(null);
+        final CountResult countResult = mock(CountResult.class);
+        when(countResult.getCount()).thenReturn(99L);
+        when(searches.count(eq("*"), any(TimeRange.class), eq("streams:" + STREAM_ID))).thenReturn(countResult);
+
+        final AlertCondition.CheckResult result = getCondition(MessageCountAlertCondition.ThresholdType.MORE, 5, 100).runCheck();
+
+        assertFalse(result.isTriggered());
+        verify(searches).count(eq("*"), any(TimeRange.class), eq("streams:" + STREAM_ID));
+    }
+
+    @Test
+    public void testCountsThePartialFirstMinuteInElasticsearch() throws Exception {
+        // the one minute time range begins one second after a full minute
+        DateTimeUtils.setCurrentMillisFixed(NOW.plusMinutes(1).plusSeconds(1).getMillis());
+        when(streamRollups.count(eq(STREAM_ID), any(DateTime.class))).thenReturn(2L);
+        final CountResult countResult = mock(CountResult.class);
+        when(countResult.getCount()).thenReturn(58L);
+        final AbsoluteRange head = new AbsoluteRange(NOW.plusSeconds(1), NOW.plusMinutes(1).minusMillis(1));
+        when(searches.count("*", head, "streams:" + STREAM_ID)).thenReturn(countResult);
+
+        final AlertCondition.CheckResult result = getCondition(MessageCountAlertCondition.ThresholdType.LESS, 1, 10).runCheck();
+
+        assertFalse(result.isTriggered());
+        verify(searches).count("*", head, "streams:" + STREAM_ID);
+    }
+
+    private MessageCountAlertCondition getCondition(MessageCountAlertCondition.ThresholdType thresholdType, int time, int threshold) {
+        final Map<String, Object> parameters = getParametersMap(0, time, threshold);
+        parameters.put("threshold_type", thresholdType.toString());
+
+        return new MessageCountAlertCondition(searches, streamRollups, stream, CONDITION_ID, Tools.iso8601(),
+                STREAM_CREATOR, parameters);
+    }
+}
@@ -164,6 +164,7 @@ public class MessageCountAlertConditionTest extends AlertConditionTest {
     protected MessageCountAlertCondition getMessageCountAlertCondition(Map<String, Object> parameters) {
         return new MessageCountAlertCondition(
                 searches,
+                streamRollups,
                 stream,
                 CONDITION_ID,
                 Tools.iso8601(),
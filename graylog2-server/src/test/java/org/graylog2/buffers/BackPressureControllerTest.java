@@ -0,0 +1,144 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.buffers;
+
+import com.codahale.metrics.MetricRegistry;
+import org.graylog2.Configuration;
+import org.graylog2.outputs.BlockingBatchedESOutput;
+import org.graylog2.plugin.ThrottleState;
+import org.graylog2.shared.journal.KafkaJournal;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BackPressureControllerTest {
+    private static final int RING_SIZE = 65536;
+    private static final int READ_AHEAD = 8 * 1024 * 1024;
+
+    private KafkaJournal journal;
+    private BlockingBatchedESOutput output;
+    private BackPressureController controller;
+
+    @Before
+    public void setUp() throws Exception {
+        journal = mock(KafkaJournal.class);
+        output = mock(BlockingBatchedESOutput.class);
+        when(journal.getReadAheadBytes()).thenReturn(READ_AHEAD);
+        when(output.getMaxBatchSize()).thenReturn(800);
+
+        // ring size 65536, 250ms interval, 1s flush latency target
+        controller = new BackPressureController(new Configuration(), journal, output, new MetricRegistry());
+    }
+
+    private static ThrottleState state(long processBufferCapacity, long outputBufferCapacity, long uncommitted) {
+        final ThrottleState state = new ThrottleState();
+        state.processBufferCapacity = processBufferCapacity;
+        state.outputBufferCapacity = outputBufferCapacity;
+        state.uncommittedJournalEntries = uncommitted;
+        return state;
+    }
+
+    @Test
+    public void testIdlePipelineKeepsDefaults() throws Exception {
+        final ThrottleState state = state(RING_SIZE, RING_SIZE, 0);
+        final BackPressureController.Decision decision = controller.adjust(state);
+
+        assertEquals(READ_AHEAD, decision.getReadAheadBytes());
+        assertEquals(800, decision.getOutputBatchSize());
+        assertEquals(ThrottleState.DEFAULT_UNCOMMITTED_ENTRIES_THRESHOLD, state.uncommittedEntriesThreshold);
+        // the growth threshold is per update, the state is updated four times per second
+        assertEquals(ThrottleState.DEFAULT_JOURNAL_GROWTH_THRESHOLD / 4, state.journalGrowthThreshold);
+        verify(journal, never()).setReadAheadBytes(anyInt());
+        verify(output, never()).setBatchSize(anyInt());
+    }
+
+    @Test
+    public void testFullProcessBufferShrinksReadAheadAndTightensThresholds() throws Exception {
+        final ThrottleState state = state(0, RING_SIZE, 10_000);
+        final BackPressureController.Decision decision = controller.adjust(state);
+
+        assertEquals(READ_AHEAD / 2, decision.getReadAheadBytes());
+        assertEquals(100, decision.getProcessBufferUtilization());
+        assertEquals(ThrottleState.DEFAULT_UNCOMMITTED_ENTRIES_THRESHOLD / 2, state.uncommittedEntriesThreshold);
+        assertEquals(ThrottleState.DEFAULT_JOURNAL_GROWTH_THRESHOLD / 8, state.journalGrowthThreshold);
+        verify(journal).setReadAheadBytes(READ_AHEAD / 2);
+
+        // never shrinks below a quarter of the configured read ahead
+        for (int i = 0; i < 10; i++) {
+            controller.adjust(state(0, RING_SIZE, 10_000));
+        }
+        assertEquals(READ_AHEAD / 4, controller.getDecision().getReadAheadBytes());
+        assertEquals(ThrottleState.DEFAULT_UNCOMMITTED_ENTRIES_THRESHOLD / 8,
+                controller.getDecision().getUncommittedEntriesThreshold());
+    }
+
+    @Test
+    public void testReadAheadGrowsWhileProcessBufferHasRoom() throws Exception {
+        controller.adjust(state(0, RING_SIZE, 10_000));
+        final ThrottleState state = state(RING_SIZE, RING_SIZE, 10_000);
+        final BackPressureController.Decision decision = controller.adjust(state);
+
+        assertEquals(READ_AHEAD / 2 + READ_AHEAD / 4, decision.getReadAheadBytes());
+        // the thresholds are relaxed step by step
+        assertEquals(ThrottleState.DEFAULT_UNCOMMITTED_ENTRIES_THRESHOLD / 2 + ThrottleState.DEFAULT_UNCOMMITTED_ENTRIES_THRESHOLD / 8,
+                state.uncommittedEntriesThreshold);
+
+        for (int i = 0; i < 20; i++) {
+            controller.adjust(state(RING_SIZE, RING_SIZE, 10_000));
+        }
+        assertEquals(4 * READ_AHEAD, controller.getDecision().getReadAheadBytes());
+        assertEquals(ThrottleState.DEFAULT_UNCOMMITTED_ENTRIES_THRESHOLD, controller.getDecision().getUncommittedEntriesThreshold());
+    }
+
+    @Test
+    public void testSlowBulkRequestsShrinkBatchSize() throws Exception {
+        when(output.getFlushLatencyMillis()).thenReturn(5000l);
+        final ThrottleState state = state(RING_SIZE, 0, 0);
+        final BackPressureController.Decision decision = controller.adjust(state);
+
+        assertEquals(400, decision.getOutputBatchSize());
+        assertEquals(5000l, decision.getFlushLatencyMillis());
+        assertEquals(ThrottleState.DEFAULT_UNCOMMITTED_ENTRIES_THRESHOLD / 2, state.uncommittedEntriesThreshold);
+        verify(output).setBatchSize(400);
+
+        for (int i = 0; i < 10; i++) {
+            controller.adjust(state(RING_SIZE, 0, 0));
+        }
+        assertEquals(100, controller.getDecision().getOutputBatchSize());
+    }
+
+    @Test
+    public void testOutputBacklogGrowsBatchSizeUpToConfiguredMaximum() throws Exception {
+        when(output.getFlushLatencyMillis()).thenReturn(5000l);
+        controller.adjust(state(RING_SIZE, 0, 0));
+        when(output.getFlushLatencyMillis()).thenReturn(100l);
+
+        assertEquals(500, controller.adjust(state(RING_SIZE, 0, 0)).getOutputBatchSize());
+        verify(output).setBatchSize(500);
+
+        for (int i = 0; i < 10; i++) {
+            controller.adjust(state(RING_SIZE, 0, 0));
+        }
+        assertEquals(800, controller.getDecision().getOutputBatchSize());
+    }
+}
@@ -14,72 +14,95 @@
  * You should have received a copy of the GNU General Public License
  * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
  */
-/*
- * To change this template, choose Tools | Templates
- * and open the template in the editor.
- */
 package org.graylog2.buffers.processors;
 
-import org.junit.Ignore;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.graylog2.Configuration;
+import org.graylog2.outputs.OutputRouter;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.ServerStatus;
+import org.graylog2.plugin.buffers.MessageEvent;
+import org.graylog2.plugin.outputs.MessageOutput;
+import org.graylog2.shared.stats.ThroughputStats;
+import org.joda.time.DateTime;
+import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
 public class OutputBufferProcessorTest {
-    
+    private OutputRouter outputRouter;
+    private MessageOutput defaultOutput;
+    private MessageOutput streamOutput;
+    private ServerStatus serverStatus;
+
+    @Before
+    public void setUp() throws Exception {
+        outputRouter = mock(OutputRouter.class);
+        defaultOutput = mock(MessageOutput.class);
+        streamOutput = mock(MessageOutput.class);
+        serverStatus = mock(ServerStatus.class);
+
+        when(defaultOutput.isRunning()).thenReturn(true);
+        when(streamOutput.isRunning()).thenReturn(true);
+        when(serverStatus.getDetailedMessageRecordingStrategy()).thenReturn(ServerStatus.MessageDetailRecordingStrategy.NEVER);
+    }
+
+    private OutputBufferProcessor buildProcessor(long ordinal, long numberOfConsumers) {
+        return new OutputBufferProcessor(new Configuration(), new MetricRegistry(), new ThroughputStats(), serverStatus,
+                outputRouter, defaultOutput, ordinal, numberOfConsumers);
+    }
+
+    private static MessageEvent eventFor(Message message) {
+        final MessageEvent event = new MessageEvent();
+        event.setMessage(message);
+        return event;
+    }
+
     @Test
-    @Ignore("Ignored until FakeStream class has been restored")
     public void testOnEventWritesToAllOutputsWhenGettingBatches() throws Exception {
-        /*FakeOutput fo1 = new FakeOutput();
-        FakeOutput fo2 = new FakeOutput();
-        
-        GraylogServerStub server = new GraylogServerStub();
-        server.registerOutput(fo1);
-        server.registerOutput(fo2);
-        
-        OutputBufferProcessor proc = new OutputBufferProcessor(server, 0, 1);
-        
-        FakeStream stream1 = new FakeStream("fakestream1");
-        stream1.addOutput(fo1);
-        stream1.addOutput(fo2);
-        
-        FakeStream stream2 = new FakeStream("fakestream2");
-        stream1.addOutput(fo2);
-
-        List<Stream> streamList1 = Lists.newArrayList();
-        streamList1.add(stream1);
-        streamList1.add(stream2);
-        
-        List<Stream> streamList2 = Lists.newArrayList();
-        streamList2.add(stream1);
-
-        List<Stream> streamList3 = Lists.newArrayList();
-        streamList3.add(stream2);
-        
-        Message msg1 = TestHelper.simpleLogMessage();
-        msg1.setStreams(streamList1);
-        
-        Message msg2 = TestHelper.simpleLogMessage();
-        msg2.setStreams(streamList2);
-        
-        Message msg3 = TestHelper.simpleLogMessage();
-        msg3.setStreams(streamList3);
-        
-        MessageEvent e1 = new MessageEvent();
-        e1.setMessage(msg1);
-        
-        MessageEvent e2 = new MessageEvent();
-        e2.setMessage(msg2);
-        
-        MessageEvent e3 = new MessageEvent();
-        e3.setMessage(msg3);
-        
-        proc.onEvent(e1, 1, false);
-        proc.onEvent(e2, 2, false);
-        proc.onEvent(e3, 3, true);
-        
-        assertEquals(1, fo1.getCallCount());
-        assertEquals(1, fo2.getCallCount());
-
-        assertEquals(2, fo1.getWriteCount());
-        assertEquals(2, fo2.getWriteCount());*/
+        final Message msg1 = new Message("message 1", "source", DateTime.now());
+        final Message msg2 = new Message("message 2", "source", DateTime.now());
+        final Message msg3 = new Message("message 3", "source", DateTime.now());
+        when(outputRouter.getStreamOutputsForMessage(msg1)).thenReturn(ImmutableSet.of(streamOutput));
+        when(outputRouter.getStreamOutputsForMessage(msg2)).thenReturn(Collections.<MessageOutput>emptySet());
+        when(outputRouter.getStreamOutputsForMessage(msg3)).thenReturn(ImmutableSet.of(streamOutput));
+
+        final OutputBufferProcessor processor = buildProcessor(0, 1);
+
+        processor.onEvent(eventFor(msg1), 0L, false);
+        processor.onEvent(eventFor(msg2), 1L, false);
+        verify(defaultOutput, never()).write(anyListOf(Message.class));
+
+        processor.onEvent(eventFor(msg3), 2L, true);
+
+        verify(defaultOutput).write(ImmutableList.of(msg1, msg2, msg3));
+        verify(streamOutput, timeout(5000)).write(ImmutableList.of(msg1, msg3));
+    }
+
+    @Test
+    public void testOnEventOnlyHandlesOwnSequences() throws Exception {
+        final Message msg1 = new Message("message 1", "source", DateTime.now());
+        final Message msg2 = new Message("message 2", "source", DateTime.now());
+        when(outputRouter.getStreamOutputsForMessage(msg1)).thenReturn(Collections.<MessageOutput>emptySet());
+        when(outputRouter.getStreamOutputsForMessage(msg2)).thenReturn(Collections.<MessageOutput>emptySet());
+
+        final OutputBufferProcessor processor = buildProcessor(1, 2);
+
+        processor.onEvent(eventFor(msg1), 0L, false);
+        processor.onEvent(eventFor(msg2), 1L, true);
+
+        final List<Message> expected = ImmutableList.of(msg2);
+        verify(defaultOutput).write(expected);
     }
 }
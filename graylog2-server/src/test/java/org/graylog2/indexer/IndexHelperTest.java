@@ -17,11 +17,21 @@
 package org.graylog2.indexer;
 
 import com.google.common.collect.Sets;
+import org.elasticsearch.index.query.FilterBuilder;
+import org.graylog2.indexer.searches.timeranges.AbsoluteRange;
+import org.graylog2.indexer.searches.timeranges.RelativeRange;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
+import org.joda.time.DateTimeZone;
+import org.junit.After;
 import org.junit.Test;
 
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author lennart.koopmann
@@ -70,5 +80,50 @@ public class IndexHelperTest {
 
         assertEquals(expected, IndexHelper.getOldestIndices(empty, 9001));
     }
-    
+
+    @After
+    public void resetClock() {
+        DateTimeUtils.setCurrentMillisSystem();
+    }
+
+    @Test
+    public void testGetFilterUsesTermFilterForStreams() {
+        final String filter = IndexHelper.getFilter("streams:54e3deadbeefdeadbeefaffe").toString();
+
+        assertTrue(filter.contains("\"term\""));
+        assertTrue(filter.contains("54e3deadbeefdeadbeefaffe"));
+        assertFalse(filter.contains("query_string"));
+    }
+
+    @Test
+    public void testGetFilterParsesOtherFiltersAsQueryString() {
+        assertTrue(IndexHelper.getFilter("source:example.org").toString().contains("query_string"));
+        assertTrue(IndexHelper.getFilter("streams:foo OR streams:bar").toString().contains("query_string"));
+        assertNull(IndexHelper.getFilter("*"));
+        assertNull(IndexHelper.getFilter(null));
+    }
+
+    @Test
+    public void testGetTimestampRangeFilterSplitsRelativeRanges() throws Exception {
+        DateTimeUtils.setCurrentMillisFixed(new DateTime(2015, 1, 1, 12, 0, 30, DateTimeZone.UTC).getMillis());
+
+        final String filter = IndexHelper.getTimestampRangeFilter(new RelativeRange(300)).toString();
+
+        assertTrue(filter.contains("\"or\""));
+        // the aligned part is the same for all requests within the same minute
+        assertTrue(filter.contains("2015-01-01 11:56:00.000"));
+        assertTrue(filter.contains("2015-01-01 12:00:00.000"));
+        assertTrue(filter.contains("2015-01-01 11:55:30.000"));
+        assertTrue(filter.contains("2015-01-01 12:00:30.000"));
+    }
+
+    @Test
+    public void testGetTimestampRangeFilterKeepsAbsoluteRanges() throws Exception {
+        final FilterBuilder filter = IndexHelper.getTimestampRangeFilter(new AbsoluteRange(
+                new DateTime(2015, 1, 1, 0, 0, 30, DateTimeZone.UTC),
+                new DateTime(2015, 1, 1, 0, 5, 30, DateTimeZone.UTC)));
+
+        assertFalse(filter.toString().contains("\"or\""));
+        assertTrue(filter.toString().contains("_cache"));
+    }
 }
@@ -0,0 +1,74 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.indexer.messages;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.streams.Stream;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class MessageSerializerTest {
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<Map<String, Object>>() {
+    };
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testToSourceMatchesElasticSearchObject() throws Exception {
+        final Message message = new Message("message", "source", new DateTime(2015, 3, 1, 12, 0, 0, 123, DateTimeZone.forOffsetHours(2)));
+        message.addField("string_field", "foo");
+        message.addField("long_field", 42L);
+        message.addField("double_field", 1.5d);
+        message.addField("bool_field", true);
+
+        final Stream stream1 = mock(Stream.class);
+        when(stream1.getId()).thenReturn("stream-1");
+        final Stream stream2 = mock(Stream.class);
+        when(stream2.getId()).thenReturn("stream-2");
+        message.setStreams(ImmutableList.of(stream1, stream2));
+
+        final String expected = XContentFactory.jsonBuilder().map(message.toElasticSearchObject()).string();
+        final String actual = MessageSerializer.toSource(message).toUtf8();
+
+        final Map<String, Object> actualMap = objectMapper.readValue(actual, MAP_TYPE);
+        assertEquals(objectMapper.readValue(expected, MAP_TYPE), actualMap);
+        assertEquals("2015-03-01 10:00:00.123", actualMap.get("timestamp"));
+        assertEquals(ImmutableList.of("stream-1", "stream-2"), actualMap.get("streams"));
+    }
+
+    @Test
+    public void testToSourceReusesBufferSafely() throws Exception {
+        final Message message1 = new Message("first message with a longer text", "source", DateTime.now());
+        final Message message2 = new Message("second", "source", DateTime.now());
+
+        final String source1 = MessageSerializer.toSource(message1).toUtf8();
+        final String source2 = MessageSerializer.toSource(message2).toUtf8();
+
+        assertEquals("first message with a longer text", objectMapper.readValue(source1, MAP_TYPE).get("message"));
+        assertEquals("second", objectMapper.readValue(source2, MAP_TYPE).get("message"));
+    }
+}
@@ -0,0 +1,32 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.indexer.messages;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class MessagesTest {
+    @Test
+    public void testRetryBackoffMillis() throws Exception {
+        assertEquals(100L, Messages.retryBackoffMillis(1));
+        assertEquals(200L, Messages.retryBackoffMillis(2));
+        assertEquals(400L, Messages.retryBackoffMillis(3));
+        assertEquals(30000L, Messages.retryBackoffMillis(10));
+        assertEquals(30000L, Messages.retryBackoffMillis(Integer.MAX_VALUE));
+    }
+}
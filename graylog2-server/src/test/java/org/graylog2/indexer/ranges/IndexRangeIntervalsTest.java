@@ -0,0 +1,109 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.indexer.ranges;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class IndexRangeIntervalsTest {
+    private static IndexRange closedRange(String index, int begin, int end) {
+        return new IndexRangeImpl(ImmutableMap.<String, Object>of(
+                "index", index,
+                "start", end,
+                "begin", begin,
+                "end", end,
+                "calculated_at", end));
+    }
+
+    private static IndexRange openRange(String index, int start) {
+        final Map<String, Object> fields = ImmutableMap.<String, Object>of("index", index, "start", start);
+        return new IndexRangeImpl(fields);
+    }
+
+    private static DateTime seconds(int seconds) {
+        return new DateTime(seconds * 1000L, DateTimeZone.UTC);
+    }
+
+    private static List<String> names(List<IndexRange> ranges) {
+        final List<String> names = Lists.newArrayList();
+        for (IndexRange range : ranges) {
+            names.add(range.getIndexName());
+        }
+        return names;
+    }
+
+    @Test
+    public void findReturnsOverlappingRangesNewestFirst() {
+        final IndexRangeIntervals intervals = new IndexRangeIntervals(Lists.newArrayList(
+                closedRange("graylog_0", 0, 100),
+                closedRange("graylog_1", 100, 200),
+                closedRange("graylog_2", 200, 300),
+                openRange("graylog_3", 400)));
+
+        assertEquals(Lists.newArrayList("graylog_3", "graylog_2", "graylog_1"),
+                names(intervals.find(seconds(150), seconds(250))));
+        assertEquals(Lists.newArrayList("graylog_3", "graylog_0"), names(intervals.find(seconds(10), seconds(20))));
+        assertEquals(Lists.newArrayList("graylog_3"), names(intervals.find(seconds(1000), seconds(2000))));
+        assertEquals(4, intervals.find(seconds(0), seconds(2000)).size());
+    }
+
+    @Test
+    public void findSkipsRangesEndingBeforeTheRequestedRange() {
+        final IndexRangeIntervals intervals = new IndexRangeIntervals(Lists.newArrayList(
+                closedRange("graylog_0", 0, 1000),
+                closedRange("graylog_1", 100, 200),
+                closedRange("graylog_2", 300, 400)));
+
+        assertEquals(Lists.newArrayList("graylog_0"), names(intervals.find(seconds(500), seconds(600))));
+        assertTrue(intervals.find(seconds(2000), seconds(3000)).isEmpty());
+    }
+
+    @Test
+    public void openRangesAreFoundForTimeRangesBeforeTheirBegin() {
+        final IndexRangeIntervals intervals = new IndexRangeIntervals(Lists.newArrayList(
+                closedRange("graylog_0", 0, 100),
+                openRange("graylog_1", 150)));
+
+        // the write index also receives messages with old timestamps
+        assertEquals(Lists.newArrayList("graylog_1", "graylog_0"), names(intervals.find(seconds(10), seconds(20))));
+        assertEquals(Lists.newArrayList("graylog_1"), names(intervals.find(seconds(-100), seconds(-50))));
+    }
+
+    @Test
+    public void legacyRangesOnlyKnowTheirNewestMessage() {
+        final IndexRange legacy = new IndexRangeImpl(ImmutableMap.<String, Object>of(
+                "index", "graylog_0",
+                "start", 500,
+                "calculated_at", 600));
+        assertEquals(seconds(0), legacy.getBegin());
+        assertEquals(seconds(500), legacy.getEnd());
+
+        final IndexRange placeholder = openRange("graylog_1", 700);
+        assertEquals(seconds(700), placeholder.getBegin());
+        assertNull(placeholder.getEnd());
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.indexer.searches;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import org.graylog2.indexer.searches.timeranges.AbsoluteRange;
+import org.graylog2.plugin.ThrottleState;
+import org.graylog2.shared.journal.KafkaJournal;
+import org.graylog2.shared.journal.NoopJournal;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class IncrementalHistogramsTest {
+    private static final long MINUTE = 60 * 1000L;
+
+    private static DateTime time(int hour, int minute, int second) {
+        return new DateTime(2015, 1, 1, hour, minute, second, DateTimeZone.UTC);
+    }
+
+    private static long seconds(DateTime time) {
+        return time.getMillis() / 1000L;
+    }
+
+    /**
+     * One message in every minute of the range.
+     */
+    private static Map<Long, Long> buckets(DateTime from, DateTime to) {
+        final Map<Long, Long> buckets = Maps.newTreeMap();
+        for (long start = from.getMillis() - from.getMillis() % MINUTE; start <= to.getMillis(); start += MINUTE) {
+            buckets.put(start / 1000L, 1L);
+        }
+        return buckets;
+    }
+
+    @Test
+    public void firstSearchCoversWholeRange() {
+        final IncrementalHistograms.Series<Long> series = new IncrementalHistograms.Series<>(MINUTE, 0L);
+        final DateTime from = time(10, 0, 30);
+        final DateTime to = time(11, 0, 30);
+
+        final List<AbsoluteRange> missingRanges = series.missingRanges(from, to);
+        assertEquals(ImmutableList.of(new AbsoluteRange(from, to)), missingRanges);
+
+        final Map<Long, Long> histogram = series.merge(buckets(from, to), to, to);
+        assertEquals(buckets(from, to), histogram);
+        // the partial buckets at both ends are not closed
+        assertEquals(59, series.size());
+    }
+
+    @Test
+    public void refreshOnlySearchesPartialAndNewBuckets() {
+        final IncrementalHistograms.Series<Long> series = new IncrementalHistograms.Series<>(MINUTE, 0L);
+        series.missingRanges(time(10, 0, 30), time(11, 0, 30));
+        series.merge(buckets(time(10, 0, 30), time(11, 0, 30)), time(11, 0, 30), time(11, 0, 30));
+
+        final DateTime from = time(10, 1, 30);
+        final DateTime to = time(11, 1, 30);
+        final List<AbsoluteRange> missingRanges = series.missingRanges(from, to);
+        assertEquals(ImmutableList.of(
+                new AbsoluteRange(from, time(10, 2, 0).minusMillis(1)),
+                new AbsoluteRange(time(11, 0, 0), to)), missingRanges);
+
+        final Map<Long, Long> searched = Maps.newTreeMap();
+        searched.put(seconds(time(10, 1, 0)), 1L);
+        searched.put(seconds(time(11, 0, 0)), 1L);
+        searched.put(seconds(time(11, 1, 0)), 1L);
+
+        final Map<Long, Long> histogram = series.merge(searched, to, to);
+        assertEquals(buckets(from, to), histogram);
+        assertEquals(59, series.size());
+    }
+
+    @Test
+    public void bucketsWithinGracePeriodAreSearchedAgain() {
+        final IncrementalHistograms.Series<Long> series = new IncrementalHistograms.Series<>(MINUTE, 5 * MINUTE);
+        final DateTime from = time(10, 0, 0);
+        final DateTime to = time(11, 0, 0);
+
+        series.missingRanges(from, to);
+        series.merge(buckets(from, to), to, to);
+        assertEquals(55, series.size());
+
+        assertEquals(ImmutableList.of(new AbsoluteRange(time(10, 55, 0), to)), series.missingRanges(from, to));
+    }
+
+    @Test
+    public void seriesIsResetIfRangeMovedPastClosedBuckets() {
+        final IncrementalHistograms.Series<Long> series = new IncrementalHistograms.Series<>(MINUTE, 0L);
+        series.missingRanges(time(10, 0, 0), time(11, 0, 0));
+        series.merge(buckets(time(10, 0, 0), time(11, 0, 0)), time(11, 0, 0), time(11, 0, 0));
+
+        final DateTime from = time(12, 0, 30);
+        final DateTime to = time(13, 0, 30);
+        assertEquals(ImmutableList.of(new AbsoluteRange(from, to)), series.missingRanges(from, to));
+        assertEquals(0, series.size());
+    }
+
+    @Test
+    public void noBucketsAreClosedWhileThereIsABacklog() {
+        final IncrementalHistograms.Series<Long> series = new IncrementalHistograms.Series<>(MINUTE, 0L);
+        final DateTime from = time(10, 0, 0);
+        final DateTime to = time(11, 0, 0);
+
+        series.missingRanges(from, to);
+        assertEquals(buckets(from, to), series.merge(buckets(from, to), to, to, false));
+        assertEquals(0, series.size());
+
+        assertEquals(ImmutableList.of(new AbsoluteRange(from, to)), series.missingRanges(from, to));
+    }
+
+    @Test
+    public void bucketsAreOnlyClosedIfTheJournalBacklogIsIndexedWithinTheGracePeriod() {
+        final KafkaJournal journal = mock(KafkaJournal.class);
+        final ThrottleState state = new ThrottleState();
+        state.readEventsPerSec = 100;
+        when(journal.getThrottleState()).thenReturn(state);
+        final IncrementalHistograms histograms = new IncrementalHistograms(5 * MINUTE, journal);
+
+        state.uncommittedJournalEntries = 1000;
+        assertTrue(histograms.canCloseBuckets());
+
+        state.uncommittedJournalEntries = 100000;
+        assertFalse(histograms.canCloseBuckets());
+
+        assertTrue(new IncrementalHistograms(5 * MINUTE, new NoopJournal()).canCloseBuckets());
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.indexer.searches;
+
+import com.google.common.collect.ImmutableSet;
+import org.graylog2.indexer.searches.timeranges.AbsoluteRange;
+import org.graylog2.indexer.searches.timeranges.RelativeRange;
+import org.graylog2.indexer.searches.timeranges.TimeRange;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class SearchResultCacheTest {
+    private static final TimeRange RANGE = new AbsoluteRange(
+            new DateTime(2015, 1, 1, 0, 0, DateTimeZone.UTC),
+            new DateTime(2015, 1, 2, 0, 0, DateTimeZone.UTC));
+
+    private static SearchResultCache.Search<Integer, RuntimeException> counting(final AtomicInteger calls) {
+        return new SearchResultCache.Search<Integer, RuntimeException>() {
+            @Override
+            public Integer run() {
+                return calls.incrementAndGet();
+            }
+        };
+    }
+
+    @Test
+    public void keysAreNormalized() throws Exception {
+        final SearchResultCache.Key key = new SearchResultCache.Key("count", " source:foo ", null, RANGE, ImmutableSet.of("graylog2_1", "graylog2_0"));
+
+        assertEquals(key, new SearchResultCache.Key("count", "source:foo", "", RANGE, ImmutableSet.of("graylog2_0", "graylog2_1")));
+        assertEquals(new SearchResultCache.Key("count", null, null, new RelativeRange(300), ImmutableSet.<String>of()),
+                new SearchResultCache.Key("count", "*", "*", new RelativeRange(300), ImmutableSet.<String>of()));
+        assertNotEquals(key, new SearchResultCache.Key("count", "source:foo", null, RANGE, ImmutableSet.of("graylog2_1")));
+        assertNotEquals(key, new SearchResultCache.Key("terms", "source:foo", null, RANGE, ImmutableSet.of("graylog2_0", "graylog2_1"), "source", 50));
+    }
+
+    @Test
+    public void repeatedSearchesAreServedFromCache() {
+        final SearchResultCache cache = new SearchResultCache(10, 60000L);
+        final SearchResultCache.Key key = new SearchResultCache.Key("count", "*", null, RANGE, ImmutableSet.of("graylog2_0"));
+        final AtomicInteger calls = new AtomicInteger();
+
+        assertEquals(1, (int) cache.get(key, true, counting(calls)));
+        assertEquals(1, (int) cache.get(key, true, counting(calls)));
+        assertEquals(1, calls.get());
+        assertEquals(1L, cache.stats().hitCount());
+    }
+
+    @Test
+    public void recentResultsExpire() throws Exception {
+        final SearchResultCache cache = new SearchResultCache(10, 1L);
+        final SearchResultCache.Key key = new SearchResultCache.Key("count", "*", null, new RelativeRange(300), ImmutableSet.of("graylog2_0"));
+        final AtomicInteger calls = new AtomicInteger();
+
+        cache.get(key, false, counting(calls));
+        Thread.sleep(10L);
+        cache.get(key, false, counting(calls));
+
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void disabledCacheAlwaysSearches() {
+        final SearchResultCache cache = SearchResultCache.disabled();
+        final SearchResultCache.Key key = new SearchResultCache.Key("count", "*", null, RANGE, ImmutableSet.of("graylog2_0"));
+        final AtomicInteger calls = new AtomicInteger();
+
+        cache.get(key, true, counting(calls));
+        cache.get(key, true, counting(calls));
+
+        assertEquals(2, calls.get());
+        assertEquals(0L, cache.size());
+    }
+
+    @Test(expected = IOException.class)
+    public void checkedExceptionsOfSearchesArePropagated() throws IOException {
+        final SearchResultCache cache = new SearchResultCache(10, 60000L);
+        final SearchResultCache.Key key = new SearchResultCache.Key("fieldStats", "*", null, RANGE, ImmutableSet.of("graylog2_0"), "took_ms");
+
+        cache.get(key, true, new SearchResultCache.Search<Object, IOException>() {
+            @Override
+            public Object run() throws IOException {
+                throw new IOException("not a numeric field");
+            }
+        });
+    }
+}
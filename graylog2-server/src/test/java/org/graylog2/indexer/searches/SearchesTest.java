@@ -60,6 +60,7 @@ import java.util.Set;
 import static com.lordofthejars.nosqlunit.elasticsearch.ElasticsearchRule.ElasticsearchRuleBuilder.newElasticsearchRule;
 import static com.lordofthejars.nosqlunit.elasticsearch.EmbeddedElasticsearch.EmbeddedElasticsearchRuleBuilder.newEmbeddedElasticsearchRule;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -89,6 +90,16 @@ public class SearchesTest {
             return new DateTime(2015, 1, 1, 0, 0, DateTimeZone.UTC);
         }
 
+        @Override
+        public DateTime getBegin() {
+            return new DateTime(2015, 1, 1, 0, 0, DateTimeZone.UTC);
+        }
+
+        @Override
+        public DateTime getEnd() {
+            return new DateTime(2015, 1, 1, 23, 59, DateTimeZone.UTC);
+        }
+
         @Override
         public int getCalculationTookMs() {
             return 0;
@@ -136,6 +147,7 @@ public class SearchesTest {
     @Before
     public void setUp() throws Exception {
         when(indexRangeService.getFrom(anyInt())).thenReturn(INDEX_RANGES);
+        when(indexRangeService.find(any(DateTime.class), any(DateTime.class))).thenReturn(INDEX_RANGES);
         searches = new Searches(new Configuration(), deflector, indexRangeService, client);
     }
 
@@ -0,0 +1,120 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.inputs.extractors;
+
+import com.google.common.collect.Lists;
+import org.graylog2.cluster.ClusterRevisionService;
+import org.graylog2.database.NotFoundException;
+import org.graylog2.grok.GrokPatternRegistry;
+import org.graylog2.inputs.Input;
+import org.graylog2.inputs.InputService;
+import org.graylog2.plugin.inputs.Extractor;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ExtractorChainRegistryTest {
+    @Mock
+    private InputService inputService;
+    @Mock
+    private GrokPatternRegistry grokPatternRegistry;
+    @Mock
+    private ClusterRevisionService clusterRevisionService;
+    @Mock
+    private ScheduledExecutorService scheduler;
+    @Mock
+    private Input input;
+
+    private Extractor first;
+    private Extractor second;
+    private ExtractorChainRegistry registry;
+
+    @Before
+    public void setUp() throws Exception {
+        first = mockExtractor(1L);
+        second = mockExtractor(2L);
+
+        when(inputService.find("input-id")).thenReturn(input);
+        when(inputService.getExtractors(input)).thenReturn(Lists.newArrayList(second, first));
+
+        registry = new ExtractorChainRegistry(inputService, grokPatternRegistry, clusterRevisionService, scheduler);
+    }
+
+    @Test
+    public void testExtractorsAreSortedAndCached() throws Exception {
+        assertEquals(Lists.newArrayList(first, second), registry.getExtractors("input-id"));
+        assertEquals(Lists.newArrayList(first, second), registry.getExtractors("input-id"));
+
+        verify(inputService, times(1)).find("input-id");
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        registry.getExtractors("input-id");
+        registry.invalidate("input-id");
+        registry.getExtractors("input-id");
+
+        verify(inputService, times(2)).find("input-id");
+        verify(clusterRevisionService).increment(ExtractorChainRegistry.EXTRACTORS_REVISION);
+    }
+
+    @Test
+    public void testRevisionChangeOnOtherNode() throws Exception {
+        registry.getExtractors("input-id");
+
+        // Nothing changed.
+        registry.checkRevisions();
+        registry.getExtractors("input-id");
+        verify(inputService, times(1)).find("input-id");
+
+        when(clusterRevisionService.get(ExtractorChainRegistry.GROK_PATTERNS_REVISION)).thenReturn(1L);
+        registry.checkRevisions();
+        registry.getExtractors("input-id");
+
+        verify(inputService, times(2)).find("input-id");
+        verify(grokPatternRegistry).invalidateAll();
+    }
+
+    @Test
+    public void testMissingInput() throws Exception {
+        when(inputService.find("missing")).thenThrow(new NotFoundException());
+
+        final List<Extractor> extractors = registry.getExtractors("missing");
+
+        assertTrue(extractors.isEmpty());
+    }
+
+    private Extractor mockExtractor(long order) {
+        final Extractor extractor = mock(Extractor.class);
+        when(extractor.getOrder()).thenReturn(order);
+
+        return extractor;
+    }
+}
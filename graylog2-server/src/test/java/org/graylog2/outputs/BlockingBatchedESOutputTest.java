@@ -0,0 +1,183 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.outputs;
+
+import com.codahale.metrics.MetricRegistry;
+import com.github.joschi.jadconfig.util.Size;
+import com.google.common.collect.ImmutableList;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.rest.RestStatus;
+import org.graylog2.Configuration;
+import org.graylog2.indexer.cluster.Cluster;
+import org.graylog2.indexer.messages.Messages;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.Tools;
+import org.graylog2.shared.journal.Journal;
+import org.graylog2.shared.journal.NoopJournal;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BlockingBatchedESOutputTest {
+    private MetricRegistry metricRegistry;
+    @Mock
+    private Messages messages;
+    @Mock
+    private Cluster cluster;
+
+    @Before
+    public void setUp() {
+        metricRegistry = new MetricRegistry();
+        when(cluster.isConnectedAndHealthy()).thenReturn(true);
+    }
+
+    private static Configuration config(final int batchSize, final Size maxBatchSize) {
+        return new Configuration() {
+            @Override
+            public int getOutputBatchSize() {
+                return batchSize;
+            }
+
+            @Override
+            public int getOutputFlushInterval() {
+                return 60;
+            }
+
+            @Override
+            public Size getOutputBatchMaxSize() {
+                return maxBatchSize;
+            }
+
+            @Override
+            public int getOutputConcurrentBulkRequests() {
+                return 2;
+            }
+        };
+    }
+
+    @Test
+    public void writesFullBulks() throws Exception {
+        final List<Message> messageList = buildMessages(10);
+        final BlockingBatchedESOutput output = new BlockingBatchedESOutput(metricRegistry, messages, cluster,
+                config(5, Size.megabytes(5l)), new NoopJournal());
+
+        output.write(messageList);
+
+        verify(messages, timeout(5000)).bulkIndex(eq(messageList.subList(0, 5)));
+        verify(messages, timeout(5000)).bulkIndex(eq(messageList.subList(5, 10)));
+    }
+
+    @Test
+    public void forcedFlushWritesPartialBulk() throws Exception {
+        final List<Message> messageList = buildMessages(3);
+        final BlockingBatchedESOutput output = new BlockingBatchedESOutput(metricRegistry, messages, cluster,
+                config(5, Size.megabytes(5l)), new NoopJournal());
+
+        for (Message message : messageList) {
+            output.write(message);
+        }
+        output.forceFlushIfTimedout();
+
+        verify(messages, timeout(5000)).bulkIndex(eq(messageList));
+    }
+
+    @Test
+    public void limitsBulksBySize() throws Exception {
+        final List<Message> messageList = buildMessages(4);
+        // every message is larger than the limit, so every message ends up in its own bulk
+        final BlockingBatchedESOutput output = new BlockingBatchedESOutput(metricRegistry, messages, cluster,
+                config(4, Size.bytes(1l)), new NoopJournal());
+
+        output.write(messageList);
+        output.forceFlushIfTimedout();
+
+        for (Message message : messageList) {
+            verify(messages, timeout(5000)).bulkIndex(eq(ImmutableList.of(message)));
+        }
+    }
+
+    @Test
+    public void retriesFailedBulks() throws Exception {
+        final List<Message> messageList = buildMessages(5);
+        when(messages.bulkIndex(messageList))
+                .thenThrow(new ElasticsearchException("Boom") {
+                    @Override
+                    public RestStatus status() {
+                        return RestStatus.SERVICE_UNAVAILABLE;
+                    }
+                })
+                .thenReturn(Collections.<Message>emptyList());
+        final BlockingBatchedESOutput output = new BlockingBatchedESOutput(metricRegistry, messages, cluster,
+                config(5, Size.megabytes(5l)), new NoopJournal());
+
+        output.write(messageList);
+
+        verify(messages, timeout(5000).times(2)).bulkIndex(eq(messageList));
+    }
+
+    @Test
+    public void dropsPermanentlyFailedBulks() throws Exception {
+        final List<Message> messageList = buildMessages(5);
+        when(messages.bulkIndex(messageList)).thenThrow(new ElasticsearchException("Boom"));
+        final Journal journal = mock(Journal.class);
+        final BlockingBatchedESOutput output = new BlockingBatchedESOutput(metricRegistry, messages, cluster,
+                config(5, Size.megabytes(5l)), journal);
+
+        output.write(messageList);
+
+        for (Message message : messageList) {
+            verify(journal, timeout(5000)).markJournalOffsetCommitted(message.getJournalOffset());
+        }
+        verify(messages, times(1)).bulkIndex(eq(messageList));
+    }
+
+    @Test
+    public void stopWritesQueuedMessages() throws Exception {
+        final List<Message> messageList = buildMessages(3);
+        final BlockingBatchedESOutput output = new BlockingBatchedESOutput(metricRegistry, messages, cluster,
+                config(5, Size.megabytes(5l)), new NoopJournal());
+
+        output.write(messageList);
+        output.stop();
+
+        verify(messages).bulkIndex(eq(messageList));
+    }
+
+    private List<Message> buildMessages(final int count) {
+        final ImmutableList.Builder<Message> builder = ImmutableList.builder();
+        for (int i = 0; i < count; i++) {
+            final Message message = new Message("message" + i, "test", Tools.iso8601());
+            message.setJournalOffset(i);
+            builder.add(message);
+        }
+
+        return builder.build();
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.outputs;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import org.graylog2.indexer.messages.Messages;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.Tools;
+import org.graylog2.shared.journal.Journal;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ElasticSearchOutputTest {
+    @Mock
+    private Messages messages;
+    @Mock
+    private Journal journal;
+
+    @Test
+    public void writeCommitsOffsetsOfIndexedMessages() throws Exception {
+        final List<Message> messageList = buildMessages(3);
+        when(messages.bulkIndex(messageList)).thenReturn(Collections.<Message>emptyList());
+
+        final ElasticSearchOutput output = new ElasticSearchOutput(new MetricRegistry(), messages, journal);
+        output.write(messageList);
+
+        verify(journal).markJournalOffsetCommitted(0L);
+        verify(journal).markJournalOffsetCommitted(1L);
+        verify(journal).markJournalOffsetCommitted(2L);
+    }
+
+    @Test
+    public void writeDoesNotCommitMessagesWhichHaveNotBeenIndexed() throws Exception {
+        final List<Message> messageList = buildMessages(3);
+        when(messages.bulkIndex(messageList)).thenReturn(ImmutableList.of(messageList.get(1)));
+
+        final ElasticSearchOutput output = new ElasticSearchOutput(new MetricRegistry(), messages, journal);
+        output.write(messageList);
+
+        verify(journal).markJournalOffsetCommitted(0L);
+        verify(journal, never()).markJournalOffsetCommitted(1L);
+        verify(journal).markJournalOffsetCommitted(2L);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void writeDoesNotCommitOffsetsIfIndexingFails() throws Exception {
+        final List<Message> messageList = buildMessages(3);
+        when(messages.bulkIndex(messageList)).thenThrow(new RuntimeException("Boom"));
+
+        final ElasticSearchOutput output = new ElasticSearchOutput(new MetricRegistry(), messages, journal);
+        try {
+            output.write(messageList);
+        } finally {
+            verify(journal, never()).markJournalOffsetCommitted(anyLong());
+        }
+    }
+
+    private List<Message> buildMessages(final int count) {
+        final ImmutableList.Builder<Message> builder = ImmutableList.builder();
+        for (int i = 0; i < count; i++) {
+            final Message message = new Message("message" + i, "test", Tools.iso8601());
+            message.setJournalOffset(i);
+            builder.add(message);
+        }
+
+        return builder.build();
+    }
+}
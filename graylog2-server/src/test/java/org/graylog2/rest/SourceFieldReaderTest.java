@@ -0,0 +1,69 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.rest;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.common.collect.ImmutableList;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class SourceFieldReaderTest {
+    private static final BytesReference SOURCE = new BytesArray("{"
+            + "\"message\":\"foo\\nbar\","
+            + "\"full_message\":{\"nested\":[1,2]},"
+            + "\"timestamp\":\"2015-01-01 12:30:00.000\","
+            + "\"took_ms\":42,"
+            + "\"tags\":[\"a\",\"b\"],"
+            + "\"source\":\"example.org\"}");
+
+    private final SourceFieldReader reader = new SourceFieldReader(
+            ImmutableList.of("timestamp", "source", "took_ms", "tags", "missing"));
+
+    @Test
+    public void readValuesReturnsRequestedFieldsInOrder() throws Exception {
+        final String[] values = new String[5];
+        reader.readValues(SOURCE, values);
+
+        assertArrayEquals(new String[]{"2015-01-01T12:30:00.000Z", "example.org", "42", "[a, b]", null}, values);
+    }
+
+    @Test
+    public void readValuesResetsValuesOfPreviousMessage() throws Exception {
+        final String[] values = new String[]{"a", "b", "c", "d", "e"};
+        reader.readValues(new BytesArray("{\"source\":\"example.org\"}"), values);
+
+        assertArrayEquals(new String[]{null, "example.org", null, null, null}, values);
+    }
+
+    @Test
+    public void writeObjectCopiesRequestedFields() throws Exception {
+        final StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = new JsonFactory().createGenerator(writer)) {
+            reader.writeObject(SOURCE, generator);
+        }
+
+        assertEquals("{\"timestamp\":\"2015-01-01T12:30:00.000Z\",\"took_ms\":42,\"tags\":[\"a\",\"b\"],\"source\":\"example.org\"}",
+                writer.toString());
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.shared.buffers.processors;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.ServerStatus;
+import org.graylog2.plugin.Tools;
+import org.graylog2.plugin.buffers.MessageEvent;
+import org.graylog2.plugin.configuration.Configuration;
+import org.graylog2.plugin.inputs.codecs.Codec;
+import org.graylog2.plugin.journal.RawMessage;
+import org.graylog2.shared.inputs.CodecInstanceRegistry;
+import org.graylog2.shared.journal.CodecConfigurationTable;
+import org.graylog2.shared.journal.Journal;
+import org.graylog2.shared.journal.KafkaJournal;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DecodingProcessorTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Mock
+    private ServerStatus serverStatus;
+    @Mock
+    private Codec.Factory<Codec> incompleteCodecFactory;
+    @Mock
+    private Codec incompleteCodec;
+    @Mock
+    private Codec.Factory<Codec> failingCodecFactory;
+    @Mock
+    private Codec failingCodec;
+
+    private ScheduledThreadPoolExecutor scheduler;
+    private KafkaJournal journal;
+    private DecodingProcessor processor;
+
+    @Before
+    public void setUp() throws Exception {
+        scheduler = new ScheduledThreadPoolExecutor(1);
+        journal = new KafkaJournal(temporaryFolder.newFolder(), scheduler, new KafkaJournal.Settings(), new MetricRegistry());
+
+        when(incompleteCodecFactory.create(any(Configuration.class))).thenReturn(incompleteCodec);
+        when(incompleteCodec.decode(any(RawMessage.class))).thenReturn(new Message("", "source", Tools.iso8601()));
+        when(failingCodecFactory.create(any(Configuration.class))).thenReturn(failingCodec);
+        when(failingCodec.decode(any(RawMessage.class))).thenThrow(new IllegalArgumentException("Broken message"));
+
+        final CodecInstanceRegistry codecInstanceRegistry = new CodecInstanceRegistry(
+                ImmutableMap.<String, Codec.Factory<? extends Codec>>of("incomplete", incompleteCodecFactory,
+                                                                        "failing", failingCodecFactory),
+                new MetricRegistry(),
+                new CodecConfigurationTable(null));
+        processor = new DecodingProcessor(codecInstanceRegistry, serverStatus, journal, new Timer(), new Timer());
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void droppedMessagesAreAcknowledged() throws Exception {
+        final List<Journal.Entry> entries = Lists.newArrayList(
+                journal.createEntry("id0".getBytes(UTF_8), new byte[]{-1}),
+                journal.createEntry("id1".getBytes(UTF_8), encodedRawMessage("unknown")),
+                journal.createEntry("id2".getBytes(UTF_8), encodedRawMessage("incomplete")),
+                journal.createEntry("id3".getBytes(UTF_8), encodedRawMessage("failing")));
+        journal.write(entries);
+        final List<Journal.JournalReadEntry> readEntries = journal.read(10);
+        assertEquals(4, readEntries.size());
+
+        final MessageEvent event = new MessageEvent();
+        for (Journal.JournalReadEntry readEntry : readEntries.subList(0, 3)) {
+            event.setEncodedRaw(readEntry.getPayload(), readEntry.getOffset());
+            processor.onEvent(event, 0, true);
+            assertNull(event.getMessage());
+        }
+        assertEquals(2, journal.getCommittedOffset());
+
+        final Journal.JournalReadEntry failingEntry = readEntries.get(3);
+        event.setEncodedRaw(failingEntry.getPayload(), failingEntry.getOffset());
+        try {
+            processor.onEvent(event, 0, true);
+            fail("Expected the codec exception to be rethrown");
+        } catch (IllegalArgumentException e) {
+            assertNull(event.getMessage());
+        }
+        assertEquals(3, journal.getCommittedOffset());
+    }
+
+    private static byte[] encodedRawMessage(String codecName) {
+        final RawMessage rawMessage = new RawMessage("message".getBytes(UTF_8));
+        rawMessage.setCodecName(codecName);
+        return rawMessage.encode();
+    }
+}
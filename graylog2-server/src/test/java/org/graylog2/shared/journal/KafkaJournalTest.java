@@ -46,6 +46,7 @@ import static org.apache.commons.io.filefilter.FileFilterUtils.fileFileFilter;
 import static org.apache.commons.io.filefilter.FileFilterUtils.nameFileFilter;
 import static org.apache.commons.io.filefilter.FileFilterUtils.suffixFileFilter;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -74,12 +75,13 @@ public class KafkaJournalTest {
     public void writeAndRead() throws IOException {
         final Journal journal = new KafkaJournal(journalDirectory,
                 scheduler,
-                Size.megabytes(100l),
-                Duration.standardHours(1),
-                Size.megabytes(5l),
-                Duration.standardHours(1),
-                1_000_000,
-                Duration.standardMinutes(1),
+                new KafkaJournal.Settings()
+                        .segmentSize(Size.megabytes(100l))
+                        .segmentAge(Duration.standardHours(1))
+                        .retentionSize(Size.megabytes(5l))
+                        .retentionAge(Duration.standardHours(1))
+                        .flushInterval(1_000_000)
+                        .flushAge(Duration.standardMinutes(1)),
                 new MetricRegistry());
 
         final byte[] idBytes = "id".getBytes(UTF_8);
@@ -97,12 +99,13 @@ public class KafkaJournalTest {
     public void readAtLeastOne() throws Exception {
         final Journal journal = new KafkaJournal(journalDirectory,
                 scheduler,
-                Size.megabytes(100l),
-                Duration.standardHours(1),
-                Size.megabytes(5l),
-                Duration.standardHours(1),
-                1_000_000,
-                Duration.standardMinutes(1),
+                new KafkaJournal.Settings()
+                        .segmentSize(Size.megabytes(100l))
+                        .segmentAge(Duration.standardHours(1))
+                        .retentionSize(Size.megabytes(5l))
+                        .retentionAge(Duration.standardHours(1))
+                        .flushInterval(1_000_000)
+                        .flushAge(Duration.standardMinutes(1)),
                 new MetricRegistry());
 
         final byte[] idBytes = "id".getBytes(UTF_8);
@@ -118,6 +121,216 @@ public class KafkaJournalTest {
         assertEquals(new String(firstMessage.getPayload(), UTF_8), "message1");
     }
 
+    @Test
+    public void partitionsAreWrittenReadAndCommittedIndependently() throws Exception {
+        final KafkaJournal journal = new KafkaJournal(journalDirectory,
+                scheduler,
+                new KafkaJournal.Settings()
+                        .segmentSize(Size.megabytes(100l))
+                        .segmentAge(Duration.standardHours(1))
+                        .retentionSize(Size.megabytes(5l))
+                        .retentionAge(Duration.standardHours(1))
+                        .flushInterval(1_000_000)
+                        .flushAge(Duration.standardMinutes(1))
+                        .partitions(2),
+                new MetricRegistry());
+        assertEquals(2, journal.numberOfPartitions());
+
+        journal.write(0, Lists.newArrayList(journal.createEntry("id0".getBytes(UTF_8), "message0".getBytes(UTF_8))));
+        final long position = journal.write(1, Lists.newArrayList(
+                journal.createEntry("id1".getBytes(UTF_8), "message1".getBytes(UTF_8)),
+                journal.createEntry("id2".getBytes(UTF_8), "message2".getBytes(UTF_8))));
+        assertEquals(1, KafkaJournal.partitionOf(position));
+        assertEquals(1, KafkaJournal.logOffsetOf(position));
+
+        final List<Journal.JournalReadEntry> messages = journal.readPartition(1, 10);
+        assertEquals(2, messages.size());
+        assertEquals("message1", new String(messages.get(0).getPayload(), UTF_8));
+        assertEquals(KafkaJournal.journalOffset(1, 0), messages.get(0).getOffset());
+        assertEquals(2, journal.getNextReadOffset(1));
+        assertEquals(0, journal.getNextReadOffset(0));
+
+        journal.markJournalOffsetCommitted(messages.get(0).getOffset());
+        journal.markJournalOffsetCommitted(messages.get(1).getOffset());
+        assertEquals(1, journal.getCommittedOffset(1));
+        assertEquals(KafkaJournal.DEFAULT_COMMITTED_OFFSET, journal.getCommittedOffset(0));
+
+        final Journal.JournalReadEntry firstPartitionMessage = Iterators.getOnlyElement(journal.read(10).iterator());
+        assertEquals("message0", new String(firstPartitionMessage.getPayload(), UTF_8));
+        assertEquals(0, firstPartitionMessage.getOffset());
+    }
+
+    @Test
+    public void committedOffsetStopsBeforeUnacknowledgedEntries() throws Exception {
+        final KafkaJournal journal = new KafkaJournal(journalDirectory,
+                scheduler,
+                new KafkaJournal.Settings(),
+                new MetricRegistry());
+        final List<Journal.Entry> entries = Lists.newArrayList();
+        for (int i = 0; i < 4; i++) {
+            entries.add(journal.createEntry(("id" + i).getBytes(UTF_8), ("message" + i).getBytes(UTF_8)));
+        }
+        journal.write(entries);
+        final List<Journal.JournalReadEntry> messages = journal.read(10);
+        assertEquals(4, messages.size());
+
+        // a later bulk has been written before an earlier one
+        journal.markJournalOffsetCommitted(messages.get(2).getOffset());
+        journal.markJournalOffsetCommitted(messages.get(3).getOffset());
+        assertEquals(KafkaJournal.DEFAULT_COMMITTED_OFFSET, journal.getCommittedOffset());
+
+        journal.markJournalOffsetCommitted(messages.get(0).getOffset());
+        assertEquals(0, journal.getCommittedOffset());
+
+        journal.markJournalOffsetCommitted(messages.get(1).getOffset());
+        assertEquals(3, journal.getCommittedOffset());
+    }
+
+    @Test
+    public void compressedBatchesAreReadTransparently() throws Exception {
+        final KafkaJournal journal = new KafkaJournal(journalDirectory,
+                scheduler,
+                new KafkaJournal.Settings()
+                        .segmentSize(Size.megabytes(100l))
+                        .segmentAge(Duration.standardHours(1))
+                        .retentionSize(Size.megabytes(5l))
+                        .retentionAge(Duration.standardHours(1))
+                        .flushInterval(1_000_000)
+                        .flushAge(Duration.standardMinutes(1))
+                        .readAhead(Size.kilobytes(1l))
+                        .compression("gzip"),
+                new MetricRegistry());
+
+        final List<Journal.Entry> entries = Lists.newArrayList();
+        long payloadSize = 0;
+        for (int i = 0; i < 100; i++) {
+            final byte[] messageBytes = ("a rather repetitive message number " + i).getBytes(UTF_8);
+            payloadSize += messageBytes.length;
+            entries.add(journal.createEntry(("id" + i).getBytes(UTF_8), messageBytes));
+        }
+        journal.write(entries);
+        assertTrue("Compressed batch should be smaller than its payload", journal.size() < payloadSize);
+
+        // the compressed batch is larger than the read ahead and starts before the requested offset
+        final List<Journal.JournalReadEntry> messages = journal.read(10, 5);
+        assertEquals(5, messages.size());
+        assertEquals("a rather repetitive message number 10", new String(messages.get(0).getPayload(), UTF_8));
+        assertEquals(10, messages.get(0).getOffset());
+        assertEquals(14, messages.get(4).getOffset());
+        assertEquals(15, journal.getNextReadOffset());
+    }
+
+    @Test
+    public void groupCommitSizeSyncsInTheBackground() throws Exception {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final KafkaJournal journal = new KafkaJournal(journalDirectory,
+                scheduler,
+                new KafkaJournal.Settings()
+                        .segmentSize(Size.megabytes(100l))
+                        .segmentAge(Duration.standardHours(1))
+                        .retentionSize(Size.megabytes(5l))
+                        .retentionAge(Duration.standardHours(1))
+                        .flushInterval(1_000_000)
+                        .flushAge(Duration.standardMinutes(1))
+                        .durability("group-commit")
+                        .groupCommitInterval(Duration.standardHours(1))
+                        .groupCommitSize(Size.kilobytes(1l)),
+                metricRegistry);
+
+        // the writer doesn't sync and the entry isn't readable before it has been synced
+        journal.write("id1".getBytes(UTF_8), "message1".getBytes(UTF_8));
+        assertEquals(0, metricRegistry.histogram("org.graylog2.shared.journal.KafkaJournal.bytesPerFsync").getCount());
+        assertTrue(journal.readPartition(0, 10).isEmpty());
+
+        // exceeding the group commit size lets the syncer sync right away
+        journal.write("id2".getBytes(UTF_8), new byte[2048]);
+        journal.awaitDurable(0);
+
+        assertEquals(2, journal.readPartition(0, 10).size());
+        assertEquals(1, metricRegistry.histogram("org.graylog2.shared.journal.KafkaJournal.bytesPerFsync").getCount());
+        assertFalse(journal.awaitDurable(0));
+    }
+
+    @Test
+    public void groupCommitIntervalSyncsInTheBackground() throws Exception {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final KafkaJournal journal = new KafkaJournal(journalDirectory,
+                scheduler,
+                new KafkaJournal.Settings()
+                        .segmentSize(Size.megabytes(100l))
+                        .segmentAge(Duration.standardHours(1))
+                        .retentionSize(Size.megabytes(5l))
+                        .retentionAge(Duration.standardHours(1))
+                        .flushInterval(1_000_000)
+                        .flushAge(Duration.standardMinutes(1))
+                        .durability("group-commit")
+                        .groupCommitInterval(Duration.millis(10l)),
+                metricRegistry);
+        journal.startAsync().awaitRunning();
+
+        journal.write("id".getBytes(UTF_8), "message".getBytes(UTF_8));
+        journal.awaitDurable(0);
+
+        assertEquals(1, journal.readPartition(0, 10).size());
+        assertTrue(metricRegistry.histogram("org.graylog2.shared.journal.KafkaJournal.bytesPerFsync").getCount() > 0);
+
+        journal.stopAsync().awaitTerminated();
+    }
+
+    @Test
+    public void asyncWritesAreReadableImmediately() throws Exception {
+        final KafkaJournal journal = new KafkaJournal(journalDirectory,
+                scheduler,
+                new KafkaJournal.Settings()
+                        .segmentSize(Size.megabytes(100l))
+                        .segmentAge(Duration.standardHours(1))
+                        .retentionSize(Size.megabytes(5l))
+                        .retentionAge(Duration.standardHours(1))
+                        .flushInterval(1_000_000)
+                        .flushAge(Duration.standardMinutes(1)),
+                new MetricRegistry());
+
+        journal.write("id".getBytes(UTF_8), "message".getBytes(UTF_8));
+
+        assertFalse(journal.awaitDurable(0));
+        assertEquals(1, journal.readPartition(0, 10).size());
+    }
+
+    @Test
+    public void perBatchSyncsEveryWrite() throws Exception {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final KafkaJournal journal = new KafkaJournal(journalDirectory,
+                scheduler,
+                new KafkaJournal.Settings()
+                        .segmentSize(Size.megabytes(100l))
+                        .segmentAge(Duration.standardHours(1))
+                        .retentionSize(Size.megabytes(5l))
+                        .retentionAge(Duration.standardHours(1))
+                        .flushInterval(1_000_000)
+                        .flushAge(Duration.standardMinutes(1))
+                        .durability("per-batch"),
+                metricRegistry);
+
+        journal.write("id1".getBytes(UTF_8), "message1".getBytes(UTF_8));
+        journal.write("id2".getBytes(UTF_8), "message2".getBytes(UTF_8));
+        assertEquals(2, metricRegistry.timer("org.graylog2.shared.journal.KafkaJournal.fsyncTime").getCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupportedCompressionCodec() throws Exception {
+        new KafkaJournal(journalDirectory,
+                scheduler,
+                new KafkaJournal.Settings()
+                        .segmentSize(Size.megabytes(100l))
+                        .segmentAge(Duration.standardHours(1))
+                        .retentionSize(Size.megabytes(5l))
+                        .retentionAge(Duration.standardHours(1))
+                        .flushInterval(1_000_000)
+                        .flushAge(Duration.standardMinutes(1))
+                        .compression("lz4"),
+                new MetricRegistry());
+    }
+
     private void createBulkChunks(KafkaJournal journal, int bulkCount) {
         // perform multiple writes to make multiple segments
         for (int currentBulk = 0; currentBulk < bulkCount; currentBulk++) {
@@ -143,12 +356,13 @@ public class KafkaJournalTest {
     public void segmentRotation() throws Exception {
         final KafkaJournal journal = new KafkaJournal(journalDirectory,
                 scheduler,
-                Size.kilobytes(1l),
-                Duration.standardHours(1),
-                Size.kilobytes(10l),
-                Duration.standardDays(1),
-                1_000_000,
-                Duration.standardMinutes(1),
+                new KafkaJournal.Settings()
+                        .segmentSize(Size.kilobytes(1l))
+                        .segmentAge(Duration.standardHours(1))
+                        .retentionSize(Size.kilobytes(10l))
+                        .retentionAge(Duration.standardDays(1))
+                        .flushInterval(1_000_000)
+                        .flushAge(Duration.standardMinutes(1)),
                 new MetricRegistry());
 
         createBulkChunks(journal, 3);
@@ -169,12 +383,13 @@ public class KafkaJournalTest {
     public void segmentSizeCleanup() throws Exception {
         final KafkaJournal journal = new KafkaJournal(journalDirectory,
                 scheduler,
-                Size.kilobytes(1l),
-                Duration.standardHours(1),
-                Size.kilobytes(10l),
-                Duration.standardDays(1),
-                1_000_000,
-                Duration.standardMinutes(1),
+                new KafkaJournal.Settings()
+                        .segmentSize(Size.kilobytes(1l))
+                        .segmentAge(Duration.standardHours(1))
+                        .retentionSize(Size.kilobytes(10l))
+                        .retentionAge(Duration.standardDays(1))
+                        .flushInterval(1_000_000)
+                        .flushAge(Duration.standardMinutes(1)),
                 new MetricRegistry());
         final File messageJournalDir = new File(journalDirectory, "messagejournal-0");
         assertTrue(messageJournalDir.exists());
@@ -203,12 +418,13 @@ public class KafkaJournalTest {
 
             final KafkaJournal journal = new KafkaJournal(journalDirectory,
                     scheduler,
-                    Size.kilobytes(1l),
-                    Duration.standardHours(1),
-                    Size.kilobytes(10l),
-                    Duration.standardMinutes(1),
-                    1_000_000,
-                    Duration.standardMinutes(1),
+                    new KafkaJournal.Settings()
+                            .segmentSize(Size.kilobytes(1l))
+                            .segmentAge(Duration.standardHours(1))
+                            .retentionSize(Size.kilobytes(10l))
+                            .retentionAge(Duration.standardMinutes(1))
+                            .flushInterval(1_000_000)
+                            .flushAge(Duration.standardMinutes(1)),
                     new MetricRegistry());
             final File messageJournalDir = new File(journalDirectory, "messagejournal-0");
             assertTrue(messageJournalDir.exists());
@@ -254,12 +470,13 @@ public class KafkaJournalTest {
     public void segmentCommittedCleanup() throws Exception {
         final KafkaJournal journal = new KafkaJournal(journalDirectory,
                 scheduler,
-                Size.kilobytes(1l),
-                Duration.standardHours(1),
-                Size.petabytes(1l), // never clean by size in this test
-                Duration.standardDays(1),
-                1_000_000,
-                Duration.standardMinutes(1),
+                new KafkaJournal.Settings()
+                        .segmentSize(Size.kilobytes(1l))
+                        .segmentAge(Duration.standardHours(1))
+                        .retentionSize(Size.petabytes(1l)) // never clean by size in this test
+                        .retentionAge(Duration.standardDays(1))
+                        .flushInterval(1_000_000)
+                        .flushAge(Duration.standardMinutes(1)),
                 new MetricRegistry());
         final File messageJournalDir = new File(journalDirectory, "messagejournal-0");
         assertTrue(messageJournalDir.exists());
@@ -302,12 +519,13 @@ public class KafkaJournalTest {
 
         final Journal journal = new KafkaJournal(journalDirectory,
                 scheduler,
-                Size.megabytes(100l),
-                Duration.standardHours(1),
-                Size.megabytes(5l),
-                Duration.standardHours(1),
-                1_000_000,
-                Duration.standardMinutes(1),
+                new KafkaJournal.Settings()
+                        .segmentSize(Size.megabytes(100l))
+                        .segmentAge(Duration.standardHours(1))
+                        .retentionSize(Size.megabytes(5l))
+                        .retentionAge(Duration.standardHours(1))
+                        .flushInterval(1_000_000)
+                        .flushAge(Duration.standardMinutes(1)),
                 new MetricRegistry());
     }
 
@@ -0,0 +1,381 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.streams;
+
+import com.github.joschi.jadconfig.util.Duration;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.lordofthejars.nosqlunit.mongodb.InMemoryMongoDb;
+import com.mongodb.DB;
+import com.mongodb.DBObject;
+import org.graylog2.Configuration;
+import org.graylog2.cluster.Node;
+import org.graylog2.cluster.NodeService;
+import org.graylog2.database.MongoConnection;
+import org.graylog2.database.MongoConnectionRule;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.ServerStatus;
+import org.graylog2.plugin.Tools;
+import org.graylog2.plugin.streams.Stream;
+import org.graylog2.plugin.system.NodeId;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
+import org.joda.time.DateTimeZone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.lordofthejars.nosqlunit.mongodb.InMemoryMongoDb.InMemoryMongoRuleBuilder.newInMemoryMongoDbRule;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class StreamRollupsTest {
+    @ClassRule
+    public static final InMemoryMongoDb IN_MEMORY_MONGO_DB = newInMemoryMongoDbRule().build();
+
+    private static final DateTime START = new DateTime(2015, 1, 1, 12, 0, 0, DateTimeZone.UTC);
+
+    @Rule
+    public MongoConnectionRule mongoRule = MongoConnectionRule.build("test");
+
+    @Mock
+    private Configuration configuration;
+    @Mock
+    private MongoConnection mongoConnection;
+    @Mock
+    private NodeService nodeService;
+    @Mock
+    private ServerStatus serverStatus;
+    @Mock
+    private NodeId nodeId;
+    @Mock
+    private Stream stream;
+
+    @Before
+    public void setUp() throws Exception {
+        when(configuration.isStreamRollupsEnabled()).thenReturn(true);
+        when(configuration.getStreamRollupsRetention()).thenReturn(Duration.hours(1));
+        when(serverStatus.getNodeId()).thenReturn(nodeId);
+        when(nodeId.toString()).thenReturn("node-1");
+        when(stream.getId()).thenReturn("stream-1");
+
+        final DB db = mongoRule.getMongoConnection().getDatabase();
+        db.getCollection("stream_rollups").drop();
+        db.getCollection("stream_rollup_coverage").drop();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        DateTimeUtils.setCurrentMillisSystem();
+    }
+
+    @Test
+    public void testRecordCountsMessagesPerMinute() throws Exception {
+        final StreamRollups rollups = new StreamRollups(configuration, mongoConnection, nodeService, serverStatus);
+        final DateTime minute = Tools.iso8601().withSecondOfMinute(0).withMillisOfSecond(0);
+        final List<Stream> streams = Collections.singletonList(stream);
+
+        rollups.record(message(minute.plusSeconds(1), 1), streams);
+        rollups.record(message(minute.plusSeconds(59), 2), streams);
+        rollups.record(message(minute.minusSeconds(1), 3), streams);
+
+        assertEquals(2, rollups.bucket("stream-1", minute.getMillis()).getCount());
+        assertEquals(1, rollups.bucket("stream-1", minute.minusMinutes(1).getMillis()).getCount());
+    }
+
+    @Test
+    public void testRecordIgnoresMessagesOutsideOfRetention() throws Exception {
+        final StreamRollups rollups = new StreamRollups(configuration, mongoConnection, nodeService, serverStatus);
+        final DateTime old = Tools.iso8601().minusHours(2).withSecondOfMinute(0).withMillisOfSecond(0);
+
+        rollups.record(message(old, 1), Collections.singletonList(stream));
+
+        assertEquals(0, rollups.bucket("stream-1", old.getMillis()).getCount());
+    }
+
+    @Test
+    public void testRecordRollsUpTrackedNumericFields() throws Exception {
+        final StreamRollups rollups = new StreamRollups(configuration, mongoConnection, nodeService, serverStatus);
+        rollups.trackFields(ImmutableMap.<String, Set<String>>of("stream-1", ImmutableSet.of("took_ms")));
+        final DateTime minute = Tools.iso8601().withSecondOfMinute(0).withMillisOfSecond(0);
+        final List<Stream> streams = Collections.singletonList(stream);
+
+        rollups.record(message(minute, 2), streams);
+        rollups.record(message(minute, 4), streams);
+        rollups.record(message(minute, 9), streams);
+        final Message nonNumeric = message(minute, 0);
+        nonNumeric.addField("took_ms", "slow");
+        rollups.record(nonNumeric, streams);
+
+        final StreamRollups.Bucket bucket = rollups.bucket("stream-1", minute.getMillis());
+        assertEquals(4, bucket.getCount());
+        assertNull(bucket.getFieldStats("other"));
+
+        final StreamRollups.FieldStats stats = bucket.getFieldStats("took_ms");
+        assertNotNull(stats);
+        assertEquals(3, stats.getCount());
+        assertEquals(15.0, stats.getSum(), 0.0001);
+        assertEquals(2.0, stats.getMin(), 0.0001);
+        assertEquals(9.0, stats.getMax(), 0.0001);
+        assertEquals(5.0, stats.getMean(), 0.0001);
+        assertEquals(Math.sqrt(26.0 / 3), stats.getStdDeviation(), 0.0001);
+    }
+
+    @Test
+    public void testBucketChangesAreOnlyReturnedOnce() throws Exception {
+        final StreamRollups rollups = new StreamRollups(configuration, mongoConnection, nodeService, serverStatus);
+        final DateTime minute = Tools.iso8601().withSecondOfMinute(0).withMillisOfSecond(0);
+        rollups.record(message(minute, 1), Collections.singletonList(stream));
+
+        final StreamRollups.Bucket bucket = rollups.bucket("stream-1", minute.getMillis());
+        final DBObject changes = bucket.changes();
+        assertNotNull(changes);
+        assertEquals(1L, changes.get("count"));
+        assertNull(bucket.changes());
+
+        bucket.markChanged();
+        assertNotNull(bucket.changes());
+    }
+
+    @Test
+    public void testFieldStatsMergeAndSerialization() throws Exception {
+        final StreamRollups.FieldStats first = new StreamRollups.FieldStats();
+        first.add(1);
+        first.add(3);
+        final StreamRollups.FieldStats second = new StreamRollups.FieldStats();
+        second.add(8);
+
+        final StreamRollups.FieldStats merged = new StreamRollups.FieldStats();
+        merged.merge(StreamRollups.FieldStats.fromDBObject(first.toDBObject()));
+        merged.merge(StreamRollups.FieldStats.fromDBObject(second.toDBObject()));
+
+        assertEquals(3, merged.getCount());
+        assertEquals(12.0, merged.getSum(), 0.0001);
+        assertEquals(1.0, merged.getMin(), 0.0001);
+        assertEquals(8.0, merged.getMax(), 0.0001);
+        assertEquals(4.0, merged.getMean(), 0.0001);
+    }
+
+    @Test
+    public void testDisabledRollupsNeverAnswer() throws Exception {
+        when(configuration.isStreamRollupsEnabled()).thenReturn(false);
+        final StreamRollups rollups = new StreamRollups(configuration, mongoConnection, nodeService, serverStatus);
+        final DateTime now = Tools.iso8601();
+
+        rollups.record(message(now, 1), Lists.newArrayList(stream));
+        rollups.flush();
+
+        assertNull(rollups.count("stream-1", now.minusMinutes(5)));
+        assertNull(rollups.fieldStats("stream-1", "took_ms", now.minusMinutes(5)));
+        verifyZeroInteractions(mongoConnection, nodeService);
+    }
+
+    @Test
+    public void testCountMergesTheRollupsOfAllNodes() throws Exception {
+        setTime(START);
+        final StreamRollups node1 = nodeRollups("node-1");
+        final StreamRollups node2 = nodeRollups("node-2");
+        activeNodes("node-1", "node-2");
+        final List<Stream> streams = Collections.singletonList(stream);
+
+        setTime(START.plusMinutes(3));
+        node1.record(message(START.plusSeconds(10), 1), streams);
+        node1.record(message(START.plusMinutes(1).plusSeconds(5), 1), streams);
+        node2.record(message(START.plusMinutes(1).plusSeconds(20), 1), streams);
+        node2.record(message(START.plusMinutes(2).plusSeconds(30), 1), streams);
+        node1.flush();
+        node2.flush();
+
+        assertEquals(Long.valueOf(4), node1.count("stream-1", START));
+        assertEquals(Long.valueOf(4), node2.count("stream-1", START));
+        assertEquals(Long.valueOf(0), node1.count("stream-2", START));
+    }
+
+    @Test
+    public void testCountSkipsThePartialFirstMinute() throws Exception {
+        setTime(START);
+        final StreamRollups rollups = nodeRollups("node-1");
+        activeNodes("node-1");
+        final List<Stream> streams = Collections.singletonList(stream);
+
+        setTime(START.plusMinutes(3));
+        rollups.record(message(START.plusSeconds(10), 1), streams);
+        rollups.record(message(START.plusSeconds(50), 1), streams);
+        rollups.record(message(START.plusMinutes(1).plusSeconds(5), 1), streams);
+        rollups.flush();
+
+        // the messages of the first minute might have been older than the requested time range
+        assertEquals(Long.valueOf(1), rollups.count("stream-1", START.plusSeconds(30)));
+        assertEquals(Long.valueOf(3), rollups.count("stream-1", START));
+    }
+
+    @Test
+    public void testCountDoesNotIncludeMessagesFromTheFuture() throws Exception {
+        setTime(START);
+        final StreamRollups rollups = nodeRollups("node-1");
+        activeNodes("node-1");
+        final List<Stream> streams = Collections.singletonList(stream);
+
+        setTime(START.plusMinutes(1).plusSeconds(10));
+        rollups.record(message(START.plusMinutes(1), 1), streams);
+        rollups.record(message(START.plusMinutes(3), 1), streams);
+        rollups.flush();
+        assertEquals(Long.valueOf(1), rollups.count("stream-1", START));
+
+        setTime(START.plusMinutes(3).plusSeconds(10));
+        rollups.flush();
+        assertEquals(Long.valueOf(2), rollups.count("stream-1", START));
+    }
+
+    @Test
+    public void testRollupsExpireIndependentlyOfTheIndexOptions() throws Exception {
+        setTime(START);
+        final StreamRollups rollups = nodeRollups("node-1");
+        activeNodes("node-1");
+        rollups.record(message(START, 1), Collections.singletonList(stream));
+        rollups.flush();
+
+        final DBObject rollup = mongoRule.getMongoConnection().getDatabase().getCollection("stream_rollups").findOne();
+        assertEquals(START.plusHours(2).toDate(), rollup.get("expire_at"));
+
+        // a changed retention time must not conflict with the existing indices
+        when(configuration.getStreamRollupsRetention()).thenReturn(Duration.hours(2));
+        final StreamRollups restarted = nodeRollups("node-1");
+        restarted.flush();
+        assertEquals(Long.valueOf(1), restarted.count("stream-1", START));
+    }
+
+    @Test
+    public void testFieldStatsMergeTheRollupsOfAllNodes() throws Exception {
+        setTime(START);
+        final StreamRollups node1 = nodeRollups("node-1");
+        final StreamRollups node2 = nodeRollups("node-2");
+        final Map<String, Set<String>> fields = ImmutableMap.<String, Set<String>>of("stream-1", ImmutableSet.of("took_ms"));
+        node1.trackFields(fields);
+        node2.trackFields(fields);
+        activeNodes("node-1", "node-2");
+        final List<Stream> streams = Collections.singletonList(stream);
+
+        setTime(START.plusMinutes(3));
+        node1.record(message(START.plusSeconds(10), 2), streams);
+        node2.record(message(START.plusSeconds(20), 4), streams);
+        node2.record(message(START.plusMinutes(1), 9), streams);
+        node1.flush();
+        node2.flush();
+
+        final StreamRollups.FieldStats stats = node1.fieldStats("stream-1", "took_ms", START);
+        assertNotNull(stats);
+        assertEquals(3, stats.getCount());
+        assertEquals(15.0, stats.getSum(), 0.0001);
+        assertEquals(2.0, stats.getMin(), 0.0001);
+        assertEquals(9.0, stats.getMax(), 0.0001);
+        assertNull(node1.fieldStats("stream-1", "other", START));
+    }
+
+    @Test
+    public void testRangesBeforeANodeStartedAreNotCovered() throws Exception {
+        setTime(START);
+        final StreamRollups node1 = nodeRollups("node-1");
+        setTime(START.plusMinutes(2));
+        final StreamRollups node2 = nodeRollups("node-2");
+        activeNodes("node-1", "node-2");
+        node1.flush();
+        node2.flush();
+
+        assertNull(node1.count("stream-1", START));
+        assertNotNull(node1.count("stream-1", START.plusMinutes(2)));
+    }
+
+    @Test
+    public void testRangesAreNotCoveredWithoutRollupsOfAllActiveNodes() throws Exception {
+        setTime(START);
+        final StreamRollups rollups = nodeRollups("node-1");
+        activeNodes("node-1", "node-3");
+        rollups.flush();
+
+        assertNull(rollups.count("stream-1", START));
+    }
+
+    @Test
+    public void testRangesAreNotCoveredByStaleRollups() throws Exception {
+        setTime(START);
+        final StreamRollups rollups = nodeRollups("node-1");
+        activeNodes("node-1");
+        rollups.flush();
+        assertNotNull(rollups.count("stream-1", START));
+
+        setTime(START.plusSeconds(31));
+        assertNull(rollups.count("stream-1", START));
+    }
+
+    @Test
+    public void testRangesAreNotCoveredIfANodeStoppedDuringThem() throws Exception {
+        setTime(START);
+        final StreamRollups node1 = nodeRollups("node-1");
+        final StreamRollups node2 = nodeRollups("node-2");
+        setTime(START.plusMinutes(1));
+        node1.flush();
+        node2.flush();
+        activeNodes("node-1");
+
+        // the last counts of the stopped node might not have been written
+        assertNull(node1.count("stream-1", START));
+        assertNotNull(node1.count("stream-1", START.plusMinutes(1).plusSeconds(1)));
+    }
+
+    private StreamRollups nodeRollups(String node) {
+        final ServerStatus nodeServerStatus = mock(ServerStatus.class);
+        final NodeId nodeNodeId = mock(NodeId.class);
+        when(nodeServerStatus.getNodeId()).thenReturn(nodeNodeId);
+        when(nodeNodeId.toString()).thenReturn(node);
+        return new StreamRollups(configuration, mongoRule.getMongoConnection(), nodeService, nodeServerStatus);
+    }
+
+    private void activeNodes(String... nodes) {
+        final ImmutableMap.Builder<String, Node> activeNodes = ImmutableMap.builder();
+        for (String node : nodes) {
+            activeNodes.put(node, mock(Node.class));
+        }
+        when(nodeService.allActive(Node.Type.SERVER)).thenReturn(activeNodes.build());
+    }
+
+    private static void setTime(DateTime time) {
+        DateTimeUtils.setCurrentMillisFixed(time.getMillis());
+    }
+
+    private Message message(DateTime timestamp, long tookMs) {
+        final Message message = new Message("test", "localhost", timestamp);
+        message.addField("took_ms", tookMs);
+        return message;
+    }
+}
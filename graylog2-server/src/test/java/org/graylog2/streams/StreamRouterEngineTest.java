@@ -18,6 +18,7 @@
 package org.graylog2.streams;
 
 import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import org.bson.types.ObjectId;
@@ -35,12 +36,12 @@ import org.mockito.runners.MockitoJUnitRunner;
 
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Executors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -55,7 +56,7 @@ public class StreamRouterEngineTest {
     }
 
     private StreamRouterEngine newEngine(List<Stream> streams) {
-        return new StreamRouterEngine(streams, Executors.newSingleThreadExecutor(), streamFaultManager, streamMetrics);
+        return new StreamRouterEngine(streams, streamFaultManager, streamMetrics);
     }
 
     @Test
@@ -443,6 +444,66 @@ public class StreamRouterEngineTest {
         assertNotEquals(engine1.getFingerprint(), engine3.getFingerprint());
     }
 
+    @Test
+    public void testLiteralRegexMatch() throws Exception {
+        final StreamMock stream1 = getStreamMock("test1");
+        final StreamMock stream2 = getStreamMock("test2");
+        final StreamRuleMock rule1 = new StreamRuleMock(ImmutableMap.<String, Object>of(
+                "_id", new ObjectId(),
+                "field", "testfield",
+                "value", "error",
+                "type", StreamRuleType.REGEX.toInteger(),
+                "stream_id", stream1.getId()
+        ));
+        final StreamRuleMock rule2 = new StreamRuleMock(ImmutableMap.<String, Object>of(
+                "_id", new ObjectId(),
+                "field", "testfield",
+                "value", "^GET /api\\.",
+                "type", StreamRuleType.REGEX.toInteger(),
+                "stream_id", stream2.getId()
+        ));
+
+        stream1.setStreamRules(Lists.<StreamRule>newArrayList(rule1));
+        stream2.setStreamRules(Lists.<StreamRule>newArrayList(rule2));
+
+        final StreamRouterEngine engine = newEngine(Lists.<Stream>newArrayList(stream1, stream2));
+        final Message message = getMessage();
+
+        message.addField("testfield", "GET /apix error error");
+        assertEquals(Lists.newArrayList(stream1), engine.match(message));
+
+        message.addField("testfield", "GET /api.json");
+        assertEquals(Lists.newArrayList(stream2), engine.match(message));
+
+        message.addField("testfield", "POST /api.json error");
+        assertEquals(Lists.newArrayList(stream1), engine.match(message));
+    }
+
+    @Test
+    public void testRegexRuleTimeout() throws Exception {
+        final StreamMock stream = getStreamMock("test");
+        final StreamRuleMock rule = new StreamRuleMock(ImmutableMap.<String, Object>of(
+                "_id", new ObjectId(),
+                "field", "testfield",
+                "value", "x+y",
+                "type", StreamRuleType.REGEX.toInteger(),
+                "stream_id", stream.getId()
+        ));
+
+        stream.setStreamRules(Lists.<StreamRule>newArrayList(rule));
+
+        // No time budget at all, every regex evaluation that needs more than a few character accesses times out.
+        when(streamFaultManager.getStreamProcessingTimeout()).thenReturn(0L);
+
+        final StreamRouterEngine engine = newEngine(Lists.<Stream>newArrayList(stream));
+        final Message message = getMessage();
+
+        message.addField("testfield", Strings.repeat("x", 10000));
+
+        assertTrue(engine.match(message).isEmpty());
+        verify(streamFaultManager).registerFailure(stream);
+    }
+
     private StreamMock getStreamMock(String title) {
         return new StreamMock(ImmutableMap.<String, Object>of("_id", new ObjectId(), "title", title));
     }
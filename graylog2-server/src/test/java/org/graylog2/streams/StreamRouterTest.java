@@ -0,0 +1,124 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.streams;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.eventbus.EventBus;
+import org.bson.types.ObjectId;
+import org.graylog2.database.NotFoundException;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.ServerStatus;
+import org.graylog2.plugin.streams.Stream;
+import org.graylog2.plugin.streams.StreamRule;
+import org.graylog2.plugin.streams.StreamRuleType;
+import org.graylog2.streams.events.StreamsChangedEvent;
+import org.graylog2.streams.matchers.StreamRuleMock;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class StreamRouterTest {
+    @Mock
+    private StreamService streamService;
+    @Mock
+    private ServerStatus serverStatus;
+    @Mock
+    private StreamChangeNotifier streamChangeNotifier;
+    @Mock
+    private EventBus eventBus;
+    @Mock
+    private ScheduledExecutorService scheduler;
+    @Mock
+    private StreamFaultManager streamFaultManager;
+
+    private final StreamRouterEngine.Factory engineFactory = new StreamRouterEngine.Factory() {
+        @Override
+        public StreamRouterEngine create(List<Stream> streams) {
+            return new StreamRouterEngine(streams, streamFaultManager, new StreamMetrics(new MetricRegistry()));
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        when(streamFaultManager.getStreamProcessingTimeout()).thenReturn(50L);
+    }
+
+    @Test
+    public void testIncrementalUpdate() throws Exception {
+        final StreamMock stream1 = getStreamMock("test1", "field1");
+        final StreamMock stream2 = getStreamMock("test2", "field2");
+        when(streamService.loadAllEnabledUncached()).thenReturn(Lists.<Stream>newArrayList(stream1));
+
+        final StreamRouter router = new StreamRouter(streamService, serverStatus, engineFactory, streamChangeNotifier, eventBus, scheduler);
+        verify(eventBus).register(router);
+
+        final Message message = new Message("test message", "localhost", new DateTime());
+        message.addField("field1", "foo");
+        message.addField("field2", "bar");
+
+        assertEquals(Lists.<Stream>newArrayList(stream1), router.route(message));
+
+        // New stream.
+        when(streamService.load(stream2.getId())).thenReturn(stream2);
+        router.handleStreamsChanged(StreamsChangedEvent.create(stream2.getId()));
+
+        assertEquals(Sets.<Stream>newHashSet(stream1, stream2), Sets.newHashSet(router.route(message)));
+
+        // Deleted stream.
+        when(streamService.load(stream1.getId())).thenThrow(new NotFoundException());
+        router.handleStreamsChanged(StreamsChangedEvent.create(stream1.getId()));
+
+        assertEquals(Lists.<Stream>newArrayList(stream2), router.route(message));
+
+        // Paused stream.
+        stream2.setDisabled(true);
+        router.handleStreamsChanged(StreamsChangedEvent.create(stream2.getId()));
+
+        assertEquals(Lists.<Stream>newArrayList(), router.route(message));
+
+        // Only the initial load has to query all streams.
+        verify(streamService, times(1)).loadAllEnabled();
+    }
+
+    private StreamMock getStreamMock(String title, String field) {
+        final StreamMock stream = new StreamMock(ImmutableMap.<String, Object>of("_id", new ObjectId(), "title", title));
+        final StreamRuleMock rule = new StreamRuleMock(ImmutableMap.<String, Object>of(
+                "_id", new ObjectId(),
+                "field", field,
+                "type", StreamRuleType.PRESENCE.toInteger(),
+                "stream_id", stream.getId()
+        ));
+        stream.setStreamRules(Lists.<StreamRule>newArrayList(rule));
+
+        return stream;
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.streams;
+
+import com.google.common.collect.ImmutableList;
+import com.lordofthejars.nosqlunit.annotation.UsingDataSet;
+import com.lordofthejars.nosqlunit.core.LoadStrategyEnum;
+import com.lordofthejars.nosqlunit.mongodb.InMemoryMongoDb;
+import org.graylog2.database.MongoConnectionRule;
+import org.graylog2.plugin.streams.StreamRule;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.lordofthejars.nosqlunit.mongodb.InMemoryMongoDb.InMemoryMongoRuleBuilder.newInMemoryMongoDbRule;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.mock;
+
+public class StreamRuleServiceImplTest {
+    @ClassRule
+    public static final InMemoryMongoDb IN_MEMORY_MONGO_DB = newInMemoryMongoDbRule().build();
+
+    @Rule
+    public MongoConnectionRule mongoRule = MongoConnectionRule.build("test");
+
+    private StreamRuleService streamRuleService;
+
+    @Before
+    public void setUp() {
+        streamRuleService = new StreamRuleServiceImpl(mongoRule.getMongoConnection(), mock(StreamChangeNotifier.class));
+    }
+
+    @Test
+    @UsingDataSet(locations = "streamRulesForTwoStreams.json", loadStrategy = LoadStrategyEnum.CLEAN_INSERT)
+    public void loadForStreamIdsGroupsRulesByStream() throws Exception {
+        final Map<String, List<StreamRule>> rules = streamRuleService.loadForStreamIds(
+                ImmutableList.of("54e3deadbeefdeadbeefaaaa", "54e3deadbeefdeadbeefbbbb", "54e3deadbeefdeadbeefdddd"));
+
+        assertEquals(2, rules.size());
+        assertEquals(2, rules.get("54e3deadbeefdeadbeefaaaa").size());
+        assertEquals(1, rules.get("54e3deadbeefdeadbeefbbbb").size());
+        assertEquals("c", rules.get("54e3deadbeefdeadbeefbbbb").get(0).getValue());
+        assertFalse(rules.containsKey("54e3deadbeefdeadbeefcccc"));
+    }
+
+    @Test
+    @UsingDataSet(locations = "streamRulesForTwoStreams.json", loadStrategy = LoadStrategyEnum.CLEAN_INSERT)
+    public void loadForStreamId() throws Exception {
+        final List<StreamRule> rules = streamRuleService.loadForStreamId("54e3deadbeefdeadbeefaaaa");
+
+        assertEquals(2, rules.size());
+        assertEquals("54e3deadbeefdeadbeefaaaa", rules.get(0).getStreamId());
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.streams.matchers;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import org.junit.Test;
+
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AhoCorasickAutomatonTest {
+    @Test
+    public void testFindSubstrings() throws Exception {
+        final AhoCorasickAutomaton<String> automaton = new AhoCorasickAutomaton<>();
+        automaton.add("he", "he");
+        automaton.add("she", "she");
+        automaton.add("his", "his");
+        automaton.add("hers", "hers");
+        automaton.build();
+
+        final Set<String> result = Sets.newHashSet();
+        automaton.findSubstrings("ushers", result);
+
+        assertEquals(ImmutableSet.of("he", "she", "hers"), result);
+    }
+
+    @Test
+    public void testFindSubstringsWithoutMatch() throws Exception {
+        final AhoCorasickAutomaton<String> automaton = new AhoCorasickAutomaton<>();
+        automaton.add("foo", "foo");
+        automaton.build();
+
+        final Set<String> result = Sets.newHashSet();
+        automaton.findSubstrings("fobar", result);
+
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    public void testFindPrefixes() throws Exception {
+        final AhoCorasickAutomaton<String> automaton = new AhoCorasickAutomaton<>();
+        automaton.add("GET", "get");
+        automaton.add("GET /api", "api");
+        automaton.add("/api", "path");
+        automaton.build();
+
+        final Set<String> result = Sets.newHashSet();
+        automaton.findPrefixes("GET /api/streams", result);
+
+        assertEquals(ImmutableSet.of("get", "api"), result);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAddAfterBuild() throws Exception {
+        final AhoCorasickAutomaton<String> automaton = new AhoCorasickAutomaton<>();
+        automaton.build();
+        automaton.add("foo", "foo");
+    }
+
+    @Test
+    public void testLiteralPattern() throws Exception {
+        final LiteralPattern substring = LiteralPattern.parse("error");
+        assertEquals("error", substring.getLiteral());
+        assertFalse(substring.isPrefix());
+
+        final LiteralPattern prefix = LiteralPattern.parse("^GET /api\\.");
+        assertEquals("GET /api.", prefix.getLiteral());
+        assertTrue(prefix.isPrefix());
+
+        assertNull(LiteralPattern.parse("^"));
+        assertNull(LiteralPattern.parse("foo$"));
+        assertNull(LiteralPattern.parse("fo+"));
+        assertNull(LiteralPattern.parse("\\d+"));
+    }
+}
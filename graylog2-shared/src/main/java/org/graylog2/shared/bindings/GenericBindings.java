@@ -39,6 +39,7 @@ import org.graylog2.shared.bindings.providers.NodeIdProvider;
 import org.graylog2.shared.bindings.providers.ServiceManagerProvider;
 import org.graylog2.shared.bindings.providers.SystemOkHttpClientProvider;
 import org.graylog2.shared.buffers.InputBufferImpl;
+import org.graylog2.shared.buffers.JournallingMessageHandler;
 import org.graylog2.shared.buffers.ProcessBuffer;
 import org.graylog2.shared.buffers.processors.DecodingProcessor;
 import org.graylog2.shared.inputs.InputRegistry;
@@ -47,7 +48,6 @@ import org.graylog2.shared.stats.ThroughputStats;
 import org.jboss.netty.util.HashedWheelTimer;
 import org.msgpack.MessagePack;
 
-import java.util.concurrent.Semaphore;
 
 public class GenericBindings extends AbstractModule {
     private final InstantiationService instantiationService;
@@ -66,6 +66,7 @@ public class GenericBindings extends AbstractModule {
         bind(InstantiationService.class).toInstance(instantiationService);
 
         install(new FactoryModuleBuilder().build(DecodingProcessor.Factory.class));
+        install(new FactoryModuleBuilder().build(JournallingMessageHandler.Factory.class));
 
         bind(ProcessBuffer.class).asEagerSingleton();
         bind(InputBuffer.class).to(InputBufferImpl.class);
@@ -78,8 +79,6 @@ public class GenericBindings extends AbstractModule {
 
         bind(EventBus.class).toProvider(EventBusProvider.class).in(Scopes.SINGLETON);
 
-        bind(Semaphore.class).annotatedWith(Names.named("JournalSignal")).toInstance(new Semaphore(0));
-
         install(new FactoryModuleBuilder().build(new TypeLiteral<IOState.Factory<MessageInput>>(){}));
 
         bind(InputRegistry.class).asEagerSingleton();
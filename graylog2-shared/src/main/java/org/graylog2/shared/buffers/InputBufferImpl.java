@@ -26,6 +26,7 @@ import com.lmax.disruptor.dsl.ProducerType;
 import org.graylog2.plugin.BaseConfiguration;
 import org.graylog2.plugin.buffers.InputBuffer;
 import org.graylog2.plugin.journal.RawMessage;
+import org.graylog2.shared.journal.Journal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -51,7 +52,8 @@ public class InputBufferImpl implements InputBuffer {
                            BaseConfiguration configuration,
                            Provider<DirectMessageHandler> directMessageHandlerProvider,
                            Provider<RawMessageEncoderHandler> rawMessageEncoderHandlerProvider,
-                           Provider<JournallingMessageHandler> spoolingMessageHandlerProvider) {
+                           JournallingMessageHandler.Factory spoolingMessageHandlerFactory,
+                           Journal journal) {
         final Disruptor<RawMessageEvent> disruptor = new Disruptor<>(
                 RawMessageEvent.FACTORY,
                 configuration.getInputBufferRingSize(),
@@ -68,8 +70,14 @@ public class InputBufferImpl implements InputBuffer {
             for (int i = 0 ; i < numberOfHandlers; i++) {
                 handlers[i] = rawMessageEncoderHandlerProvider.get();
             }
+            // one journalling handler per journal partition, each one writes every nth message
+            final int numberOfPartitions = journal.numberOfPartitions();
+            final JournallingMessageHandler[] spoolingHandlers = new JournallingMessageHandler[numberOfPartitions];
+            for (int i = 0; i < numberOfPartitions; i++) {
+                spoolingHandlers[i] = spoolingMessageHandlerFactory.create(i, numberOfPartitions);
+            }
             disruptor.handleEventsWithWorkerPool(handlers)
-                    .then(spoolingMessageHandlerProvider.get());
+                    .then(spoolingHandlers);
         } else{
             LOG.info("Message journal is disabled.");
             final DirectMessageHandler[] handlers = new DirectMessageHandler[numberOfHandlers];
@@ -20,50 +20,69 @@ import com.codahale.metrics.Counter;
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Function;
 import com.google.common.collect.Lists;
+import com.google.inject.assistedinject.Assisted;
 import com.lmax.disruptor.EventHandler;
 import org.graylog2.shared.journal.Journal;
+import org.graylog2.shared.journal.JournalSignal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
-import javax.inject.Named;
 import java.util.List;
-import java.util.concurrent.Semaphore;
 
 import static com.google.common.collect.Lists.transform;
 
+/**
+ * Writes the messages of the input buffer to one partition of the journal. Every handler sees all events, but only
+ * journals every {@code numberOfPartitions}th one, so the messages are spread evenly across the partitions.
+ */
 public class JournallingMessageHandler implements EventHandler<RawMessageEvent> {
     private static final Logger log = LoggerFactory.getLogger(JournallingMessageHandler.class);
 
+    public interface Factory {
+        JournallingMessageHandler create(@Assisted("partition") int partition,
+                                         @Assisted("numberOfPartitions") int numberOfPartitions);
+    }
+
     private final List<RawMessageEvent> batch = Lists.newArrayList();
     private final Counter byteCounter;
     private final Journal journal;
-    private final Semaphore journalFilled;
+    private final JournalSignal journalSignal;
+    private final int partition;
+    private final int numberOfPartitions;
 
     @Inject
-    public JournallingMessageHandler(MetricRegistry metrics, Journal journal, @Named("JournalSignal") Semaphore journalFilled) {
+    public JournallingMessageHandler(MetricRegistry metrics,
+                                     Journal journal,
+                                     JournalSignal journalSignal,
+                                     @Assisted("partition") int partition,
+                                     @Assisted("numberOfPartitions") int numberOfPartitions) {
         this.journal = journal;
-        this.journalFilled = journalFilled;
+        this.journalSignal = journalSignal;
+        this.partition = partition;
+        this.numberOfPartitions = numberOfPartitions;
         byteCounter = metrics.counter(MetricRegistry.name(JournallingMessageHandler.class, "written_bytes"));
     }
 
     @Override
     public void onEvent(RawMessageEvent event, long sequence, boolean endOfBatch) throws Exception {
-        batch.add(event);
+        if (sequence % numberOfPartitions == partition) {
+            batch.add(event);
+        }
 
-        if (endOfBatch) {
-            log.debug("End of batch, journalling {} messages", batch.size());
+        if (endOfBatch && !batch.isEmpty()) {
+            log.debug("End of batch, journalling {} messages to partition {}", batch.size(), partition);
             // write batch to journal
 
             final Converter converter = new Converter();
             // copy to avoid re-running this all the time
             final List<Journal.Entry> entries = Lists.newArrayList(transform(batch, converter));
-            final long lastOffset = journal.write(entries);
+            final long lastOffset = journal.write(partition, entries);
             log.debug("Processed batch, wrote {} bytes, last journal offset: {}, signalling reader.",
                       converter.getBytesWritten(),
                       lastOffset);
-            journalFilled.release();
+            journalSignal.signal(partition);
 
             batch.clear();
         }
@@ -30,6 +30,7 @@ import org.graylog2.plugin.buffers.MessageEvent;
 import org.graylog2.plugin.journal.RawMessage;
 import org.graylog2.shared.buffers.processors.DecodingProcessor;
 import org.graylog2.shared.buffers.processors.ProcessBufferProcessor;
+import org.graylog2.shared.journal.Journal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,6 +38,7 @@ import javax.annotation.Nonnull;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Provider;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
@@ -121,6 +123,27 @@ public class ProcessBuffer extends Buffer {
         afterInsert(1);
     }
 
+    /**
+     * Publishes still encoded journal entries, claiming and publishing ranges of the ring buffer instead of single
+     * sequences. The entries are decoded by the processor threads.
+     */
+    public void insertBlocking(@Nonnull List<Journal.JournalReadEntry> entries) {
+        final int size = entries.size();
+        int index = 0;
+        while (index < size) {
+            // we can never claim more than the whole ring buffer at once
+            final int length = Math.min(size - index, ringBufferSize);
+            final long hi = ringBuffer.next(length);
+            final long lo = hi - (length - 1);
+            for (long sequence = lo; sequence <= hi; sequence++) {
+                final Journal.JournalReadEntry entry = entries.get(index++);
+                ringBuffer.get(sequence).setEncodedRaw(entry.getPayload(), entry.getOffset());
+            }
+            ringBuffer.publish(lo, hi);
+            afterInsert(length);
+        }
+    }
+
     @Override
     protected void afterInsert(int n) {
         incomingMessages.mark(n);
@@ -19,6 +19,7 @@ package org.graylog2.shared.buffers;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.lmax.disruptor.WorkHandler;
+import org.graylog2.shared.journal.CodecConfigurationTable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,15 +30,19 @@ import static com.codahale.metrics.MetricRegistry.name;
 public class RawMessageEncoderHandler implements WorkHandler<RawMessageEvent> {
     private static final Logger log = LoggerFactory.getLogger(RawMessageEncoderHandler.class);
     private final Meter incomingMessages;
+    private final CodecConfigurationTable codecConfigurationTable;
 
     @Inject
-    public RawMessageEncoderHandler(MetricRegistry metricRegistry) {
+    public RawMessageEncoderHandler(MetricRegistry metricRegistry, CodecConfigurationTable codecConfigurationTable) {
+        this.codecConfigurationTable = codecConfigurationTable;
         incomingMessages = metricRegistry.meter(name(RawMessageEncoderHandler.class, "incomingMessages"));
     }
 
     @Override
     public void onEvent(RawMessageEvent event) throws Exception {
         incomingMessages.mark();
+        // the journal entry only references the codec configuration, make sure it can be resolved later on
+        codecConfigurationTable.register(event.getRawMessage().getCodecConfig());
         event.setEncodedRawMessage(event.getRawMessage().encode());
         event.setMessageIdBytes(event.getRawMessage().getIdBytes());
         
@@ -17,7 +17,6 @@
 
 package org.graylog2.shared.buffers.processors;
 
-import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 import com.google.common.base.Strings;
 import com.google.common.collect.Iterables;
@@ -31,16 +30,16 @@ import org.graylog2.plugin.ServerStatus;
 import org.graylog2.plugin.buffers.MessageEvent;
 import org.graylog2.plugin.inputs.codecs.Codec;
 import org.graylog2.plugin.journal.RawMessage;
+import org.graylog2.shared.inputs.CodecInstanceRegistry;
+import org.graylog2.shared.journal.Journal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Map;
+import javax.annotation.Nullable;
 import java.util.NoSuchElementException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
-import static com.codahale.metrics.MetricRegistry.name;
-
 public class DecodingProcessor implements EventHandler<MessageEvent> {
     private static final Logger LOG = LoggerFactory.getLogger(DecodingProcessor.class);
 
@@ -50,20 +49,21 @@ public class DecodingProcessor implements EventHandler<MessageEvent> {
         public DecodingProcessor create(@Assisted("decodeTime") Timer decodeTime, @Assisted("parseTime") Timer parseTime);
     }
 
-    private final Map<String, Codec.Factory<? extends Codec>> codecFactory;
+    private final CodecInstanceRegistry.Cache codecCache;
     private final ServerStatus serverStatus;
-    private final MetricRegistry metricRegistry;
+    private final Journal journal;
     private final Timer parseTime;
 
     @AssistedInject
-    public DecodingProcessor(Map<String, Codec.Factory<? extends Codec>> codecFactory,
+    public DecodingProcessor(CodecInstanceRegistry codecInstanceRegistry,
                              final ServerStatus serverStatus,
-                             final MetricRegistry metricRegistry,
+                             final Journal journal,
                              @Assisted("decodeTime") Timer decodeTime,
                              @Assisted("parseTime") Timer parseTime) {
-        this.codecFactory = codecFactory;
+        // each processor thread gets its own codec cache because codecs are not required to be thread-safe
+        this.codecCache = codecInstanceRegistry.newCache();
         this.serverStatus = serverStatus;
-        this.metricRegistry = metricRegistry;
+        this.journal = journal;
 
         // these metrics are global to all processors, thus they are passed in directly to avoid relying on the class name
         this.parseTime = parseTime;
@@ -73,32 +73,54 @@ public class DecodingProcessor implements EventHandler<MessageEvent> {
     @Override
     public void onEvent(MessageEvent event, long sequence, boolean endOfBatch) throws Exception {
         final Timer.Context context = decodeTime.time();
+        final long journalOffset = journalOffsetOf(event);
+        Message message = null;
         try {
+            message = processMessage(rawMessageOf(event));
+        } finally {
             // always set the result of processMessage, even if it is null, to avoid later stages to process old messages.
             // basically this will make sure old messages are cleared out early.
-            event.setMessage(processMessage(event.getRaw()));
-        } finally {
-            if (event.getMessage() != null) {
-                event.getMessage().recordTiming(serverStatus, "decode", context.stop());
+            event.setMessage(message);
+            if (message != null) {
+                message.recordTiming(serverStatus, "decode", context.stop());
+            } else {
+                // dropped messages never reach an output, acknowledge them here so they don't hold back the journal
+                journal.markJournalOffsetCommitted(journalOffset);
             }
             // aid garbage collection to collect the raw message early (to avoid promoting it to later generations).
             event.clearRaw();
         }
     }
 
-    private Message processMessage(RawMessage raw) throws ExecutionException {
-        if (raw == null) {
-            LOG.warn("Ignoring null message");
-            return null;
+    @Nullable
+    private RawMessage rawMessageOf(MessageEvent event) {
+        final RawMessage raw = event.getRaw();
+        if (raw != null) {
+            return raw;
         }
 
-        final Codec.Factory<? extends Codec> factory = codecFactory.get(raw.getCodecName());
-        if(factory == null) {
-            LOG.warn("Couldn't find factory for codec {}, skipping message.", raw.getCodecName());
+        // messages read from the journal are published in their encoded form and decoded on the processor threads
+        final byte[] encodedRaw = event.getEncodedRaw();
+        if (encodedRaw == null) {
             return null;
         }
 
-        final Codec codec = factory.create(raw.getCodecConfig());
+        return RawMessage.decode(encodedRaw, event.getEncodedRawOffset());
+    }
+
+    private long journalOffsetOf(MessageEvent event) {
+        final RawMessage raw = event.getRaw();
+        if (raw != null) {
+            return raw.getJournalOffset();
+        }
+        return event.getEncodedRaw() == null ? -1 : event.getEncodedRawOffset();
+    }
+
+    private Message processMessage(@Nullable RawMessage raw) throws ExecutionException {
+        if (raw == null) {
+            LOG.warn("Ignoring null message");
+            return null;
+        }
 
         // for backwards compatibility: the last source node should contain the input we use.
         // this means that extractors etc defined on the prior inputs are silently ignored.
@@ -110,7 +132,18 @@ public class DecodingProcessor implements EventHandler<MessageEvent> {
         } catch (NoSuchElementException e) {
             inputIdOnCurrentNode = null;
         }
-        final String baseMetricName = name(codec.getClass(), inputIdOnCurrentNode);
+
+        final CodecInstanceRegistry.Entry codecEntry = codecCache.getEntry(raw.getCodecName(),
+                                                                           inputIdOnCurrentNode,
+                                                                           raw.getCodecConfigFingerprint(),
+                                                                           raw.getCodecConfig());
+        if (codecEntry == null) {
+            LOG.warn("Couldn't find factory for codec {}, skipping message.", raw.getCodecName());
+            return null;
+        }
+
+        final Codec codec = codecEntry.getCodec();
+        final CodecInstanceRegistry.InputMetrics inputMetrics = codecEntry.getInputMetrics();
 
         final Message message;
 
@@ -122,18 +155,18 @@ public class DecodingProcessor implements EventHandler<MessageEvent> {
                 message.setJournalOffset(raw.getJournalOffset());
             }
         } catch (RuntimeException e) {
-            metricRegistry.meter(name(baseMetricName, "failures")).mark();
+            inputMetrics.getFailures().mark();
             throw e;
         } finally {
             decodeTime = decodeTimeCtx.stop();
         }
 
         if (message == null) {
-            metricRegistry.meter(name(baseMetricName, "failures")).mark();
+            inputMetrics.getFailures().mark();
             return null;
         }
         if (!message.isComplete()) {
-            metricRegistry.meter(name(baseMetricName, "incomplete")).mark();
+            inputMetrics.getIncomplete().mark();
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Dropping incomplete message. Parsed fields: [{}]", message.getFields());
             }
@@ -141,7 +174,7 @@ public class DecodingProcessor implements EventHandler<MessageEvent> {
         }
 
         message.recordTiming(serverStatus, "parse", decodeTime);
-        metricRegistry.timer(name(baseMetricName, "parseTime")).update(decodeTime, TimeUnit.NANOSECONDS);
+        inputMetrics.getParseTime().update(decodeTime, TimeUnit.NANOSECONDS);
 
         for (final RawMessage.SourceNode node : raw.getSourceNodes()) {
             switch (node.type) {
@@ -196,7 +229,7 @@ public class DecodingProcessor implements EventHandler<MessageEvent> {
             message.setSource("unknown");
         }
 
-        metricRegistry.meter(name(baseMetricName, "processedMessages")).mark();
+        inputMetrics.getProcessedMessages().mark();
         return message;
     }
 }
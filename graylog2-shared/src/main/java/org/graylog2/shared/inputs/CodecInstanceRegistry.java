@@ -0,0 +1,249 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.shared.inputs;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.base.Objects;
+import com.google.common.collect.Maps;
+import org.graylog2.plugin.configuration.Configuration;
+import org.graylog2.plugin.inputs.codecs.Codec;
+import org.graylog2.shared.journal.CodecConfigurationTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Keeps decoded {@link Codec} instances around so they don't have to be created for every single message.
+ * <p/>
+ * Codecs are not required to be thread-safe, so every processor thread gets its own {@link Cache} via
+ * {@link #newCache()}. The caches are keyed by input id and the fingerprint of the codec configuration and are
+ * cleared whenever an input gets stopped, restarted or reconfigured.
+ * <p/>
+ * Every cached codec instance carries the {@link InputMetrics} of its input, so the decoding hot path doesn't have to
+ * build metric names and look them up in the {@link MetricRegistry} for every message.
+ */
+@Singleton
+public class CodecInstanceRegistry {
+    private static final Logger LOG = LoggerFactory.getLogger(CodecInstanceRegistry.class);
+
+    private final Map<String, Codec.Factory<? extends Codec>> codecFactories;
+    private final MetricRegistry metricRegistry;
+    private final CodecConfigurationTable codecConfigurationTable;
+    private final AtomicLong generation = new AtomicLong();
+    private final ConcurrentMap<String, CodecMetrics> codecMetrics = Maps.newConcurrentMap();
+
+    @Inject
+    public CodecInstanceRegistry(Map<String, Codec.Factory<? extends Codec>> codecFactories,
+                                 MetricRegistry metricRegistry,
+                                 CodecConfigurationTable codecConfigurationTable) {
+        this.codecFactories = codecFactories;
+        this.metricRegistry = metricRegistry;
+        this.codecConfigurationTable = codecConfigurationTable;
+    }
+
+    /**
+     * Creates a new codec cache. The returned cache must only be used by a single thread.
+     */
+    public Cache newCache() {
+        return new Cache();
+    }
+
+    /**
+     * Drops all cached codec instances of the given input. Caches pick up the invalidation on their next lookup.
+     */
+    public void invalidate(String inputId) {
+        LOG.debug("Invalidating cached codecs for input <{}>", inputId);
+        // Input changes are rare, so it's fine to simply start over with all inputs.
+        generation.incrementAndGet();
+    }
+
+    private CodecMetrics metricsFor(String codecName) {
+        final CodecMetrics metrics = codecMetrics.get(codecName);
+        if (metrics != null) {
+            return metrics;
+        }
+
+        final CodecMetrics newMetrics = new CodecMetrics(
+                metricRegistry.meter(name(CodecInstanceRegistry.class, codecName, "hits")),
+                metricRegistry.meter(name(CodecInstanceRegistry.class, codecName, "misses")));
+        final CodecMetrics existing = codecMetrics.putIfAbsent(codecName, newMetrics);
+
+        return existing == null ? newMetrics : existing;
+    }
+
+    public class Cache {
+        private final Map<String, Entry> entries = Maps.newHashMap();
+        private long seenGeneration = generation.get();
+
+        private Cache() {
+        }
+
+        /**
+         * Returns the codec instance for the given input and codec configuration, creating it if necessary.
+         * <p/>
+         * Messages read from the journal only carry the fingerprint of their codec configuration, in that case the
+         * configuration is resolved through the {@link CodecConfigurationTable}.
+         *
+         * @return the codec instance or {@code null} if there is no codec with the given name
+         */
+        @Nullable
+        public Codec get(String codecName,
+                         @Nullable String inputId,
+                         @Nullable String fingerprint,
+                         @Nullable Configuration configuration) {
+            final Entry entry = getEntry(codecName, inputId, fingerprint, configuration);
+            return entry == null ? null : entry.codec;
+        }
+
+        /**
+         * Like {@link #get(String, String, String, Configuration)} but also returns the pre-resolved metrics of the
+         * input the codec instance belongs to.
+         *
+         * @return the cache entry or {@code null} if there is no codec with the given name
+         */
+        @Nullable
+        public Entry getEntry(String codecName,
+                              @Nullable String inputId,
+                              @Nullable String fingerprint,
+                              @Nullable Configuration configuration) {
+            final long currentGeneration = generation.get();
+            if (currentGeneration != seenGeneration) {
+                entries.clear();
+                seenGeneration = currentGeneration;
+            }
+
+            final String key = inputId == null ? codecName : inputId;
+
+            final Entry entry = entries.get(key);
+            if (entry != null && entry.matches(codecName, fingerprint)) {
+                entry.metrics.hits.mark();
+                return entry;
+            }
+
+            final Codec.Factory<? extends Codec> factory = codecFactories.get(codecName);
+            if (factory == null) {
+                return null;
+            }
+
+            final Codec codec = factory.create(resolveConfiguration(fingerprint, configuration));
+            final CodecMetrics metrics = metricsFor(codecName);
+            metrics.misses.mark();
+            final Entry newEntry = new Entry(codecName, fingerprint, codec, metrics,
+                                             new InputMetrics(metricRegistry, name(codec.getClass(), inputId)));
+            entries.put(key, newEntry);
+
+            return newEntry;
+        }
+
+        private Configuration resolveConfiguration(@Nullable String fingerprint, @Nullable Configuration configuration) {
+            if (configuration != null) {
+                return configuration;
+            }
+            if (fingerprint == null) {
+                return Configuration.EMPTY_CONFIGURATION;
+            }
+
+            final Configuration resolved = codecConfigurationTable.get(fingerprint);
+            if (resolved == null) {
+                LOG.warn("Unknown codec configuration {}, using default configuration.", fingerprint);
+                return Configuration.EMPTY_CONFIGURATION;
+            }
+            return resolved;
+        }
+    }
+
+    public static class Entry {
+        private final String codecName;
+        private final String fingerprint;
+        private final Codec codec;
+        private final CodecMetrics metrics;
+        private final InputMetrics inputMetrics;
+
+        private Entry(String codecName, String fingerprint, Codec codec, CodecMetrics metrics, InputMetrics inputMetrics) {
+            this.codecName = codecName;
+            this.fingerprint = fingerprint;
+            this.codec = codec;
+            this.metrics = metrics;
+            this.inputMetrics = inputMetrics;
+        }
+
+        public Codec getCodec() {
+            return codec;
+        }
+
+        public InputMetrics getInputMetrics() {
+            return inputMetrics;
+        }
+
+        private boolean matches(String codecName, String fingerprint) {
+            return this.codecName.equals(codecName) && Objects.equal(this.fingerprint, fingerprint);
+        }
+    }
+
+    private static class CodecMetrics {
+        private final Meter hits;
+        private final Meter misses;
+
+        private CodecMetrics(Meter hits, Meter misses) {
+            this.hits = hits;
+            this.misses = misses;
+        }
+    }
+
+    /**
+     * Decoding metrics of a single input, resolved once when the codec instance for the input is created.
+     */
+    public static class InputMetrics {
+        private final Meter failures;
+        private final Meter incomplete;
+        private final Meter processedMessages;
+        private final Timer parseTime;
+
+        private InputMetrics(MetricRegistry metricRegistry, String baseMetricName) {
+            this.failures = metricRegistry.meter(name(baseMetricName, "failures"));
+            this.incomplete = metricRegistry.meter(name(baseMetricName, "incomplete"));
+            this.processedMessages = metricRegistry.meter(name(baseMetricName, "processedMessages"));
+            this.parseTime = metricRegistry.timer(name(baseMetricName, "parseTime"));
+        }
+
+        public Meter getFailures() {
+            return failures;
+        }
+
+        public Meter getIncomplete() {
+            return incomplete;
+        }
+
+        public Meter getProcessedMessages() {
+            return processedMessages;
+        }
+
+        public Timer getParseTime() {
+            return parseTime;
+        }
+    }
+}
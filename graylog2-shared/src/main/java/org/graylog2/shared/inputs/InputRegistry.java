@@ -23,13 +23,18 @@ import org.graylog2.plugin.inputs.MessageInput;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.inject.Inject;
 import java.util.*;
 
 public class InputRegistry extends HashSet<IOState<MessageInput>> {
     private static final Logger LOG = LoggerFactory.getLogger(InputRegistry.class);
 
-    public InputRegistry() {
+    private final CodecInstanceRegistry codecInstanceRegistry;
+
+    @Inject
+    public InputRegistry(CodecInstanceRegistry codecInstanceRegistry) {
         super();
+        this.codecInstanceRegistry = codecInstanceRegistry;
     }
 
 
@@ -114,6 +119,9 @@ public class InputRegistry extends HashSet<IOState<MessageInput>> {
             inputState.setState(IOState.Type.STOPPED);
         }
 
+        // the input might be reconfigured before it gets launched again, don't keep its codecs around
+        codecInstanceRegistry.invalidate(input.getId());
+
         return inputState;
     }
 }
\ No newline at end of file
@@ -0,0 +1,115 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.shared.journal;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import org.graylog2.plugin.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Maps codec configuration fingerprints to the codec configurations.
+ * <p/>
+ * Journal entries only reference the codec configuration by its fingerprint (see
+ * {@link org.graylog2.plugin.journal.RawMessage#CURRENT_VERSION}). The configurations are appended to a file
+ * in the journal directory once, so they can be resolved again after a restart and by the journal commands.
+ */
+@Singleton
+public class CodecConfigurationTable {
+    private static final Logger LOG = LoggerFactory.getLogger(CodecConfigurationTable.class);
+    private static final String FILENAME = "graylog2-codec-configurations";
+
+    private final ConcurrentMap<String, Configuration> configurations = Maps.newConcurrentMap();
+    private final File tableFile;
+
+    @Inject
+    public CodecConfigurationTable(@Named("message_journal_dir") @Nullable File journalDirectory) {
+        this.tableFile = journalDirectory == null ? null : new File(journalDirectory, FILENAME);
+
+        if (tableFile != null && tableFile.exists()) {
+            load();
+        }
+    }
+
+    private void load() {
+        try {
+            final List<String> lines = Files.readLines(tableFile, Charsets.UTF_8);
+            for (String line : lines) {
+                // each line contains the fingerprint and the serialized configuration, separated by a space
+                final int separator = line.indexOf(' ');
+                if (separator < 1) {
+                    continue;
+                }
+                final Configuration configuration = Configuration.deserializeFromJson(line.substring(separator + 1));
+                configurations.put(line.substring(0, separator), configuration);
+            }
+            LOG.debug("Loaded {} codec configurations from {}", configurations.size(), tableFile);
+        } catch (IOException e) {
+            LOG.error("Unable to read codec configurations from " + tableFile.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Adds the configuration to the table, if it isn't known yet.
+     */
+    public void register(@Nullable Configuration configuration) {
+        if (configuration == null) {
+            return;
+        }
+        final String fingerprint = configuration.getFingerprint();
+        if (fingerprint == null || configurations.containsKey(fingerprint)) {
+            return;
+        }
+
+        if (configurations.putIfAbsent(fingerprint, configuration) == null) {
+            persist(fingerprint, configuration);
+        }
+    }
+
+    /**
+     * @return the configuration with the given fingerprint or {@code null} if it is unknown
+     */
+    @Nullable
+    public Configuration get(@Nullable String fingerprint) {
+        if (fingerprint == null) {
+            return null;
+        }
+        return configurations.get(fingerprint);
+    }
+
+    private synchronized void persist(String fingerprint, Configuration configuration) {
+        if (tableFile == null) {
+            return;
+        }
+        try {
+            Files.append(fingerprint + " " + configuration.serializeToJson() + "\n", tableFile, Charsets.UTF_8);
+        } catch (IOException e) {
+            LOG.error("Unable to persist codec configuration to " + tableFile.getAbsolutePath(), e);
+        }
+    }
+}
@@ -21,12 +21,29 @@ import java.util.List;
 public interface Journal {
     Entry createEntry(byte[] idBytes, byte[] messageBytes);
 
+    /**
+     * @return the number of partitions, each of which is written and read independently
+     */
+    int numberOfPartitions();
+
     long write(List<Entry> entries);
 
+    long write(int partition, List<Entry> entries);
+
     long write(byte[] idBytes, byte[] messageBytes);
 
+    /**
+     * Blocks until the entries written to the given partition so far can be read according to the journal's
+     * durability mode.
+     *
+     * @return {@code true} if entries became readable while waiting
+     */
+    boolean awaitDurable(int partition) throws InterruptedException;
+
     List<JournalReadEntry> read(long maximumCount);
 
+    List<JournalReadEntry> readPartition(int partition, long maximumCount);
+
     void markJournalOffsetCommitted(long offset);
 
     public static class Entry {
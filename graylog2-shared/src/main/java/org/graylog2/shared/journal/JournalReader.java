@@ -22,11 +22,11 @@ import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
+import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.AbstractExecutionThreadService;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.common.util.concurrent.Uninterruptibles;
 import javax.inject.Inject;
-import javax.inject.Named;
-import org.graylog2.plugin.journal.RawMessage;
 import org.graylog2.plugin.lifecycles.Lifecycle;
 import org.graylog2.shared.buffers.ProcessBuffer;
 import org.graylog2.shared.metrics.HdrHistogram;
@@ -34,33 +34,37 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 
 import static com.codahale.metrics.MetricRegistry.name;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
+/**
+ * Reads messages from the journal and hands them to the process buffer. Every journal partition is read by its own
+ * thread, the service thread itself reads the first partition.
+ */
 public class JournalReader extends AbstractExecutionThreadService {
     private static final Logger log = LoggerFactory.getLogger(JournalReader.class);
     private final Journal journal;
     private final ProcessBuffer processBuffer;
-    private final Semaphore journalFilled;
+    private final JournalSignal journalSignal;
     private final MetricRegistry metricRegistry;
     private final EventBus eventBus;
     private final Meter readMessages;
     private volatile boolean shouldBeReading;
     private Histogram requestedReadCount;
     private final Counter readBlocked;
-    private Thread executionThread;
+    private final List<Thread> executionThreads = Lists.newCopyOnWriteArrayList();
 
     @Inject
     public JournalReader(Journal journal,
                          ProcessBuffer processBuffer,
-                         @Named("JournalSignal") Semaphore journalFilled,
+                         JournalSignal journalSignal,
                          MetricRegistry metricRegistry,
                          EventBus eventBus) {
         this.journal = journal;
         this.processBuffer = processBuffer;
-        this.journalFilled = journalFilled;
+        this.journalSignal = journalSignal;
         this.metricRegistry = metricRegistry;
         this.eventBus = eventBus;
         shouldBeReading = false;
@@ -71,7 +75,6 @@ public class JournalReader extends AbstractExecutionThreadService {
     @Override
     protected void startUp() throws Exception {
         eventBus.register(this);
-        executionThread = Thread.currentThread();
     }
 
     @Override
@@ -81,7 +84,9 @@ public class JournalReader extends AbstractExecutionThreadService {
 
     @Override
     protected void triggerShutdown() {
-        executionThread.interrupt();
+        for (final Thread executionThread : executionThreads) {
+            executionThread.interrupt();
+        }
     }
 
     @Subscribe
@@ -123,48 +128,71 @@ public class JournalReader extends AbstractExecutionThreadService {
             throw e;
         }
 
-        while (isRunning()) {
-            // TODO interfere with reading if we are not 100% certain we should be reading, see #listenForLifecycleChanges
-            if (!shouldBeReading) {
-                Uninterruptibles.sleepUninterruptibly(100, MILLISECONDS);
-                // don't read immediately, but check if we should be shutting down.
-                continue;
-            }
-            // approximate count to read from the journal to backfill the processing chain
-            final long remainingCapacity = processBuffer.getRemainingCapacity();
-            requestedReadCount.update(remainingCapacity);
-            final List<Journal.JournalReadEntry> encodedRawMessages = journal.read(remainingCapacity);
-            if (encodedRawMessages.isEmpty()) {
-                log.debug("No messages to read from Journal, waiting until the writer adds more messages.");
-                // block until something is written to the journal again
-                try {
-                    readBlocked.inc();
-                    journalFilled.acquire();
-                } catch (InterruptedException ignored) {
-                    // this can happen when we are blocked but the system wants to shut down. We don't have to do anything in that case.
+        final int numberOfPartitions = journal.numberOfPartitions();
+        final ThreadFactory threadFactory = new ThreadFactoryBuilder()
+                .setNameFormat("journal-reader-partition-%d")
+                .setDaemon(true)
+                .build();
+        final List<Thread> partitionThreads = Lists.newArrayList();
+        for (int partition = 1; partition < numberOfPartitions; partition++) {
+            final Thread thread = threadFactory.newThread(new PartitionReader(partition, numberOfPartitions));
+            partitionThreads.add(thread);
+            thread.start();
+        }
+
+        new PartitionReader(0, numberOfPartitions).run();
+
+        for (final Thread thread : partitionThreads) {
+            thread.join();
+        }
+        log.info("Stopping.");
+    }
+
+    private class PartitionReader implements Runnable {
+        private final int partition;
+        private final int numberOfPartitions;
+
+        private PartitionReader(int partition, int numberOfPartitions) {
+            this.partition = partition;
+            this.numberOfPartitions = numberOfPartitions;
+        }
+
+        @Override
+        public void run() {
+            executionThreads.add(Thread.currentThread());
+            while (isRunning()) {
+                // TODO interfere with reading if we are not 100% certain we should be reading, see #listenForLifecycleChanges
+                if (!shouldBeReading) {
+                    Uninterruptibles.sleepUninterruptibly(100, MILLISECONDS);
+                    // don't read immediately, but check if we should be shutting down.
                     continue;
                 }
-                log.debug("Messages have been written to Journal, continuing to read.");
-                // we don't care how many messages were inserted in the meantime, we'll read all of them eventually
-                journalFilled.drainPermits();
-            } else {
-                readMessages.mark(encodedRawMessages.size());
-                log.debug("Processing {} messages from journal.", encodedRawMessages.size());
-                for (final Journal.JournalReadEntry encodedRawMessage : encodedRawMessages) {
-                    final RawMessage rawMessage = RawMessage.decode(encodedRawMessage.getPayload(),
-                                                                    encodedRawMessage.getOffset());
-                    if (rawMessage == null) {
-                        // never insert null objects into the ringbuffer, as that is useless
-                        log.error("Found null raw message!");
-                        journal.markJournalOffsetCommitted(encodedRawMessage.getOffset());
+                // approximate count to read from the journal to backfill the processing chain, shared by all partitions
+                final long remainingCapacity = processBuffer.getRemainingCapacity() / numberOfPartitions;
+                requestedReadCount.update(remainingCapacity);
+                final List<Journal.JournalReadEntry> encodedRawMessages = journal.readPartition(partition, remainingCapacity);
+                if (encodedRawMessages.isEmpty()) {
+                    log.debug("No messages to read from journal partition {}, waiting until the writer adds more messages.", partition);
+                    // block until written messages have been synced or something is written to the journal again
+                    try {
+                        readBlocked.inc();
+                        if (journal.awaitDurable(partition)) {
+                            continue;
+                        }
+                        journalSignal.await(partition);
+                    } catch (InterruptedException ignored) {
+                        // this can happen when we are blocked but the system wants to shut down. We don't have to do anything in that case.
                         continue;
                     }
-
-                    processBuffer.insertBlocking(rawMessage);
+                    log.debug("Messages have been written to journal partition {}, continuing to read.", partition);
+                } else {
+                    readMessages.mark(encodedRawMessages.size());
+                    log.debug("Processing {} messages from journal partition {}.", encodedRawMessages.size(), partition);
+                    // the messages are decoded by the processor threads, the reader only hands over the encoded entries
+                    processBuffer.insertBlocking(encodedRawMessages);
                 }
             }
         }
-        log.info("Stopping.");
     }
 
 
@@ -0,0 +1,51 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.shared.journal;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Wakes up the reader of a journal partition once messages have been written to that partition.
+ */
+@Singleton
+public class JournalSignal {
+    private final Semaphore[] journalFilled;
+
+    @Inject
+    public JournalSignal(Journal journal) {
+        this.journalFilled = new Semaphore[journal.numberOfPartitions()];
+        for (int i = 0; i < journalFilled.length; i++) {
+            journalFilled[i] = new Semaphore(0);
+        }
+    }
+
+    public void signal(int partition) {
+        journalFilled[partition].release();
+    }
+
+    /**
+     * Blocks until messages have been written to the given partition since the last call.
+     */
+    public void await(int partition) throws InterruptedException {
+        final Semaphore semaphore = journalFilled[partition];
+        semaphore.acquire();
+        // we don't care how many messages were inserted in the meantime, we'll read all of them eventually
+        semaphore.drainPermits();
+    }
+}
@@ -17,10 +17,12 @@
 package org.graylog2.shared.journal;
 
 import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.Metric;
 import com.codahale.metrics.MetricFilter;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
 import com.codahale.metrics.Timer;
 import com.github.joschi.jadconfig.util.Size;
 import com.google.common.base.Charsets;
@@ -41,9 +43,13 @@ import kafka.log.LogConfig;
 import kafka.log.LogManager;
 import kafka.log.LogSegment;
 import kafka.message.ByteBufferMessageSet;
+import kafka.message.CompressionCodec;
+import kafka.message.GZIPCompressionCodec$;
 import kafka.message.Message;
 import kafka.message.MessageAndOffset;
 import kafka.message.MessageSet;
+import kafka.message.NoCompressionCodec$;
+import kafka.message.SnappyCompressionCodec$;
 import kafka.utils.KafkaScheduler;
 import kafka.utils.Time;
 import kafka.utils.Utils;
@@ -71,13 +77,15 @@ import java.nio.file.AccessDeniedException;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.Locale;
 import java.util.SortedMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
@@ -93,6 +101,31 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
     public static final long DEFAULT_COMMITTED_OFFSET = Long.MIN_VALUE;
     public static final int NOTIFY_ON_UTILIZATION_PERCENTAGE = 95;
 
+    // journal offsets handed out to readers carry the partition in the upper bits, partition 0 uses plain log offsets
+    private static final int PARTITION_SHIFT = 48;
+    private static final long LOG_OFFSET_MASK = (1L << PARTITION_SHIFT) - 1;
+    private static final String TOPIC = "messagejournal";
+
+    /**
+     * When written entries are synced to disk.
+     */
+    public enum Durability {
+        /**
+         * Dirty logs are flushed periodically, according to message_journal_flush_interval and
+         * message_journal_flush_age, independently of the writers.
+         */
+        ASYNC,
+        /**
+         * Writers keep appending while a background syncer syncs every partition after the group commit interval,
+         * or as soon as the group commit size has been written. Entries are only handed to readers once synced.
+         */
+        GROUP_COMMIT,
+        /**
+         * Every write is synced to disk before it returns.
+         */
+        PER_BATCH
+    }
+
     // this exists so we can use JodaTime's millis provider in tests.
     // kafka really only cares about the milliseconds() method in here
     private static final Time JODA_TIME = new Time() {
@@ -113,27 +146,37 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
     };
 
     private final LogManager logManager;
-    private final Log kafkaLog;
-    private final File committedReadOffsetFile;
-    private final AtomicLong committedOffset = new AtomicLong(DEFAULT_COMMITTED_OFFSET);
+    private final Partition[] partitions;
     private final ScheduledExecutorService scheduler;
     private final Timer writeTime;
 
     private final Timer readTime;
+    private final Timer fsyncTime;
+    private final Histogram bytesPerFsync;
     private final KafkaScheduler kafkaScheduler;
     private final Meter messagesWritten;
     private final Meter messagesRead;
+    private final Meter payloadBytesWritten;
+    private final Meter storedBytesWritten;
+    private final CompressionCodec compressionCodec;
+    private final Durability durability;
+    private final long groupCommitIntervalNanos;
+    private final long groupCommitBytes;
 
     private final OffsetFileFlusher offsetFlusher;
     private final DirtyLogFlusher dirtyLogFlusher;
     private final RecoveryCheckpointFlusher recoveryCheckpointFlusher;
     private final LogRetentionCleaner logRetentionCleaner;
+    private final GroupCommitSyncer groupCommitSyncer;
+
+    // adjusted at runtime by the back pressure controller
+    private volatile int readAheadBytes;
 
-    private long nextReadOffset = 0L;
     private ScheduledFuture<?> checkpointFlusherFuture;
     private ScheduledFuture<?> dirtyLogFlushFuture;
     private ScheduledFuture<?> logRetentionFuture;
     private ScheduledFuture<?> offsetFlusherFuture;
+    private ScheduledFuture<?> groupCommitFuture;
     private volatile boolean shuttingDown;
     private final AtomicReference<ThrottleState> throttleState = new AtomicReference<>();
     private final AtomicInteger purgedSegmentsInLastRetention = new AtomicInteger();
@@ -147,33 +190,71 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
                         @Named("message_journal_max_age") Duration retentionAge,
                         @Named("message_journal_flush_interval") long flushInterval,
                         @Named("message_journal_flush_age") Duration flushAge,
+                        @Named("message_journal_read_ahead") Size readAhead,
+                        @Named("message_journal_partitions") int numberOfPartitions,
+                        @Named("message_journal_compression") String compression,
+                        @Named("message_journal_durability") String durability,
+                        @Named("message_journal_group_commit_interval") Duration groupCommitInterval,
+                        @Named("message_journal_group_commit_size") Size groupCommitSize,
                         MetricRegistry metricRegistry) {
+        this(journalDirectory,
+             scheduler,
+             new Settings()
+                     .segmentSize(segmentSize)
+                     .segmentAge(segmentAge)
+                     .retentionSize(retentionSize)
+                     .retentionAge(retentionAge)
+                     .flushInterval(flushInterval)
+                     .flushAge(flushAge)
+                     .readAhead(readAhead)
+                     .partitions(numberOfPartitions)
+                     .compression(compression)
+                     .durability(durability)
+                     .groupCommitInterval(groupCommitInterval)
+                     .groupCommitSize(groupCommitSize),
+             metricRegistry);
+    }
+
+    KafkaJournal(File journalDirectory,
+                 ScheduledExecutorService scheduler,
+                 Settings settings,
+                 MetricRegistry metricRegistry) {
         this.scheduler = scheduler;
+        this.readAheadBytes = Ints.saturatedCast(settings.readAhead.toBytes());
+        this.compressionCodec = compressionCodec(settings.compression);
+        this.durability = durability(settings.durability);
+        this.groupCommitIntervalNanos = MILLISECONDS.toNanos(settings.groupCommitInterval.getMillis());
+        this.groupCommitBytes = settings.groupCommitSize.toBytes();
 
         this.messagesWritten = metricRegistry.meter(name(this.getClass(), "messagesWritten"));
         this.messagesRead = metricRegistry.meter(name(this.getClass(), "messagesRead"));
+        this.payloadBytesWritten = metricRegistry.meter(name(this.getClass(), "payloadBytesWritten"));
+        this.storedBytesWritten = metricRegistry.meter(name(this.getClass(), "storedBytesWritten"));
+        registerCompressionRatioGauge(metricRegistry, name(this.getClass(), "compressionRatio"));
 
         registerUncommittedGauge(metricRegistry, name(this.getClass(), "uncommittedMessages"));
 
         // the registerHdrTimer helper doesn't throw on existing metrics
         this.writeTime = registerHdrTimer(metricRegistry, name(this.getClass(), "writeTime"));
         this.readTime = registerHdrTimer(metricRegistry, name(this.getClass(), "readTime"));
+        this.fsyncTime = registerHdrTimer(metricRegistry, name(this.getClass(), "fsyncTime"));
+        this.bytesPerFsync = metricRegistry.histogram(name(this.getClass(), "bytesPerFsync"));
 
         // these are the default values as per kafka 0.8.1.1
         final LogConfig defaultConfig =
                 new LogConfig(
                         // segmentSize: The soft maximum for the size of a segment file in the log
-                        Ints.saturatedCast(segmentSize.toBytes()),
+                        Ints.saturatedCast(settings.segmentSize.toBytes()),
                         // segmentMs: The soft maximum on the amount of time before a new log segment is rolled
-                        segmentAge.getMillis(),
+                        settings.segmentAge.getMillis(),
                         // flushInterval: The number of messages that can be written to the log before a flush is forced
-                        flushInterval,
+                        settings.flushInterval,
                         // flushMs: The amount of time the log can have dirty data before a flush is forced
-                        flushAge.getMillis(),
-                        // retentionSize: The approximate total number of bytes this log can use
-                        retentionSize.toBytes(),
+                        settings.flushAge.getMillis(),
+                        // retentionSize: The approximate total number of bytes this log can use, shared by all partitions
+                        settings.retentionSize.toBytes() / settings.partitions,
                         // retentionMs: The age approximate maximum age of the last segment that is retained
-                        retentionAge.getMillis(),
+                        settings.retentionAge.getMillis(),
                         // maxMessageSize: The maximum size of a message in the log
                         Integer.MAX_VALUE,
                         // maxIndexSize: The maximum size of an index file
@@ -210,24 +291,6 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
             Throwables.propagate(new AccessDeniedException(journalDirectory.getAbsolutePath(), null, "Could not create journal directory."));
         }
 
-        // TODO add check for directory, etc
-        committedReadOffsetFile = new File(journalDirectory, "graylog2-committed-read-offset");
-        try {
-            if (!committedReadOffsetFile.createNewFile()) {
-                final String line = Files.readFirstLine(committedReadOffsetFile, Charsets.UTF_8);
-                // the file contains the last offset graylog2 has successfully processed.
-                // thus the nextReadOffset is one beyond that number
-                if (line != null) {
-                    committedOffset.set(Long.parseLong(line.trim()));
-                    nextReadOffset = committedOffset.get() + 1;
-                }
-            }
-        } catch (IOException e) {
-            LOG.error("Cannot access offset file: {}", e.getMessage());
-            Throwables.propagate(new AccessDeniedException(committedReadOffsetFile.getAbsolutePath(),
-                                                           null,
-                                                           e.getMessage()));
-        }
         try {
             kafkaScheduler = new KafkaScheduler(2, "kafka-journal-scheduler-", false); // TODO make thread count configurable
             kafkaScheduler.startup();
@@ -242,20 +305,28 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
                     kafkaScheduler,
                     JODA_TIME);
 
-            final TopicAndPartition topicAndPartition = new TopicAndPartition("messagejournal", 0);
-            final Option<Log> messageLog = logManager.getLog(topicAndPartition);
-            if (messageLog.isEmpty()) {
-                kafkaLog = logManager.createLog(topicAndPartition, logManager.defaultConfig());
-            } else {
-                kafkaLog = messageLog.get();
+            partitions = new Partition[settings.partitions];
+            for (int i = 0; i < settings.partitions; i++) {
+                // TODO add check for directory, etc
+                // the first partition keeps the file name of the unpartitioned journal
+                final String offsetFileName = "graylog2-committed-read-offset" + (i == 0 ? "" : "-" + i);
+                partitions[i] = new Partition(i, getOrCreateLog(i), new File(journalDirectory, offsetFileName));
             }
-            LOG.info("Initialized Kafka based journal at {}", journalDirectory);
+            for (final TopicAndPartition topicAndPartition : JavaConversions.asJavaIterable(logManager.logsByTopicPartition().keys())) {
+                if (topicAndPartition.partition() >= settings.partitions) {
+                    LOG.warn("Journal partition {} is not used with message_journal_partitions = {}, messages which " +
+                                     "have not been processed yet from that partition will not be read.",
+                             topicAndPartition.partition(), settings.partitions);
+                }
+            }
+            LOG.info("Initialized Kafka based journal at {} with {} partition(s)", journalDirectory, settings.partitions);
             setupKafkaLogMetrics(metricRegistry);
 
             offsetFlusher = new OffsetFileFlusher();
             dirtyLogFlusher = new DirtyLogFlusher();
             recoveryCheckpointFlusher = new RecoveryCheckpointFlusher();
             logRetentionCleaner = new LogRetentionCleaner();
+            groupCommitSyncer = new GroupCommitSyncer();
         } catch (KafkaException e) {
             // most likely failed to grab lock
             LOG.error("Unable to start logmanager.", e);
@@ -264,6 +335,151 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
 
     }
 
+    /**
+     * The journal configuration, defaults to the defaults of {@link org.graylog2.plugin.KafkaJournalConfiguration}.
+     */
+    static class Settings {
+        private Size segmentSize = megabytes(100l);
+        private Duration segmentAge = Duration.standardHours(1);
+        private Size retentionSize = Size.gigabytes(5l);
+        private Duration retentionAge = Duration.standardHours(12);
+        private long flushInterval = 1_000_000;
+        private Duration flushAge = Duration.standardMinutes(1);
+        private Size readAhead = megabytes(5l);
+        private int partitions = 1;
+        private String compression = "none";
+        private String durability = "async";
+        private Duration groupCommitInterval = Duration.millis(10l);
+        private Size groupCommitSize = megabytes(1l);
+
+        Settings segmentSize(Size segmentSize) {
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        Settings segmentAge(Duration segmentAge) {
+            this.segmentAge = segmentAge;
+            return this;
+        }
+
+        Settings retentionSize(Size retentionSize) {
+            this.retentionSize = retentionSize;
+            return this;
+        }
+
+        Settings retentionAge(Duration retentionAge) {
+            this.retentionAge = retentionAge;
+            return this;
+        }
+
+        Settings flushInterval(long flushInterval) {
+            this.flushInterval = flushInterval;
+            return this;
+        }
+
+        Settings flushAge(Duration flushAge) {
+            this.flushAge = flushAge;
+            return this;
+        }
+
+        Settings readAhead(Size readAhead) {
+            this.readAhead = readAhead;
+            return this;
+        }
+
+        Settings partitions(int partitions) {
+            this.partitions = partitions;
+            return this;
+        }
+
+        Settings compression(String compression) {
+            this.compression = compression;
+            return this;
+        }
+
+        Settings durability(String durability) {
+            this.durability = durability;
+            return this;
+        }
+
+        Settings groupCommitInterval(Duration groupCommitInterval) {
+            this.groupCommitInterval = groupCommitInterval;
+            return this;
+        }
+
+        Settings groupCommitSize(Size groupCommitSize) {
+            this.groupCommitSize = groupCommitSize;
+            return this;
+        }
+    }
+
+    private static CompressionCodec compressionCodec(String name) {
+        switch (name.trim().toLowerCase(Locale.ENGLISH)) {
+            case "none":
+                return NoCompressionCodec$.MODULE$;
+            case "gzip":
+                return GZIPCompressionCodec$.MODULE$;
+            case "snappy":
+                return SnappyCompressionCodec$.MODULE$;
+            default:
+                throw new IllegalArgumentException("Unsupported message_journal_compression <" + name + ">, " +
+                                                           "valid values are none, gzip and snappy.");
+        }
+    }
+
+    private static Durability durability(String name) {
+        switch (name.trim().toLowerCase(Locale.ENGLISH)) {
+            case "async":
+                return Durability.ASYNC;
+            case "group-commit":
+                return Durability.GROUP_COMMIT;
+            case "per-batch":
+                return Durability.PER_BATCH;
+            default:
+                throw new IllegalArgumentException("Unsupported message_journal_durability <" + name + ">, " +
+                                                           "valid values are async, group-commit and per-batch.");
+        }
+    }
+
+    private void registerCompressionRatioGauge(MetricRegistry metricRegistry, String name) {
+        try {
+            metricRegistry.register(name, new RatioGauge() {
+                @Override
+                protected Ratio getRatio() {
+                    // uncompressed payload bytes per byte stored in the journal, including the per message overhead
+                    return Ratio.of(payloadBytesWritten.getCount(), storedBytesWritten.getCount());
+                }
+            });
+        } catch (IllegalArgumentException ignored) {
+            // already registered, we'll ignore that.
+        }
+    }
+
+    private Log getOrCreateLog(int partition) {
+        final TopicAndPartition topicAndPartition = new TopicAndPartition(TOPIC, partition);
+        final Option<Log> messageLog = logManager.getLog(topicAndPartition);
+        if (messageLog.isEmpty()) {
+            return logManager.createLog(topicAndPartition, logManager.defaultConfig());
+        } else {
+            return messageLog.get();
+        }
+    }
+
+    /**
+     * Builds the journal offset handed out to readers for the given offset in the log of a partition.
+     */
+    public static long journalOffset(int partition, long logOffset) {
+        return ((long) partition << PARTITION_SHIFT) | logOffset;
+    }
+
+    public static int partitionOf(long journalOffset) {
+        return (int) (journalOffset >>> PARTITION_SHIFT);
+    }
+
+    public static long logOffsetOf(long journalOffset) {
+        return journalOffset & LOG_OFFSET_MASK;
+    }
+
     private Timer registerHdrTimer(MetricRegistry metricRegistry, final String metricName) {
         Timer timer;
         try {
@@ -286,7 +502,11 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
                                     new Gauge<Long>() {
                                         @Override
                                         public Long getValue() {
-                                            return Math.max(0, getLogEndOffset() - 1 - committedOffset.get());
+                                            long uncommitted = 0;
+                                            for (final Partition partition : partitions) {
+                                                uncommitted += Math.max(0, partition.log.logEndOffset() - 1 - partition.committedOffset.get());
+                                            }
+                                            return uncommitted;
                                         }
                                     });
         } catch (IllegalArgumentException ignored) {
@@ -302,37 +522,45 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
         metricRegistry.register(name(KafkaJournal.class, "size"), new Gauge<Long>() {
             @Override
             public Long getValue() {
-                return kafkaLog.size();
+                return size();
             }
         });
         metricRegistry.register(name(KafkaJournal.class, "logEndOffset"), new Gauge<Long>() {
             @Override
             public Long getValue() {
-                return kafkaLog.logEndOffset();
+                return getLogEndOffset();
             }
         });
         metricRegistry.register(name(KafkaJournal.class, "numberOfSegments"), new Gauge<Integer>() {
             @Override
             public Integer getValue() {
-                return kafkaLog.numberOfSegments();
+                return numberOfSegments();
             }
         });
         metricRegistry.register(name(KafkaJournal.class, "unflushedMessages"), new Gauge<Long>() {
             @Override
             public Long getValue() {
-                return kafkaLog.unflushedMessages();
+                long unflushed = 0;
+                for (final Partition partition : partitions) {
+                    unflushed += partition.log.unflushedMessages();
+                }
+                return unflushed;
             }
         });
         metricRegistry.register(name(KafkaJournal.class, "recoveryPoint"), new Gauge<Long>() {
             @Override
             public Long getValue() {
-                return kafkaLog.recoveryPoint();
+                return partitions[0].log.recoveryPoint();
             }
         });
         metricRegistry.register(name(KafkaJournal.class, "lastFlushTime"), new Gauge<Long>() {
             @Override
             public Long getValue() {
-                return kafkaLog.lastFlushTime();
+                long lastFlushTime = Long.MAX_VALUE;
+                for (final Partition partition : partitions) {
+                    lastFlushTime = Math.min(lastFlushTime, partition.log.lastFlushTime());
+                }
+                return lastFlushTime;
             }
         });
     }
@@ -351,13 +579,32 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
     }
 
     /**
-     * Writes the list of entries to the journal.
+     * Writes the list of entries to the first partition of the journal.
      *
      * @param entries journal entries to be written
      * @return the last position written to in the journal
      */
     @Override
     public long write(List<Entry> entries) {
+        return write(0, entries);
+    }
+
+    @Override
+    public int numberOfPartitions() {
+        return partitions.length;
+    }
+
+    /**
+     * Writes the list of entries to the given partition of the journal.
+     *
+     * @param partition the partition to append the entries to
+     * @param entries   journal entries to be written
+     * @return the journal offset of the last entry written
+     */
+    @Override
+    public long write(int partition, List<Entry> entries) {
+        final Partition journalPartition = partitions[partition];
+        final Log kafkaLog = journalPartition.log;
         try (Timer.Context ignored = writeTime.time()) {
             long payloadSize = 0L;
 
@@ -374,14 +621,89 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
                 }
             }
 
-            final ByteBufferMessageSet messageSet = new ByteBufferMessageSet(JavaConversions.asScalaBuffer(messages));
+            // with compression enabled the whole batch is stored as a single compressed message
+            final ByteBufferMessageSet messageSet = new ByteBufferMessageSet(compressionCodec, JavaConversions.asScalaBuffer(messages));
 
             final Log.LogAppendInfo appendInfo = kafkaLog.append(messageSet, true);
             long lastWriteOffset = appendInfo.lastOffset();
-            LOG.debug("Wrote {} messages to journal: {} bytes, log position {} to {}",
-                    entries.size(), payloadSize, appendInfo.firstOffset(), lastWriteOffset);
+            LOG.debug("Wrote {} messages to journal partition {}: {} bytes ({} bytes stored), log position {} to {}",
+                    entries.size(), partition, payloadSize, messageSet.sizeInBytes(), appendInfo.firstOffset(), lastWriteOffset);
             messagesWritten.mark(entries.size());
-            return lastWriteOffset;
+            payloadBytesWritten.mark(payloadSize);
+            storedBytesWritten.mark(messageSet.sizeInBytes());
+
+            final long unflushedBytes = journalPartition.unflushedBytes.addAndGet(messageSet.sizeInBytes());
+            if (durability == Durability.PER_BATCH) {
+                fsync(journalPartition);
+            } else if (durability == Durability.GROUP_COMMIT && unflushedBytes >= groupCommitBytes) {
+                requestSync(journalPartition);
+            }
+            return journalOffset(partition, lastWriteOffset);
+        }
+    }
+
+    /**
+     * Blocks until everything written to the partition so far has been synced to disk by the group commit syncer
+     * and can be read. Writes are never waited for in the other durability modes, their entries can be read as soon
+     * as they have been written.
+     *
+     * @param partition the partition to wait for
+     * @return {@code true} if entries became readable, {@code false} if there were no entries waiting to be synced
+     */
+    @Override
+    public boolean awaitDurable(int partition) throws InterruptedException {
+        if (durability != Durability.GROUP_COMMIT) {
+            return false;
+        }
+        final Partition journalPartition = partitions[partition];
+        synchronized (journalPartition.syncLock) {
+            final long logEndOffset = journalPartition.log.logEndOffset();
+            if (logEndOffset <= journalPartition.durableOffset) {
+                return false;
+            }
+            while (journalPartition.durableOffset < logEndOffset) {
+                journalPartition.syncLock.wait();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Lets the group commit syncer sync the partition right away instead of waiting for the group commit interval.
+     */
+    private void requestSync(final Partition partition) {
+        if (!partition.syncRequested.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            scheduler.execute(new Runnable() {
+                @Override
+                public void run() {
+                    partition.syncRequested.set(false);
+                    groupCommitSyncer.sync(partition);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            partition.syncRequested.set(false);
+            LOG.debug("Unable to schedule syncing journal partition {}, it will be synced with the next group commit.", partition.id);
+        }
+    }
+
+    private void fsync(Partition partition) {
+        synchronized (partition.syncLock) {
+            // take the byte count first, bytes appended in between are synced but counted again for the next fsync
+            final long bytes = partition.unflushedBytes.getAndSet(0);
+            final long logEndOffset = partition.log.logEndOffset();
+            if (logEndOffset <= partition.durableOffset) {
+                return;
+            }
+            try (Timer.Context ignored = fsyncTime.time()) {
+                partition.log.flush(logEndOffset);
+            }
+            bytesPerFsync.update(bytes);
+            LOG.debug("Synced journal partition {} up to offset {}, {} bytes", partition.id, logEndOffset, bytes);
+            partition.durableOffset = logEndOffset;
+            partition.syncLock.notifyAll();
         }
     }
 
@@ -400,20 +722,37 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
 
     @Override
     public List<JournalReadEntry> read(long requestedMaximumCount) {
-        return read(nextReadOffset, requestedMaximumCount);
+        return readPartition(0, requestedMaximumCount);
     }
 
+    /**
+     * Reads the next entries of the given partition. Every partition must only be read by a single thread.
+     */
+    @Override
+    public List<JournalReadEntry> readPartition(int partition, long requestedMaximumCount) {
+        final Partition journalPartition = partitions[partition];
+        return read(journalPartition, journalPartition.nextReadOffset, requestedMaximumCount);
+    }
+
+    /**
+     * Reads from the first partition of the journal, starting at the given log offset.
+     */
     public List<JournalReadEntry> read(long readOffset, long requestedMaximumCount) {
+        return read(partitions[0], readOffset, requestedMaximumCount);
+    }
+
+    private List<JournalReadEntry> read(Partition partition, long readOffset, long requestedMaximumCount) {
+        final Log kafkaLog = partition.log;
         // Always read at least one!
         final long maximumCount = Math.max(1, requestedMaximumCount);
-        long maxOffset = readOffset + maximumCount;
+        long maxOffset = maxReadOffset(partition, readOffset + maximumCount);
         final List<JournalReadEntry> messages = Lists.newArrayListWithCapacity((int) (maximumCount));
 
         if (shuttingDown) {
             return messages;
         }
         try (Timer.Context ignored = readTime.time()) {
-            final long logStartOffset = getLogStartOffset();
+            final long logStartOffset = partition.getLogStartOffset();
 
             if (readOffset < logStartOffset) {
                 LOG.error(
@@ -421,36 +760,58 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
                         readOffset,
                         logStartOffset);
                 readOffset = logStartOffset;
-                maxOffset = readOffset + maximumCount;
+                maxOffset = maxReadOffset(partition, readOffset + maximumCount);
+            }
+            if (maxOffset <= readOffset) {
+                LOG.debug("No synced messages available to read from offset {}.", readOffset);
+                return messages;
+            }
+            int readAhead = readAheadBytes;
+            LOG.debug("Requesting to read a maximum of {} messages (or {} bytes) from the journal, offset interval [{}, {})",
+                    maximumCount, readAhead, readOffset, maxOffset);
+
+            // The log is not bounded by maxOffset: a compressed batch is stored under the offset of its last message,
+            // bounding the read would skip batches containing the requested offsets. The count is enforced below.
+            MessageSet messageSet = kafkaLog.read(readOffset,
+                    readAhead,
+                    Option.<Object>apply(null));
+            // a compressed batch is a single message which can be larger than the read ahead, it would never be read
+            while (messageSet.sizeInBytes() > 0 && !messageSet.iterator().hasNext() && readAhead < Integer.MAX_VALUE / 2) {
+                readAhead *= 2;
+                LOG.debug("First message at offset {} is larger than the read ahead, retrying with {} bytes", readOffset, readAhead);
+                messageSet = kafkaLog.read(readOffset, readAhead, Option.<Object>apply(null));
             }
-            LOG.debug("Requesting to read a maximum of {} messages (or 5MB) from the journal, offset interval [{}, {})",
-                    maximumCount, readOffset, maxOffset);
-
-            // TODO benchmark and make read-ahead strategy configurable for performance tuning
-            final MessageSet messageSet = kafkaLog.read(readOffset,
-                    5 * 1024 * 1024,
-                    Option.<Object>apply(maxOffset));
 
             final Iterator<MessageAndOffset> iterator = messageSet.iterator();
             long firstOffset = Long.MIN_VALUE;
             long lastOffset = Long.MIN_VALUE;
             long totalBytes = 0;
+            outer:
             while (iterator.hasNext()) {
-                final MessageAndOffset messageAndOffset = iterator.next();
-
-                if (firstOffset == Long.MIN_VALUE) firstOffset = messageAndOffset.offset();
-                // always remember the last seen offset for debug purposes below
-                lastOffset = messageAndOffset.offset();
-
-                final byte[] payloadBytes = Utils.readBytes(messageAndOffset.message().payload());
-                if (LOG.isTraceEnabled()) {
-                    final byte[] keyBytes = Utils.readBytes(messageAndOffset.message().key());
-                    LOG.trace("Read message {} contains {}", bytesToHex(keyBytes), bytesToHex(payloadBytes));
+                for (final MessageAndOffset messageAndOffset : unpack(iterator.next())) {
+                    // a compressed batch may start before the requested offset
+                    if (messageAndOffset.offset() < readOffset) {
+                        continue;
+                    }
+                    if (messageAndOffset.offset() >= maxOffset) {
+                        break outer;
+                    }
+                    if (firstOffset == Long.MIN_VALUE) firstOffset = messageAndOffset.offset();
+                    // always remember the last seen offset for debug purposes below
+                    lastOffset = messageAndOffset.offset();
+
+                    final byte[] payloadBytes = Utils.readBytes(messageAndOffset.message().payload());
+                    if (LOG.isTraceEnabled()) {
+                        final byte[] keyBytes = Utils.readBytes(messageAndOffset.message().key());
+                        LOG.trace("Read message {} contains {}", bytesToHex(keyBytes), bytesToHex(payloadBytes));
+                    }
+                    totalBytes += payloadBytes.length;
+                    messages.add(new JournalReadEntry(payloadBytes, journalOffset(partition.id, messageAndOffset.offset())));
+                    // must be registered before the entry is handed out, see #markJournalOffsetCommitted
+                    partition.unacknowledgedOffsets.add(messageAndOffset.offset());
+                    // remember where to read from
+                    partition.nextReadOffset = messageAndOffset.nextOffset();
                 }
-                totalBytes += payloadBytes.length;
-                messages.add(new JournalReadEntry(payloadBytes, messageAndOffset.offset()));
-                // remember where to read from
-                nextReadOffset = messageAndOffset.nextOffset();
             }
             if (messages.isEmpty()) {
                 LOG.debug("No messages available to read for offset interval [{}, {}).", readOffset, maxOffset);
@@ -487,25 +848,65 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
     }
 
     /**
-     * Upon fully processing, and persistently storing, a batch of messages, the system should mark the message with the
-     * highest offset as committed. A background job will write the last position to disk periodically.
+     * Returns the messages contained in a message of the log. Compressed batches are stored as a single message
+     * wrapping the compressed message set.
+     */
+    private static Iterable<MessageAndOffset> unpack(MessageAndOffset messageAndOffset) {
+        final Message message = messageAndOffset.message();
+        if (message.compressionCodec() == NoCompressionCodec$.MODULE$) {
+            return Collections.singletonList(messageAndOffset);
+        }
+        return JavaConversions.asJavaIterable(ByteBufferMessageSet.decompress(message));
+    }
+
+    /**
+     * Upon fully processing, and persistently storing, a message, the system should mark its offset as committed. A
+     * background job will write the last position to disk periodically.
+     * <p>
+     * Messages are not acknowledged in the order they have been read, so the committed offset of a partition only
+     * moves up to the oldest entry which has been read but not been acknowledged yet. Entries which are still in
+     * flight are read again after a restart.
+     * </p>
      *
-     * @param offset the offset of the latest committed message
+     * @param offset the journal offset of the processed message, the committed offset is tracked per partition
      */
     @Override
     public void markJournalOffsetCommitted(long offset) {
+        if (offset < 0) {
+            // messages which have not been read from the journal
+            return;
+        }
+        final Partition partition = partitions[partitionOf(offset)];
+        final long logOffset = logOffsetOf(offset);
+        partition.unacknowledgedOffsets.remove(logOffset);
+        updateMax(partition.acknowledgedOffset, logOffset);
+
+        // every entry below the highest acknowledged one has been read before it, so it is either acknowledged or
+        // still registered as unacknowledged
+        final long acknowledgedOffset = partition.acknowledgedOffset.get();
+        final Long oldestUnacknowledged = Iterables.getFirst(partition.unacknowledgedOffsets, null);
+        if (oldestUnacknowledged == null) {
+            updateMax(partition.committedOffset, acknowledgedOffset);
+        } else {
+            updateMax(partition.committedOffset, Math.min(acknowledgedOffset, oldestUnacknowledged - 1));
+        }
+    }
+
+    private static void updateMax(AtomicLong offset, long value) {
         long prev;
         // the caller will not care about offsets going backwards, so we need to make sure we don't backtrack
         int i = 0;
         do {
-            prev = committedOffset.get();
+            prev = offset.get();
+            if (prev >= value) {
+                return;
+            }
             // at least warn if this spins often, that would be a sign of very high contention, which should not happen
             if (++i % 10 == 0) {
                 LOG.warn("Committing journal offset spins {} times now, this might be a bug. Continuing to try update.",
                         i);
             }
-        } while (!committedOffset.compareAndSet(prev, Math.max(offset, prev)));
-
+        } while (!offset.compareAndSet(prev, value));
     }
 
     /**
@@ -514,33 +915,56 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
     protected void flushDirtyLogs() {
         LOG.debug("Checking for dirty logs to flush...");
 
-        final Set<Map.Entry<TopicAndPartition, Log>> entries = JavaConversions.mapAsJavaMap(logManager.logsByTopicPartition()).entrySet();
-        for (final Map.Entry<TopicAndPartition, Log> topicAndPartitionLogEntry : entries) {
-            final TopicAndPartition topicAndPartition = topicAndPartitionLogEntry.getKey();
-            final Log kafkaLog = topicAndPartitionLogEntry.getValue();
+        // only partitions in use are written to, orphaned partitions can't be dirty
+        for (final Partition partition : partitions) {
+            final Log kafkaLog = partition.log;
             final long timeSinceLastFlush = JODA_TIME.milliseconds() - kafkaLog.lastFlushTime();
             try {
                 LOG.debug(
-                        "Checking if flush is needed on {} flush interval {} last flushed {} time since last flush: {}",
-                        topicAndPartition.topic(),
+                        "Checking if flush is needed on partition {} flush interval {} last flushed {} time since last flush: {}",
+                        partition.id,
                         kafkaLog.config().flushInterval(),
                         kafkaLog.lastFlushTime(),
                         timeSinceLastFlush);
                 if (timeSinceLastFlush >= kafkaLog.config().flushMs()) {
-                    kafkaLog.flush();
+                    fsync(partition);
                 }
             } catch (Exception e) {
-                LOG.error("Error flushing topic " + topicAndPartition.topic(), e);
+                LOG.error("Error flushing journal partition " + partition.id, e);
             }
         }
     }
 
+    /**
+     * @return the committed offset of the first partition
+     */
     public long getCommittedOffset() {
-        return committedOffset.get();
+        return getCommittedOffset(0);
+    }
+
+    public long getCommittedOffset(int partition) {
+        return partitions[partition].committedOffset.get();
     }
 
+    /**
+     * @return the next offset to be read from the first partition
+     */
     public long getNextReadOffset() {
-        return nextReadOffset;
+        return getNextReadOffset(0);
+    }
+
+    public long getNextReadOffset(int partition) {
+        return partitions[partition].nextReadOffset;
+    }
+
+    /**
+     * With group commits only entries which have been synced to disk are handed to readers.
+     */
+    private long maxReadOffset(Partition partition, long maxOffset) {
+        if (durability == Durability.GROUP_COMMIT) {
+            return Math.min(maxOffset, partition.durableOffset);
+        }
+        return maxOffset;
     }
 
     @Override
@@ -571,6 +995,12 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
 
         // regularly write the currently committed read offset to disk
         offsetFlusherFuture = scheduler.scheduleAtFixedRate(offsetFlusher, 1, 1, SECONDS);
+
+        // sync everything written since the last group commit
+        if (durability == Durability.GROUP_COMMIT) {
+            final long interval = Math.max(groupCommitIntervalNanos, MILLISECONDS.toNanos(1l));
+            groupCommitFuture = scheduler.scheduleWithFixedDelay(groupCommitSyncer, interval, interval, NANOSECONDS);
+        }
     }
 
     @Override
@@ -582,6 +1012,10 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
         logRetentionFuture.cancel(false);
         checkpointFlusherFuture.cancel(false);
         dirtyLogFlushFuture.cancel(false);
+        if (groupCommitFuture != null) {
+            groupCommitFuture.cancel(false);
+            groupCommitSyncer.run();
+        }
 
         kafkaScheduler.shutdown();
         logManager.shutdown();
@@ -600,25 +1034,41 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
 
     // default visibility for tests
     public Iterable<LogSegment> getSegments() {
-        return JavaConversions.asJavaIterable(kafkaLog.logSegments());
+        final List<Iterable<LogSegment>> segments = Lists.newArrayListWithCapacity(partitions.length);
+        for (final Partition partition : partitions) {
+            segments.add(JavaConversions.asJavaIterable(partition.log.logSegments()));
+        }
+        return Iterables.concat(segments);
     }
 
     /**
-     * Returns the journal size in bytes, exluding index files.
+     * Returns the journal size in bytes of all partitions, exluding index files.
      *
      * @return journal size in bytes
      */
     public long size() {
-        return kafkaLog.size();
+        long size = 0;
+        for (final Partition partition : partitions) {
+            size += partition.log.size();
+        }
+        return size;
+    }
+
+    public long size(int partition) {
+        return partitions[partition].log.size();
     }
 
     /**
-     * Returns the number of segments this journal consists of.
+     * Returns the number of segments all partitions of this journal consist of.
      *
      * @return number of segments
      */
     public int numberOfSegments() {
-        return kafkaLog.numberOfSegments();
+        int numberOfSegments = 0;
+        for (final Partition partition : partitions) {
+            numberOfSegments += partition.log.numberOfSegments();
+        }
+        return numberOfSegments;
     }
 
     /**
@@ -629,42 +1079,56 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
      * amount of disk space.
      * </p>
      *
-     * @return the offset of the last message which has been successfully processed.
+     * @return the offset of the last message of the first partition which has been successfully processed.
      */
     public long getCommittedReadOffset() {
-        return committedOffset.get();
+        return getCommittedOffset(0);
     }
 
     /**
-     * Discards all data in the journal prior to the given offset.
+     * Discards all data in the first partition of the journal prior to the given offset.
      *
      * @param offset offset to truncate to, so that no offset in the journal is larger than this.
      */
     public void truncateTo(long offset) {
-        kafkaLog.truncateTo(offset);
+        partitions[0].log.truncateTo(offset);
     }
 
     /**
-     * Returns the first valid offset in the entire journal.
+     * Returns the first valid offset in the first partition of the journal.
      *
      * @return first offset
      */
     public long getLogStartOffset() {
-        final Iterable<LogSegment> logSegments = JavaConversions.asJavaIterable(kafkaLog.logSegments());
-        final LogSegment segment = Iterables.getFirst(logSegments, null);
-        if (segment == null) {
-            return 0;
-        }
-        return segment.baseOffset();
+        return getLogStartOffset(0);
+    }
+
+    public long getLogStartOffset(int partition) {
+        return partitions[partition].getLogStartOffset();
     }
 
     /**
-     * returns the offset for the next value to be inserted in the entire journal.
+     * returns the offset for the next value to be inserted in the first partition of the journal.
      *
      * @return the next offset value (last valid offset is this number - 1)
      */
     public long getLogEndOffset() {
-        return kafkaLog.logEndOffset();
+        return getLogEndOffset(0);
+    }
+
+    public long getLogEndOffset(int partition) {
+        return partitions[partition].log.logEndOffset();
+    }
+
+    public int getReadAheadBytes() {
+        return readAheadBytes;
+    }
+
+    /**
+     * Sets the maximum number of bytes fetched from the log by a single {@link #read(long)} call.
+     */
+    public void setReadAheadBytes(int readAheadBytes) {
+        this.readAheadBytes = readAheadBytes;
     }
 
     /**
@@ -684,6 +1148,12 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
     public class OffsetFileFlusher implements Runnable {
         @Override
         public void run() {
+            for (final Partition partition : partitions) {
+                flush(partition.committedOffset, partition.committedReadOffsetFile);
+            }
+        }
+
+        private void flush(AtomicLong committedOffset, File committedReadOffsetFile) {
             // Do not write the file if committedOffset has never been updated.
             if (committedOffset.get() == DEFAULT_COMMITTED_OFFSET) {
                 return;
@@ -723,14 +1193,17 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
         public Integer call() throws Exception {
             loggerForCleaner.debug("Beginning log cleanup");
             int total = 0;
+            int purged = 0;
             final Timer.Context ctx = new Timer().time();
-            for (final Log kafkaLog : JavaConversions.asJavaIterable(logManager.allLogs())) {
+            for (final Partition partition : partitions) {
+                final Log kafkaLog = partition.log;
                 if (kafkaLog.config().compact()) continue;
                 loggerForCleaner.debug("Garbage collecting {}", kafkaLog.name());
-                total += cleanupExpiredSegments(kafkaLog) +
-                        cleanupSegmentsToMaintainSize(kafkaLog) +
-                        cleanupSegmentsToRemoveCommitted(kafkaLog);
+                final int purgedSegments = cleanupExpiredSegments(kafkaLog) + cleanupSegmentsToMaintainSize(kafkaLog);
+                purged += purgedSegments;
+                total += purgedSegments + cleanupSegmentsToRemoveCommitted(kafkaLog, partition.committedOffset.get());
             }
+            KafkaJournal.this.purgedSegmentsInLastRetention.set(purged);
 
             loggerForCleaner.debug("Log cleanup completed. {} files deleted in {} seconds",
                     total,
@@ -741,7 +1214,6 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
         private int cleanupExpiredSegments(final Log kafkaLog) {
             // don't run if nothing will be done
             if (kafkaLog.size() == 0 && kafkaLog.numberOfSegments() < 1) {
-                KafkaJournal.this.purgedSegmentsInLastRetention.set(0);
                 return 0;
             }
             int deletedSegments = kafkaLog.deleteOldSegments(new AbstractFunction1<LogSegment, Object>() {
@@ -758,7 +1230,6 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
                     return shouldDelete;
                 }
             });
-            KafkaJournal.this.purgedSegmentsInLastRetention.set(deletedSegments);
             return deletedSegments;
         }
 
@@ -771,7 +1242,6 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
                         KafkaJournal.NOTIFY_ON_UTILIZATION_PERCENTAGE);
             }
             if (retentionSize < 0 || currentSize < retentionSize) {
-                KafkaJournal.this.purgedSegmentsInLastRetention.set(0);
                 return 0;
             }
             final long[] diff = {currentSize - retentionSize};
@@ -792,11 +1262,10 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
                     }
                 }
             });
-            KafkaJournal.this.purgedSegmentsInLastRetention.set(deletedSegments);
             return deletedSegments;
         }
 
-        private int cleanupSegmentsToRemoveCommitted(Log kafkaLog) {
+        private int cleanupSegmentsToRemoveCommitted(Log kafkaLog, final long committedOffset) {
             if (kafkaLog.numberOfSegments() <= 1) {
                 loggerForCleaner.debug(
                         "[cleanup-committed] The journal is already minimal at {} segment(s), not trying to remove more segments.",
@@ -806,7 +1275,6 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
             // we need to iterate through all segments to the find the cutoff point for the committed offset.
             // unfortunately finding the largest offset contained in a segment is expensive (it involves reading the entire file)
             // so we have to get a global view.
-            final long committedOffset = KafkaJournal.this.committedOffset.get();
             final HashSet<LogSegment> logSegments = Sets.newHashSet(
                     JavaConversions.asJavaIterable(kafkaLog.logSegments(committedOffset, Long.MAX_VALUE))
             );
@@ -827,6 +1295,60 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
         }
     }
 
+    /**
+     * A single Kafka log of the journal together with its read position and committed offset.
+     */
+    private static class Partition {
+        private final int id;
+        private final Log log;
+        private final File committedReadOffsetFile;
+        private final AtomicLong committedOffset = new AtomicLong(DEFAULT_COMMITTED_OFFSET);
+        // log offsets which have been read but not been marked as committed yet, and the highest acknowledged one
+        private final ConcurrentSkipListSet<Long> unacknowledgedOffsets = new ConcurrentSkipListSet<>();
+        private final AtomicLong acknowledgedOffset = new AtomicLong(DEFAULT_COMMITTED_OFFSET);
+        // only modified by the reader of this partition
+        private volatile long nextReadOffset = 0L;
+        // guards syncing the log, waiters for durability are notified on it
+        private final Object syncLock = new Object();
+        private final AtomicLong unflushedBytes = new AtomicLong();
+        private final AtomicBoolean syncRequested = new AtomicBoolean();
+        // all entries below this log offset have been synced to disk
+        private volatile long durableOffset;
+
+        private Partition(int id, Log log, File committedReadOffsetFile) {
+            this.id = id;
+            this.log = log;
+            this.committedReadOffsetFile = committedReadOffsetFile;
+            // recovered segments are on disk already
+            this.durableOffset = log.logEndOffset();
+            try {
+                if (!committedReadOffsetFile.createNewFile()) {
+                    final String line = Files.readFirstLine(committedReadOffsetFile, Charsets.UTF_8);
+                    // the file contains the last offset graylog2 has successfully processed.
+                    // thus the nextReadOffset is one beyond that number
+                    if (line != null) {
+                        committedOffset.set(Long.parseLong(line.trim()));
+                        nextReadOffset = committedOffset.get() + 1;
+                    }
+                }
+            } catch (IOException e) {
+                LOG.error("Cannot access offset file: {}", e.getMessage());
+                Throwables.propagate(new AccessDeniedException(committedReadOffsetFile.getAbsolutePath(),
+                                                               null,
+                                                               e.getMessage()));
+            }
+        }
+
+        private long getLogStartOffset() {
+            final Iterable<LogSegment> logSegments = JavaConversions.asJavaIterable(log.logSegments());
+            final LogSegment segment = Iterables.getFirst(logSegments, null);
+            if (segment == null) {
+                return 0;
+            }
+            return segment.baseOffset();
+        }
+    }
+
     public class RecoveryCheckpointFlusher implements Runnable {
         @Override
         public void run() {
@@ -838,6 +1360,23 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
         }
     }
 
+    public class GroupCommitSyncer implements Runnable {
+        @Override
+        public void run() {
+            for (final Partition partition : partitions) {
+                sync(partition);
+            }
+        }
+
+        private void sync(Partition partition) {
+            try {
+                fsync(partition);
+            } catch (Exception e) {
+                LOG.error("Unable to sync journal partition " + partition.id + ". Will try again.", e);
+            }
+        }
+    }
+
     public class DirtyLogFlusher implements Runnable {
         @Override
         public void run() {
@@ -32,11 +32,26 @@ public class NoopJournal extends AbstractIdleService implements Journal {
         return new Entry(idBytes, messageBytes);
     }
 
+    @Override
+    public int numberOfPartitions() {
+        return 1;
+    }
+
     @Override
     public long write(List<Entry> entries) {
         throw new IllegalStateException("Invalid use of NoopJournal. Writing to this journal is always a programming error.");
     }
 
+    @Override
+    public long write(int partition, List<Entry> entries) {
+        throw new IllegalStateException("Invalid use of NoopJournal. Writing to this journal is always a programming error.");
+    }
+
+    @Override
+    public boolean awaitDurable(int partition) {
+        throw new IllegalStateException("Invalid use of NoopJournal. Reading from this journal is always a programming error.");
+    }
+
     @Override
     public long write(byte[] idBytes, byte[] messageBytes) {
         throw new IllegalStateException("Invalid use of NoopJournal. Writing to this journal is always a programming error.");
@@ -47,6 +62,11 @@ public class NoopJournal extends AbstractIdleService implements Journal {
         throw new IllegalStateException("Invalid use of NoopJournal. Reading from this journal is always a programming error.");
     }
 
+    @Override
+    public List<JournalReadEntry> readPartition(int partition, long maximumCount) {
+        throw new IllegalStateException("Invalid use of NoopJournal. Reading from this journal is always a programming error.");
+    }
+
     @Override
     public void markJournalOffsetCommitted(long offset) {
         // nothing to do
@@ -21,4 +21,6 @@ import javax.ws.rs.core.MediaType;
 public class AdditionalMediaType {
     public final static String TEXT_CSV = "text/csv";
     public final static MediaType TEXT_CSV_TYPE = new MediaType("text", "csv");
+    public final static String APPLICATION_NDJSON = "application/x-ndjson";
+    public final static MediaType APPLICATION_NDJSON_TYPE = new MediaType("application", "x-ndjson");
 }
@@ -16,11 +16,14 @@
  */
 package org.graylog2.shared.stats;
 
+import com.google.common.collect.ImmutableMap;
 import org.cliffc.high_scale_lib.Counter;
 
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -30,14 +33,18 @@ import java.util.concurrent.atomic.AtomicReference;
 public class ThroughputStats {
     private long currentThroughput;
     private final Counter throughputCounter;
-    private final AtomicReference<ConcurrentHashMap<String, Counter>> streamThroughput;
-    private final AtomicReference<HashMap<String, Counter>> currentStreamThroughput;
+    // The striped counters are kept across cycles, so incrementing the throughput of an active stream never allocates.
+    private final ConcurrentMap<String, Counter> streamThroughput;
+    // Only accessed from cycleStreamThroughput()
+    private final Map<String, Long> lastStreamThroughput;
+    private final AtomicReference<Map<String, Long>> currentStreamThroughput;
 
 
     public ThroughputStats() {
         this.currentThroughput = 0;
         this.throughputCounter = new Counter();
-        this.streamThroughput = new AtomicReference<>(new ConcurrentHashMap<String, Counter>());
+        this.streamThroughput = new ConcurrentHashMap<>();
+        this.lastStreamThroughput = new HashMap<>();
         this.currentStreamThroughput =  new AtomicReference<>();
     }
 
@@ -55,21 +62,53 @@ public class ThroughputStats {
         this.currentThroughput = currentThroughput;
     }
 
-    public Map<String, Counter> cycleStreamThroughput() {
-        return streamThroughput.getAndSet(new ConcurrentHashMap<String, Counter>());
+    /**
+     * Returns the number of messages per stream since the last call of this method.
+     * <p/>
+     * Counters of streams which didn't receive any message since the last cycle are dropped, so counters of deleted
+     * streams don't pile up. An increment racing with the removal of an idle counter may get lost, which is fine for
+     * these statistics.
+     */
+    public synchronized Map<String, Long> cycleStreamThroughput() {
+        final ImmutableMap.Builder<String, Long> result = ImmutableMap.builder();
+
+        final Iterator<Map.Entry<String, Counter>> iterator = streamThroughput.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<String, Counter> entry = iterator.next();
+            final String streamId = entry.getKey();
+            final long current = entry.getValue().get();
+            final Long last = lastStreamThroughput.get(streamId);
+            final long delta = last == null ? current : current - last;
+
+            if (delta == 0) {
+                iterator.remove();
+                lastStreamThroughput.remove(streamId);
+            } else {
+                lastStreamThroughput.put(streamId, current);
+            }
+            result.put(streamId, delta);
+        }
+
+        return result.build();
     }
 
     public void incrementStreamThroughput(String streamId) {
-        final ConcurrentHashMap<String, Counter> counterMap = streamThroughput.get();
-        counterMap.putIfAbsent(streamId, new Counter());
-        counterMap.get(streamId).increment();
+        Counter counter = streamThroughput.get(streamId);
+        if (counter == null) {
+            final Counter newCounter = new Counter();
+            counter = streamThroughput.putIfAbsent(streamId, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+        counter.increment();
     }
 
-    public void setCurrentStreamThroughput(HashMap<String, Counter> throughput) {
+    public void setCurrentStreamThroughput(Map<String, Long> throughput) {
         currentStreamThroughput.set(throughput);
     }
 
-    public HashMap<String, Counter> getCurrentStreamThroughput() {
+    public Map<String, Long> getCurrentStreamThroughput() {
         return currentStreamThroughput.get();
     }
 
@@ -0,0 +1,166 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.shared.inputs;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMap;
+import org.graylog2.plugin.configuration.Configuration;
+import org.graylog2.plugin.inputs.codecs.Codec;
+import org.graylog2.shared.journal.CodecConfigurationTable;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CodecInstanceRegistryTest {
+    private MetricRegistry metricRegistry;
+    private CodecConfigurationTable codecConfigurationTable;
+    private Codec.Factory<Codec> factory;
+    private CodecInstanceRegistry registry;
+
+    @Before
+    public void setUp() throws Exception {
+        //noinspection unchecked
+        factory = mock(Codec.Factory.class);
+        when(factory.create(any(Configuration.class))).thenAnswer(new Answer<Codec>() {
+            @Override
+            public Codec answer(InvocationOnMock invocation) throws Throwable {
+                return mock(Codec.class);
+            }
+        });
+
+        final Map<String, Codec.Factory<? extends Codec>> factories = ImmutableMap.<String, Codec.Factory<? extends Codec>>of("test", factory);
+        metricRegistry = new MetricRegistry();
+        codecConfigurationTable = new CodecConfigurationTable(null);
+        registry = new CodecInstanceRegistry(factories, metricRegistry, codecConfigurationTable);
+    }
+
+    @Test
+    public void testGetReusesInstances() throws Exception {
+        final CodecInstanceRegistry.Cache cache = registry.newCache();
+        final Configuration config = new Configuration(Collections.<String, Object>singletonMap("foo", "bar"));
+
+        final Codec codec = cache.get("test", "input-1", config.getFingerprint(), config);
+        assertSame(codec, cache.get("test", "input-1", config.getFingerprint(), config));
+        final Configuration sameConfig = new Configuration(Collections.<String, Object>singletonMap("foo", "bar"));
+        assertSame(codec, cache.get("test", "input-1", sameConfig.getFingerprint(), sameConfig));
+        assertNotSame(codec, cache.get("test", "input-2", config.getFingerprint(), config));
+
+        assertEquals(2, metricRegistry.meter("org.graylog2.shared.inputs.CodecInstanceRegistry.test.hits").getCount());
+        assertEquals(2, metricRegistry.meter("org.graylog2.shared.inputs.CodecInstanceRegistry.test.misses").getCount());
+    }
+
+    @Test
+    public void testGetCreatesNewInstanceForChangedConfiguration() throws Exception {
+        final CodecInstanceRegistry.Cache cache = registry.newCache();
+
+        final Configuration config1 = new Configuration(Collections.<String, Object>singletonMap("foo", "bar"));
+        final Configuration config2 = new Configuration(Collections.<String, Object>singletonMap("foo", "baz"));
+
+        final Codec codec = cache.get("test", "input-1", config1.getFingerprint(), config1);
+        assertNotSame(codec, cache.get("test", "input-1", config2.getFingerprint(), config2));
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        final CodecInstanceRegistry.Cache cache = registry.newCache();
+        final Configuration config = new Configuration(Collections.<String, Object>singletonMap("foo", "bar"));
+
+        final Codec codec = cache.get("test", "input-1", config.getFingerprint(), config);
+        registry.invalidate("input-1");
+        assertNotSame(codec, cache.get("test", "input-1", config.getFingerprint(), config));
+    }
+
+    @Test
+    public void testGetWithUnknownCodec() throws Exception {
+        assertNull(registry.newCache().get("unknown", "input-1", null, Configuration.EMPTY_CONFIGURATION));
+    }
+
+    @Test
+    public void testGetResolvesConfigurationByFingerprint() throws Exception {
+        final Configuration config = new Configuration(Collections.<String, Object>singletonMap("foo", "bar"));
+        codecConfigurationTable.register(config);
+
+        registry.newCache().get("test", "input-1", config.getFingerprint(), null);
+        verify(factory).create(config);
+    }
+
+    @Test
+    public void testGetEntryReusesInputMetrics() throws Exception {
+        final CodecInstanceRegistry.Cache cache = registry.newCache();
+        final Configuration config = new Configuration(Collections.<String, Object>singletonMap("foo", "bar"));
+
+        final CodecInstanceRegistry.Entry entry = cache.getEntry("test", "input-1", config.getFingerprint(), config);
+        final CodecInstanceRegistry.InputMetrics metrics = entry.getInputMetrics();
+        assertSame(metrics, cache.getEntry("test", "input-1", config.getFingerprint(), config).getInputMetrics());
+        assertNotSame(metrics, cache.getEntry("test", "input-2", config.getFingerprint(), config).getInputMetrics());
+
+        metrics.getProcessedMessages().mark();
+        final String baseName = entry.getCodec().getClass().getName() + ".input-1";
+        assertEquals(1, metricRegistry.meter(baseName + ".processedMessages").getCount());
+        assertSame(metrics.getParseTime(), metricRegistry.timer(baseName + ".parseTime"));
+    }
+
+    @Test
+    public void testCachedLookupsDoNotAllocate() throws Exception {
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadMXBean;
+        assumeTrue(allocationBean.isThreadAllocatedMemorySupported());
+        allocationBean.setThreadAllocatedMemoryEnabled(true);
+
+        final CodecInstanceRegistry.Cache cache = registry.newCache();
+        final Configuration config = new Configuration(Collections.<String, Object>singletonMap("foo", "bar"));
+        final String fingerprint = config.getFingerprint();
+        final long threadId = Thread.currentThread().getId();
+        final int iterations = 100000;
+
+        // warm up so that the measured loop runs compiled code
+        lookupAndMark(cache, fingerprint, config, iterations);
+
+        final long before = allocationBean.getThreadAllocatedBytes(threadId);
+        lookupAndMark(cache, fingerprint, config, iterations);
+        final long allocated = allocationBean.getThreadAllocatedBytes(threadId) - before;
+
+        // a single allocation per message would be at least 16 bytes per iteration
+        assertTrue("Allocated " + allocated + " bytes for " + iterations + " lookups", allocated < iterations);
+    }
+
+    private static void lookupAndMark(CodecInstanceRegistry.Cache cache, String fingerprint, Configuration config, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            final CodecInstanceRegistry.Entry entry = cache.getEntry("test", "input-1", fingerprint, config);
+            entry.getInputMetrics().getProcessedMessages().mark();
+            entry.getInputMetrics().getIncomplete().mark();
+        }
+    }
+}
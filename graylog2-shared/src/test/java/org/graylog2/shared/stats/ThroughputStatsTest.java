@@ -0,0 +1,89 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.shared.stats;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ThroughputStatsTest {
+    @Test
+    public void testCycleStreamThroughputReturnsCountsSinceLastCycle() throws Exception {
+        final ThroughputStats stats = new ThroughputStats();
+
+        stats.incrementStreamThroughput("stream-1");
+        stats.incrementStreamThroughput("stream-1");
+        stats.incrementStreamThroughput("stream-2");
+
+        Map<String, Long> throughput = stats.cycleStreamThroughput();
+        assertEquals(2L, (long) throughput.get("stream-1"));
+        assertEquals(1L, (long) throughput.get("stream-2"));
+
+        stats.incrementStreamThroughput("stream-1");
+
+        throughput = stats.cycleStreamThroughput();
+        assertEquals(1L, (long) throughput.get("stream-1"));
+        assertEquals(0L, (long) throughput.get("stream-2"));
+
+        // idle counters are dropped after a cycle without messages
+        throughput = stats.cycleStreamThroughput();
+        assertEquals(0L, (long) throughput.get("stream-1"));
+        assertFalse(throughput.containsKey("stream-2"));
+        assertTrue(stats.cycleStreamThroughput().isEmpty());
+    }
+
+    @Test
+    public void testConcurrentIncrements() throws Exception {
+        final ThroughputStats stats = new ThroughputStats();
+        final int threads = 4;
+        final int increments = 10000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        for (int i = 0; i < threads; i++) {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < increments; j++) {
+                        stats.incrementStreamThroughput(j % 2 == 0 ? "stream-1" : "stream-2");
+                    }
+                }
+            });
+        }
+
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        final Map<String, Long> throughput = stats.cycleStreamThroughput();
+        assertEquals(threads * increments / 2, (long) throughput.get("stream-1"));
+        assertEquals(threads * increments / 2, (long) throughput.get("stream-2"));
+    }
+}